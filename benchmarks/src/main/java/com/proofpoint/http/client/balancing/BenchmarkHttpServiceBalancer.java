@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.balancing;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.proofpoint.reporting.BenchmarkReportCollectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the attempt selection done by {@link BalancingHttpClient} for
+ * each request and each retry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(8)
+public class BenchmarkHttpServiceBalancer
+{
+    @Param({"3", "50"})
+    private int uriCount;
+
+    private HttpServiceBalancerImpl balancer;
+
+    @Setup
+    public void setup()
+    {
+        HttpServiceBalancerStats stats = new BenchmarkReportCollectionFactory()
+                .createReportCollection(HttpServiceBalancerStats.class, false, "ServiceClient", ImmutableMap.of("serviceType", "benchmark"));
+        balancer = new HttpServiceBalancerImpl("benchmark", stats, new HttpServiceBalancerConfig());
+
+        ImmutableSet.Builder<URI> uris = ImmutableSet.builder();
+        for (int i = 0; i < uriCount; i++) {
+            uris.add(URI.create("http://10.0.0." + i + ":8080"));
+        }
+        balancer.updateHttpUris(uris.build());
+    }
+
+    @Benchmark
+    public URI attemptGood()
+    {
+        HttpServiceAttempt attempt = balancer.createAttempt();
+        attempt.markGood();
+        return attempt.getUri();
+    }
+
+    @Benchmark
+    public URI attemptRetry()
+    {
+        HttpServiceAttempt attempt = balancer.createAttempt();
+        attempt.markBad("benchmark");
+        attempt = attempt.next();
+        attempt.markGood();
+        return attempt.getUri();
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(".*" + BenchmarkHttpServiceBalancer.class.getSimpleName() + ".*")
+                .build()).run();
+    }
+}
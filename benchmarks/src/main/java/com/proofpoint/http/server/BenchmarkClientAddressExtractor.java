@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import com.google.common.net.InetAddresses;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up an address in a large set of internal networks and
+ * resolving the client address of a request behind a chain of proxies, as
+ * is done once each by the trace token filter, the request log and the
+ * jaxrs client info.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(1)
+public class BenchmarkClientAddressExtractor
+{
+    private static final int INTERNAL_NETWORK_COUNT = 512;
+
+    private final Map<String, Object> attributes = new HashMap<>();
+    private CidrSet internalNetworks;
+    private InetAddress untrustedAddress;
+    private ClientAddressExtractor extractor;
+    private HttpServletRequest request;
+
+    @Setup
+    public void setup()
+    {
+        StringBuilder cidrList = new StringBuilder();
+        for (int i = 0; i < INTERNAL_NETWORK_COUNT; i++) {
+            if (i > 0) {
+                cidrList.append(',');
+            }
+            cidrList.append("100.").append(64 + i / 256).append('.').append(i % 256).append(".0/24");
+        }
+        internalNetworks = CidrSet.fromString(cidrList.toString());
+        untrustedAddress = InetAddresses.forString("203.0.113.7");
+        extractor = new ClientAddressExtractor(new InternalNetworkConfig().setInternalNetworks(internalNetworks));
+
+        request = (HttpServletRequest) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getRemoteAddr":
+                            return "10.0.0.1";
+                        case "getHeaders":
+                            return Collections.enumeration(Collections.singletonList("203.0.113.7, 100.65.200.9, 172.16.5.4, 100.64.17.9"));
+                        case "getAttribute":
+                            return attributes.get(args[0]);
+                        case "setAttribute":
+                            attributes.put((String) args[0], args[1]);
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    @Benchmark
+    public boolean containsAddress()
+    {
+        return internalNetworks.containsAddress(untrustedAddress);
+    }
+
+    @Benchmark
+    public void clientAddressPerRequest(Blackhole blackhole)
+    {
+        attributes.clear();
+        for (int i = 0; i < 4; i++) {
+            blackhole.consume(extractor.clientAddressFor(request));
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(".*\\." + BenchmarkClientAddressExtractor.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import com.proofpoint.json.JsonCodec;
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+import org.joda.time.format.ISODateTimeFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures the time and allocation of encoding one request log line. The
+ * {@code legacy} benchmarks reproduce the encoders the request logs used
+ * before they wrote into a reused buffer; compare the
+ * {@code gc.alloc.rate.norm} figures reported by the GC profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(1)
+public class BenchmarkRequestLogEncoder
+{
+    private static final DateTimeFormatter LEGACY_ISO_FORMATTER = new DateTimeFormatterBuilder()
+            .append(ISODateTimeFormat.dateHourMinuteSecondFraction())
+            .appendTimeZoneOffset("Z", true, 2, 2)
+            .toFormatter();
+    private static final JsonCodec<HttpRequestEvent> LEGACY_CODEC = JsonCodec.jsonCodec(HttpRequestEvent.class).withoutPretty();
+
+    private final DelimitedRequestLog.EventEncoder delimitedEncoder = new DelimitedRequestLog.EventEncoder();
+    private final JsonRequestLog.EventEncoder jsonEncoder = new JsonRequestLog.EventEncoder();
+    private HttpRequestEvent event;
+
+    @Setup
+    public void setup()
+    {
+        event = new HttpRequestEvent(
+                new DateTime(),
+                "b3e5d12a-1f0c-4b8a-9d0e-6f2c7a1b4e59",
+                "10.20.30.40",
+                "GET",
+                "/v1/resource/12345?expand=items&limit=100",
+                "someuser",
+                "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/66.0.3359.181 Safari/537.36",
+                512,
+                32311,
+                200,
+                57);
+    }
+
+    @Benchmark
+    public byte[] delimited()
+    {
+        return delimitedEncoder.encode(event);
+    }
+
+    @Benchmark
+    public byte[] json()
+    {
+        return jsonEncoder.encode(event);
+    }
+
+    @Benchmark
+    public byte[] legacyDelimited()
+    {
+        return new StringBuilder()
+                .append(LEGACY_ISO_FORMATTER.print(event.getTimeStamp()))
+                .append('\t')
+                .append(event.getClientAddress())
+                .append('\t')
+                .append(event.getMethod())
+                .append('\t')
+                .append(event.getRequestUri())
+                .append('\t')
+                .append(event.getUser())
+                .append('\t')
+                .append(event.getAgent())
+                .append('\t')
+                .append(event.getResponseCode())
+                .append('\t')
+                .append(event.getRequestSize())
+                .append('\t')
+                .append(event.getResponseSize())
+                .append('\t')
+                .append(event.getTimeToLastByte())
+                .append('\t')
+                .append(event.getTraceToken())
+                .append('\n')
+                .toString()
+                .getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public byte[] legacyJson()
+    {
+        byte[] jsonBytes = LEGACY_CODEC.toJsonBytes(event);
+        byte[] line = new byte[jsonBytes.length + 1];
+        System.arraycopy(jsonBytes, 0, line, 0, jsonBytes.length);
+        line[jsonBytes.length] = '\n';
+        return line;
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(".*" + BenchmarkRequestLogEncoder.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.json;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.proofpoint.json.JsonCodec.listJsonCodec;
+import static java.util.Objects.requireNonNull;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(4)
+public class BenchmarkJsonCodec
+{
+    private final JsonCodec<List<Event>> codec = listJsonCodec(Event.class);
+    private List<Event> events;
+    private byte[] json;
+
+    @Setup
+    public void setup()
+    {
+        ImmutableList.Builder<Event> builder = ImmutableList.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.add(new Event(
+                    "Benchmark.Metric" + i,
+                    1_500_000_000_000L + i,
+                    i * 1.5,
+                    ImmutableMap.of("host", "host" + (i % 10), "application", "benchmark")));
+        }
+        events = builder.build();
+        json = codec.toJsonBytes(events);
+    }
+
+    @Benchmark
+    public byte[] toJsonBytes()
+    {
+        return codec.toJsonBytes(events);
+    }
+
+    @Benchmark
+    public List<Event> fromJsonBytes()
+    {
+        return codec.fromJson(json);
+    }
+
+    @Benchmark
+    public List<Event> roundTrip()
+    {
+        return codec.fromJson(codec.toJsonBytes(events));
+    }
+
+    public static class Event
+    {
+        private final String name;
+        private final long timestamp;
+        private final double value;
+        private final Map<String, String> tags;
+
+        @JsonCreator
+        public Event(
+                @JsonProperty("name") String name,
+                @JsonProperty("timestamp") long timestamp,
+                @JsonProperty("value") double value,
+                @JsonProperty("tags") Map<String, String> tags)
+        {
+            this.name = requireNonNull(name, "name is null");
+            this.timestamp = timestamp;
+            this.value = value;
+            this.tags = ImmutableMap.copyOf(requireNonNull(tags, "tags is null"));
+        }
+
+        @JsonProperty
+        public String getName()
+        {
+            return name;
+        }
+
+        @JsonProperty
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        @JsonProperty
+        public double getValue()
+        {
+            return value;
+        }
+
+        @JsonProperty
+        public Map<String, String> getTags()
+        {
+            return tags;
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(".*" + BenchmarkJsonCodec.class.getSimpleName() + ".*")
+                .build()).run();
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.node.NodeConfig;
+import com.proofpoint.node.NodeInfo;
+import com.proofpoint.stats.CounterStat;
+import com.proofpoint.stats.DistributionStat;
+import com.proofpoint.stats.TimeStat;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+final class BenchmarkBeans
+{
+    static final NodeInfo NODE_INFO = new NodeInfo("benchmark-application", "1.0", "platform.1", new NodeConfig().setEnvironment("benchmark"));
+
+    private BenchmarkBeans()
+    {
+    }
+
+    /**
+     * Create a registry with {@code beanCount} exported beans, each of
+     * which reports a gauge and a typical set of stats.
+     */
+    static ReportedBeanRegistry createRegistry(int beanCount)
+    {
+        ReportedBeanRegistry registry = new ReportedBeanRegistry();
+        ReportExporter exporter = new ReportExporter(registry, new MinuteBucketIdProvider());
+        for (int i = 0; i < beanCount; i++) {
+            exporter.export(new BenchmarkBean(), false, "Benchmark", ImmutableMap.of("instance", Integer.toString(i)));
+        }
+        return registry;
+    }
+
+    public static class BenchmarkBean
+    {
+        private final CounterStat counter = new CounterStat();
+        private final TimeStat time = new TimeStat();
+        private final DistributionStat distribution = new DistributionStat();
+
+        BenchmarkBean()
+        {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int i = 0; i < 100; i++) {
+                counter.add(1);
+                time.add(random.nextLong(1_000_000_000), TimeUnit.NANOSECONDS);
+                distribution.add(random.nextLong(1_000_000));
+            }
+        }
+
+        @Reported
+        public int getGauge()
+        {
+            return 42;
+        }
+
+        @Nested
+        public CounterStat getCounter()
+        {
+            return counter;
+        }
+
+        @Nested
+        public TimeStat getTime()
+        {
+            return time;
+        }
+
+        @Nested
+        public DistributionStat getDistribution()
+        {
+            return distribution;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.io.ByteStreams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.proofpoint.reporting.BenchmarkBeans.NODE_INFO;
+import static com.proofpoint.reporting.BenchmarkBeans.createRegistry;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class BenchmarkPrometheusCollector
+{
+    @Param({"100", "5000"})
+    private int beanCount;
+
+    private PrometheusCollector prometheusCollector;
+    private MetricsResource metricsResource;
+
+    @Setup
+    public void setup()
+    {
+        prometheusCollector = new PrometheusCollector(NODE_INFO, createRegistry(beanCount), new ReportTagConfig());
+        metricsResource = new MetricsResource(prometheusCollector, new ReportingPrometheusConfig());
+    }
+
+    @Benchmark
+    public Map<String, ?> collectData()
+    {
+        return prometheusCollector.collectData();
+    }
+
+    @Benchmark
+    public void getMetrics()
+            throws IOException
+    {
+        metricsResource.getMetrics().write(ByteStreams.nullOutputStream());
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(".*" + BenchmarkPrometheusCollector.class.getSimpleName() + ".*")
+                .build()).run();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.Table;
+import com.google.common.io.ByteStreams;
+import com.proofpoint.http.client.HttpStatus;
+import com.proofpoint.http.client.testing.TestingHttpClient;
+import com.proofpoint.json.ObjectMapperProvider;
+import com.proofpoint.reporting.ReportClientConfig.UploadFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.proofpoint.http.client.testing.BodySourceTester.writeBodySourceTo;
+import static com.proofpoint.http.client.testing.TestingResponse.mockResponse;
+import static com.proofpoint.reporting.BenchmarkBeans.NODE_INFO;
+import static com.proofpoint.reporting.BenchmarkBeans.createRegistry;
+
+/**
+ * Measures writing one report upload body in each upload format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class BenchmarkReportClient
+{
+    @Param({"100", "5000"})
+    private int beanCount;
+
+    @Param({"JSON", "SMILE"})
+    private UploadFormat uploadFormat;
+
+    private ReportClient reportClient;
+    private CollectedData collectedData;
+
+    @Setup
+    public void setup()
+    {
+        new ReportCollector(NODE_INFO, new MinuteBucketIdProvider(), createRegistry(beanCount), new ReportSink()
+        {
+            @Override
+            public void report(long systemTimeMillis, Table<String, Map<String, String>, Object> collectedData)
+            {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void report(long systemTimeMillis, CollectedData collectedData)
+            {
+                BenchmarkReportClient.this.collectedData = collectedData;
+            }
+        }).collectData();
+
+        ReportClientConfig config = new ReportClientConfig().setUploadFormat(uploadFormat);
+        reportClient = new ReportClient(NODE_INFO, new TestingHttpClient(request -> {
+            try {
+                writeBodySourceTo(request.getBodySource(), ByteStreams.nullOutputStream());
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return mockResponse(HttpStatus.NO_CONTENT);
+        }), config, new ReportTagConfig(), new ObjectMapperProvider().get(), new ReportSpool(config));
+    }
+
+    @Benchmark
+    public void report()
+    {
+        reportClient.report(0, collectedData);
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(".*" + BenchmarkReportClient.class.getSimpleName() + ".*")
+                .build()).run();
+    }
+}
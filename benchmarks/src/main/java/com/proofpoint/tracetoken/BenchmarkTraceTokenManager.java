@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.tracetoken;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.proofpoint.tracetoken.TraceTokenManager.addTraceTokenProperties;
+import static com.proofpoint.tracetoken.TraceTokenManager.clearRequestToken;
+import static com.proofpoint.tracetoken.TraceTokenManager.createAndRegisterNewRequestToken;
+import static com.proofpoint.tracetoken.TraceTokenManager.getCurrentTraceToken;
+import static com.proofpoint.tracetoken.TraceTokenManager.registerRequestToken;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(3)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Threads(4)
+public class BenchmarkTraceTokenManager
+{
+    private static final String TOKEN_ID = "benchmark-trace-token";
+
+    @Benchmark
+    public String createAndClear()
+    {
+        String token = createAndRegisterNewRequestToken();
+        clearRequestToken();
+        return token;
+    }
+
+    @Benchmark
+    public TraceToken registerAndRestore()
+    {
+        try (TraceTokenScope ignored = registerRequestToken(TOKEN_ID)) {
+            return getCurrentTraceToken();
+        }
+    }
+
+    @Benchmark
+    public TraceToken addPropertiesAndRestore()
+    {
+        try (TraceTokenScope ignored = registerRequestToken(TOKEN_ID)) {
+            try (TraceTokenScope ignored2 = addTraceTokenProperties("localRoot", "true")) {
+                return getCurrentTraceToken();
+            }
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(".*" + BenchmarkTraceTokenManager.class.getSimpleName() + ".*")
+                .build()).run();
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.google.common.collect.ListMultimap;
+import com.google.common.io.CountingInputStream;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static java.lang.Math.min;
+
+/**
+ * A {@link Response} whose body has already been read into a buffer.
+ */
+class BufferedResponse
+        implements Response
+{
+    private final int statusCode;
+    private final String statusMessage;
+    private final ListMultimap<HeaderName, String> headers;
+    private final CountingInputStream inputStream;
+
+    BufferedResponse(int statusCode, String statusMessage, ListMultimap<HeaderName, String> headers, ByteBuffer body)
+    {
+        this.statusCode = statusCode;
+        this.statusMessage = statusMessage;
+        this.headers = headers;
+        inputStream = new CountingInputStream(new ByteBufferInputStream(body));
+    }
+
+    @Override
+    public int getStatusCode()
+    {
+        return statusCode;
+    }
+
+    @Override
+    public String getStatusMessage()
+    {
+        return statusMessage;
+    }
+
+    @Override
+    public ListMultimap<HeaderName, String> getHeaders()
+    {
+        return headers;
+    }
+
+    @Override
+    public long getBytesRead()
+    {
+        return inputStream.getCount();
+    }
+
+    @Override
+    public InputStream getInputStream()
+    {
+        return inputStream;
+    }
+
+    private static class ByteBufferInputStream
+            extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read()
+        {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length)
+        {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            length = min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+            return length;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.proofpoint.http.client.StreamingResponseHandler.BodyConsumer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.proofpoint.http.client.ResponseHandlerUtils.propagate;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Adapts a {@link StreamingResponseHandler} for clients that read the
+ * response body before calling the handler.
+ */
+class BufferedStreamingResponseHandler<T, E extends Exception>
+        implements ResponseHandler<T, E>
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private final StreamingResponseHandler<T, E> responseHandler;
+
+    BufferedStreamingResponseHandler(StreamingResponseHandler<T, E> responseHandler)
+    {
+        this.responseHandler = requireNonNull(responseHandler, "responseHandler is null");
+    }
+
+    @Override
+    public T handleException(Request request, Exception exception)
+            throws E
+    {
+        return responseHandler.handleException(request, exception);
+    }
+
+    @Override
+    public T handle(Request request, Response response)
+            throws E
+    {
+        BodyConsumer<T, E> bodyConsumer = responseHandler.handleHeaders(request, response);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = response.getInputStream()) {
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                if (length == 0) {
+                    continue;
+                }
+                AtomicBoolean released = new AtomicBoolean();
+                bodyConsumer.onContent(ByteBuffer.wrap(buffer, 0, length), () -> released.set(true));
+                if (!released.get()) {
+                    // the consumer still holds the chunk
+                    buffer = new byte[BUFFER_SIZE];
+                }
+            }
+        }
+        catch (IOException e) {
+            throw propagate(request, e);
+        }
+        return bodyConsumer.onComplete();
+    }
+}
@@ -0,0 +1,698 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Longs;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.proofpoint.reporting.Gauge;
+import com.proofpoint.stats.CounterStat;
+import org.weakref.jmx.Flatten;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.google.common.net.HttpHeaders.AUTHORIZATION;
+import static com.google.common.net.HttpHeaders.CACHE_CONTROL;
+import static com.google.common.net.HttpHeaders.CONTENT_LENGTH;
+import static com.google.common.net.HttpHeaders.ETAG;
+import static com.google.common.net.HttpHeaders.IF_MATCH;
+import static com.google.common.net.HttpHeaders.IF_MODIFIED_SINCE;
+import static com.google.common.net.HttpHeaders.IF_NONE_MATCH;
+import static com.google.common.net.HttpHeaders.IF_RANGE;
+import static com.google.common.net.HttpHeaders.IF_UNMODIFIED_SINCE;
+import static com.google.common.net.HttpHeaders.RANGE;
+import static com.google.common.net.HttpHeaders.VARY;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * An {@link HttpClient} that caches responses to GET requests in memory.
+ * <p>
+ * A 200 response is cached if its Cache-Control header has a positive
+ * max-age or it has an ETag, and it does not have no-store. A response is
+ * served from the cache until its max-age has passed. After that, or if the
+ * response had no-cache, a response with an ETag is revalidated with
+ * If-None-Match and a 304 response is answered from the cache. Responses
+ * that Vary on request headers are cached per URI and values of those
+ * headers, so a URI may have several variants.
+ * <p>
+ * Requests that have a body, are conditional, or have a Cache-Control of
+ * no-store are passed through without consulting the cache. A request
+ * Cache-Control of no-cache forces revalidation. Responses to requests with
+ * an Authorization header are only cached if they are marked public.
+ */
+public class CachingHttpClient
+        implements HttpClient
+{
+    private static final Splitter HEADER_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final List<String> CONDITIONAL_HEADERS = ImmutableList.of(IF_MATCH, IF_MODIFIED_SINCE, IF_NONE_MATCH, IF_RANGE, IF_UNMODIFIED_SINCE, RANGE);
+
+    private final HttpClient httpClient;
+    private final Cache<URI, Variants> cache;
+    private final long maxEntrySize;
+    private final Ticker ticker;
+    private final CounterStat hits = new CounterStat();
+    private final CounterStat misses = new CounterStat();
+    private final CounterStat revalidations = new CounterStat();
+
+    public CachingHttpClient(HttpClient httpClient, CachingHttpClientConfig config)
+    {
+        this(httpClient, config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    CachingHttpClient(HttpClient httpClient, CachingHttpClientConfig config, Ticker ticker)
+    {
+        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        maxEntrySize = requireNonNull(config, "config is null").getMaxEntrySize().toBytes();
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        // a single segment applies the size limit to the cache as a whole; reads do not lock
+        cache = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(config.getMaxSize().toBytes())
+                .weigher((URI uri, Variants variants) -> variants.getWeight())
+                .build();
+    }
+
+    @Override
+    public <T, E extends Exception> T execute(Request request, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        if (!isCacheable(request)) {
+            return httpClient.execute(request, responseHandler);
+        }
+
+        CachedResponse cachedResponse = lookup(request);
+        if (cachedResponse != null && isFresh(request, cachedResponse)) {
+            hits.add(1);
+            return responseHandler.handle(request, cachedResponse.toResponse());
+        }
+
+        return httpClient.execute(conditionalRequest(request, cachedResponse),
+                new CachingResponseHandler<>(request.getUri(), cachedResponse, responseHandler));
+    }
+
+    @Override
+    public <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
+    {
+        if (!isCacheable(request)) {
+            return httpClient.executeAsync(request, responseHandler);
+        }
+
+        CachedResponse cachedResponse = lookup(request);
+        if (cachedResponse != null && isFresh(request, cachedResponse)) {
+            hits.add(1);
+            try {
+                return new ImmediateHttpResponseFuture<>(responseHandler.handle(request, cachedResponse.toResponse()));
+            }
+            catch (Exception e) {
+                return new ImmediateFailedHttpResponseFuture<>(e);
+            }
+        }
+
+        return httpClient.executeAsync(conditionalRequest(request, cachedResponse),
+                new CachingResponseHandler<>(request.getUri(), cachedResponse, responseHandler));
+    }
+
+    /**
+     * Requests that may be answered from the cache are buffered, so that
+     * the response can be stored. Other requests are streamed.
+     */
+    @Override
+    public <T, E extends Exception> HttpResponseFuture<T> executeAsyncStreaming(Request request, StreamingResponseHandler<T, E> responseHandler)
+    {
+        if (!isCacheable(request)) {
+            return httpClient.executeAsyncStreaming(request, responseHandler);
+        }
+        return executeAsync(request, new BufferedStreamingResponseHandler<>(responseHandler));
+    }
+
+    @Override
+    public RequestStats getStats()
+    {
+        return httpClient.getStats();
+    }
+
+    /**
+     * Exports the attributes of the wrapped client, including its stats.
+     */
+    @Flatten
+    public HttpClient getHttpClient()
+    {
+        return httpClient;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getHits()
+    {
+        return hits;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getMisses()
+    {
+        return misses;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getRevalidations()
+    {
+        return revalidations;
+    }
+
+    @Gauge
+    @Managed
+    public long getCachedResponses()
+    {
+        long responses = 0;
+        for (Variants variants : cache.asMap().values()) {
+            responses += variants.size();
+        }
+        return responses;
+    }
+
+    @Managed
+    public void invalidateAll()
+    {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void close()
+    {
+        cache.invalidateAll();
+        httpClient.close();
+    }
+
+    private static boolean isCacheable(Request request)
+    {
+        if (!"GET".equalsIgnoreCase(request.getMethod()) || request.getBodySource() != null) {
+            return false;
+        }
+        for (String header : CONDITIONAL_HEADERS) {
+            if (!requestHeaderValues(request, header).isEmpty()) {
+                return false;
+            }
+        }
+        return !requestCacheDirectives(request).contains("no-store");
+    }
+
+    @Nullable
+    private CachedResponse lookup(Request request)
+    {
+        Variants variants = cache.getIfPresent(request.getUri());
+        if (variants == null) {
+            return null;
+        }
+        return variants.get(request);
+    }
+
+    private void store(URI key, CachedResponse response)
+    {
+        cache.asMap().compute(key, (uri, variants) -> variants == null ? new Variants(response) : variants.with(response));
+    }
+
+    private void invalidate(URI key, Request request)
+    {
+        cache.asMap().computeIfPresent(key, (uri, variants) -> variants.without(request));
+    }
+
+    private boolean isFresh(Request request, CachedResponse cachedResponse)
+    {
+        return !requestCacheDirectives(request).contains("no-cache") && cachedResponse.isFresh(ticker.read());
+    }
+
+    private static Request conditionalRequest(Request request, @Nullable CachedResponse cachedResponse)
+    {
+        if (cachedResponse == null || cachedResponse.getETag() == null) {
+            return request;
+        }
+        return Request.Builder.fromRequest(request)
+                .setHeader(IF_NONE_MATCH, cachedResponse.getETag())
+                .build();
+    }
+
+    private static List<String> requestCacheDirectives(Request request)
+    {
+        return cacheDirectives(requestHeaderValues(request, CACHE_CONTROL));
+    }
+
+    private static List<String> cacheDirectives(List<String> cacheControlValues)
+    {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (String value : cacheControlValues) {
+            for (String directive : HEADER_SPLITTER.split(value)) {
+                builder.add(directive.toLowerCase());
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean isAuthorized(Request request)
+    {
+        return !requestHeaderValues(request, AUTHORIZATION).isEmpty();
+    }
+
+    private static List<List<String>> varyValues(List<String> varyHeaders, Request request)
+    {
+        ImmutableList.Builder<List<String>> builder = ImmutableList.builder();
+        for (String header : varyHeaders) {
+            builder.add(requestHeaderValues(request, header));
+        }
+        return builder.build();
+    }
+
+    private static List<String> requestHeaderValues(Request request, String name)
+    {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (Entry<String, String> entry : request.getHeaders().entries()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                builder.add(entry.getValue());
+            }
+        }
+        return builder.build();
+    }
+
+    @Nullable
+    private static CacheControl parseCacheControl(List<String> values)
+    {
+        if (values.isEmpty()) {
+            return null;
+        }
+        try {
+            return CacheControl.valueOf(Joiner.on(',').join(values));
+        }
+        catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private class CachingResponseHandler<T, E extends Exception>
+            implements ResponseHandler<T, E>
+    {
+        private final URI key;
+        private final CachedResponse cachedResponse;
+        private final ResponseHandler<T, E> responseHandler;
+
+        CachingResponseHandler(URI key, @Nullable CachedResponse cachedResponse, ResponseHandler<T, E> responseHandler)
+        {
+            this.key = key;
+            this.cachedResponse = cachedResponse;
+            this.responseHandler = responseHandler;
+        }
+
+        @Override
+        public T handleException(Request request, Exception exception)
+                throws E
+        {
+            return responseHandler.handleException(request, exception);
+        }
+
+        @Override
+        public T handle(Request request, Response response)
+                throws E
+        {
+            long now = ticker.read();
+
+            if (response.getStatusCode() == HttpStatus.NOT_MODIFIED.code() && cachedResponse != null) {
+                revalidations.add(1);
+                CachedResponse revalidated = cachedResponse.revalidate(response, isAuthorized(request), now);
+                if (revalidated == null) {
+                    invalidate(key, request);
+                    return responseHandler.handle(request, cachedResponse.toResponse());
+                }
+                store(key, revalidated);
+                return responseHandler.handle(request, revalidated.toResponse());
+            }
+
+            misses.add(1);
+            if (response.getStatusCode() != HttpStatus.OK.code()) {
+                return responseHandler.handle(request, response);
+            }
+
+            Long expiresAt = expiresAt(response.getHeaders(CACHE_CONTROL), response.getHeader(ETAG), isAuthorized(request), now);
+            List<String> vary = varyHeaders(response);
+            Long contentLength = contentLength(response);
+            if (expiresAt == null || vary == null || (contentLength != null && contentLength > maxEntrySize)) {
+                invalidate(key, request);
+                return responseHandler.handle(request, response);
+            }
+
+            byte[] body;
+            try {
+                body = ByteStreams.toByteArray(ByteStreams.limit(response.getInputStream(), maxEntrySize + 1));
+                if (body.length > maxEntrySize) {
+                    invalidate(key, request);
+                    return responseHandler.handle(request, new PrefixedResponse(response, body));
+                }
+            }
+            catch (IOException e) {
+                return responseHandler.handleException(request, e);
+            }
+
+            CachedResponse newResponse = new CachedResponse(response.getStatusCode(), response.getStatusMessage(),
+                    ImmutableListMultimap.copyOf(response.getHeaders()), ByteBuffer.wrap(body).asReadOnlyBuffer(), response.getHeader(ETAG),
+                    vary, varyValues(vary, request), expiresAt);
+            store(key, newResponse);
+            return responseHandler.handle(request, newResponse.toResponse());
+        }
+    }
+
+    /**
+     * Returns the ticker time at which a response stops being fresh, or null
+     * if the response may not be cached.
+     */
+    @Nullable
+    private static Long expiresAt(List<String> cacheControlValues, @Nullable String eTag, boolean authorized, long now)
+    {
+        if (authorized && !cacheDirectives(cacheControlValues).contains("public")) {
+            return null;
+        }
+        CacheControl cacheControl = parseCacheControl(cacheControlValues);
+        if (cacheControl == null) {
+            return eTag == null ? null : now;
+        }
+        if (cacheControl.isNoStore()) {
+            return null;
+        }
+        int maxAge = cacheControl.isNoCache() ? 0 : cacheControl.getMaxAge();
+        if (maxAge <= 0) {
+            return eTag == null ? null : now;
+        }
+        return now + SECONDS.toNanos(maxAge);
+    }
+
+    @Nullable
+    private static List<String> varyHeaders(Response response)
+    {
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (String value : response.getHeaders(VARY)) {
+            for (String header : HEADER_SPLITTER.split(value)) {
+                if (header.equals("*")) {
+                    return null;
+                }
+                builder.add(header.toLowerCase());
+            }
+        }
+        return builder.build();
+    }
+
+    @Nullable
+    private static Long contentLength(Response response)
+    {
+        String value = response.getHeader(CONTENT_LENGTH);
+        if (value == null) {
+            return null;
+        }
+        return Longs.tryParse(value.trim());
+    }
+
+    private static class CachedResponse
+    {
+        private final int statusCode;
+        private final String statusMessage;
+        private final ListMultimap<HeaderName, String> headers;
+        private final ByteBuffer body;
+        private final String eTag;
+        private final List<String> varyHeaders;
+        private final List<List<String>> varyValues;
+        private final long expiresAt;
+
+        CachedResponse(int statusCode, String statusMessage, ListMultimap<HeaderName, String> headers, ByteBuffer body,
+                @Nullable String eTag, List<String> varyHeaders, List<List<String>> varyValues, long expiresAt)
+        {
+            this.statusCode = statusCode;
+            this.statusMessage = statusMessage;
+            this.headers = headers;
+            this.body = body;
+            this.eTag = eTag;
+            this.varyHeaders = varyHeaders;
+            this.varyValues = varyValues;
+            this.expiresAt = expiresAt;
+        }
+
+        @Nullable
+        String getETag()
+        {
+            return eTag;
+        }
+
+        int getWeight()
+        {
+            long weight = body.capacity();
+            for (Entry<HeaderName, String> entry : headers.entries()) {
+                weight += entry.getKey().toString().length() + entry.getValue().length();
+            }
+            return (int) min(weight, Integer.MAX_VALUE);
+        }
+
+        boolean isFresh(long now)
+        {
+            return now - expiresAt < 0;
+        }
+
+        List<String> getVaryHeaders()
+        {
+            return varyHeaders;
+        }
+
+        List<List<String>> getVaryValues()
+        {
+            return varyValues;
+        }
+
+        /**
+         * Returns the response updated with the headers of a 304 response,
+         * or null if it may no longer be cached.
+         */
+        @Nullable
+        CachedResponse revalidate(Response notModified, boolean authorized, long now)
+        {
+            ImmutableListMultimap.Builder<HeaderName, String> builder = ImmutableListMultimap.builder();
+            ListMultimap<HeaderName, String> updates = notModified.getHeaders();
+            HeaderName contentLength = HeaderName.of(CONTENT_LENGTH);
+            for (Entry<HeaderName, String> entry : headers.entries()) {
+                if (entry.getKey().equals(contentLength) || !updates.containsKey(entry.getKey())) {
+                    builder.put(entry);
+                }
+            }
+            for (Entry<HeaderName, String> entry : updates.entries()) {
+                if (!entry.getKey().equals(contentLength)) {
+                    builder.put(entry);
+                }
+            }
+            ImmutableListMultimap<HeaderName, String> newHeaders = builder.build();
+
+            String newETag = firstHeader(newHeaders, ETAG);
+            Long newExpiresAt = expiresAt(newHeaders.get(HeaderName.of(CACHE_CONTROL)), newETag, authorized, now);
+            if (newExpiresAt == null) {
+                return null;
+            }
+            return new CachedResponse(statusCode, statusMessage, newHeaders, body, newETag, varyHeaders, varyValues, newExpiresAt);
+        }
+
+        Response toResponse()
+        {
+            return new BufferedResponse(statusCode, statusMessage, headers, body.duplicate());
+        }
+
+        @Nullable
+        private static String firstHeader(ListMultimap<HeaderName, String> headers, String name)
+        {
+            List<String> values = headers.get(HeaderName.of(name));
+            return values.isEmpty() ? null : values.get(0);
+        }
+    }
+
+    /**
+     * The cached responses for a URI, keyed by the values of the request
+     * headers they Vary on.
+     */
+    private static class Variants
+    {
+        private final List<String> varyHeaders;
+        private final Map<List<List<String>>, CachedResponse> responses;
+
+        Variants(CachedResponse response)
+        {
+            this(response.getVaryHeaders(), ImmutableMap.of(response.getVaryValues(), response));
+        }
+
+        private Variants(List<String> varyHeaders, Map<List<List<String>>, CachedResponse> responses)
+        {
+            this.varyHeaders = varyHeaders;
+            this.responses = responses;
+        }
+
+        @Nullable
+        CachedResponse get(Request request)
+        {
+            return responses.get(varyValues(varyHeaders, request));
+        }
+
+        Variants with(CachedResponse response)
+        {
+            if (!response.getVaryHeaders().equals(varyHeaders)) {
+                // the other variants were selected by headers the resource no longer varies on
+                return new Variants(response);
+            }
+            Map<List<List<String>>, CachedResponse> newResponses = new LinkedHashMap<>(responses);
+            newResponses.put(response.getVaryValues(), response);
+            return new Variants(varyHeaders, ImmutableMap.copyOf(newResponses));
+        }
+
+        /**
+         * Returns the variants without the one selected by the request, or
+         * null if none remain.
+         */
+        @Nullable
+        Variants without(Request request)
+        {
+            List<List<String>> varyValues = varyValues(varyHeaders, request);
+            if (!responses.containsKey(varyValues)) {
+                return this;
+            }
+            Map<List<List<String>>, CachedResponse> newResponses = new LinkedHashMap<>(responses);
+            newResponses.remove(varyValues);
+            if (newResponses.isEmpty()) {
+                return null;
+            }
+            return new Variants(varyHeaders, ImmutableMap.copyOf(newResponses));
+        }
+
+        int size()
+        {
+            return responses.size();
+        }
+
+        int getWeight()
+        {
+            long weight = 0;
+            for (CachedResponse response : responses.values()) {
+                weight += response.getWeight();
+            }
+            return (int) min(weight, Integer.MAX_VALUE);
+        }
+    }
+
+    private static class PrefixedResponse
+            implements Response
+    {
+        private final Response response;
+        private final byte[] prefix;
+
+        PrefixedResponse(Response response, byte[] prefix)
+        {
+            this.response = response;
+            this.prefix = prefix;
+        }
+
+        @Override
+        public int getStatusCode()
+        {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusMessage()
+        {
+            return response.getStatusMessage();
+        }
+
+        @Override
+        public ListMultimap<HeaderName, String> getHeaders()
+        {
+            return response.getHeaders();
+        }
+
+        @Override
+        public long getBytesRead()
+        {
+            return response.getBytesRead();
+        }
+
+        @Override
+        public InputStream getInputStream()
+                throws IOException
+        {
+            return new SequenceInputStream(new ByteArrayInputStream(prefix), response.getInputStream());
+        }
+    }
+
+    private static class ImmediateHttpResponseFuture<T>
+            extends AbstractFuture<T>
+            implements HttpResponseFuture<T>
+    {
+        private final T result;
+
+        ImmediateHttpResponseFuture(T result)
+        {
+            this.result = result;
+            set(result);
+        }
+
+        @Override
+        public String getState()
+        {
+            return "Succeeded from cache with result " + result;
+        }
+    }
+
+    private static class ImmediateFailedHttpResponseFuture<T>
+            extends AbstractFuture<T>
+            implements HttpResponseFuture<T>
+    {
+        private final Exception exception;
+
+        ImmediateFailedHttpResponseFuture(Exception exception)
+        {
+            this.exception = exception;
+            setException(exception);
+        }
+
+        @Override
+        public String getState()
+        {
+            return "Failed from cache with exception " + exception;
+        }
+    }
+}
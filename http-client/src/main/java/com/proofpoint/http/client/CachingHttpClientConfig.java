@@ -0,0 +1,58 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.proofpoint.configuration.Config;
+import com.proofpoint.configuration.ConfigDescription;
+import com.proofpoint.units.DataSize;
+
+import javax.validation.constraints.NotNull;
+
+import static com.proofpoint.units.DataSize.Unit.MEGABYTE;
+
+public class CachingHttpClientConfig
+{
+    private DataSize maxSize = new DataSize(16, MEGABYTE);
+    private DataSize maxEntrySize = new DataSize(1, MEGABYTE);
+
+    @NotNull
+    public DataSize getMaxSize()
+    {
+        return maxSize;
+    }
+
+    @Config("http-client.cache.max-size")
+    @ConfigDescription("Maximum total size of the cached response bodies")
+    public CachingHttpClientConfig setMaxSize(DataSize maxSize)
+    {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getMaxEntrySize()
+    {
+        return maxEntrySize;
+    }
+
+    @Config("http-client.cache.max-entry-size")
+    @ConfigDescription("Responses with larger bodies are not cached")
+    public CachingHttpClientConfig setMaxEntrySize(DataSize maxEntrySize)
+    {
+        this.maxEntrySize = maxEntrySize;
+        return this;
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.SettableFuture;
+import com.proofpoint.stats.CounterStat;
+import com.proofpoint.units.DataSize;
+import org.weakref.jmx.Flatten;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.Futures.addCallback;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * An {@link HttpClient} that sends a single request for concurrent identical
+ * requests.
+ * <p>
+ * A GET or HEAD request, or a request built with
+ * {@link Request.Builder#setIdempotent(boolean)}, that has no body and the
+ * same method, URI and headers as a request already in progress waits for
+ * the response to the request in progress instead of sending its own. The
+ * response body is buffered, up to a maximum size, and each request's
+ * response handler is called with its own copy. Other requests are passed
+ * through.
+ */
+public class CoalescingHttpClient
+        implements HttpClient
+{
+    private final HttpClient httpClient;
+    private final long maxResponseSize;
+    private final ConcurrentMap<RequestKey, SharedCall> inFlight = new ConcurrentHashMap<>();
+    private final CounterStat coalescedRequests = new CounterStat();
+
+    /**
+     * Creates a client that buffers coalesced responses up to the default
+     * "http-client.max-content-length".
+     */
+    public CoalescingHttpClient(HttpClient httpClient)
+    {
+        this(httpClient, new HttpClientConfig().getMaxContentLength());
+    }
+
+    /**
+     * Creates a client that buffers coalesced responses up to
+     * {@code maxResponseSize}. A larger response fails each coalesced
+     * request with a {@link ResponseTooLargeException}.
+     */
+    public CoalescingHttpClient(HttpClient httpClient, DataSize maxResponseSize)
+    {
+        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.maxResponseSize = requireNonNull(maxResponseSize, "maxResponseSize is null").toBytes();
+    }
+
+    @Override
+    public <T, E extends Exception> T execute(Request request, ResponseHandler<T, E> responseHandler)
+            throws E
+    {
+        if (!isCoalescable(request)) {
+            return httpClient.execute(request, responseHandler);
+        }
+
+        CoalescedFuture<T, E> future = coalesce(request, responseHandler);
+        try {
+            try {
+                return future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (future.claimHandler()) {
+                    future.cancel(true);
+                    return responseHandler.handleException(request, e);
+                }
+                // the response handler is already handling the response
+                return getUninterruptibly(future);
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throwIfUnchecked(cause);
+            //noinspection unchecked
+            throw (E) cause;
+        }
+    }
+
+    @Override
+    public <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
+    {
+        if (!isCoalescable(request)) {
+            return httpClient.executeAsync(request, responseHandler);
+        }
+        return coalesce(request, responseHandler);
+    }
+
+    private <T, E extends Exception> CoalescedFuture<T, E> coalesce(Request request, ResponseHandler<T, E> responseHandler)
+    {
+        RequestKey key = new RequestKey(request);
+        while (true) {
+            SharedCall sharedCall = inFlight.get(key);
+            if (sharedCall != null) {
+                CoalescedFuture<T, E> future = sharedCall.join(request, responseHandler);
+                if (future != null) {
+                    coalescedRequests.add(1);
+                    return future;
+                }
+                // every waiter canceled the call before it could be removed
+                inFlight.remove(key, sharedCall);
+                continue;
+            }
+
+            sharedCall = new SharedCall(key);
+            if (inFlight.putIfAbsent(key, sharedCall) == null) {
+                CoalescedFuture<T, E> future = sharedCall.join(request, responseHandler);
+                sharedCall.start(request);
+                return future;
+            }
+        }
+    }
+
+    /**
+     * Coalesced requests share a buffered response. Other requests are
+     * streamed.
+     */
+    @Override
+    public <T, E extends Exception> HttpResponseFuture<T> executeAsyncStreaming(Request request, StreamingResponseHandler<T, E> responseHandler)
+    {
+        if (!isCoalescable(request)) {
+            return httpClient.executeAsyncStreaming(request, responseHandler);
+        }
+        return executeAsync(request, new BufferedStreamingResponseHandler<>(responseHandler));
+    }
+
+    @Flatten
+    @Override
+    public RequestStats getStats()
+    {
+        return httpClient.getStats();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCoalescedRequests()
+    {
+        return coalescedRequests;
+    }
+
+    @Managed
+    public int getInFlightRequests()
+    {
+        return inFlight.size();
+    }
+
+    @Override
+    public void close()
+    {
+        httpClient.close();
+    }
+
+    private static boolean isCoalescable(Request request)
+    {
+        if (request.getBodySource() != null) {
+            return false;
+        }
+        String method = request.getMethod();
+        return "GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method) || request.isIdempotent();
+    }
+
+    private class SharedCall
+    {
+        private final RequestKey key;
+        private final SettableFuture<ResponseData> result = SettableFuture.create();
+
+        @GuardedBy("this")
+        private int waiters = 0;
+        @GuardedBy("this")
+        private boolean canceled = false;
+        @GuardedBy("this")
+        private HttpResponseFuture<ResponseData> future = null;
+
+        SharedCall(RequestKey key)
+        {
+            this.key = key;
+            // listeners run in order, so later requests do not join a completed call
+            result.addListener(() -> inFlight.remove(key, this), directExecutor());
+        }
+
+        void start(Request request)
+        {
+            HttpResponseFuture<ResponseData> future = httpClient.executeAsync(request, new BufferingResponseHandler(maxResponseSize));
+            synchronized (this) {
+                this.future = future;
+            }
+            // canceling the result cancels the request
+            result.setFuture(future);
+        }
+
+        <T, E extends Exception> CoalescedFuture<T, E> join(Request request, ResponseHandler<T, E> responseHandler)
+        {
+            synchronized (this) {
+                if (canceled) {
+                    return null;
+                }
+                waiters++;
+            }
+            CoalescedFuture<T, E> coalescedFuture = new CoalescedFuture<>(this, request, responseHandler);
+            addCallback(result, coalescedFuture, directExecutor());
+            return coalescedFuture;
+        }
+
+        void leave()
+        {
+            synchronized (this) {
+                if (--waiters > 0) {
+                    return;
+                }
+                canceled = true;
+            }
+            result.cancel(true);
+        }
+
+        synchronized String getState()
+        {
+            if (future == null) {
+                return "Starting";
+            }
+            return future.getState();
+        }
+    }
+
+    private static class CoalescedFuture<T, E extends Exception>
+            extends AbstractFuture<T>
+            implements HttpResponseFuture<T>, FutureCallback<ResponseData>
+    {
+        private final SharedCall sharedCall;
+        private final Request request;
+        private final ResponseHandler<T, E> responseHandler;
+        private final AtomicBoolean handlerClaimed = new AtomicBoolean();
+
+        CoalescedFuture(SharedCall sharedCall, Request request, ResponseHandler<T, E> responseHandler)
+        {
+            this.sharedCall = sharedCall;
+            this.request = request;
+            this.responseHandler = responseHandler;
+        }
+
+        /**
+         * Returns whether the caller may invoke the response handler, which
+         * the shared call then no longer invokes.
+         */
+        boolean claimHandler()
+        {
+            return handlerClaimed.compareAndSet(false, true);
+        }
+
+        @Override
+        public void onSuccess(ResponseData result)
+        {
+            if (isDone() || !claimHandler()) {
+                return;
+            }
+            try {
+                set(responseHandler.handle(request, result.toResponse()));
+            }
+            catch (Throwable t) {
+                setException(t);
+            }
+        }
+
+        @Override
+        public void onFailure(Throwable t)
+        {
+            // the shared call is only canceled by leave() after every waiter,
+            // including this one, is done. Any other cancellation is passed on.
+            if (isDone() || !claimHandler()) {
+                return;
+            }
+            if (!(t instanceof Exception)) {
+                setException(t);
+                return;
+            }
+            try {
+                set(responseHandler.handleException(request, (Exception) t));
+            }
+            catch (Throwable t1) {
+                setException(t1);
+            }
+        }
+
+        @Override
+        protected void afterDone()
+        {
+            if (isCancelled()) {
+                sharedCall.leave();
+            }
+        }
+
+        @Override
+        public String getState()
+        {
+            return "Coalesced request: " + sharedCall.getState();
+        }
+    }
+
+    private static class BufferingResponseHandler
+            implements ResponseHandler<ResponseData, Exception>
+    {
+        private final long maxResponseSize;
+
+        BufferingResponseHandler(long maxResponseSize)
+        {
+            this.maxResponseSize = maxResponseSize;
+        }
+
+        @Override
+        public ResponseData handleException(Request request, Exception exception)
+                throws Exception
+        {
+            throw exception;
+        }
+
+        @Override
+        public ResponseData handle(Request request, Response response)
+                throws Exception
+        {
+            // an IOException is passed to each waiter's handleException()
+            byte[] body;
+            try (InputStream inputStream = response.getInputStream()) {
+                body = ByteStreams.toByteArray(ByteStreams.limit(inputStream, maxResponseSize + 1));
+            }
+            if (body.length > maxResponseSize) {
+                throw new ResponseTooLargeException();
+            }
+            return new ResponseData(response.getStatusCode(), response.getStatusMessage(),
+                    ImmutableListMultimap.copyOf(response.getHeaders()), body);
+        }
+    }
+
+    private static class ResponseData
+    {
+        private final int statusCode;
+        private final String statusMessage;
+        private final ListMultimap<HeaderName, String> headers;
+        private final ByteBuffer body;
+
+        ResponseData(int statusCode, String statusMessage, ListMultimap<HeaderName, String> headers, byte[] body)
+        {
+            this.statusCode = statusCode;
+            this.statusMessage = statusMessage;
+            this.headers = headers;
+            this.body = ByteBuffer.wrap(body).asReadOnlyBuffer();
+        }
+
+        Response toResponse()
+        {
+            return new BufferedResponse(statusCode, statusMessage, headers, body.duplicate());
+        }
+    }
+
+    private static class RequestKey
+    {
+        private final String method;
+        private final URI uri;
+        private final ListMultimap<String, String> headers;
+
+        RequestKey(Request request)
+        {
+            method = request.getMethod().toUpperCase();
+            uri = request.getUri();
+            headers = ImmutableListMultimap.copyOf(request.getHeaders());
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            RequestKey that = (RequestKey) o;
+            return method.equals(that.method) &&
+                    uri.equals(that.uri) &&
+                    headers.equals(that.headers);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(method, uri, headers);
+        }
+    }
+}
@@ -29,6 +29,16 @@ public interface HttpClient
 
     <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler);
 
+    /**
+     * Executes the request asynchronously, passing the response body to the
+     * handler as it arrives. Clients that do not support streaming read the
+     * whole body before passing it to the handler.
+     */
+    default <T, E extends Exception> HttpResponseFuture<T> executeAsyncStreaming(Request request, StreamingResponseHandler<T, E> responseHandler)
+    {
+        return executeAsync(request, new BufferedStreamingResponseHandler<>(responseHandler));
+    }
+
     RequestStats getStats();
 
     @Override
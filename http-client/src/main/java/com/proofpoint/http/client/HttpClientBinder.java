@@ -83,6 +83,13 @@ import static org.weakref.jmx.guice.ExportBinder.newExporter;
  *
  * <pre>
  *     httpClientBinder(binder).bindHttpClient("foo", FooClient.class)
+ *         .withCaching();</pre>
+ *
+ * Specifies that the {@link HttpClient} should cache responses to GET
+ * requests in memory, as configured by {@link CachingHttpClientConfig}.
+ *
+ * <pre>
+ *     httpClientBinder(binder).bindHttpClient("foo", FooClient.class)
  *         .withAlias(BarClient.class);</pre>
  *
  * Additionally binds the same {@link HttpClient} annotated with the
@@ -352,5 +359,14 @@ public class HttpClientBinder
             module.withPrivateIoThreadPool();
             return this;
         }
+
+        /**
+         * See the EDSL examples at {@link HttpClientBinder}.
+         */
+        public HttpClientBindingBuilder withCaching()
+        {
+            module.withCaching();
+            return this;
+        }
     }
 }
@@ -41,7 +41,11 @@ public class HttpClientConfig
     private Duration idleTimeout = new Duration(1, TimeUnit.MINUTES);
     private int maxConnectionsPerServer = 20;
     private int maxRequestsQueuedPerDestination = 20;
+    private boolean http2Enabled = false;
+    private int http2MaxConcurrentStreams = 100;
     private DataSize maxContentLength = new DataSize(16, Unit.MEGABYTE);
+    private boolean compressionEnabled = false;
+    private DataSize requestCompressionThreshold = null;
     private HostAndPort socksProxy;
     private String keyStorePath = System.getProperty(JAVAX_NET_SSL_KEY_STORE);
     private String keyStorePassword = System.getProperty(JAVAX_NET_SSL_KEY_STORE_PASSWORD);
@@ -116,6 +120,31 @@ public class HttpClientConfig
         return this;
     }
 
+    public boolean isHttp2Enabled()
+    {
+        return http2Enabled;
+    }
+
+    @Config("http-client.http2.enabled")
+    public HttpClientConfig setHttp2Enabled(boolean http2Enabled)
+    {
+        this.http2Enabled = http2Enabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getHttp2MaxConcurrentStreams()
+    {
+        return http2MaxConcurrentStreams;
+    }
+
+    @Config("http-client.http2.max-concurrent-streams")
+    public HttpClientConfig setHttp2MaxConcurrentStreams(int http2MaxConcurrentStreams)
+    {
+        this.http2MaxConcurrentStreams = http2MaxConcurrentStreams;
+        return this;
+    }
+
     @NotNull
     public DataSize getMaxContentLength()
     {
@@ -129,6 +158,30 @@ public class HttpClientConfig
         return this;
     }
 
+    public boolean isCompressionEnabled()
+    {
+        return compressionEnabled;
+    }
+
+    @Config("http-client.compression.enabled")
+    public HttpClientConfig setCompressionEnabled(boolean compressionEnabled)
+    {
+        this.compressionEnabled = compressionEnabled;
+        return this;
+    }
+
+    public DataSize getRequestCompressionThreshold()
+    {
+        return requestCompressionThreshold;
+    }
+
+    @Config("http-client.compression.request-threshold")
+    public HttpClientConfig setRequestCompressionThreshold(DataSize requestCompressionThreshold)
+    {
+        this.requestCompressionThreshold = requestCompressionThreshold;
+        return this;
+    }
+
     public HostAndPort getSocksProxy()
     {
         return socksProxy;
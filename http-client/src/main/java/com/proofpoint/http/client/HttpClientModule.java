@@ -27,8 +27,10 @@ import com.google.inject.Provider;
 import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import com.proofpoint.http.client.jetty.JettyHttpClient;
+import com.proofpoint.http.client.jetty.JettyHttpClientStats;
 import com.proofpoint.http.client.jetty.JettyIoPool;
 import com.proofpoint.http.client.jetty.JettyIoPoolConfig;
+import com.proofpoint.http.client.jetty.ReportedJettyHttpClientStats;
 import com.proofpoint.log.Logger;
 import com.proofpoint.reporting.ReportExporter;
 
@@ -82,6 +84,11 @@ public class HttpClientModule
         binder.bind(JettyIoPoolManager.class).annotatedWith(annotation).toInstance(new JettyIoPoolManager(name, annotation));
     }
 
+    void withCaching()
+    {
+        bindConfig(binder).annotatedWith(annotation).prefixedWith(name).to(CachingHttpClientConfig.class);
+    }
+
     @Override
     public final void configure(Binder binder)
     {
@@ -95,7 +102,7 @@ public class HttpClientModule
         rootBinder.bind(JettyIoPoolManager.class).to(SharedJettyIoPoolManager.class).in(Scopes.SINGLETON);
 
         // bind the client
-        this.binder.bind(HttpClient.class).annotatedWith(annotation).toProvider(new HttpClientProvider(name, annotation)).in(Scopes.SINGLETON);
+        this.binder.bind(HttpClient.class).annotatedWith(annotation).toProvider(new HttpClientProvider(name, annotation, rootBinder == binder)).in(Scopes.SINGLETON);
 
         // kick off the binding for the filter set
         newSetBinder(binder, HttpRequestFilter.class, filterQualifier(annotation));
@@ -117,12 +124,14 @@ public class HttpClientModule
     {
         private final String name;
         private final Class<? extends Annotation> annotation;
+        private final boolean exportStats;
         private Injector injector;
 
-        private HttpClientProvider(String name, Class<? extends Annotation> annotation)
+        private HttpClientProvider(String name, Class<? extends Annotation> annotation, boolean exportStats)
         {
             this.name = name;
             this.annotation = annotation;
+            this.exportStats = exportStats;
         }
 
         @Inject
@@ -152,8 +161,21 @@ public class HttpClientModule
                 filters.add(new TraceTokenRequestFilter());
             }
 
-            JettyHttpClient client = new JettyHttpClient(config, ioPoolProvider.get(), filters);
+            JettyHttpClient client;
+            if (exportStats) {
+                JettyHttpClientStats destinationStats = new ReportedJettyHttpClientStats(injector.getInstance(ReportExporter.class),
+                        "HttpClient." + annotation.getSimpleName() + ".Destination");
+                client = new JettyHttpClient(config, ioPoolProvider.get(), filters, destinationStats);
+            }
+            else {
+                client = new JettyHttpClient(config, ioPoolProvider.get(), filters);
+            }
             ioPoolProvider.addClient(client);
+
+            if (injector.getExistingBinding(Key.get(CachingHttpClientConfig.class, annotation)) != null) {
+                log.debug("HttpClient %s caches responses", name);
+                return new CachingHttpClient(client, injector.getInstance(Key.get(CachingHttpClientConfig.class, annotation)));
+            }
             return client;
         }
     }
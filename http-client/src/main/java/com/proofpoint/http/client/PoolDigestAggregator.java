@@ -0,0 +1,142 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.proofpoint.stats.MergedDistribution;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static com.proofpoint.http.client.HttpUriBuilder.uriBuilderFrom;
+import static com.proofpoint.http.client.Request.Builder.prepareGet;
+import static com.proofpoint.http.client.ResponseHandlerUtils.propagate;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Merges the quantile digests of one reported stat from every node of a
+ * pool into a {@link MergedDistribution}, giving quantiles of the whole
+ * pool rather than an average of per-node quantiles.
+ *
+ * <p>Each node serves the digest at {@code /admin/stats/{name}/digest} on
+ * its admin server, whose URI is the {@code admin} property of the node's
+ * announcement.</p>
+ */
+public class PoolDigestAggregator
+{
+    private static final int MAX_DIGEST_SIZE = 1024 * 1024;
+
+    private final HttpClient httpClient;
+    private final String name;
+    private final Map<String, String> tags;
+
+    /**
+     * @param name the reported name of the stat, such as
+     * {@code ServiceClient.RequestTime.OneMinute}
+     * @param tags the tags the stat is reported with
+     */
+    public PoolDigestAggregator(HttpClient httpClient, String name, Map<String, String> tags)
+    {
+        this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.name = requireNonNull(name, "name is null");
+        this.tags = ImmutableMap.copyOf(tags);
+    }
+
+    /**
+     * Replace the contents of the distribution with the merge of the digests
+     * fetched from the given admin URIs. Nodes that fail to respond or do not
+     * report the stat are left out of the merge.
+     *
+     * @return the number of nodes whose digests were merged
+     */
+    public int update(MergedDistribution distribution, Iterable<URI> adminUris)
+            throws InterruptedException
+    {
+        List<Future<byte[]>> futures = new ArrayList<>();
+        for (URI adminUri : adminUris) {
+            HttpUriBuilder uriBuilder = uriBuilderFrom(adminUri)
+                    .appendPath("/admin/stats")
+                    .appendPath(name)
+                    .appendPath("digest");
+            for (Entry<String, String> entry : tags.entrySet()) {
+                uriBuilder.addParameter(entry.getKey(), entry.getValue());
+            }
+            futures.add(httpClient.executeAsync(prepareGet().setUri(uriBuilder.build()).build(), DigestResponseHandler.INSTANCE));
+        }
+
+        List<byte[]> digests = new ArrayList<>(futures.size());
+        try {
+            for (Future<byte[]> future : futures) {
+                try {
+                    byte[] digest = future.get();
+                    if (digest != null) {
+                        digests.add(digest);
+                    }
+                }
+                catch (ExecutionException ignored) {
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw e;
+        }
+
+        distribution.update(digests);
+        return digests.size();
+    }
+
+    private static class DigestResponseHandler
+            implements ResponseHandler<byte[], RuntimeException>
+    {
+        private static final DigestResponseHandler INSTANCE = new DigestResponseHandler();
+
+        @Override
+        public byte[] handleException(Request request, Exception exception)
+        {
+            throw propagate(request, exception);
+        }
+
+        @Nullable
+        @Override
+        public byte[] handle(Request request, Response response)
+        {
+            if (response.getStatusCode() != HttpStatus.OK.code()) {
+                return null;
+            }
+
+            try (InputStream inputStream = ByteStreams.limit(response.getInputStream(), MAX_DIGEST_SIZE + 1)) {
+                byte[] digest = ByteStreams.toByteArray(inputStream);
+                if (digest.length > MAX_DIGEST_SIZE) {
+                    throw new ResponseTooLargeException();
+                }
+                return digest;
+            }
+            catch (IOException e) {
+                throw propagate(request, e);
+            }
+        }
+    }
+}
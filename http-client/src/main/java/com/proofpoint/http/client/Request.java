@@ -38,12 +38,18 @@ public class Request
     private final ListMultimap<String, String> headers;
     private final BodySource bodySource;
     private final boolean followRedirects;
+    private final boolean idempotent;
 
     public Request(URI uri, String method, ListMultimap<String, String> headers, @Nullable BodySource bodySource)
     {
         this(uri, method, headers, bodySource, false);
     }
     public Request(URI uri, String method, ListMultimap<String, String> headers, @Nullable BodySource bodySource, boolean followRedirects)
+    {
+        this(uri, method, headers, bodySource, followRedirects, false);
+    }
+
+    public Request(URI uri, String method, ListMultimap<String, String> headers, @Nullable BodySource bodySource, boolean followRedirects, boolean idempotent)
     {
         checkNotNull(uri, "uri is null");
         checkNotNull(method, "method is null");
@@ -53,6 +59,7 @@ public class Request
         this.headers = ImmutableListMultimap.copyOf(headers);
         this.bodySource = bodySource;
         this.followRedirects = followRedirects;
+        this.idempotent = idempotent;
     }
 
     public static Request.Builder builder()
@@ -94,6 +101,15 @@ public class Request
         return followRedirects;
     }
 
+    /**
+     * Whether the request may safely be sent more than once concurrently,
+     * as BalancingHttpClient does when hedging.
+     */
+    public boolean isIdempotent()
+    {
+        return idempotent;
+    }
+
     @Override
     public String toString()
     {
@@ -103,13 +119,14 @@ public class Request
                 .add("headers", headers)
                 .add("bodySource", bodySource)
                 .add("followRedirects", followRedirects)
+                .add("idempotent", idempotent)
                 .toString();
     }
 
     @Override
     public int hashCode()
     {
-        return Objects.hash(uri, method, headers, bodySource, followRedirects);
+        return Objects.hash(uri, method, headers, bodySource, followRedirects, idempotent);
     }
 
     @Override
@@ -123,7 +140,8 @@ public class Request
                 Objects.equals(this.method, other.method) &&
                 Objects.equals(this.headers, other.headers) &&
                 Objects.equals(this.bodySource, other.bodySource) &&
-                Objects.equals(this.followRedirects, other.followRedirects);
+                Objects.equals(this.followRedirects, other.followRedirects) &&
+                Objects.equals(this.idempotent, other.idempotent);
     }
 
     @Beta
@@ -161,6 +179,7 @@ public class Request
             requestBuilder.setBodySource(request.getBodySource());
             requestBuilder.setUri(request.getUri());
             requestBuilder.setFollowRedirects(request.isFollowRedirects());
+            requestBuilder.setIdempotent(request.isIdempotent());
 
             for (Entry<String, String> entry : request.getHeaders().entries()) {
                 requestBuilder.addHeader(entry.getKey(), entry.getValue());
@@ -173,6 +192,7 @@ public class Request
         private final ListMultimap<String, String> headers = ArrayListMultimap.create();
         private BodySource bodySource;
         private boolean followRedirects = false;
+        private boolean idempotent = false;
 
         public Builder setUri(URI uri)
         {
@@ -221,9 +241,15 @@ public class Request
             return this;
         }
 
+        public Builder setIdempotent(boolean idempotent)
+        {
+            this.idempotent = idempotent;
+            return this;
+        }
+
         public Request build()
         {
-            return new Request(uri, method, headers, bodySource, followRedirects);
+            return new Request(uri, method, headers, bodySource, followRedirects, idempotent);
         }
     }
 
@@ -16,6 +16,7 @@
 package com.proofpoint.http.client;
 
 import com.google.common.annotations.Beta;
+import com.proofpoint.stats.CounterStat;
 import com.proofpoint.stats.DistributionStat;
 import com.proofpoint.stats.TimeStat;
 import com.proofpoint.units.Duration;
@@ -30,6 +31,10 @@ public class RequestStats
     private final TimeStat responseTime;
     private final DistributionStat readBytes;
     private final DistributionStat writtenBytes;
+    private final CounterStat compressedReadBytes = new CounterStat();
+    private final CounterStat uncompressedReadBytes = new CounterStat();
+    private final CounterStat compressedWrittenBytes = new CounterStat();
+    private final CounterStat uncompressedWrittenBytes = new CounterStat();
 
     @Inject
     public RequestStats()
@@ -53,6 +58,23 @@ public class RequestStats
         writtenBytes.add(requestSizeInBytes);
     }
 
+    /**
+     * Records the bytes of a decoded response body that the response handler
+     * read, before and after decoding. A body that the handler does not read
+     * to the end is only counted up to where the handler stopped.
+     */
+    public void recordResponseDecompressed(long compressedBytes, long uncompressedBytes)
+    {
+        compressedReadBytes.add(compressedBytes);
+        uncompressedReadBytes.add(uncompressedBytes);
+    }
+
+    public void recordRequestCompressed(long uncompressedBytes, long compressedBytes)
+    {
+        uncompressedWrittenBytes.add(uncompressedBytes);
+        compressedWrittenBytes.add(compressedBytes);
+    }
+
     @Nested
     public TimeStat getRequestTime()
     {
@@ -76,4 +98,28 @@ public class RequestStats
     {
         return writtenBytes;
     }
+
+    @Nested
+    public CounterStat getCompressedReadBytes()
+    {
+        return compressedReadBytes;
+    }
+
+    @Nested
+    public CounterStat getUncompressedReadBytes()
+    {
+        return uncompressedReadBytes;
+    }
+
+    @Nested
+    public CounterStat getCompressedWrittenBytes()
+    {
+        return compressedWrittenBytes;
+    }
+
+    @Nested
+    public CounterStat getUncompressedWrittenBytes()
+    {
+        return uncompressedWrittenBytes;
+    }
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.google.common.annotations.Beta;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Handles a response whose body is passed to the handler in chunks as it
+ * arrives, instead of being read into memory first.
+ */
+@Beta
+public interface StreamingResponseHandler<T, E extends Exception>
+{
+    T handleException(Request request, Exception exception)
+            throws E;
+
+    /**
+     * Called when the response status and headers have been received. The
+     * body is passed to the returned consumer and must not be read through
+     * {@link Response#getInputStream()}.
+     */
+    BodyConsumer<T, E> handleHeaders(Request request, Response response)
+            throws E;
+
+    interface BodyConsumer<T, E extends Exception>
+    {
+        /**
+         * Called for each chunk of the response body, in order. The buffer
+         * belongs to the HTTP client and may only be used until
+         * {@code release} is run. The next chunk is not read until then,
+         * so {@code release} must be run exactly once, from any thread.
+         */
+        void onContent(ByteBuffer content, Runnable release)
+                throws E;
+
+        /**
+         * Called after the last chunk of the body has been released.
+         */
+        T onComplete()
+                throws E;
+    }
+}
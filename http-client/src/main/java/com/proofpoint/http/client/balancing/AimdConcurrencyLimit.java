@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.balancing;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.AtomicDouble;
+import com.proofpoint.reporting.Gauge;
+import com.proofpoint.stats.SparseCounterStat;
+import com.proofpoint.units.Duration;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Additive increase, multiplicative decrease limit on concurrent attempts.
+ * <p>
+ * An attempt that fails with an overload signal or takes longer than the
+ * latency threshold multiplies the limit by the backoff ratio, at most once
+ * per latency threshold, so that the attempts in flight when the service
+ * became overloaded cut the limit once rather than once each. An attempt
+ * that succeeds while at least half the limit is in use raises it by one
+ * divided by the limit, so the limit grows by about one per limit's worth of
+ * attempts, and only while the traffic is actually testing it.
+ */
+class AimdConcurrencyLimit
+        implements ConcurrencyLimit
+{
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long latencyThresholdNanos;
+    private final Ticker ticker;
+    private final SparseCounterStat concurrencyLimitExceeded = new SparseCounterStat();
+
+    private final AtomicDouble limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong lastDecrease;
+
+    private AimdConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, Duration latencyThreshold, Ticker ticker)
+    {
+        this.limit = new AtomicDouble(initialLimit);
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        latencyThresholdNanos = latencyThreshold.roundTo(NANOSECONDS);
+        this.ticker = ticker;
+        lastDecrease = new AtomicLong(ticker.read() - latencyThresholdNanos);
+    }
+
+    static ConcurrencyLimit concurrencyLimit(BalancingHttpClientConfig config, Ticker ticker)
+    {
+        if (!config.isConcurrencyLimitEnabled()) {
+            return NoConcurrencyLimit.INSTANCE;
+        }
+        return aimdConcurrencyLimit(config.getConcurrencyLimitInitial(),
+                config.getConcurrencyLimitMin(),
+                config.getConcurrencyLimitMax(),
+                config.getConcurrencyLimitBackoffRatio().doubleValue(),
+                config.getConcurrencyLimitLatencyThreshold(),
+                ticker);
+    }
+
+    static AimdConcurrencyLimit aimdConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, Duration latencyThreshold, Ticker ticker)
+    {
+        checkArgument(minLimit >= 1, "minLimit must be at least 1");
+        checkArgument(initialLimit >= minLimit && initialLimit <= maxLimit, "initialLimit must be between minLimit and maxLimit");
+        checkArgument(backoffRatio > 0 && backoffRatio < 1, "backoffRatio must be between 0 and 1");
+        return new AimdConcurrencyLimit(initialLimit, minLimit, maxLimit, backoffRatio, latencyThreshold, ticker);
+    }
+
+    @Override
+    public boolean tryAcquire()
+    {
+        for (;;) {
+            int current = inFlight.get();
+            if (current >= getConcurrencyLimit()) {
+                concurrencyLimitExceeded.add(1);
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void onSuccess(long latencyNanos)
+    {
+        int previousInFlight = inFlight.getAndDecrement();
+        if (latencyNanos > latencyThresholdNanos) {
+            decrease();
+        }
+        else {
+            increase(previousInFlight);
+        }
+    }
+
+    @Override
+    public void onDropped()
+    {
+        inFlight.decrementAndGet();
+        decrease();
+    }
+
+    @Override
+    public void onIgnore()
+    {
+        inFlight.decrementAndGet();
+    }
+
+    private void increase(int previousInFlight)
+    {
+        for (;;) {
+            double current = limit.get();
+            if (previousInFlight * 2 < current || current >= maxLimit) {
+                return;
+            }
+            if (limit.compareAndSet(current, min(maxLimit, current + 1 / current))) {
+                return;
+            }
+        }
+    }
+
+    private void decrease()
+    {
+        long now = ticker.read();
+        long previousDecrease = lastDecrease.get();
+        if (now - previousDecrease < latencyThresholdNanos || !lastDecrease.compareAndSet(previousDecrease, now)) {
+            // the limit was already cut for this window
+            return;
+        }
+        for (;;) {
+            double current = limit.get();
+            if (limit.compareAndSet(current, max(minLimit, (int) (current * backoffRatio)))) {
+                return;
+            }
+        }
+    }
+
+    @Gauge
+    public int getConcurrencyLimit()
+    {
+        return (int) limit.get();
+    }
+
+    @Gauge
+    public int getConcurrentAttempts()
+    {
+        return inFlight.get();
+    }
+
+    @Nested
+    public SparseCounterStat getConcurrencyLimitExceeded()
+    {
+        return concurrencyLimitExceeded;
+    }
+}
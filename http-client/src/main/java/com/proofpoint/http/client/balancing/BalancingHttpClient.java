@@ -21,10 +21,13 @@ import com.google.common.cache.Cache;
 import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.proofpoint.http.client.HttpClient;
 import com.proofpoint.http.client.Request;
 import com.proofpoint.http.client.RequestStats;
 import com.proofpoint.http.client.ResponseHandler;
+import com.proofpoint.http.client.StreamingResponseHandler;
+import com.proofpoint.http.client.balancing.BalancingHttpClientConfig.HedgePolicy;
 import com.proofpoint.http.client.jetty.JettyHttpClient;
 import com.proofpoint.tracetoken.TraceToken;
 import com.proofpoint.tracetoken.TraceTokenScope;
@@ -32,20 +35,31 @@ import com.proofpoint.units.Duration;
 import org.weakref.jmx.Flatten;
 import org.weakref.jmx.Managed;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.cache.CacheBuilder.newBuilder;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.proofpoint.tracetoken.TraceTokenManager.getCurrentTraceToken;
 import static com.proofpoint.tracetoken.TraceTokenManager.registerTraceToken;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class BalancingHttpClient
         implements HttpClient
@@ -56,8 +70,13 @@ public class BalancingHttpClient
     private final HttpClient httpClient;
     private final int maxAttempts;
     private final RetryBudget retryBudget;
+    private final ConcurrencyLimit concurrencyLimit;
     private final BackoffPolicy backoffPolicy;
     private final ScheduledExecutorService retryExecutor;
+    private final Duration totalTimeout;
+    private final HedgePolicy hedgePolicy;
+    private final Duration hedgeDelay;
+    private final Ticker ticker;
     private final Cache<Class<? extends Exception>, Boolean> exceptionCache = newBuilder()
             .expireAfterWrite(30, TimeUnit.SECONDS)
             .build();
@@ -82,89 +101,60 @@ public class BalancingHttpClient
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         maxAttempts = requireNonNull(config, "config is null").getMaxAttempts();
         retryBudget = TokenRetryBudget.tokenRetryBudget(config.getRetryBudgetRatio(), config.getRetryBudgetRatioPeriod(), config.getRetryBudgetMinPerSecond(), ticker);
+        concurrencyLimit = AimdConcurrencyLimit.concurrencyLimit(config, ticker);
         backoffPolicy = new DecorrelatedJitteredBackoffPolicy(config.getMinBackoff(), config.getMaxBackoff());
         this.retryExecutor = requireNonNull(retryExecutor, "retryExecutor is null");
+        totalTimeout = config.getTotalTimeout();
+        hedgePolicy = config.getHedgePolicy();
+        hedgeDelay = config.getHedgeDelay();
+        this.ticker = requireNonNull(ticker, "ticker is null");
     }
 
+    /**
+     * The response body is streamed to the response handler, which runs in
+     * the calling thread, instead of being buffered.
+     */
     @Override
     public <T, E extends Exception> T execute(Request request, ResponseHandler<T, E> responseHandler)
             throws E
     {
-        checkArgument(!request.getUri().isAbsolute(), request.getUri() + " is not a relative URI");
-        checkArgument(request.getUri().getHost() == null, request.getUri() + " has a host component");
-        String path = request.getUri().getPath();
-        checkArgument(path == null || !path.startsWith("/"), request.getUri() + " path starts with '/'");
-
-        HttpServiceAttempt attempt;
-        try {
-            attempt = pool.createAttempt();
-        }
-        catch (RuntimeException e) {
-            return responseHandler.handleException(request, e);
-        }
-        int attemptsLeft = maxAttempts;
-        retryBudget.initialAttempt();
-        BackoffPolicy attemptBackoffPolicy = backoffPolicy;
-        Duration previousBackoff = ZERO_DURATION;
-
-        RetryingResponseHandler<T, E> retryingResponseHandler = new RetryingResponseHandler<>(responseHandler, retryBudget, exceptionCache);
-
-        for (;;) {
-            URI uri = attempt.getUri();
-            if (!uri.toString().endsWith("/")) {
-                uri = URI.create(uri.toString() + '/');
-            }
-            uri = uri.resolve(request.getUri());
-
-            Request subRequest = Request.Builder.fromRequest(request)
-                    .setUri(uri)
-                    .build();
-
-            if (attemptsLeft <= 1) {
-                retryingResponseHandler = new RetryingResponseHandler<>(responseHandler, NoRetryBudget.INSTANCE, exceptionCache);
-            }
-
-            --attemptsLeft;
-            try {
-                T t = httpClient.execute(subRequest, retryingResponseHandler);
-                attempt.markGood();
-                return t;
-            }
-            catch (InnerHandlerException e) {
-                attempt.markBad(e.getFailureCategory(), e.getHandlerCategory());
-                //noinspection unchecked
-                throw (E) e.getCause();
-            }
-            catch (FailureStatusException e) {
-                attempt.markBad(e.getFailureCategory());
-                //noinspection unchecked
-                return (T) e.result;
-            }
-            catch (RetryException e) {
-                attempt.markBad(e.getFailureCategory());
-                Duration backoff = attemptBackoffPolicy.backoff(previousBackoff);
-                long millis = backoff.roundTo(MILLISECONDS);
-                try {
-                    Thread.sleep(millis);
-                }
-                catch (InterruptedException e1) {
-                    Thread.currentThread().interrupt();
-                    return responseHandler.handleException(request, e1);
-                }
-                try {
-                    attempt = attempt.next();
-                    previousBackoff = backoff;
-                    attemptBackoffPolicy = attemptBackoffPolicy.nextAttempt();
-                }
-                catch (RuntimeException e1) {
-                    return responseHandler.handleException(request, e1);
-                }
-            }
-        }
+        CallerRunsStreamingResponseHandler streamingHandler = new CallerRunsStreamingResponseHandler();
+        HttpResponseFuture<Void> future = executeWithRetries(request, streamingHandler::handleException,
+                (subRequest, attemptRetryBudget, handlerClaimed) -> httpClient.executeAsyncStreaming(subRequest,
+                        new RetryingStreamingResponseHandler<>(streamingHandler, attemptRetryBudget, exceptionCache, handlerClaimed)),
+                streamingHandler.getHandled());
+        return streamingHandler.handle(request, responseHandler, future);
     }
 
     @Override
     public <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
+    {
+        return executeWithRetries(request, responseHandler::handleException,
+                (subRequest, attemptRetryBudget, handlerClaimed) -> httpClient.executeAsync(subRequest,
+                        new RetryingResponseHandler<>(responseHandler, attemptRetryBudget, exceptionCache, handlerClaimed)),
+                null);
+    }
+
+    /**
+     * Attempts are retried until their response headers arrive. After that,
+     * the response body is streamed from the attempt to the response handler.
+     */
+    @Override
+    public <T, E extends Exception> HttpResponseFuture<T> executeAsyncStreaming(Request request, StreamingResponseHandler<T, E> responseHandler)
+    {
+        return executeWithRetries(request, responseHandler::handleException,
+                (subRequest, attemptRetryBudget, handlerClaimed) -> httpClient.executeAsyncStreaming(subRequest,
+                        new RetryingStreamingResponseHandler<>(responseHandler, attemptRetryBudget, exceptionCache, handlerClaimed)),
+                null);
+    }
+
+    /**
+     * @param handlerDone if not null, completes when the response handler,
+     * which runs outside the attempt, is done with the response. It fails
+     * with an {@link InnerHandlerException} if the handler threw. The outcome
+     * of the attempt is recorded once it completes.
+     */
+    private <T, E extends Exception> HttpResponseFuture<T> executeWithRetries(Request request, ExceptionHandler<T, E> exceptionHandler, AttemptSender<T> attemptSender, @Nullable ListenableFuture<?> handlerDone)
     {
         checkArgument(!request.getUri().isAbsolute(), request.getUri() + " is not a relative URI");
         checkArgument(request.getUri().getHost() == null, request.getUri() + " has a host component");
@@ -173,43 +163,32 @@ public class BalancingHttpClient
 
         HttpServiceAttempt attempt;
         try {
-            attempt = pool.createAttempt();
+            if (!concurrencyLimit.tryAcquire()) {
+                throw new ConcurrencyLimitExceededException();
+            }
+            try {
+                attempt = pool.createAttempt();
+            }
+            catch (RuntimeException e) {
+                concurrencyLimit.onIgnore();
+                throw e;
+            }
         }
         catch (RuntimeException e) {
             try {
-                return new ImmediateHttpResponseFuture<>(responseHandler.handleException(request, e));
+                return new ImmediateHttpResponseFuture<>(exceptionHandler.handleException(request, e));
             }
             catch (Exception e1) {
                 return new ImmediateFailedHttpResponseFuture<>((E) e1);
             }
         }
         retryBudget.initialAttempt();
-        RetryFuture<T, E> retryFuture = new RetryFuture<>(request, responseHandler);
-        attemptQuery(retryFuture, request, responseHandler, attempt, maxAttempts);
-        return retryFuture;
-    }
-
-    private <T, E extends Exception> void attemptQuery(RetryFuture<T, E> retryFuture, Request request, ResponseHandler<T, E> responseHandler, HttpServiceAttempt attempt, int attemptsLeft)
-    {
-        RetryingResponseHandler<T, E> retryingResponseHandler = new RetryingResponseHandler<>(
-                responseHandler,
-                (attemptsLeft <= 1) ? NoRetryBudget.INSTANCE :  retryBudget,
-                exceptionCache
-        );
-
-        URI uri = attempt.getUri();
-        if (!uri.toString().endsWith("/")) {
-            uri = URI.create(uri.toString() + '/');
+        RetryFuture<T, E> retryFuture = new RetryFuture<>(request, exceptionHandler, attemptSender, handlerDone);
+        retryFuture.attemptQuery(attempt, false);
+        if (hedgePolicy != HedgePolicy.NONE && request.isIdempotent()) {
+            retryFuture.scheduleHedge(attempt);
         }
-        uri = uri.resolve(request.getUri());
-
-        Request subRequest = Request.Builder.fromRequest(request)
-                .setUri(uri)
-                .build();
-
-        --attemptsLeft;
-        HttpResponseFuture<T> future = httpClient.executeAsync(subRequest, retryingResponseHandler);
-        retryFuture.newAttempt(future, attempt, uri, attemptsLeft);
+        return retryFuture;
     }
 
     @Flatten
@@ -224,6 +203,12 @@ public class BalancingHttpClient
         return retryBudget;
     }
 
+    @Flatten
+    ConcurrencyLimit getConcurrencyLimit()
+    {
+        return concurrencyLimit;
+    }
+
     @Managed
     public String dump()
     {
@@ -255,8 +240,12 @@ public class BalancingHttpClient
     {
 
         private final Request request;
-        private final ResponseHandler<T,E> responseHandler;
+        private final ExceptionHandler<T, E> exceptionHandler;
+        private final AttemptSender<T> attemptSender;
+        private final ListenableFuture<?> handlerDone;
         private final Object subFutureLock = new Object();
+        // set by whatever invokes the response handler, so that it is invoked once
+        private final AtomicBoolean handlerClaimed = new AtomicBoolean();
         @GuardedBy("subFutureLock")
         private HttpServiceAttempt attempt = null;
         @GuardedBy("subFutureLock")
@@ -267,29 +256,197 @@ public class BalancingHttpClient
         private URI uri = null;
         @GuardedBy("subFutureLock")
         private HttpResponseFuture<T> subFuture = null;
+        @GuardedBy("subFutureLock")
+        private Duration nextBackoff = null;
+        @GuardedBy("subFutureLock")
+        private int attemptsLeft = maxAttempts;
+        @GuardedBy("subFutureLock")
+        private int attemptsInFlight = 0;
+        @GuardedBy("subFutureLock")
+        private HttpResponseFuture<T> hedgeFuture = null;
+        @GuardedBy("subFutureLock")
+        private ScheduledFuture<?> hedgeTimer = null;
+        private final long deadline;
+        private final ScheduledFuture<?> deadlineFuture;
+        private volatile boolean deadlineExceeded = false;
 
-        RetryFuture(Request request, ResponseHandler<T, E> responseHandler)
+        RetryFuture(Request request, ExceptionHandler<T, E> exceptionHandler, AttemptSender<T> attemptSender, @Nullable ListenableFuture<?> handlerDone)
         {
             this.request = request;
-            this.responseHandler = responseHandler;
+            this.exceptionHandler = exceptionHandler;
+            this.attemptSender = attemptSender;
+            this.handlerDone = handlerDone;
+            if (totalTimeout == null) {
+                deadline = Long.MAX_VALUE;
+                deadlineFuture = null;
+            }
+            else {
+                long timeoutNanos = totalTimeout.roundTo(NANOSECONDS);
+                deadline = ticker.read() + timeoutNanos;
+                TraceToken traceToken = getCurrentTraceToken();
+                deadlineFuture = retryExecutor.schedule(() -> {
+                    try (TraceTokenScope scope = registerTraceToken(traceToken)) {
+                        timeoutExpired();
+                    }
+                }, timeoutNanos, NANOSECONDS);
+            }
         }
 
-        void newAttempt(final HttpResponseFuture<T> future, final HttpServiceAttempt attempt, URI uri, final int attemptsLeft)
+        /**
+         * Sends an attempt. The caller must hold a concurrency limit permit,
+         * which is returned when the attempt completes.
+         */
+        void attemptQuery(HttpServiceAttempt attempt, boolean isHedge)
         {
+            AttemptRetryBudget attemptRetryBudget;
             synchronized (subFutureLock) {
-                this.attempt = attempt;
-                this.subFuture = future;
-                this.uri = uri;
+                attemptRetryBudget = recordAttempt();
+            }
+            sendAttempt(attempt, attemptRetryBudget, isHedge);
+        }
+
+        /**
+         * Counts an attempt about to be sent and returns its retry budget.
+         */
+        @GuardedBy("subFutureLock")
+        private AttemptRetryBudget recordAttempt()
+        {
+            RetryBudget attemptRetryBudget = (attemptsLeft <= 1) ? NoRetryBudget.INSTANCE : attemptRetryBudget();
+            --attemptsLeft;
+            ++attemptsInFlight;
+            return new AttemptRetryBudget(attemptRetryBudget);
+        }
+
+        /**
+         * Sends an attempt counted by {@link #recordAttempt()}. Must not be
+         * called with the lock held, as the HTTP client may run the
+         * attempt's callbacks before returning.
+         */
+        private void sendAttempt(HttpServiceAttempt attempt, AttemptRetryBudget attemptRetryBudget, boolean isHedge)
+        {
+            URI uri = attempt.getUri();
+            if (!uri.toString().endsWith("/")) {
+                uri = URI.create(uri.toString() + '/');
+            }
+            uri = uri.resolve(request.getUri());
+
+            Request subRequest = Request.Builder.fromRequest(request)
+                    .setUri(uri)
+                    .build();
+
+            long attemptStart = ticker.read();
+            HttpResponseFuture<T> future;
+            try {
+                future = attemptSender.send(subRequest, attemptRetryBudget, handlerClaimed);
+            }
+            catch (RuntimeException e) {
+                concurrencyLimit.onIgnore();
+                throw e;
+            }
+            newAttempt(future, attempt, attemptRetryBudget, uri, isHedge, attemptStart);
+        }
+
+        /**
+         * Returns the retry budget for the attempt about to be made. The
+         * attempt may not be retried if the backoff delay before the retry
+         * would end after the deadline.
+         */
+        @GuardedBy("subFutureLock")
+        private RetryBudget attemptRetryBudget()
+        {
+            if (totalTimeout == null) {
+                return retryBudget;
+            }
+            nextBackoff = attemptBackoffPolicy.backoff(previousBackoff);
+            return new DeadlineRetryBudget(nextBackoff.roundTo(NANOSECONDS), deadline);
+        }
+
+        /**
+         * Sends a second attempt to another URI if the first attempt has not
+         * completed after the hedge delay. Each hedge takes a retry from the
+         * retry budget.
+         */
+        void scheduleHedge(HttpServiceAttempt primaryAttempt)
+        {
+            Duration delay = hedgeDelay;
+            if (hedgePolicy == HedgePolicy.P95) {
+                Duration p95 = primaryAttempt.getRequestTimeQuantile(0.95);
+                if (p95 != null) {
+                    delay = p95;
+                }
+            }
+            TraceToken traceToken = getCurrentTraceToken();
+            synchronized (subFutureLock) {
+                HttpResponseFuture<T> primaryFuture = subFuture;
+                if (isDone() || primaryFuture.isDone() || attemptsLeft < 1) {
+                    return;
+                }
+                hedgeTimer = retryExecutor.schedule(() -> {
+                    try (TraceTokenScope scope = registerTraceToken(traceToken)) {
+                        HttpServiceAttempt hedgeAttempt;
+                        AttemptRetryBudget hedgeRetryBudget;
+                        synchronized (subFutureLock) {
+                            if (isDone() || subFuture != primaryFuture || primaryFuture.isDone()) {
+                                return;
+                            }
+                            try {
+                                hedgeAttempt = primaryAttempt.hedge();
+                            }
+                            catch (RuntimeException ignored) {
+                                return;
+                            }
+                            if (hedgeAttempt.getUri().equals(primaryAttempt.getUri()) || !concurrencyLimit.tryAcquire()) {
+                                hedgeAttempt.markCanceled();
+                                return;
+                            }
+                            if (!retryBudget.canRetry()) {
+                                concurrencyLimit.onIgnore();
+                                hedgeAttempt.markCanceled();
+                                return;
+                            }
+                            hedgeRetryBudget = recordAttempt();
+                        }
+                        try {
+                            sendAttempt(hedgeAttempt, hedgeRetryBudget, true);
+                        }
+                        catch (RuntimeException ignored) {
+                            // the first attempt is still in flight
+                            synchronized (subFutureLock) {
+                                --attemptsInFlight;
+                            }
+                            hedgeAttempt.markCanceled();
+                        }
+                    }
+                }, delay.roundTo(NANOSECONDS), NANOSECONDS);
+            }
+        }
+
+        void newAttempt(final HttpResponseFuture<T> future, final HttpServiceAttempt attempt, AttemptRetryBudget attemptRetryBudget, URI uri, boolean isHedge, long attemptStart)
+        {
+            synchronized (subFutureLock) {
+                if (isHedge) {
+                    hedgeFuture = future;
+                }
+                else {
+                    this.attempt = attempt;
+                    this.subFuture = future;
+                    this.uri = uri;
+                }
+            }
+            if (isDone()) {
+                // completed while the attempt was being sent, after afterDone() canceled the others
+                future.cancel(false);
             }
-            final RetryFuture<T, E> retryFuture = this;
-            final Request request = this.request;
-            final ResponseHandler<T, E> responseHandler = this.responseHandler;
             Futures.addCallback(future, new FutureCallback<T>()
             {
                 @Override
                 public void onSuccess(T result)
                 {
-                    attempt.markGood();
+                    long latency = ticker.read() - attemptStart;
+                    afterHandlerDone(attempt, attemptStart, () -> {
+                        concurrencyLimit.onSuccess(latency);
+                        attempt.markGood();
+                    });
                     set(result);
                 }
 
@@ -297,74 +454,271 @@ public class BalancingHttpClient
                 public void onFailure(Throwable t)
                 {
                     if (t instanceof InnerHandlerException) {
-                        InnerHandlerException innerHandlerException = (InnerHandlerException) t;
-                        attempt.markBad(innerHandlerException.getFailureCategory(), innerHandlerException.getHandlerCategory());
+                        recordHandlerException(attempt, attemptStart, (InnerHandlerException) t);
                         setException(t.getCause());
                     }
                     else if (t instanceof FailureStatusException) {
-                        attempt.markBad(((FailureStatusException) t).getFailureCategory());
+                        afterHandlerDone(attempt, attemptStart, () -> {
+                            concurrencyLimit.onDropped();
+                            attempt.markBad(((FailureStatusException) t).getFailureCategory());
+                        });
                         //noinspection unchecked
                         set((T) ((FailureStatusException) t).result);
                     }
                     else if (t instanceof RetryException) {
+                        concurrencyLimit.onDropped();
                         attempt.markBad(((RetryException) t).getFailureCategory());
-                        TraceToken traceToken = getCurrentTraceToken();
-                        synchronized (subFutureLock) {
-                            Duration backoff = attemptBackoffPolicy.backoff(previousBackoff);
-                            ScheduledFuture<?> scheduledFuture = retryExecutor.schedule(() -> {
-                                try (TraceTokenScope scope = registerTraceToken(traceToken)){
-                                    synchronized (subFutureLock) {
-                                        HttpServiceAttempt nextAttempt;
-                                        try {
-                                            nextAttempt = attempt.next();
-                                            previousBackoff = backoff;
-                                            attemptBackoffPolicy = attemptBackoffPolicy.nextAttempt();
-                                        }
-                                        catch (RuntimeException e1) {
-                                            try {
-                                                set(responseHandler.handleException(request, e1));
-                                            }
-                                            catch (Exception e2) {
-                                                setException(e2);
-                                            }
-                                            return;
-                                        }
-                                        try {
-                                            attemptQuery(retryFuture, request, responseHandler, nextAttempt, attemptsLeft);
-                                        }
-                                        catch (RuntimeException e1) {
-                                            setException(e1);
-                                        }
-                                    }
-                                }
-                            }, backoff.roundTo(MILLISECONDS), MILLISECONDS);
-                            subFuture = new RetryDelayFuture<T>(scheduledFuture, attempt);
+                        retry(attempt, attemptRetryBudget);
+                    }
+                    else if (t instanceof CancellationException) {
+                        if (deadlineExceeded) {
+                            concurrencyLimit.onDropped();
+                            attempt.markBad(TimeoutException.class.getSimpleName());
+                        }
+                        else {
+                            concurrencyLimit.onIgnore();
+                            attempt.markCanceled();
                         }
                     }
+                    else {
+                        concurrencyLimit.onIgnore();
+                    }
                 }
             });
         }
 
+        /**
+         * Records the outcome of the attempt whose response or exception was
+         * passed to the response handler, once the handler is done with it.
+         */
+        private void afterHandlerDone(HttpServiceAttempt attempt, long attemptStart, Runnable recordOutcome)
+        {
+            if (handlerDone == null) {
+                recordOutcome.run();
+                return;
+            }
+            handlerDone.addListener(() -> {
+                try {
+                    getDone(handlerDone);
+                }
+                catch (ExecutionException e) {
+                    recordHandlerException(attempt, attemptStart, (InnerHandlerException) e.getCause());
+                    return;
+                }
+                recordOutcome.run();
+            }, directExecutor());
+        }
+
+        private void recordHandlerException(HttpServiceAttempt attempt, long attemptStart, InnerHandlerException innerHandlerException)
+        {
+            if (innerHandlerException.isAttemptFailed()) {
+                concurrencyLimit.onDropped();
+            }
+            else {
+                concurrencyLimit.onSuccess(ticker.read() - attemptStart);
+            }
+            attempt.markBad(innerHandlerException.getFailureCategory(), innerHandlerException.getHandlerCategory());
+        }
+
+        private void retry(HttpServiceAttempt attempt, AttemptRetryBudget attemptRetryBudget)
+        {
+            TraceToken traceToken = getCurrentTraceToken();
+            synchronized (subFutureLock) {
+                // an attempt still in flight takes the place of the retry
+                if (!attemptRetryBudget.lastInFlight || isDone()) {
+                    return;
+                }
+                Duration backoff = (nextBackoff != null) ? nextBackoff : attemptBackoffPolicy.backoff(previousBackoff);
+                ScheduledFuture<?> scheduledFuture = retryExecutor.schedule(() -> {
+                    try (TraceTokenScope scope = registerTraceToken(traceToken)){
+                        HttpServiceAttempt nextAttempt;
+                        AttemptRetryBudget nextRetryBudget;
+                        synchronized (subFutureLock) {
+                            if (isDone()) {
+                                return;
+                            }
+                            try {
+                                nextAttempt = attempt.next();
+                                previousBackoff = backoff;
+                                attemptBackoffPolicy = attemptBackoffPolicy.nextAttempt();
+                            }
+                            catch (RuntimeException e1) {
+                                completeWithException(e1);
+                                return;
+                            }
+                            if (!concurrencyLimit.tryAcquire()) {
+                                nextAttempt.markCanceled();
+                                completeWithException(new ConcurrencyLimitExceededException());
+                                return;
+                            }
+                            nextRetryBudget = recordAttempt();
+                        }
+                        try {
+                            sendAttempt(nextAttempt, nextRetryBudget, false);
+                        }
+                        catch (RuntimeException e1) {
+                            setException(e1);
+                        }
+                    }
+                }, backoff.roundTo(MILLISECONDS), MILLISECONDS);
+                subFuture = new RetryDelayFuture<T>(scheduledFuture, attempt);
+            }
+        }
+
+        private void timeoutExpired()
+        {
+            if (isDone()) {
+                return;
+            }
+            deadlineExceeded = true;
+            if (!handlerClaimed.compareAndSet(false, true)) {
+                // an attempt is handling its response and will complete this future
+                return;
+            }
+            cancelAttempts(false);
+            try {
+                set(exceptionHandler.handleException(request, new TimeoutException("Total timeout of " + totalTimeout + " exceeded")));
+            }
+            catch (Exception e) {
+                setException(e);
+            }
+        }
+
+        /**
+         * Completes this future with the response handler's result for an
+         * exception, unless an attempt or the total timeout has already
+         * invoked the response handler.
+         */
+        private void completeWithException(Exception exception)
+        {
+            if (!handlerClaimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                set(exceptionHandler.handleException(request, exception));
+            }
+            catch (Exception e) {
+                setException(e);
+            }
+        }
+
         @Override
-        public boolean cancel(boolean mayInterruptIfRunning)
+        protected void afterDone()
         {
+            if (deadlineFuture != null) {
+                deadlineFuture.cancel(false);
+            }
+            cancelAttempts(wasInterrupted());
+        }
 
-            if (super.cancel(mayInterruptIfRunning)) {
-                // todo attempt.cancel() ?
-                synchronized (subFutureLock) {
-                    subFuture.cancel(mayInterruptIfRunning);
+        private void cancelAttempts(boolean mayInterruptIfRunning)
+        {
+            // cancel outside the lock, as canceling runs the attempts' callbacks
+            List<Future<?>> futures = new ArrayList<>();
+            synchronized (subFutureLock) {
+                futures.add(hedgeTimer);
+                futures.add(subFuture);
+                futures.add(hedgeFuture);
+            }
+            for (Future<?> future : futures) {
+                if (future != null) {
+                    future.cancel(mayInterruptIfRunning);
                 }
-                return true;
             }
-            return false;
         }
 
         @Override
         public String getState()
         {
             synchronized (subFutureLock) {
-                return format("Attempt %s to %s: %s", attempt, uri, subFuture.getState());
+                String state = format("Attempt %s to %s: %s", attempt, uri, subFuture.getState());
+                if (hedgeFuture != null && !hedgeFuture.isDone()) {
+                    state += ", hedge: " + hedgeFuture.getState();
+                }
+                return state;
+            }
+        }
+
+        /**
+         * Retry budget of one attempt. An attempt that fails while another
+         * attempt, such as a hedge, is in flight gives way to that attempt
+         * instead of passing its failure to the response handler, so that
+         * it does not complete the request and cancel the other attempt.
+         */
+        private class AttemptRetryBudget
+                implements RetryBudget
+        {
+            private final RetryBudget retryBudget;
+            @GuardedBy("subFutureLock")
+            private boolean lastInFlight = false;
+
+            AttemptRetryBudget(RetryBudget retryBudget)
+            {
+                this.retryBudget = retryBudget;
+            }
+
+            @Override
+            public void initialAttempt()
+            {
+                retryBudget.initialAttempt();
             }
+
+            @Override
+            public boolean canRetry()
+            {
+                synchronized (subFutureLock) {
+                    if (attemptsInFlight > 1 || retryBudget.canRetry()) {
+                        lastInFlight = --attemptsInFlight == 0;
+                        return true;
+                    }
+                    return false;
+                }
+            }
+        }
+    }
+
+    private interface ExceptionHandler<T, E extends Exception>
+    {
+        T handleException(Request request, Exception exception)
+                throws E;
+    }
+
+    /**
+     * Sends one attempt, wrapping the response handler in one that retries
+     * within the attempt's retry budget and that invokes the response
+     * handler only if it is the first to set {@code handlerClaimed}.
+     */
+    private interface AttemptSender<T>
+    {
+        HttpResponseFuture<T> send(Request subRequest, RetryBudget attemptRetryBudget, AtomicBoolean handlerClaimed);
+    }
+
+    /**
+     * Retry budget for an attempt with a total timeout. A retry is not
+     * permitted if the backoff delay before it would end after the deadline.
+     */
+    private class DeadlineRetryBudget
+            implements RetryBudget
+    {
+        private final long backoffNanos;
+        private final long deadline;
+
+        DeadlineRetryBudget(long backoffNanos, long deadline)
+        {
+            this.backoffNanos = backoffNanos;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void initialAttempt()
+        {
+            retryBudget.initialAttempt();
+        }
+
+        @Override
+        public boolean canRetry()
+        {
+            return ticker.read() + backoffNanos < deadline && retryBudget.canRetry();
         }
     }
 
@@ -22,8 +22,11 @@ import com.proofpoint.units.MaxDuration;
 import com.proofpoint.units.MinDuration;
 
 import javax.validation.constraints.AssertFalse;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 import java.math.BigDecimal;
 
@@ -38,6 +41,22 @@ public class BalancingHttpClientConfig
     private BigDecimal retryBudgetRatio = new BigDecimal(2).movePointLeft(1);
     private Duration retryBudgetRatioPeriod = new Duration(10, SECONDS);
     private int retryBudgetMinPerSecond = 10;
+    private Duration totalTimeout = null;
+    private HedgePolicy hedgePolicy = HedgePolicy.NONE;
+    private Duration hedgeDelay = new Duration(50, MILLISECONDS);
+    private boolean concurrencyLimitEnabled = false;
+    private int concurrencyLimitInitial = 20;
+    private int concurrencyLimitMin = 1;
+    private int concurrencyLimitMax = 1000;
+    private BigDecimal concurrencyLimitBackoffRatio = new BigDecimal(9).movePointLeft(1);
+    private Duration concurrencyLimitLatencyThreshold = new Duration(5, SECONDS);
+
+    public enum HedgePolicy
+    {
+        NONE,
+        FIXED_DELAY,
+        P95,
+    }
 
     @Min(1)
     public int getMaxAttempts()
@@ -122,9 +141,143 @@ public class BalancingHttpClientConfig
         return this;
     }
 
+    @MinDuration("1ms")
+    public Duration getTotalTimeout()
+    {
+        return totalTimeout;
+    }
+
+    @Config("http-client.total-timeout")
+    @ConfigDescription("Maximum time for a request, including all retries and the backoff delays between them")
+    public BalancingHttpClientConfig setTotalTimeout(Duration totalTimeout)
+    {
+        this.totalTimeout = totalTimeout;
+        return this;
+    }
+
+    @NotNull
+    public HedgePolicy getHedgePolicy()
+    {
+        return hedgePolicy;
+    }
+
+    @Config("http-client.hedge.policy")
+    @ConfigDescription("When to send a second attempt for an idempotent request: NONE, FIXED_DELAY or P95")
+    public BalancingHttpClientConfig setHedgePolicy(HedgePolicy hedgePolicy)
+    {
+        this.hedgePolicy = hedgePolicy;
+        return this;
+    }
+
+    @NotNull
+    public Duration getHedgeDelay()
+    {
+        return hedgeDelay;
+    }
+
+    @Config("http-client.hedge.delay")
+    @ConfigDescription("Delay before a second attempt under FIXED_DELAY, and under P95 until the URI's p95 request time is known")
+    public BalancingHttpClientConfig setHedgeDelay(Duration hedgeDelay)
+    {
+        this.hedgeDelay = hedgeDelay;
+        return this;
+    }
+
+    public boolean isConcurrencyLimitEnabled()
+    {
+        return concurrencyLimitEnabled;
+    }
+
+    @Config("http-client.concurrency-limit.enabled")
+    @ConfigDescription("Adapt the number of concurrent attempts to the service from their latency and failures")
+    public BalancingHttpClientConfig setConcurrencyLimitEnabled(boolean concurrencyLimitEnabled)
+    {
+        this.concurrencyLimitEnabled = concurrencyLimitEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getConcurrencyLimitInitial()
+    {
+        return concurrencyLimitInitial;
+    }
+
+    @Config("http-client.concurrency-limit.initial")
+    @ConfigDescription("Number of concurrent attempts permitted before any have completed")
+    public BalancingHttpClientConfig setConcurrencyLimitInitial(int concurrencyLimitInitial)
+    {
+        this.concurrencyLimitInitial = concurrencyLimitInitial;
+        return this;
+    }
+
+    @Min(1)
+    public int getConcurrencyLimitMin()
+    {
+        return concurrencyLimitMin;
+    }
+
+    @Config("http-client.concurrency-limit.min")
+    @ConfigDescription("The concurrency limit is never reduced below this")
+    public BalancingHttpClientConfig setConcurrencyLimitMin(int concurrencyLimitMin)
+    {
+        this.concurrencyLimitMin = concurrencyLimitMin;
+        return this;
+    }
+
+    @Min(1)
+    public int getConcurrencyLimitMax()
+    {
+        return concurrencyLimitMax;
+    }
+
+    @Config("http-client.concurrency-limit.max")
+    @ConfigDescription("The concurrency limit is never raised above this")
+    public BalancingHttpClientConfig setConcurrencyLimitMax(int concurrencyLimitMax)
+    {
+        this.concurrencyLimitMax = concurrencyLimitMax;
+        return this;
+    }
+
+    @NotNull
+    @DecimalMin("0.1")
+    @DecimalMax("0.99")
+    public BigDecimal getConcurrencyLimitBackoffRatio()
+    {
+        return concurrencyLimitBackoffRatio;
+    }
+
+    @Config("http-client.concurrency-limit.backoff-ratio")
+    @ConfigDescription("Factor the concurrency limit is multiplied by after a failed or slow attempt")
+    public BalancingHttpClientConfig setConcurrencyLimitBackoffRatio(BigDecimal concurrencyLimitBackoffRatio)
+    {
+        this.concurrencyLimitBackoffRatio = concurrencyLimitBackoffRatio;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getConcurrencyLimitLatencyThreshold()
+    {
+        return concurrencyLimitLatencyThreshold;
+    }
+
+    @Config("http-client.concurrency-limit.latency-threshold")
+    @ConfigDescription("Attempts taking longer than this reduce the concurrency limit as failures do")
+    public BalancingHttpClientConfig setConcurrencyLimitLatencyThreshold(Duration concurrencyLimitLatencyThreshold)
+    {
+        this.concurrencyLimitLatencyThreshold = concurrencyLimitLatencyThreshold;
+        return this;
+    }
+
     @AssertFalse
     public boolean isMaxBackoffLessThanMinBackoff()
     {
         return maxBackoff.compareTo(minBackoff) < 0;
     }
+
+    @AssertFalse
+    public boolean isConcurrencyLimitInitialOutOfRange()
+    {
+        return concurrencyLimitInitial < concurrencyLimitMin || concurrencyLimitInitial > concurrencyLimitMax;
+    }
 }
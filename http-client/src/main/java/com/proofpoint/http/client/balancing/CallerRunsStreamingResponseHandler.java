@@ -0,0 +1,410 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.balancing;
+
+import com.google.common.collect.ListMultimap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.proofpoint.http.client.HeaderName;
+import com.proofpoint.http.client.Request;
+import com.proofpoint.http.client.Response;
+import com.proofpoint.http.client.ResponseHandler;
+import com.proofpoint.http.client.StreamingResponseHandler;
+
+import javax.annotation.concurrent.GuardedBy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static com.proofpoint.http.client.balancing.RetryingResponseHandler.failureCategory;
+import static com.proofpoint.http.client.balancing.RetryingResponseHandler.isFailureStatus;
+import static java.lang.Math.min;
+
+/**
+ * Runs a {@link ResponseHandler} in the calling thread on a response
+ * whose body is streamed, so that a synchronous request does not buffer
+ * the body. The handler reads each chunk of the body as it arrives; the
+ * next chunk is not read from the connection until the handler has
+ * consumed the previous one.
+ *
+ * <p>The first of the response headers, an exception for the response
+ * handler, and an interrupt of the calling thread claims the response
+ * handler. Headers that arrive after that are discarded.</p>
+ */
+final class CallerRunsStreamingResponseHandler
+        implements StreamingResponseHandler<Void, RuntimeException>
+{
+    private static final Chunk END = new Chunk(null, () -> {}, null);
+
+    private final SettableFuture<Response> headers = SettableFuture.create();
+    private final SettableFuture<Void> handled = SettableFuture.create();
+    private final BlockingQueue<Chunk> chunks = new LinkedBlockingQueue<>();
+    private volatile boolean abandoned = false;
+
+    /**
+     * Returns a future that completes when the response handler is done. It
+     * fails with an {@link InnerHandlerException} if the response handler
+     * threw, so that the exception is attributed to the attempt.
+     */
+    ListenableFuture<Void> getHandled()
+    {
+        return handled;
+    }
+
+    /**
+     * Waits for the response of the request sent with this handler and
+     * invokes the response handler on it in the calling thread.
+     */
+    <T, E extends Exception> T handle(Request request, ResponseHandler<T, E> responseHandler, ListenableFuture<?> future)
+            throws E
+    {
+        future.addListener(() -> responseDone(future), directExecutor());
+        try {
+            return handleResponse(request, responseHandler, future);
+        }
+        finally {
+            handled.set(null);
+            awaitDone(future);
+        }
+    }
+
+    private <T, E extends Exception> T handleResponse(Request request, ResponseHandler<T, E> responseHandler, ListenableFuture<?> future)
+            throws E
+    {
+
+        Response response;
+        try {
+            try {
+                response = headers.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (headers.setException(new ExceptionToHandle(request, e))) {
+                    future.cancel(true);
+                }
+                response = getUninterruptibly(headers);
+            }
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ExceptionToHandle) {
+                ExceptionToHandle exceptionToHandle = (ExceptionToHandle) cause;
+                try {
+                    return responseHandler.handleException(exceptionToHandle.request, exceptionToHandle.exception);
+                }
+                catch (Exception handlerException) {
+                    handled.setException(new InnerHandlerException(handlerException, exceptionToHandle.exception));
+                    throw handlerException;
+                }
+            }
+            throwIfUnchecked(cause);
+            //noinspection unchecked
+            throw (E) cause;
+        }
+
+        StreamedResponse streamedResponse = (StreamedResponse) response;
+        try {
+            return responseHandler.handle(streamedResponse.request, streamedResponse);
+        }
+        catch (Exception handlerException) {
+            handled.setException(new InnerHandlerException(handlerException, failureCategory(response), isFailureStatus(response)));
+            throw handlerException;
+        }
+        finally {
+            // the rest of the body is discarded as it arrives
+            streamedResponse.body.close();
+            if (!streamedResponse.body.complete && Thread.currentThread().isInterrupted()) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public Void handleException(Request request, Exception exception)
+    {
+        if (!headers.setException(new ExceptionToHandle(request, exception))) {
+            // the body failed after the headers were passed to the handler
+            chunks.add(new Chunk(null, null, exception));
+        }
+        return null;
+    }
+
+    @Override
+    public BodyConsumer<Void, RuntimeException> handleHeaders(Request request, Response response)
+    {
+        if (!headers.set(new StreamedResponse(request, response, new BodyInputStream()))) {
+            abandoned = true;
+        }
+        return new BodyConsumer<Void, RuntimeException>()
+        {
+            @Override
+            public void onContent(ByteBuffer content, Runnable release)
+            {
+                if (abandoned) {
+                    release.run();
+                    return;
+                }
+                chunks.add(new Chunk(content, release, null));
+                if (abandoned) {
+                    releaseChunks();
+                }
+            }
+
+            @Override
+            public Void onComplete()
+            {
+                chunks.add(END);
+                return null;
+            }
+        };
+    }
+
+    private void responseDone(ListenableFuture<?> future)
+    {
+        Throwable failure;
+        try {
+            getUninterruptibly(future);
+            return;
+        }
+        catch (ExecutionException e) {
+            failure = e.getCause();
+        }
+        catch (CancellationException e) {
+            failure = e;
+        }
+        if (!headers.setException(failure)) {
+            // unblock a handler still reading the body
+            chunks.add(new Chunk(null, null, failure));
+        }
+    }
+
+    /**
+     * Waits for the attempts to finish, so that their outcome is recorded
+     * before the request returns.
+     */
+    private static void awaitDone(Future<?> future)
+    {
+        try {
+            getUninterruptibly(future);
+        }
+        catch (ExecutionException | CancellationException ignored) {
+        }
+    }
+
+    private void releaseChunks()
+    {
+        Chunk chunk;
+        while ((chunk = chunks.poll()) != null) {
+            if (chunk.release != null) {
+                chunk.release.run();
+            }
+        }
+    }
+
+    private static class Chunk
+    {
+        private final ByteBuffer content;
+        private final Runnable release;
+        private final Throwable failure;
+
+        Chunk(ByteBuffer content, Runnable release, Throwable failure)
+        {
+            this.content = content;
+            this.release = release;
+            this.failure = failure;
+        }
+    }
+
+    private static class ExceptionToHandle
+            extends Exception
+    {
+        private final Request request;
+        private final Exception exception;
+
+        ExceptionToHandle(Request request, Exception exception)
+        {
+            super(exception);
+            this.request = request;
+            this.exception = exception;
+        }
+    }
+
+    private class BodyInputStream
+            extends InputStream
+    {
+        @GuardedBy("this")
+        private Chunk current = null;
+        @GuardedBy("this")
+        private Throwable failure = null;
+        @GuardedBy("this")
+        private boolean closed = false;
+        private volatile boolean complete = false;
+
+        @Override
+        public synchronized int read()
+                throws IOException
+        {
+            Chunk chunk = currentChunk();
+            if (chunk == null) {
+                return -1;
+            }
+            int value = chunk.content.get() & 0xff;
+            consumed(chunk);
+            return value;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len)
+                throws IOException
+        {
+            if (len == 0) {
+                return 0;
+            }
+            Chunk chunk = currentChunk();
+            if (chunk == null) {
+                return -1;
+            }
+            int length = min(len, chunk.content.remaining());
+            chunk.content.get(b, off, length);
+            consumed(chunk);
+            return length;
+        }
+
+        @Override
+        public synchronized int available()
+        {
+            return current == null ? 0 : current.content.remaining();
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            abandoned = true;
+            if (current != null) {
+                current.release.run();
+                current = null;
+            }
+            releaseChunks();
+        }
+
+        @GuardedBy("this")
+        private Chunk currentChunk()
+                throws IOException
+        {
+            while (current == null) {
+                if (closed) {
+                    throw new IOException("Stream closed");
+                }
+                if (complete) {
+                    return null;
+                }
+                if (failure != null) {
+                    throw new IOException("Failed reading response body", failure);
+                }
+
+                Chunk chunk;
+                try {
+                    chunk = chunks.take();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+
+                if (chunk == END) {
+                    complete = true;
+                }
+                else if (chunk.failure != null) {
+                    failure = chunk.failure;
+                }
+                else if (chunk.content.hasRemaining()) {
+                    current = chunk;
+                }
+                else {
+                    chunk.release.run();
+                }
+            }
+            return current;
+        }
+
+        @GuardedBy("this")
+        private void consumed(Chunk chunk)
+        {
+            if (!chunk.content.hasRemaining()) {
+                current = null;
+                chunk.release.run();
+            }
+        }
+    }
+
+    private static class StreamedResponse
+            implements Response
+    {
+        private final Request request;
+        private final Response response;
+        private final BodyInputStream body;
+
+        StreamedResponse(Request request, Response response, BodyInputStream body)
+        {
+            this.request = request;
+            this.response = response;
+            this.body = body;
+        }
+
+        @Override
+        public int getStatusCode()
+        {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public String getStatusMessage()
+        {
+            return response.getStatusMessage();
+        }
+
+        @Override
+        public ListMultimap<HeaderName, String> getHeaders()
+        {
+            return response.getHeaders();
+        }
+
+        @Override
+        public long getBytesRead()
+        {
+            return response.getBytesRead();
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.balancing;
+
+interface ConcurrencyLimit
+{
+    /**
+     * Takes a permit for an attempt, returning false if the limit has been
+     * reached.
+     */
+    boolean tryAcquire();
+
+    /**
+     * Returns the permit of an attempt that received a response.
+     */
+    void onSuccess(long latencyNanos);
+
+    /**
+     * Returns the permit of an attempt that failed in a way that indicates
+     * the service may be overloaded.
+     */
+    void onDropped();
+
+    /**
+     * Returns the permit of an attempt whose outcome says nothing about the
+     * service's load, such as one that was canceled.
+     */
+    void onIgnore();
+}
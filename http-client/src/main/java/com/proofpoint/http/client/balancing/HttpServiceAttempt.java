@@ -16,7 +16,9 @@
 package com.proofpoint.http.client.balancing;
 
 import com.google.common.annotations.Beta;
+import com.proofpoint.units.Duration;
 
+import javax.annotation.Nullable;
 import java.net.URI;
 
 @Beta
@@ -26,5 +28,25 @@ public interface HttpServiceAttempt
     void markGood();
     void markBad(String failureCategory);
     void markBad(String failureCategory, String handlerCategory);
+
+    /**
+     * Marks the attempt as abandoned before it completed, without counting
+     * it as a success or a failure of the URI.
+     */
+    void markCanceled();
+
     HttpServiceAttempt next();
+
+    /**
+     * Creates an attempt at another URI, if there is one, while this
+     * attempt is still in progress.
+     */
+    HttpServiceAttempt hedge();
+
+    /**
+     * Returns the given quantile of the time of recent successful requests
+     * to the URI, or null if it is not known.
+     */
+    @Nullable
+    Duration getRequestTimeQuantile(double quantile);
 }
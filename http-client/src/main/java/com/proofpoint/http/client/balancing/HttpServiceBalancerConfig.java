@@ -18,9 +18,11 @@ package com.proofpoint.http.client.balancing;
 import com.proofpoint.configuration.Config;
 import com.proofpoint.configuration.ConfigDescription;
 import com.proofpoint.units.Duration;
+import com.proofpoint.units.MinDuration;
 
 import javax.validation.constraints.AssertFalse;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -30,6 +32,14 @@ public class HttpServiceBalancerConfig
     private int consecutiveFailures = 5;
     private Duration minBackoff = new Duration(5, SECONDS);
     private Duration maxBackoff = new Duration(2, MINUTES);
+    private BalancingStrategy balancingStrategy = BalancingStrategy.LEAST_CONCURRENCY;
+    private Duration peakEwmaDecayTime = new Duration(10, SECONDS);
+
+    public enum BalancingStrategy
+    {
+        LEAST_CONCURRENCY,
+        PEAK_EWMA,
+    }
 
     @Min(1)
     public int getConsecutiveFailures()
@@ -71,6 +81,34 @@ public class HttpServiceBalancerConfig
         return this;
     }
 
+    @NotNull
+    public BalancingStrategy getBalancingStrategy()
+    {
+        return balancingStrategy;
+    }
+
+    @Config("balancing-strategy")
+    @ConfigDescription("How to choose the URI for each attempt: LEAST_CONCURRENCY or PEAK_EWMA")
+    public HttpServiceBalancerConfig setBalancingStrategy(BalancingStrategy balancingStrategy)
+    {
+        this.balancingStrategy = balancingStrategy;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getPeakEwmaDecayTime()
+    {
+        return peakEwmaDecayTime;
+    }
+
+    @Config("peak-ewma.decay-time")
+    @ConfigDescription("Time constant over which the PEAK_EWMA latency estimate of a URI decays")
+    public HttpServiceBalancerConfig setPeakEwmaDecayTime(Duration peakEwmaDecayTime)
+    {
+        this.peakEwmaDecayTime = peakEwmaDecayTime;
+        return this;
+    }
 
     @AssertFalse
     public boolean isMaxBackoffLessThanMinBackoff()
@@ -17,9 +17,12 @@ package com.proofpoint.http.client.balancing;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.proofpoint.http.client.balancing.HttpServiceBalancerConfig.BalancingStrategy;
 import com.proofpoint.http.client.balancing.HttpServiceBalancerStats.Status;
 import com.proofpoint.stats.MaxGauge;
+import com.proofpoint.stats.MergedDistribution;
 import com.proofpoint.units.Duration;
 import org.weakref.jmx.Nested;
 
@@ -31,12 +34,16 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.max;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -47,16 +54,28 @@ public class HttpServiceBalancerImpl
     private static final InstanceState INSTANCE_STATE_WORST = new InstanceState(Liveness.DEAD, Integer.MAX_VALUE);
     private static final InstanceState INSTANCE_STATE_MISSING = new InstanceState(Liveness.ALIVE, 0);
     private static final Duration ZERO_DURATION = new Duration(0, SECONDS);
-    private final AtomicReference<Set<URI>> httpUris = new AtomicReference<>((Set<URI>) ImmutableSet.<URI>of());
+    // PEAK_EWMA cost of an instance that has requests outstanding but no latency estimate yet
+    private static final double UNMEASURED_LATENCY_PENALTY = SECONDS.toNanos(1);
+    // reads of the pool request time within this long of a merge reuse it
+    private static final long POOL_REQUEST_TIME_REFRESH_NANOS = SECONDS.toNanos(1);
+    private final AtomicReference<ImmutableSet<URI>> httpUris = new AtomicReference<>(ImmutableSet.of());
 
     @GuardedBy("uriStates")
     private final Map<URI, InstanceState> uriStates = new HashMap<>();
+    private final ConcurrentMap<URI, InstanceState> peakEwmaStates = new ConcurrentHashMap<>();
     private final String description;
     private final HttpServiceBalancerStats httpServiceBalancerStats;
     private final int consecutiveFailures;
     private final BackoffPolicy backoffPolicy;
     private final Ticker ticker;
+    private final BalancingStrategy balancingStrategy;
+    private final double peakEwmaDecayNanos;
     private final MaxGauge concurrency = new MaxGauge();
+    private final MergedDistribution poolRequestTime = new MergedDistribution();
+    @GuardedBy("poolRequestTime")
+    private long poolRequestTimeMergeTick;
+    @GuardedBy("poolRequestTime")
+    private boolean poolRequestTimeMerged = false;
 
     public HttpServiceBalancerImpl(String description, HttpServiceBalancerStats httpServiceBalancerStats, HttpServiceBalancerConfig config)
     {
@@ -78,19 +97,26 @@ public class HttpServiceBalancerImpl
         this.httpServiceBalancerStats = requireNonNull(httpServiceBalancerStats, "httpServiceBalancerStats is null");
         consecutiveFailures = requireNonNull(config, "config is null").getConsecutiveFailures();
         backoffPolicy = new DecorrelatedJitteredBackoffPolicy(config.getMinBackoff(), config.getMaxBackoff());
+        balancingStrategy = config.getBalancingStrategy();
+        peakEwmaDecayNanos = config.getPeakEwmaDecayTime().getValue(NANOSECONDS);
         this.ticker = requireNonNull(ticker, "ticker is null");
     }
 
     @Override
     public HttpServiceAttempt createAttempt()
     {
+        if (balancingStrategy == BalancingStrategy.PEAK_EWMA) {
+            return new PeakEwmaAttempt(ImmutableSet.of());
+        }
         return new HttpServiceAttemptImpl(ImmutableSet.of());
     }
 
     @Beta
     public void updateHttpUris(Set<URI> newHttpUris)
     {
-        httpUris.set(ImmutableSet.copyOf(newHttpUris));
+        ImmutableSet<URI> uris = ImmutableSet.copyOf(newHttpUris);
+        httpUris.set(uris);
+        peakEwmaStates.keySet().retainAll(uris);
     }
 
     private class HttpServiceAttemptImpl
@@ -168,14 +194,14 @@ public class HttpServiceBalancerImpl
         @Override
         public void markGood()
         {
-            decrementConcurrency(false);
+            decrementConcurrency(false, false);
             httpServiceBalancerStats.requestTime(uri, Status.SUCCESS).add(ticker.read() - startTick, TimeUnit.NANOSECONDS);
         }
 
         @Override
         public void markBad(String failureCategory)
         {
-            decrementConcurrency(true);
+            decrementConcurrency(true, false);
             httpServiceBalancerStats.requestTime(uri, Status.FAILURE).add(ticker.read() - startTick, TimeUnit.NANOSECONDS);
             httpServiceBalancerStats.failure(uri, failureCategory).add(1);
         }
@@ -183,19 +209,27 @@ public class HttpServiceBalancerImpl
         @Override
         public void markBad(String failureCategory, String handlerCategory)
         {
-            decrementConcurrency(true);
+            decrementConcurrency(true, false);
             httpServiceBalancerStats.requestTime(uri, Status.FAILURE).add(ticker.read() - startTick, TimeUnit.NANOSECONDS);
             httpServiceBalancerStats.failure(uri, failureCategory, handlerCategory).add(1);
         }
 
-        private void decrementConcurrency(boolean isFailure)
+        @Override
+        public void markCanceled()
+        {
+            decrementConcurrency(false, true);
+        }
+
+        private void decrementConcurrency(boolean isFailure, boolean isCanceled)
         {
             checkState(inProgress, "is in progress");
             inProgress = false;
             synchronized (uriStates) {
                 InstanceState uriState = uriStates.get(uri);
 
-                uriState.liveness.mark(isFailure, uriState, this, HttpServiceBalancerImpl.this);
+                if (!isCanceled) {
+                    uriState.liveness.mark(isFailure, uriState, uri, HttpServiceBalancerImpl.this);
+                }
                 int oldConcurrency = uriState.concurrency;
                 if (oldConcurrency > 0) {
                     --uriState.concurrency;
@@ -229,6 +263,274 @@ public class HttpServiceBalancerImpl
                     .build();
             return new HttpServiceAttemptImpl(newAttempted);
         }
+
+        @Override
+        public HttpServiceAttempt hedge()
+        {
+            checkState(inProgress, "is still in progress");
+            Set<URI> newAttempted = ImmutableSet.<URI>builder()
+                    .add(uri)
+                    .addAll(attempted)
+                    .build();
+            return new HttpServiceAttemptImpl(newAttempted);
+        }
+
+        @Override
+        public Duration getRequestTimeQuantile(double quantile)
+        {
+            return requestTimeQuantile(uri, quantile);
+        }
+    }
+
+    /**
+     * Chooses the better of two randomly selected URIs, comparing the
+     * decaying peak of their latencies multiplied by their outstanding
+     * requests. Falls back to scanning all URIs when neither can be used.
+     */
+    private class PeakEwmaAttempt
+            implements HttpServiceAttempt
+    {
+        private final Set<URI> attempted;
+        private final URI uri;
+        private final InstanceState uriState;
+        private final long startTick;
+        private boolean inProgress = true;
+
+        PeakEwmaAttempt(Set<URI> attempted)
+        {
+            ImmutableSet<URI> httpUris = HttpServiceBalancerImpl.this.httpUris.get();
+            if (httpUris.isEmpty()) {
+                throw new ServiceUnavailableException(description);
+            }
+
+            int available = httpUris.size();
+            for (URI uri : attempted) {
+                if (httpUris.contains(uri)) {
+                    --available;
+                }
+            }
+            if (available == 0) {
+                attempted = ImmutableSet.of();
+                available = httpUris.size();
+            }
+
+            long now = ticker.read();
+            ImmutableList<URI> uriList = httpUris.asList();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            URI first = randomUri(uriList, attempted, null, random);
+            URI chosen = null;
+            if (available == 1) {
+                if (tryAcquire(first, now)) {
+                    chosen = first;
+                }
+            }
+            else {
+                // if either sample is unavailable, the scan below finds the best available instance
+                URI second = randomUri(uriList, attempted, first, random);
+                double firstCost = cost(first, now);
+                double secondCost = cost(second, now);
+                if (secondCost < firstCost) {
+                    first = second;
+                }
+                if (firstCost != Double.POSITIVE_INFINITY && secondCost != Double.POSITIVE_INFINITY && tryAcquire(first, now)) {
+                    chosen = first;
+                }
+            }
+
+            if (chosen == null) {
+                chosen = scanForUri(httpUris, attempted, now);
+                if (chosen == null && !attempted.isEmpty()) {
+                    attempted = ImmutableSet.of();
+                    chosen = scanForUri(httpUris, attempted, now);
+                }
+                if (chosen == null) {
+                    // every instance is dead; use the one with the fewest outstanding requests
+                    chosen = first;
+                    for (URI uri : httpUris) {
+                        if (peakEwmaState(uri).outstanding.get() < peakEwmaState(chosen).outstanding.get()) {
+                            chosen = uri;
+                        }
+                    }
+                    peakEwmaState(chosen).outstanding.incrementAndGet();
+                }
+            }
+
+            uri = chosen;
+            uriState = peakEwmaState(chosen);
+            concurrency.updateInstantaneous(uriState.outstanding.get());
+            this.attempted = ImmutableSet.copyOf(attempted);
+            startTick = ticker.read();
+        }
+
+        @Override
+        public URI getUri()
+        {
+            return uri;
+        }
+
+        @Override
+        public void markGood()
+        {
+            long requestTime = complete(false);
+            httpServiceBalancerStats.requestTime(uri, Status.SUCCESS).add(requestTime, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void markBad(String failureCategory)
+        {
+            long requestTime = complete(true);
+            httpServiceBalancerStats.requestTime(uri, Status.FAILURE).add(requestTime, TimeUnit.NANOSECONDS);
+            httpServiceBalancerStats.failure(uri, failureCategory).add(1);
+        }
+
+        @Override
+        public void markBad(String failureCategory, String handlerCategory)
+        {
+            long requestTime = complete(true);
+            httpServiceBalancerStats.requestTime(uri, Status.FAILURE).add(requestTime, TimeUnit.NANOSECONDS);
+            httpServiceBalancerStats.failure(uri, failureCategory, handlerCategory).add(1);
+        }
+
+        @Override
+        public void markCanceled()
+        {
+            checkState(inProgress, "is in progress");
+            inProgress = false;
+            long now = ticker.read();
+
+            // the request took at least this long
+            uriState.observeLatency(now - startTick, now, peakEwmaDecayNanos);
+            if (uriState.liveness == Liveness.PROBING) {
+                synchronized (uriState) {
+                    if (uriState.liveness == Liveness.PROBING) {
+                        uriState.liveness = Liveness.DEAD;
+                    }
+                }
+            }
+            uriState.outstanding.decrementAndGet();
+        }
+
+        private long complete(boolean isFailure)
+        {
+            checkState(inProgress, "is in progress");
+            inProgress = false;
+            long now = ticker.read();
+            long requestTime = now - startTick;
+
+            uriState.observeLatency(requestTime, now, peakEwmaDecayNanos);
+            if (isFailure || uriState.liveness != Liveness.ALIVE || uriState.numFailures != 0) {
+                synchronized (uriState) {
+                    uriState.liveness.mark(isFailure, uriState, uri, HttpServiceBalancerImpl.this);
+                }
+            }
+            uriState.outstanding.decrementAndGet();
+            return requestTime;
+        }
+
+        @Override
+        public HttpServiceAttempt next()
+        {
+            checkState(!inProgress, "is not still in progress");
+            Set<URI> newAttempted = ImmutableSet.<URI>builder()
+                    .add(uri)
+                    .addAll(attempted)
+                    .build();
+            return new PeakEwmaAttempt(newAttempted);
+        }
+
+        @Override
+        public HttpServiceAttempt hedge()
+        {
+            checkState(inProgress, "is still in progress");
+            Set<URI> newAttempted = ImmutableSet.<URI>builder()
+                    .add(uri)
+                    .addAll(attempted)
+                    .build();
+            return new PeakEwmaAttempt(newAttempted);
+        }
+
+        @Override
+        public Duration getRequestTimeQuantile(double quantile)
+        {
+            return requestTimeQuantile(uri, quantile);
+        }
+    }
+
+    private Duration requestTimeQuantile(URI uri, double quantile)
+    {
+        return httpServiceBalancerStats.requestTime(uri, Status.SUCCESS).getPreviousQuantile(quantile);
+    }
+
+    private static URI randomUri(ImmutableList<URI> uris, Set<URI> attempted, URI exclude, ThreadLocalRandom random)
+    {
+        URI uri;
+        do {
+            uri = uris.get(random.nextInt(uris.size()));
+        }
+        while (uri.equals(exclude) || attempted.contains(uri));
+        return uri;
+    }
+
+    private InstanceState peakEwmaState(URI uri)
+    {
+        return peakEwmaStates.computeIfAbsent(uri, k -> new InstanceState(Liveness.ALIVE, 0));
+    }
+
+    private double cost(URI uri, long now)
+    {
+        InstanceState uriState = peakEwmaState(uri);
+        if (!uriState.isSelectable(now)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int outstanding = uriState.outstanding.get();
+        double latency = uriState.latencyEstimate.get().decayedLatency(now, peakEwmaDecayNanos);
+        if (latency == 0 && outstanding != 0) {
+            return UNMEASURED_LATENCY_PENALTY + outstanding;
+        }
+        return latency * (outstanding + 1);
+    }
+
+    private boolean tryAcquire(URI uri, long now)
+    {
+        InstanceState uriState = peakEwmaState(uri);
+        Liveness liveness = uriState.liveness;
+        if (liveness == Liveness.ALIVE) {
+            uriState.outstanding.incrementAndGet();
+            return true;
+        }
+        if (!uriState.isSelectable(now) || !uriState.outstanding.compareAndSet(0, 1)) {
+            return false;
+        }
+
+        // allow only one probe of an instance at a time
+        synchronized (uriState) {
+            if (uriState.liveness == Liveness.DEAD) {
+                uriState.liveness = Liveness.PROBING;
+            }
+        }
+        httpServiceBalancerStats.probe(uri).add(1);
+        return true;
+    }
+
+    private URI scanForUri(ImmutableSet<URI> httpUris, Set<URI> attempted, long now)
+    {
+        for (;;) {
+            URI best = null;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for (URI uri : httpUris) {
+                if (attempted.contains(uri)) {
+                    continue;
+                }
+                double cost = cost(uri, now);
+                if (cost < bestCost) {
+                    best = uri;
+                    bestCost = cost;
+                }
+            }
+            if (best == null || tryAcquire(best, now)) {
+                return best;
+            }
+        }
     }
 
     @Nested
@@ -237,15 +539,42 @@ public class HttpServiceBalancerImpl
         return concurrency;
     }
 
+    /**
+     * Returns the distribution of successful request times across all
+     * instances of the pool in the previous reporting bucket, merged from
+     * the per-instance request time digests.
+     */
+    @Nested
+    public MergedDistribution getPoolRequestTime()
+    {
+        long now = ticker.read();
+        synchronized (poolRequestTime) {
+            if (!poolRequestTimeMerged || now - poolRequestTimeMergeTick >= POOL_REQUEST_TIME_REFRESH_NANOS) {
+                List<byte[]> digests = new ArrayList<>();
+                for (URI uri : httpUris.get()) {
+                    digests.add(httpServiceBalancerStats.requestTime(uri, Status.SUCCESS).serializePreviousDigest());
+                }
+                poolRequestTime.update(digests);
+                poolRequestTimeMergeTick = now;
+                poolRequestTimeMerged = true;
+            }
+        }
+        return poolRequestTime;
+    }
+
     private static class InstanceState
         implements Comparable<InstanceState>
     {
-        Liveness liveness;
+        volatile Liveness liveness;
         int concurrency;
-        int numFailures = 0;
+        volatile int numFailures = 0;
         BackoffPolicy backoffPolicy;
         Duration lastBackoff;
-        long deadUntil;
+        volatile long deadUntil;
+
+        // used by PEAK_EWMA, which does not hold the uriStates lock
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicReference<LatencyEstimate> latencyEstimate = new AtomicReference<>(LatencyEstimate.NONE);
 
         public InstanceState(Liveness liveness, int concurrency)
         {
@@ -253,6 +582,28 @@ public class HttpServiceBalancerImpl
             this.concurrency = concurrency;
         }
 
+        boolean isSelectable(long now)
+        {
+            Liveness liveness = this.liveness;
+            if (liveness == Liveness.ALIVE) {
+                return true;
+            }
+            if (liveness == Liveness.DEAD && deadUntil > now) {
+                return false;
+            }
+            return outstanding.get() == 0;
+        }
+
+        void observeLatency(long latency, long now, double decayNanos)
+        {
+            for (;;) {
+                LatencyEstimate current = latencyEstimate.get();
+                if (latencyEstimate.compareAndSet(current, current.observe(latency, now, decayNanos))) {
+                    return;
+                }
+            }
+        }
+
         @Override
         public int compareTo(InstanceState that)
         {
@@ -269,11 +620,40 @@ public class HttpServiceBalancerImpl
         }
     }
 
+    private static class LatencyEstimate
+    {
+        static final LatencyEstimate NONE = new LatencyEstimate(0, 0);
+
+        private final double latency;
+        private final long tick;
+
+        LatencyEstimate(double latency, long tick)
+        {
+            this.latency = latency;
+            this.tick = tick;
+        }
+
+        double decayedLatency(long now, double decayNanos)
+        {
+            return latency * Math.exp(-max(now - tick, 0) / decayNanos);
+        }
+
+        LatencyEstimate observe(long latency, long now, double decayNanos)
+        {
+            if (latency > this.latency) {
+                // jump to a new peak immediately
+                return new LatencyEstimate(latency, now);
+            }
+            double weight = Math.exp(-max(now - tick, 0) / decayNanos);
+            return new LatencyEstimate(this.latency * weight + latency * (1 - weight), now);
+        }
+    }
+
     private enum Liveness
     {
         ALIVE {
             @Override
-            public void mark(boolean isFailure, InstanceState uriState, HttpServiceAttemptImpl attempt, HttpServiceBalancerImpl balancer)
+            public void mark(boolean isFailure, InstanceState uriState, URI uri, HttpServiceBalancerImpl balancer)
             {
                 if (isFailure) {
                     if (++uriState.numFailures >= balancer.consecutiveFailures) {
@@ -281,7 +661,7 @@ public class HttpServiceBalancerImpl
                         uriState.backoffPolicy = balancer.backoffPolicy;
                         uriState.lastBackoff = uriState.backoffPolicy.backoff(ZERO_DURATION);
                         uriState.deadUntil = balancer.ticker.read() + uriState.lastBackoff.roundTo(NANOSECONDS);
-                        balancer.httpServiceBalancerStats.removal(attempt.uri).add(uriState.lastBackoff);
+                        balancer.httpServiceBalancerStats.removal(uri).add(uriState.lastBackoff);
                     }
                 }
                 else {
@@ -292,39 +672,39 @@ public class HttpServiceBalancerImpl
 
         DEAD {
             @Override
-            public void mark(boolean isFailure, InstanceState uriState, HttpServiceAttemptImpl attempt, HttpServiceBalancerImpl balancer)
+            public void mark(boolean isFailure, InstanceState uriState, URI uri, HttpServiceBalancerImpl balancer)
             {
                 if (!isFailure) {
                     uriState.liveness = ALIVE;
                     uriState.numFailures = 0;
                     uriState.backoffPolicy = null;
                     uriState.lastBackoff = null;
-                    balancer.httpServiceBalancerStats.revival(attempt.uri).add(1);
+                    balancer.httpServiceBalancerStats.revival(uri).add(1);
                 }
             }
         },
 
         PROBING {
             @Override
-            public void mark(boolean isFailure, InstanceState uriState, HttpServiceAttemptImpl attempt, HttpServiceBalancerImpl balancer)
+            public void mark(boolean isFailure, InstanceState uriState, URI uri, HttpServiceBalancerImpl balancer)
             {
                 if (isFailure) {
                     uriState.liveness = DEAD;
                     uriState.backoffPolicy = uriState.backoffPolicy.nextAttempt();
                     uriState.lastBackoff = uriState.backoffPolicy.backoff(uriState.lastBackoff);
                     uriState.deadUntil = balancer.ticker.read() + uriState.lastBackoff.roundTo(NANOSECONDS);
-                    balancer.httpServiceBalancerStats.removal(attempt.uri).add(uriState.lastBackoff);
+                    balancer.httpServiceBalancerStats.removal(uri).add(uriState.lastBackoff);
                 }
                 else {
                     uriState.liveness = ALIVE;
                     uriState.numFailures = 0;
                     uriState.backoffPolicy = null;
                     uriState.lastBackoff = null;
-                    balancer.httpServiceBalancerStats.revival(attempt.uri).add(1);
+                    balancer.httpServiceBalancerStats.revival(uri).add(1);
                 }
             }
         };
 
-        public abstract void mark(boolean isFailure, InstanceState uriState, HttpServiceAttemptImpl attempt, HttpServiceBalancerImpl balancer);
+        public abstract void mark(boolean isFailure, InstanceState uriState, URI uri, HttpServiceBalancerImpl balancer);
     }
 }
@@ -17,14 +17,27 @@ package com.proofpoint.http.client.balancing;
 
 class InnerHandlerException extends RetryException
 {
-    InnerHandlerException(Exception cause, String failureCategory)
+    private final boolean attemptFailed;
+
+    InnerHandlerException(Exception cause, String failureCategory, boolean attemptFailed)
     {
         super(cause, failureCategory);
+        this.attemptFailed = attemptFailed;
     }
 
     InnerHandlerException(Exception cause, Exception failureException)
     {
         super(cause, failureException);
+        attemptFailed = true;
+    }
+
+    /**
+     * Returns whether the handler threw for a failed attempt, as opposed to
+     * for a response with a status code that is not retryable.
+     */
+    boolean isAttemptFailed()
+    {
+        return attemptFailed;
     }
 
     public String getHandlerCategory()
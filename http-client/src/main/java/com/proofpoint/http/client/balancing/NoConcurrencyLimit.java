@@ -0,0 +1,47 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.balancing;
+
+class NoConcurrencyLimit
+        implements ConcurrencyLimit
+{
+    static final NoConcurrencyLimit INSTANCE = new NoConcurrencyLimit();
+
+    private NoConcurrencyLimit()
+    {
+    }
+
+    @Override
+    public boolean tryAcquire()
+    {
+        return true;
+    }
+
+    @Override
+    public void onSuccess(long latencyNanos)
+    {
+    }
+
+    @Override
+    public void onDropped()
+    {
+    }
+
+    @Override
+    public void onIgnore()
+    {
+    }
+}
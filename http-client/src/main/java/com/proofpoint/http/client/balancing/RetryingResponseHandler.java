@@ -25,6 +25,7 @@ import com.proofpoint.http.client.ResponseHandler;
 import com.proofpoint.log.Logger;
 
 import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -36,37 +37,30 @@ final class RetryingResponseHandler<T, E extends Exception>
     private final ResponseHandler<T, E> innerHandler;
     private final RetryBudget retryBudget;
     private final Cache<Class<? extends Exception>, Boolean> exceptionCache;
+    private final AtomicBoolean innerHandlerClaimed;
 
-    RetryingResponseHandler(ResponseHandler<T, E> innerHandler, RetryBudget retryBudget, Cache<Class<? extends Exception>, Boolean> exceptionCache)
+    /**
+     * @param innerHandlerClaimed shared by everything that may invoke the
+     * inner handler for one request, so that it is invoked only once. An
+     * attempt that finds it already set fails with a
+     * {@link CancellationException} without invoking the inner handler.
+     */
+    RetryingResponseHandler(ResponseHandler<T, E> innerHandler, RetryBudget retryBudget, Cache<Class<? extends Exception>, Boolean> exceptionCache, AtomicBoolean innerHandlerClaimed)
     {
         this.innerHandler = innerHandler;
         this.retryBudget = retryBudget;
         this.exceptionCache = exceptionCache;
+        this.innerHandlerClaimed = innerHandlerClaimed;
     }
 
     @Override
     public T handleException(Request request, final Exception exception)
             throws RetryException
     {
-        final AtomicBoolean isLogged = new AtomicBoolean(false);
-        try {
-            exceptionCache.get(exception.getClass(), () -> {
-                log.warn(exception, "Exception querying %s",
-                        request.getUri().resolve("/"));
-                isLogged.set(true);
-                return true;
-            });
-        }
-        catch (ExecutionException ignored) {
-            // can't happen
-        }
-        if (!isLogged.get()) {
-            log.warn("Exception querying %s: %s",
-                    request.getUri().resolve("/"),
-                    exception);
-        }
+        logException(request, exception, exceptionCache);
 
         if (!bodySourceRetryable(request) || !retryBudget.canRetry()) {
+            claimInnerHandler(innerHandlerClaimed);
             Object result;
             try {
                 result = innerHandler.handleException(request, exception);
@@ -84,34 +78,83 @@ final class RetryingResponseHandler<T, E extends Exception>
     public T handle(Request request, Response response)
             throws RetryException
     {
-        String failureCategory = response.getStatusCode() + " status code";
-        if (RETRYABLE_STATUS_CODES.contains(response.getStatusCode())) {
-            String retryHeader = response.getHeader("X-Proofpoint-Retry");
-            log.warn("%d response querying %s",
-                    response.getStatusCode(), request.getUri().resolve("/"));
-            if (!("no".equalsIgnoreCase(retryHeader)) && bodySourceRetryable(request) && retryBudget.canRetry()) {
+        String failureCategory = failureCategory(response);
+        if (isFailureStatus(response)) {
+            if (shouldRetry(request, response, retryBudget)) {
                 throw new RetryException(failureCategory);
             }
 
+            claimInnerHandler(innerHandlerClaimed);
             Object result;
             try {
                 result = innerHandler.handle(request, response);
             }
             catch (Exception e) {
-                throw new InnerHandlerException(e, failureCategory);
+                throw new InnerHandlerException(e, failureCategory, true);
             }
             throw new FailureStatusException(result, failureCategory);
         }
 
+        claimInnerHandler(innerHandlerClaimed);
         try {
             return innerHandler.handle(request, response);
         }
         catch (Exception e) {
-            throw new InnerHandlerException(e, failureCategory);
+            throw new InnerHandlerException(e, failureCategory, false);
+        }
+    }
+
+    static void logException(Request request, Exception exception, Cache<Class<? extends Exception>, Boolean> exceptionCache)
+    {
+        final AtomicBoolean isLogged = new AtomicBoolean(false);
+        try {
+            exceptionCache.get(exception.getClass(), () -> {
+                log.warn(exception, "Exception querying %s",
+                        request.getUri().resolve("/"));
+                isLogged.set(true);
+                return true;
+            });
+        }
+        catch (ExecutionException ignored) {
+            // can't happen
+        }
+        if (!isLogged.get()) {
+            log.warn("Exception querying %s: %s",
+                    request.getUri().resolve("/"),
+                    exception);
+        }
+    }
+
+    static String failureCategory(Response response)
+    {
+        return response.getStatusCode() + " status code";
+    }
+
+    static boolean isFailureStatus(Response response)
+    {
+        return RETRYABLE_STATUS_CODES.contains(response.getStatusCode());
+    }
+
+    /**
+     * Logs a response with a failure status and returns whether the attempt
+     * may be retried.
+     */
+    static boolean shouldRetry(Request request, Response response, RetryBudget retryBudget)
+    {
+        String retryHeader = response.getHeader("X-Proofpoint-Retry");
+        log.warn("%d response querying %s",
+                response.getStatusCode(), request.getUri().resolve("/"));
+        return !("no".equalsIgnoreCase(retryHeader)) && bodySourceRetryable(request) && retryBudget.canRetry();
+    }
+
+    static void claimInnerHandler(AtomicBoolean innerHandlerClaimed)
+    {
+        if (!innerHandlerClaimed.compareAndSet(false, true)) {
+            throw new CancellationException("Response handler already invoked for another attempt or the total timeout");
         }
     }
 
-    private static boolean bodySourceRetryable(Request request)
+    static boolean bodySourceRetryable(Request request)
     {
         BodySource bodySource = request.getBodySource();
         return !(bodySource instanceof LimitedRetryable) || ((LimitedRetryable) bodySource).isRetryable();
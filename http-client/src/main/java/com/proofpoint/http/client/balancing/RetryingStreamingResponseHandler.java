@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.balancing;
+
+import com.google.common.cache.Cache;
+import com.proofpoint.http.client.Request;
+import com.proofpoint.http.client.Response;
+import com.proofpoint.http.client.StreamingResponseHandler;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.proofpoint.http.client.balancing.RetryingResponseHandler.bodySourceRetryable;
+import static com.proofpoint.http.client.balancing.RetryingResponseHandler.claimInnerHandler;
+import static com.proofpoint.http.client.balancing.RetryingResponseHandler.failureCategory;
+import static com.proofpoint.http.client.balancing.RetryingResponseHandler.isFailureStatus;
+import static com.proofpoint.http.client.balancing.RetryingResponseHandler.logException;
+import static com.proofpoint.http.client.balancing.RetryingResponseHandler.shouldRetry;
+
+/**
+ * Streaming counterpart of {@link RetryingResponseHandler}. The attempt may
+ * be retried until its headers arrive; after that the body is streamed to
+ * the inner handler and failures are passed to it instead of retried.
+ */
+final class RetryingStreamingResponseHandler<T, E extends Exception>
+        implements StreamingResponseHandler<T, RetryException>
+{
+    private final StreamingResponseHandler<T, E> innerHandler;
+    private final RetryBudget retryBudget;
+    private final Cache<Class<? extends Exception>, Boolean> exceptionCache;
+    private final AtomicBoolean innerHandlerClaimed;
+    private volatile boolean headersHandled = false;
+
+    RetryingStreamingResponseHandler(StreamingResponseHandler<T, E> innerHandler, RetryBudget retryBudget, Cache<Class<? extends Exception>, Boolean> exceptionCache, AtomicBoolean innerHandlerClaimed)
+    {
+        this.innerHandler = innerHandler;
+        this.retryBudget = retryBudget;
+        this.exceptionCache = exceptionCache;
+        this.innerHandlerClaimed = innerHandlerClaimed;
+    }
+
+    @Override
+    public T handleException(Request request, Exception exception)
+            throws RetryException
+    {
+        logException(request, exception, exceptionCache);
+
+        if (headersHandled || !bodySourceRetryable(request) || !retryBudget.canRetry()) {
+            if (!headersHandled) {
+                claimInnerHandler(innerHandlerClaimed);
+            }
+            Object result;
+            try {
+                result = innerHandler.handleException(request, exception);
+            }
+            catch (Exception e) {
+                throw new InnerHandlerException(e, exception);
+            }
+            throw new FailureStatusException(result, exception);
+        }
+
+        throw new RetryException(exception);
+    }
+
+    @Override
+    public BodyConsumer<T, RetryException> handleHeaders(Request request, Response response)
+            throws RetryException
+    {
+        String failureCategory = failureCategory(response);
+        boolean failureStatus = isFailureStatus(response);
+        if (failureStatus && shouldRetry(request, response, retryBudget)) {
+            throw new RetryException(failureCategory);
+        }
+
+        claimInnerHandler(innerHandlerClaimed);
+        headersHandled = true;
+        BodyConsumer<T, E> bodyConsumer;
+        try {
+            bodyConsumer = innerHandler.handleHeaders(request, response);
+        }
+        catch (Exception e) {
+            throw new InnerHandlerException(e, failureCategory, failureStatus);
+        }
+        return new RetryingBodyConsumer<>(bodyConsumer, failureCategory, failureStatus);
+    }
+
+    private static class RetryingBodyConsumer<T, E extends Exception>
+            implements BodyConsumer<T, RetryException>
+    {
+        private final BodyConsumer<T, E> bodyConsumer;
+        private final String failureCategory;
+        private final boolean failureStatus;
+
+        RetryingBodyConsumer(BodyConsumer<T, E> bodyConsumer, String failureCategory, boolean failureStatus)
+        {
+            this.bodyConsumer = bodyConsumer;
+            this.failureCategory = failureCategory;
+            this.failureStatus = failureStatus;
+        }
+
+        @Override
+        public void onContent(ByteBuffer content, Runnable release)
+                throws RetryException
+        {
+            try {
+                bodyConsumer.onContent(content, release);
+            }
+            catch (Exception e) {
+                throw new InnerHandlerException(e, failureCategory, failureStatus);
+            }
+        }
+
+        @Override
+        public T onComplete()
+                throws RetryException
+        {
+            T result;
+            try {
+                result = bodyConsumer.onComplete();
+            }
+            catch (Exception e) {
+                throw new InnerHandlerException(e, failureCategory, failureStatus);
+            }
+            if (failureStatus) {
+                throw new FailureStatusException(result, failureCategory);
+            }
+            return result;
+        }
+    }
+}
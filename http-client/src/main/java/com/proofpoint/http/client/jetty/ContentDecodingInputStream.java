@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.jetty;
+
+import com.google.common.io.CountingInputStream;
+import com.proofpoint.http.client.ResponseTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes a gzip or deflate response body as it is read.
+ * <p>
+ * Reading more than the maximum decoded length throws a
+ * {@link ResponseTooLargeException}, so that a small encoded body cannot
+ * expand without bound.
+ * <p>
+ * The decoder is created on first read so that empty bodies, such as those
+ * of HEAD requests or 204 responses carrying a Content-Encoding header,
+ * read as empty rather than failing on a missing gzip header.
+ */
+class ContentDecodingInputStream
+        extends FilterInputStream
+{
+    private final CountingInputStream encoded;
+    private final boolean gzip;
+    private final long maxDecodedLength;
+    private boolean initialized;
+    private long decodedBytesRead;
+    private Inflater rawInflater;
+
+    private ContentDecodingInputStream(CountingInputStream encoded, boolean gzip, long maxDecodedLength)
+    {
+        super(null);
+        this.encoded = encoded;
+        this.gzip = gzip;
+        this.maxDecodedLength = maxDecodedLength;
+    }
+
+    /**
+     * Returns a decoding stream for the content coding, or null if the coding
+     * is not one this client decodes.
+     */
+    static ContentDecodingInputStream forContentEncoding(String contentEncoding, InputStream inputStream, long maxDecodedLength)
+    {
+        requireNonNull(inputStream, "inputStream is null");
+        if (contentEncoding == null) {
+            return null;
+        }
+        switch (contentEncoding.trim().toLowerCase()) {
+            case "gzip":
+            case "x-gzip":
+                return new ContentDecodingInputStream(new CountingInputStream(inputStream), true, maxDecodedLength);
+            case "deflate":
+                return new ContentDecodingInputStream(new CountingInputStream(inputStream), false, maxDecodedLength);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Number of encoded bytes read from the underlying stream.
+     */
+    long getEncodedBytesRead()
+    {
+        return encoded.getCount();
+    }
+
+    @Override
+    public int read()
+            throws IOException
+    {
+        initialize();
+        int value = super.read();
+        if (value >= 0) {
+            countDecoded(1);
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len)
+            throws IOException
+    {
+        initialize();
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            countDecoded(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n)
+            throws IOException
+    {
+        initialize();
+        long skipped = super.skip(n);
+        countDecoded(skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available()
+            throws IOException
+    {
+        initialize();
+        return super.available();
+    }
+
+    @Override
+    public boolean markSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Closes the underlying stream and releases the native memory of the
+     * decoder's {@link Inflater}.
+     */
+    @Override
+    public void close()
+            throws IOException
+    {
+        try {
+            if (in == null) {
+                encoded.close();
+            }
+            else {
+                super.close();
+            }
+        }
+        finally {
+            if (rawInflater != null) {
+                // InflaterInputStream only ends the Inflaters it creates
+                rawInflater.end();
+            }
+        }
+    }
+
+    private void countDecoded(long bytes)
+    {
+        decodedBytesRead += bytes;
+        if (decodedBytesRead > maxDecodedLength) {
+            throw new ResponseTooLargeException();
+        }
+    }
+
+    private void initialize()
+            throws IOException
+    {
+        if (initialized) {
+            return;
+        }
+        initialized = true;
+
+        PushbackInputStream pushback = new PushbackInputStream(encoded, 2);
+        byte[] header = new byte[2];
+        int headerLength = 0;
+        while (headerLength < 2) {
+            int read = pushback.read(header, headerLength, 2 - headerLength);
+            if (read < 0) {
+                break;
+            }
+            headerLength += read;
+        }
+        pushback.unread(header, 0, headerLength);
+
+        if (headerLength == 0) {
+            in = pushback;
+        }
+        else if (gzip) {
+            in = new GZIPInputStream(pushback);
+        }
+        else if (headerLength == 2 && isZlibHeader(header[0], header[1])) {
+            in = new InflaterInputStream(pushback);
+        }
+        else {
+            // some servers send raw deflate data without the zlib wrapper
+            rawInflater = new Inflater(true);
+            in = new InflaterInputStream(pushback, rawInflater);
+        }
+    }
+
+    private static boolean isZlibHeader(byte first, byte second)
+    {
+        return (first & 0x0f) == 8 && (((first & 0xff) << 8) | (second & 0xff)) % 31 == 0;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.jetty;
+
+import com.proofpoint.reporting.Gauge;
+import org.eclipse.jetty.client.DuplexConnectionPool;
+import org.eclipse.jetty.client.PoolingHttpDestination;
+import org.eclipse.jetty.client.api.Destination;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Live state of the requests and connections to a single destination.
+ * Counters are maintained by the request listener callbacks, so reading
+ * them does not scan the in-flight requests.
+ */
+@ThreadSafe
+public class DestinationStats
+{
+    private static final long ONE_SECOND = SECONDS.toNanos(1);
+    private static final long TEN_SECONDS = SECONDS.toNanos(10);
+    private static final long ONE_MINUTE = SECONDS.toNanos(60);
+
+    private final AtomicInteger queuedRequests = new AtomicInteger();
+    private final AtomicInteger activeRequests = new AtomicInteger();
+    private final InFlightAgeHistogram inFlightAges = new InFlightAgeHistogram();
+    private volatile Destination destination;
+
+    @Gauge
+    public int getQueuedRequests()
+    {
+        return queuedRequests.get();
+    }
+
+    @Gauge
+    public int getActiveRequests()
+    {
+        return activeRequests.get();
+    }
+
+    @Gauge
+    public int getActiveConnections()
+    {
+        Destination destination = this.destination;
+        if (destination instanceof JettyHttpClient.Http2Destination) {
+            return ((JettyHttpClient.Http2Destination) destination).getActiveConnectionCount();
+        }
+        DuplexConnectionPool pool = getConnectionPool(destination);
+        if (pool == null) {
+            return 0;
+        }
+        return pool.getActiveConnectionCount();
+    }
+
+    @Gauge
+    public int getIdleConnections()
+    {
+        Destination destination = this.destination;
+        if (destination instanceof JettyHttpClient.Http2Destination) {
+            return ((JettyHttpClient.Http2Destination) destination).getIdleConnectionCount();
+        }
+        DuplexConnectionPool pool = getConnectionPool(destination);
+        if (pool == null) {
+            return 0;
+        }
+        return pool.getIdleConnectionCount();
+    }
+
+    @Gauge
+    public int getActiveStreams()
+    {
+        Destination destination = this.destination;
+        if (destination instanceof JettyHttpClient.Http2Destination) {
+            return ((JettyHttpClient.Http2Destination) destination).getActiveStreamCount();
+        }
+        return 0;
+    }
+
+    @Gauge
+    public long getInFlightOver1s()
+    {
+        return inFlightAges.countOlderThan(ONE_SECOND, System.nanoTime());
+    }
+
+    @Gauge
+    public long getInFlightOver10s()
+    {
+        return inFlightAges.countOlderThan(TEN_SECONDS, System.nanoTime());
+    }
+
+    @Gauge
+    public long getInFlightOver60s()
+    {
+        return inFlightAges.countOlderThan(ONE_MINUTE, System.nanoTime());
+    }
+
+    boolean isMultiplexed()
+    {
+        return destination instanceof JettyHttpClient.Http2Destination;
+    }
+
+    void setDestination(Destination destination)
+    {
+        this.destination = destination;
+    }
+
+    private static DuplexConnectionPool getConnectionPool(Destination destination)
+    {
+        if (destination instanceof PoolingHttpDestination) {
+            return ((PoolingHttpDestination<?>) destination).getConnectionPool();
+        }
+        return null;
+    }
+
+    void requestQueued(long createdNanos)
+    {
+        queuedRequests.incrementAndGet();
+        inFlightAges.add(createdNanos);
+    }
+
+    void requestStarted()
+    {
+        queuedRequests.decrementAndGet();
+        activeRequests.incrementAndGet();
+    }
+
+    void requestFinished(boolean started, long createdNanos)
+    {
+        if (started) {
+            activeRequests.decrementAndGet();
+        }
+        else {
+            queuedRequests.decrementAndGet();
+        }
+        inFlightAges.remove(createdNanos);
+    }
+}
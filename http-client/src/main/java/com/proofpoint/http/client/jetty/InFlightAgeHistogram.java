@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.jetty;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Counts in-flight requests by the time slot in which they were created.
+ * Adding and removing a request is a single CAS on its slot; counting the
+ * requests older than a threshold walks a fixed number of slots, independent
+ * of how many requests are in flight.
+ */
+@ThreadSafe
+class InFlightAgeHistogram
+{
+    @VisibleForTesting
+    static final long SLOT_NANOS = MILLISECONDS.toNanos(100);
+    @VisibleForTesting
+    static final int SLOTS = 1024;
+
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final long baseNanos;
+    // each slot holds (epoch << COUNT_BITS) | count
+    private final AtomicLongArray slots = new AtomicLongArray(SLOTS);
+    // requests whose slot has since been reused by a newer epoch
+    private final AtomicLong overflow = new AtomicLong();
+
+    InFlightAgeHistogram()
+    {
+        this(System.nanoTime());
+    }
+
+    @VisibleForTesting
+    InFlightAgeHistogram(long baseNanos)
+    {
+        this.baseNanos = baseNanos;
+    }
+
+    void add(long createdNanos)
+    {
+        long epoch = epoch(createdNanos);
+        int index = (int) (epoch % SLOTS);
+        while (true) {
+            long value = slots.get(index);
+            long slotEpoch = value >>> COUNT_BITS;
+            if (slotEpoch == epoch) {
+                if (slots.compareAndSet(index, value, value + 1)) {
+                    return;
+                }
+            }
+            else if (slotEpoch < epoch) {
+                if (slots.compareAndSet(index, value, (epoch << COUNT_BITS) | 1)) {
+                    overflow.addAndGet(value & COUNT_MASK);
+                    return;
+                }
+            }
+            else {
+                overflow.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    void remove(long createdNanos)
+    {
+        long epoch = epoch(createdNanos);
+        int index = (int) (epoch % SLOTS);
+        while (true) {
+            long value = slots.get(index);
+            if ((value >>> COUNT_BITS) != epoch) {
+                overflow.decrementAndGet();
+                return;
+            }
+            if (slots.compareAndSet(index, value, value - 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of in-flight requests created at least
+     * {@code thresholdNanos} before {@code nowNanos}, to a resolution of
+     * {@link #SLOT_NANOS}. Thresholds longer than the histogram window are
+     * not distinguished.
+     */
+    long countOlderThan(long thresholdNanos, long nowNanos)
+    {
+        long nowEpoch = epoch(nowNanos);
+        long count = overflow.get();
+        for (int i = 0; i < SLOTS; i++) {
+            long value = slots.get(i);
+            long slotEpoch = value >>> COUNT_BITS;
+            if ((nowEpoch - slotEpoch) * SLOT_NANOS >= thresholdNanos) {
+                count += value & COUNT_MASK;
+            }
+        }
+        return max(0, count);
+    }
+
+    private long epoch(long nanos)
+    {
+        return max(0, nanos - baseNanos) / SLOT_NANOS;
+    }
+}
@@ -24,19 +24,23 @@ import com.proofpoint.http.client.RequestStats;
 import com.proofpoint.http.client.ResponseHandler;
 import com.proofpoint.http.client.ResponseTooLargeException;
 import com.proofpoint.http.client.StaticBodyGenerator;
+import com.proofpoint.http.client.StreamingResponseHandler;
+import com.proofpoint.http.client.StreamingResponseHandler.BodyConsumer;
 import com.proofpoint.log.Logger;
 import com.proofpoint.stats.Distribution;
 import com.proofpoint.tracetoken.TraceToken;
 import com.proofpoint.tracetoken.TraceTokenScope;
 import com.proofpoint.units.Duration;
-import org.eclipse.jetty.client.DuplexConnectionPool;
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpClientTransport;
 import org.eclipse.jetty.client.HttpDestination;
 import org.eclipse.jetty.client.HttpExchange;
 import org.eclipse.jetty.client.HttpRequest;
 import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.PoolingHttpDestination;
+import org.eclipse.jetty.client.SendFailure;
 import org.eclipse.jetty.client.Socks4Proxy;
+import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.ContentProvider;
 import org.eclipse.jetty.client.api.Destination;
 import org.eclipse.jetty.client.api.Response;
@@ -50,7 +54,12 @@ import org.eclipse.jetty.client.util.InputStreamContentProvider;
 import org.eclipse.jetty.client.util.InputStreamResponseListener;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.HttpClientTransportOverHTTP2;
+import org.eclipse.jetty.http2.client.http.HttpConnectionOverHTTP2;
+import org.eclipse.jetty.http2.client.http.HttpDestinationOverHTTP2;
 import org.eclipse.jetty.util.ArrayQueue;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.HttpCookieStore;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.Sweeper;
@@ -58,13 +67,16 @@ import org.weakref.jmx.Flatten;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
@@ -75,14 +87,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -117,17 +135,23 @@ public class JettyHttpClient
 
     private static final AtomicLong nameCounter = new AtomicLong();
     private static final String PLATFORM_STATS_KEY = "platform_stats";
+    private static final String DECODE_CONTENT_KEY = "platform_decode_content";
     private static final long SWEEP_PERIOD_MILLIS = 5000;
 
     private final JettyIoPool anonymousPool;
     private final HttpClient httpClient;
     private final long maxContentLength;
+    private final boolean compressionEnabled;
+    private final Long requestCompressionThreshold;
     private final Long requestTimeoutMillis;
     private final long idleTimeoutMillis;
     private final RequestStats stats = new RequestStats();
+    private final JettyHttpClientStats destinationStats;
+
     private final CachedDistribution queuedRequestsPerDestination;
     private final CachedDistribution activeConnectionsPerDestination;
     private final CachedDistribution idleConnectionsPerDestination;
+    private final CachedDistribution activeStreamsPerDestination;
 
     private final CachedDistribution currentQueuedTime;
     private final CachedDistribution currentRequestTime;
@@ -152,21 +176,34 @@ public class JettyHttpClient
 
     public JettyHttpClient(HttpClientConfig config, Iterable<? extends HttpRequestFilter> requestFilters)
     {
-        this(config, Optional.absent(), requestFilters);
+        this(config, Optional.absent(), requestFilters, new UnexportedStats());
     }
 
     public JettyHttpClient(HttpClientConfig config, JettyIoPool jettyIoPool, Iterable<? extends HttpRequestFilter> requestFilters)
     {
-        this(config, Optional.of(jettyIoPool), requestFilters);
+        this(config, Optional.of(jettyIoPool), requestFilters, new UnexportedStats());
+    }
+
+    public JettyHttpClient(HttpClientConfig config, JettyIoPool jettyIoPool, Iterable<? extends HttpRequestFilter> requestFilters, JettyHttpClientStats destinationStats)
+    {
+        this(config, Optional.of(jettyIoPool), requestFilters, destinationStats);
     }
 
-    private JettyHttpClient(HttpClientConfig config, Optional<JettyIoPool> jettyIoPool, Iterable<? extends HttpRequestFilter> requestFilters)
+    private JettyHttpClient(HttpClientConfig config, Optional<JettyIoPool> jettyIoPool, Iterable<? extends HttpRequestFilter> requestFilters, JettyHttpClientStats destinationStats)
     {
         checkNotNull(config, "config is null");
         checkNotNull(jettyIoPool, "jettyIoPool is null");
         checkNotNull(requestFilters, "requestFilters is null");
+        this.destinationStats = checkNotNull(destinationStats, "destinationStats is null");
 
         maxContentLength = config.getMaxContentLength().toBytes();
+        compressionEnabled = config.isCompressionEnabled();
+        if (config.getRequestCompressionThreshold() == null) {
+            requestCompressionThreshold = null;
+        }
+        else {
+            requestCompressionThreshold = config.getRequestCompressionThreshold().toBytes();
+        }
         Duration requestTimeout = config.getRequestTimeout();
         if (requestTimeout == null) {
             requestTimeoutMillis = null;
@@ -194,24 +231,55 @@ public class JettyHttpClient
             sslContextFactory.setTrustStorePassword(config.getTrustStorePassword());
         }
 
-        if (config.getMaxRequestsQueuedPerDestination() == 0) {
-            httpClient = new HttpClient(
-                    new HttpClientTransportOverHTTP(2)
-                    {
-                        @Override
-                        public HttpDestination newHttpDestination(Origin origin)
-                        {
-                            return new LimitQueuedToAvailableConnectionsHttpDestination(config.getMaxConnectionsPerServer(), getHttpClient(), origin);
-                        }
-                    },
-                    sslContextFactory);
-            httpClient.setMaxRequestsQueuedPerDestination(config.getMaxConnectionsPerServer());
+        HttpClientTransport transport;
+        int maxRequestsQueuedPerDestination;
+        if (config.isHttp2Enabled()) {
+            HTTP2Client http2Client = new HTTP2Client();
+            http2Client.setSelectors(2);
+            transport = new Http2ClientTransport(http2Client, config.getHttp2MaxConcurrentStreams(), this::newDestinationStats);
+            // exchanges stay in the destination queue until a stream is available
+            maxRequestsQueuedPerDestination = config.getMaxRequestsQueuedPerDestination() + config.getHttp2MaxConcurrentStreams();
+        }
+        else if (config.getMaxRequestsQueuedPerDestination() == 0) {
+            transport = new HttpClientTransportOverHTTP(2)
+            {
+                @Override
+                public HttpDestination newHttpDestination(Origin origin)
+                {
+                    return new LimitQueuedToAvailableConnectionsHttpDestination(config.getMaxConnectionsPerServer(), getHttpClient(), origin, newDestinationStats(origin));
+                }
+            };
+            maxRequestsQueuedPerDestination = config.getMaxConnectionsPerServer();
         }
         else {
-            httpClient = new HttpClient(new HttpClientTransportOverHTTP(2), sslContextFactory);
-            httpClient.setMaxRequestsQueuedPerDestination(config.getMaxRequestsQueuedPerDestination());
+            transport = new HttpClientTransportOverHTTP(2)
+            {
+                @Override
+                public HttpDestination newHttpDestination(Origin origin)
+                {
+                    return new StatsHttpDestination(getHttpClient(), origin, newDestinationStats(origin));
+                }
+            };
+            maxRequestsQueuedPerDestination = config.getMaxRequestsQueuedPerDestination();
         }
+        httpClient = new HttpClient(transport, sslContextFactory)
+        {
+            @Override
+            protected boolean removeDestination(HttpDestination destination)
+            {
+                // drop the stats before the destination, so that a destination created
+                // for the same origin once this one is gone gets stats of its own
+                DestinationStats stats = getDestinationStats(destination);
+                if (stats != null) {
+                    destinationStats.destinationRemoved(destinationUri(destination.getOrigin()), stats);
+                }
+                return super.removeDestination(destination);
+            }
+        };
+        httpClient.setMaxRequestsQueuedPerDestination(maxRequestsQueuedPerDestination);
         httpClient.setMaxConnectionsPerDestination(config.getMaxConnectionsPerServer());
+        // drop destinations, and their reported stats, once they have no connections or requests
+        httpClient.setRemoveIdleDestinations(true);
 
         // disable cookies
         httpClient.setCookieStore(new HttpCookieStore.Empty());
@@ -255,8 +323,8 @@ public class JettyHttpClient
         try {
             this.httpClient.start();
 
-            // remove the GZIP encoding from the client
-            // TODO: there should be a better way to to do this
+            // remove the GZIP encoding from the client; when compression is enabled,
+            // responses are decoded as the response handler reads them instead
             this.httpClient.getContentDecoderFactories().clear();
         }
         catch (Exception e) {
@@ -268,24 +336,32 @@ public class JettyHttpClient
 
         this.requestFilters = ImmutableList.copyOf(requestFilters);
 
-        this.activeConnectionsPerDestination = new ConnectionPoolDistribution(httpClient,
-                 (distribution, connectionPool) -> distribution.add(connectionPool.getActiveConnections().size()));
+        // deprecated per-destination distributions, built from the live destination stats
+        this.activeConnectionsPerDestination = new DestinationDistribution(httpClient,
+                (distribution, stats) -> distribution.add(stats.getActiveConnections()));
 
-         this.idleConnectionsPerDestination = new ConnectionPoolDistribution(httpClient,
-                 (distribution, connectionPool) -> distribution.add(connectionPool.getIdleConnections().size()));
+        this.idleConnectionsPerDestination = new DestinationDistribution(httpClient,
+                (distribution, stats) -> distribution.add(stats.getIdleConnections()));
 
-         this.queuedRequestsPerDestination = new DestinationDistribution(httpClient,
-                 (distribution, destination) -> distribution.add(destination.getHttpExchanges().size()));
+        this.activeStreamsPerDestination = new DestinationDistribution(httpClient, (distribution, stats) -> {
+            if (stats.isMultiplexed()) {
+                distribution.add(stats.getActiveStreams());
+            }
+        });
 
-         this.currentQueuedTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
+        this.queuedRequestsPerDestination = new DestinationDistribution(httpClient,
+                (distribution, stats) -> distribution.add(stats.getQueuedRequests()));
+
+        // deprecated distributions of the in-flight request times, built by scanning the requests
+        this.currentQueuedTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
              long started = listener.getRequestStarted();
              if (started == 0) {
                  started = now;
              }
              distribution.add(NANOSECONDS.toMillis(started - listener.getCreated()));
-         });
+        });
 
-         this.currentRequestTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
+        this.currentRequestTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
              long started = listener.getRequestStarted();
              if (started == 0) {
                  return;
@@ -295,9 +371,9 @@ public class JettyHttpClient
                  finished = now;
              }
              distribution.add(NANOSECONDS.toMillis(finished - started));
-         });
+        });
 
-         this.currentRequestSendTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
+        this.currentRequestSendTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
              long started = listener.getRequestStarted();
              if (started == 0) {
                  return;
@@ -307,9 +383,9 @@ public class JettyHttpClient
                  requestSent = now;
              }
              distribution.add(NANOSECONDS.toMillis(requestSent - started));
-         });
+        });
 
-         this.currentResponseWaitTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
+        this.currentResponseWaitTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
              long requestSent = listener.getRequestFinished();
              if (requestSent == 0) {
                  return;
@@ -319,9 +395,9 @@ public class JettyHttpClient
                  responseStarted = now;
              }
              distribution.add(NANOSECONDS.toMillis(responseStarted - requestSent));
-         });
+        });
 
-         this.currentResponseProcessTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
+        this.currentResponseProcessTime = new RequestDistribution(httpClient, (distribution, listener, now) -> {
              long responseStarted = listener.getResponseStarted();
              if (responseStarted == 0) {
                  return;
@@ -331,7 +407,7 @@ public class JettyHttpClient
                  finished = now;
              }
              distribution.add(NANOSECONDS.toMillis(finished - responseStarted));
-         });
+        });
     }
 
     @Override
@@ -345,7 +421,7 @@ public class JettyHttpClient
         request = applyRequestFilters(request);
 
         // create jetty request and response listener
-        HttpRequest jettyRequest = buildJettyRequest(request, bytesWritten);
+        HttpRequest jettyRequest = buildJettyRequest(request, bytesWritten, true);
         InputStreamResponseListener listener = new InputStreamResponseListener()
         {
             @Override
@@ -397,7 +473,7 @@ public class JettyHttpClient
         try {
             InputStream inputStream = listener.getInputStream();
             try {
-                jettyResponse = new JettyResponse(response, inputStream);
+                jettyResponse = new JettyResponse(response, inputStream, isDecodeContent(jettyRequest), maxContentLength);
                 value = responseHandler.handle(request, jettyResponse);
             }
             finally {
@@ -431,12 +507,38 @@ public class JettyHttpClient
 
         request = applyRequestFilters(request);
 
-        HttpRequest jettyRequest = buildJettyRequest(request, bytesWritten);
+        HttpRequest jettyRequest = buildJettyRequest(request, bytesWritten, true);
+
+        JettyResponseFuture<T, E> future = new JettyResponseFuture<>(request, jettyRequest, responseHandler::handleException, bytesWritten, stats);
 
-        JettyResponseFuture<T, E> future = new JettyResponseFuture<>(request, jettyRequest, responseHandler, bytesWritten, stats);
+        BufferingResponseListener<T, E> listener = new BufferingResponseListener<>(future, responseHandler, Ints.saturatedCast(maxContentLength));
 
-        BufferingResponseListener listener = new BufferingResponseListener(future, Ints.saturatedCast(maxContentLength));
+        send(jettyRequest, listener, future);
+        return future;
+    }
 
+    @Override
+    public <T, E extends Exception> HttpResponseFuture<T> executeAsyncStreaming(Request request, StreamingResponseHandler<T, E> responseHandler)
+    {
+        checkNotNull(request, "request is null");
+        checkNotNull(responseHandler, "responseHandler is null");
+        AtomicLong bytesWritten = new AtomicLong(0);
+
+        request = applyRequestFilters(request);
+
+        // streaming handlers see the body as it arrives, so it is not decoded
+        HttpRequest jettyRequest = buildJettyRequest(request, bytesWritten, false);
+
+        JettyResponseFuture<T, E> future = new JettyResponseFuture<>(request, jettyRequest, responseHandler::handleException, bytesWritten, stats);
+
+        StreamingResponseListener<T, E> listener = new StreamingResponseListener<>(future, responseHandler);
+
+        send(jettyRequest, listener, future);
+        return future;
+    }
+
+    private static void send(HttpRequest jettyRequest, Listener listener, JettyResponseFuture<?, ?> future)
+    {
         try {
             jettyRequest.send(listener);
         }
@@ -447,7 +549,6 @@ public class JettyHttpClient
             // normally this is a rejected execution exception because the client has been closed
             future.failed(e);
         }
-        return future;
     }
 
     private Request applyRequestFilters(Request request)
@@ -458,11 +559,12 @@ public class JettyHttpClient
         return request;
     }
 
-    private HttpRequest buildJettyRequest(Request finalRequest, AtomicLong bytesWritten)
+    private HttpRequest buildJettyRequest(Request finalRequest, AtomicLong bytesWritten, boolean decodeContent)
     {
         HttpRequest jettyRequest = (HttpRequest) httpClient.newRequest(finalRequest.getUri());
 
         JettyRequestListener listener = new JettyRequestListener(finalRequest.getUri());
+        jettyRequest.onRequestQueued(request -> listener.onRequestQueued());
         jettyRequest.onRequestBegin(request -> listener.onRequestBegin());
         jettyRequest.onRequestSuccess(request -> listener.onRequestEnd());
         jettyRequest.onResponseBegin(response -> listener.onResponseBegin());
@@ -479,12 +581,25 @@ public class JettyHttpClient
             jettyRequest.header(entry.getKey(), entry.getValue());
         }
 
+        // only decode responses to requests where the client did the negotiating;
+        // a caller that sets its own Accept-Encoding gets the encoded body
+        if (compressionEnabled && decodeContent && !hasHeader(finalRequest, HttpHeader.ACCEPT_ENCODING)) {
+            jettyRequest.header(HttpHeader.ACCEPT_ENCODING, "gzip, deflate");
+            jettyRequest.attribute(DECODE_CONTENT_KEY, Boolean.TRUE);
+        }
+
         BodySource bodySource = finalRequest.getBodySource();
         if (bodySource != null) {
             if (bodySource instanceof StaticBodyGenerator) {
-                StaticBodyGenerator staticBodyGenerator = (StaticBodyGenerator) bodySource;
-                jettyRequest.content(new BytesContentProvider(staticBodyGenerator.getBody()));
-                bytesWritten.addAndGet(staticBodyGenerator.getBody().length);
+                byte[] body = ((StaticBodyGenerator) bodySource).getBody();
+                if (requestCompressionThreshold != null && body.length >= requestCompressionThreshold && !hasHeader(finalRequest, HttpHeader.CONTENT_ENCODING)) {
+                    byte[] compressed = gzip(body);
+                    stats.recordRequestCompressed(body.length, compressed.length);
+                    jettyRequest.header(HttpHeader.CONTENT_ENCODING, "gzip");
+                    body = compressed;
+                }
+                jettyRequest.content(new BytesContentProvider(body));
+                bytesWritten.addAndGet(body.length);
             }
             else if (bodySource instanceof InputStreamBodySource) {
                 jettyRequest.content(new InputStreamBodySourceContentProvider((InputStreamBodySource) bodySource, bytesWritten));
@@ -507,6 +622,72 @@ public class JettyHttpClient
         return jettyRequest;
     }
 
+    private static boolean hasHeader(Request request, HttpHeader header)
+    {
+        for (String name : request.getHeaders().keySet()) {
+            if (header.is(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] body)
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean isDecodeContent(org.eclipse.jetty.client.api.Request jettyRequest)
+    {
+        return jettyRequest.getAttributes().containsKey(DECODE_CONTENT_KEY);
+    }
+
+    /**
+     * Called once for each destination as Jetty creates it, so that requests
+     * find the stats on their destination instead of looking them up.
+     */
+    private DestinationStats newDestinationStats(Origin origin)
+    {
+        return destinationStats.destination(destinationUri(origin));
+    }
+
+    private static URI destinationUri(Origin origin)
+    {
+        Origin.Address address = origin.getAddress();
+        return URI.create(origin.getScheme() + "://" + address.getHost() + ":" + address.getPort());
+    }
+
+    /**
+     * Passes the destination's stats to the request's listener. Called as
+     * the exchange is queued, before the listener is notified.
+     */
+    @Nullable
+    private static DestinationStats getDestinationStats(Destination destination)
+    {
+        if (destination instanceof StatsHttpDestination) {
+            return ((StatsHttpDestination) destination).stats;
+        }
+        if (destination instanceof Http2Destination) {
+            return ((Http2Destination) destination).stats;
+        }
+        return null;
+    }
+
+    private static void attachDestinationStats(HttpExchange exchange, DestinationStats stats)
+    {
+        JettyRequestListener listener = (JettyRequestListener) exchange.getRequest().getAttributes().get(PLATFORM_STATS_KEY);
+        if (listener != null) {
+            listener.setDestinationStats(stats);
+        }
+    }
+
     public List<HttpRequestFilter> getRequestFilters()
     {
         return requestFilters;
@@ -520,6 +701,7 @@ public class JettyHttpClient
         return stats;
     }
 
+    @Deprecated
     @Managed
     @Nested
     public CachedDistribution getActiveConnectionsPerDestination()
@@ -527,6 +709,7 @@ public class JettyHttpClient
         return activeConnectionsPerDestination;
     }
 
+    @Deprecated
     @Managed
     @Nested
     public CachedDistribution getIdleConnectionsPerDestination()
@@ -534,6 +717,15 @@ public class JettyHttpClient
         return idleConnectionsPerDestination;
     }
 
+    @Deprecated
+    @Managed
+    @Nested
+    public CachedDistribution getActiveStreamsPerDestination()
+    {
+        return activeStreamsPerDestination;
+    }
+
+    @Deprecated
     @Managed
     @Nested
     public CachedDistribution getQueuedRequestsPerDestination()
@@ -541,6 +733,7 @@ public class JettyHttpClient
         return queuedRequestsPerDestination;
     }
 
+    @Deprecated
     @Managed
     @Nested
     public CachedDistribution getCurrentQueuedTime()
@@ -548,6 +741,7 @@ public class JettyHttpClient
         return currentQueuedTime;
     }
 
+    @Deprecated
     @Managed
     @Nested
     public CachedDistribution getCurrentRequestTime()
@@ -555,6 +749,7 @@ public class JettyHttpClient
         return currentRequestTime;
     }
 
+    @Deprecated
     @Managed
     @Nested
     public CachedDistribution getCurrentRequestSendTime()
@@ -562,6 +757,7 @@ public class JettyHttpClient
         return currentRequestSendTime;
     }
 
+    @Deprecated
     @Managed
     @Nested
     public CachedDistribution getCurrentResponseWaitTime()
@@ -569,6 +765,7 @@ public class JettyHttpClient
         return currentResponseWaitTime;
     }
 
+    @Deprecated
     @Managed
     @Nested
     public CachedDistribution getCurrentResponseProcessTime()
@@ -628,18 +825,23 @@ public class JettyHttpClient
 
     private static List<org.eclipse.jetty.client.api.Request> getRequestForDestination(Destination destination)
     {
-        PoolingHttpDestination<?> poolingHttpDestination = (PoolingHttpDestination<?>) destination;
-        Queue<HttpExchange> httpExchanges = poolingHttpDestination.getHttpExchanges();
+        Queue<HttpExchange> httpExchanges = ((HttpDestination) destination).getHttpExchanges();
 
         List<org.eclipse.jetty.client.api.Request> requests = httpExchanges.stream()
                 .map(HttpExchange::getRequest)
                 .collect(Collectors.toList());
 
-        poolingHttpDestination.getConnectionPool().getActiveConnections().stream()
-                .filter(HttpConnectionOverHTTP.class::isInstance)
-                .map(connection -> ((HttpConnectionOverHTTP) connection).getHttpChannel().getHttpExchange())
-                .filter(exchange -> exchange != null)
-                .forEach(exchange -> requests.add(exchange.getRequest()));
+        if (destination instanceof PoolingHttpDestination) {
+            ((PoolingHttpDestination<?>) destination).getConnectionPool().getActiveConnections().stream()
+                    .filter(HttpConnectionOverHTTP.class::isInstance)
+                    .map(connection -> ((HttpConnectionOverHTTP) connection).getHttpChannel().getHttpExchange())
+                    .filter(exchange -> exchange != null)
+                    .forEach(exchange -> requests.add(exchange.getRequest()));
+        }
+        else if (destination instanceof Http2Destination) {
+            ((Http2Destination) destination).getActiveExchanges()
+                    .forEach(exchange -> requests.add(exchange.getRequest()));
+        }
 
         return requests.stream().filter(request -> request != null).collect(Collectors.toList());
     }
@@ -711,13 +913,40 @@ public class JettyHttpClient
     {
         private final Response response;
         private final CountingInputStream inputStream;
+        private final ContentDecodingInputStream decodingInputStream;
         private final ListMultimap<HeaderName, String> headers;
 
-        JettyResponse(Response response, InputStream inputStream)
+        JettyResponse(Response response, InputStream inputStream, boolean decodeContent, long maxContentLength)
         {
             this.response = response;
-            this.inputStream = new CountingInputStream(inputStream);
-            this.headers = toHeadersMap(response.getHeaders());
+            if (decodeContent) {
+                decodingInputStream = ContentDecodingInputStream.forContentEncoding(response.getHeaders().get(HttpHeader.CONTENT_ENCODING), inputStream, maxContentLength);
+            }
+            else {
+                decodingInputStream = null;
+            }
+            if (decodingInputStream == null) {
+                this.inputStream = new CountingInputStream(inputStream);
+                this.headers = toHeadersMap(response.getHeaders(), false);
+            }
+            else {
+                this.inputStream = new CountingInputStream(decodingInputStream);
+                this.headers = toHeadersMap(response.getHeaders(), true);
+            }
+        }
+
+        /**
+         * Records the compressed and decompressed bytes that the response
+         * handler read. Bytes of a body the handler did not read to the end
+         * are not counted, as they are never decoded.
+         */
+        void complete(RequestStats stats)
+        {
+            if (decodingInputStream != null) {
+                stats.recordResponseDecompressed(decodingInputStream.getEncodedBytesRead(), inputStream.getCount());
+                // ends the decoder's Inflater, releasing its native memory without waiting for finalization
+                Closeables.closeQuietly(decodingInputStream);
+            }
         }
 
         @Override
@@ -760,10 +989,14 @@ public class JettyHttpClient
                     .toString();
         }
 
-        private static ListMultimap<HeaderName, String> toHeadersMap(HttpFields headers)
+        private static ListMultimap<HeaderName, String> toHeadersMap(HttpFields headers, boolean decoded)
         {
             ImmutableListMultimap.Builder<HeaderName, String> builder = ImmutableListMultimap.builder();
             for (String name : headers.getFieldNamesCollection()) {
+                // the handler sees the decoded body, so the encoded length and coding no longer apply
+                if (decoded && (HttpHeader.CONTENT_ENCODING.is(name) || HttpHeader.CONTENT_LENGTH.is(name))) {
+                    continue;
+                }
                 for (String value : headers.getValuesList(name)) {
                     builder.put(HeaderName.of(name), value);
                 }
@@ -772,6 +1005,71 @@ public class JettyHttpClient
         }
     }
 
+    private static class StreamingJettyResponse
+            implements com.proofpoint.http.client.Response
+    {
+        private final Response response;
+        private final ListMultimap<HeaderName, String> headers;
+        private final long headersReceived = System.nanoTime();
+        private final AtomicLong bytesRead = new AtomicLong();
+
+        StreamingJettyResponse(Response response)
+        {
+            this.response = response;
+            this.headers = JettyResponse.toHeadersMap(response.getHeaders(), false);
+        }
+
+        @Override
+        public int getStatusCode()
+        {
+            return response.getStatus();
+        }
+
+        @Override
+        public String getStatusMessage()
+        {
+            return response.getReason();
+        }
+
+        @Override
+        public ListMultimap<HeaderName, String> getHeaders()
+        {
+            return headers;
+        }
+
+        @Override
+        public long getBytesRead()
+        {
+            return bytesRead.get();
+        }
+
+        void addBytesRead(long bytes)
+        {
+            bytesRead.addAndGet(bytes);
+        }
+
+        long getHeadersReceived()
+        {
+            return headersReceived;
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            throw new IllegalStateException("Response body is passed to the BodyConsumer");
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("statusCode", getStatusCode())
+                    .add("statusMessage", getStatusMessage())
+                    .add("headers", getHeaders())
+                    .toString();
+        }
+    }
+
     enum JettyAsyncHttpState
     {
         WAITING_FOR_CONNECTION,
@@ -791,16 +1089,16 @@ public class JettyHttpClient
         private final AtomicReference<JettyAsyncHttpState> state = new AtomicReference<>(JettyAsyncHttpState.WAITING_FOR_CONNECTION);
         private final Request request;
         private final org.eclipse.jetty.client.api.Request jettyRequest;
-        private final ResponseHandler<T, E> responseHandler;
+        private final ExceptionHandler<T, E> exceptionHandler;
         private final AtomicLong bytesWritten;
         private final RequestStats stats;
         private final TraceToken traceToken;
 
-        JettyResponseFuture(Request request, org.eclipse.jetty.client.api.Request jettyRequest, ResponseHandler<T, E> responseHandler, AtomicLong bytesWritten, RequestStats stats)
+        JettyResponseFuture(Request request, org.eclipse.jetty.client.api.Request jettyRequest, ExceptionHandler<T, E> exceptionHandler, AtomicLong bytesWritten, RequestStats stats)
         {
             this.request = request;
             this.jettyRequest = jettyRequest;
-            this.responseHandler = responseHandler;
+            this.exceptionHandler = exceptionHandler;
             this.bytesWritten = bytesWritten;
             this.stats = stats;
             traceToken = getCurrentTraceToken();
@@ -828,45 +1126,62 @@ public class JettyHttpClient
             }
         }
 
-        protected void completed(Response response, InputStream content)
+        protected void completed(Response response, InputStream content, ResponseHandler<T, E> responseHandler)
+        {
+            // this time will not include the data fetching portion of the response,
+            // since the response is fully cached in memory at this point
+            long responseStart = System.nanoTime();
+
+            JettyResponse jettyResponse = new JettyResponse(response, content, isDecodeContent(jettyRequest), maxContentLength);
+            completed(jettyResponse, responseStart, () -> responseHandler.handle(request, jettyResponse));
+        }
+
+        void completed(StreamingJettyResponse response, BodyConsumer<T, E> bodyConsumer)
+        {
+            completed(response, response.getHeadersReceived(), bodyConsumer::onComplete);
+        }
+
+        void handlerFailed(StreamingJettyResponse response, Throwable throwable)
         {
             if (state.get() == JettyAsyncHttpState.CANCELED) {
                 return;
             }
 
+            recordRequestComplete(stats, request, requestStart, bytesWritten.get(), response, response.getHeadersReceived());
+            try (TraceTokenScope ignored = registerTraceToken(traceToken)) {
+                // this will be an instance of E from the response handler or an unchecked exception
+                storeException(throwable);
+            }
+        }
+
+        private void completed(com.proofpoint.http.client.Response response, long responseStart, ResponseProcessor<T, E> processor)
+        {
+            if (state.get() == JettyAsyncHttpState.CANCELED) {
+                return;
+            }
+
+            state.set(JettyAsyncHttpState.PROCESSING_RESPONSE);
             try (TraceTokenScope ignored = registerTraceToken(traceToken)) {
                 T value;
                 try {
-                    value = processResponse(response, content);
+                    value = processor.process();
                 }
                 catch (Throwable e) {
                     // this will be an instance of E from the response handler or an Error
                     storeException(e);
                     return;
                 }
+                finally {
+                    recordRequestComplete(stats, request, requestStart, bytesWritten.get(), response, responseStart);
+                }
                 state.set(JettyAsyncHttpState.DONE);
                 set(value);
             }
         }
 
-        private T processResponse(Response response, InputStream content)
-                throws E
+        void headersReceived()
         {
-            // this time will not include the data fetching portion of the response,
-            // since the response is fully cached in memory at this point
-            long responseStart = System.nanoTime();
-
-            state.set(JettyAsyncHttpState.PROCESSING_RESPONSE);
-            JettyResponse jettyResponse = null;
-            T value;
-            try {
-                jettyResponse = new JettyResponse(response, content);
-                value = responseHandler.handle(request, jettyResponse);
-            }
-            finally {
-                recordRequestComplete(stats, request, requestStart, bytesWritten.get(), jettyResponse, responseStart);
-            }
-            return value;
+            state.compareAndSet(JettyAsyncHttpState.WAITING_FOR_CONNECTION, JettyAsyncHttpState.PROCESSING_RESPONSE);
         }
 
         protected void failed(Throwable throwable)
@@ -881,7 +1196,7 @@ public class JettyHttpClient
                         if (throwable instanceof RejectedExecutionException) {
                             maybeLogJettyState();
                         }
-                        T value = responseHandler.handleException(request, (Exception) throwable);
+                        T value = exceptionHandler.handleException(request, (Exception) throwable);
                         // handler returned a value, store it in the future
                         state.set(JettyAsyncHttpState.DONE);
                         set(value);
@@ -925,7 +1240,19 @@ public class JettyHttpClient
         }
     }
 
-    private static void recordRequestComplete(RequestStats requestStats, Request request, long requestStart, long bytesWritten, JettyResponse response, long responseStart)
+    private interface ExceptionHandler<T, E extends Exception>
+    {
+        T handleException(Request request, Exception exception)
+                throws E;
+    }
+
+    private interface ResponseProcessor<T, E extends Exception>
+    {
+        T process()
+                throws E;
+    }
+
+    private static void recordRequestComplete(RequestStats requestStats, Request request, long requestStart, long bytesWritten, com.proofpoint.http.client.Response response, long responseStart)
     {
         if (response == null) {
             return;
@@ -940,6 +1267,10 @@ public class JettyHttpClient
                 response.getBytesRead(),
                 requestProcessingTime,
                 responseProcessingTime);
+
+        if (response instanceof JettyResponse) {
+            ((JettyResponse) response).complete(requestStats);
+        }
     }
 
     private static class InputStreamBodySourceContentProvider extends InputStreamContentProvider
@@ -1192,10 +1523,11 @@ public class JettyHttpClient
         }
     }
 
-    private static class BufferingResponseListener
+    private static class BufferingResponseListener<T, E extends Exception>
             extends Listener.Adapter
     {
-        private final JettyResponseFuture<?, ?> future;
+        private final JettyResponseFuture<T, E> future;
+        private final ResponseHandler<T, E> responseHandler;
         private final int maxLength;
 
         @GuardedBy("this")
@@ -1203,9 +1535,10 @@ public class JettyHttpClient
         @GuardedBy("this")
         private int size;
 
-        BufferingResponseListener(JettyResponseFuture<?, ?> future, int maxLength)
+        BufferingResponseListener(JettyResponseFuture<T, E> future, ResponseHandler<T, E> responseHandler, int maxLength)
         {
             this.future = checkNotNull(future, "future is null");
+            this.responseHandler = checkNotNull(responseHandler, "responseHandler is null");
             Preconditions.checkArgument(maxLength > 0, "maxLength must be greater than zero");
             this.maxLength = maxLength;
         }
@@ -1251,15 +1584,98 @@ public class JettyHttpClient
                 future.failed(throwable);
             }
             else {
-                future.completed(result.getResponse(), new ByteArrayInputStream(buffer, 0, size));
+                future.completed(result.getResponse(), new ByteArrayInputStream(buffer, 0, size), responseHandler);
             }
         }
     }
 
+    private static class StreamingResponseListener<T, E extends Exception>
+            extends Listener.Adapter
+    {
+        private final JettyResponseFuture<T, E> future;
+        private final StreamingResponseHandler<T, E> responseHandler;
+
+        @GuardedBy("this")
+        private StreamingJettyResponse response;
+        @GuardedBy("this")
+        private BodyConsumer<T, E> bodyConsumer;
+        @GuardedBy("this")
+        private Throwable handlerFailure;
+
+        StreamingResponseListener(JettyResponseFuture<T, E> future, StreamingResponseHandler<T, E> responseHandler)
+        {
+            this.future = checkNotNull(future, "future is null");
+            this.responseHandler = checkNotNull(responseHandler, "responseHandler is null");
+        }
+
+        @Override
+        public synchronized void onHeaders(Response response)
+        {
+            this.response = new StreamingJettyResponse(response);
+            future.headersReceived();
+            try (TraceTokenScope ignored = registerTraceToken(future.traceToken)) {
+                bodyConsumer = responseHandler.handleHeaders(future.request, this.response);
+            }
+            catch (Throwable e) {
+                handlerFailure = e;
+                response.abort(e);
+            }
+        }
+
+        @Override
+        public synchronized void onContent(Response response, ByteBuffer content, Callback callback)
+        {
+            if (bodyConsumer == null) {
+                // the handler failed and the response is being aborted
+                callback.succeeded();
+                return;
+            }
+
+            this.response.addBytesRead(content.remaining());
+            AtomicBoolean released = new AtomicBoolean();
+            try (TraceTokenScope ignored = registerTraceToken(future.traceToken)) {
+                bodyConsumer.onContent(content, () -> {
+                    if (released.compareAndSet(false, true)) {
+                        callback.succeeded();
+                    }
+                });
+            }
+            catch (Throwable e) {
+                handlerFailure = e;
+                bodyConsumer = null;
+                if (released.compareAndSet(false, true)) {
+                    callback.failed(e);
+                }
+                else {
+                    response.abort(e);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void onComplete(Result result)
+        {
+            if (handlerFailure != null) {
+                future.handlerFailed(response, handlerFailure);
+            }
+            else if (result.getFailure() != null) {
+                future.failed(result.getFailure());
+            }
+            else {
+                future.completed(response, bodyConsumer);
+            }
+        }
+    }
+
+    /**
+     * @deprecated Backs the deprecated JMX distributions, which will be
+     * removed in the next release.
+     */
     /*
      * This class is needed because jmxutils only fetches a nested instance object once and holds on to it forever.
      * todo remove this when https://github.com/martint/jmxutils/issues/26 is implemented
      */
+    @Deprecated
     @ThreadSafe
     public static class CachedDistribution
     {
@@ -1278,7 +1694,7 @@ public class JettyHttpClient
         public synchronized Distribution getDistribution()
         {
             // refresh stats only once a second
-            if (NANOSECONDS.toMillis(System.nanoTime() - lastUpdate) > 1000) {
+            if (distribution == null || NANOSECONDS.toMillis(System.nanoTime() - lastUpdate) > 1000) {
                 this.distribution = distributionSupplier.get();
                 this.lastUpdate = System.nanoTime();
             }
@@ -1380,23 +1796,32 @@ public class JettyHttpClient
     {
         enum State
         {
-            CREATED, SENDING_REQUEST, AWAITING_RESPONSE, READING_RESPONSE, FINISHED
+            CREATED, QUEUED, SENDING_REQUEST, AWAITING_RESPONSE, READING_RESPONSE, FINISHED
         }
 
         private final AtomicReference<State> state = new AtomicReference<>(State.CREATED);
 
         private final URI uri;
+        @GuardedBy("this")
+        private DestinationStats destinationStats;
         private final long created = System.nanoTime();
         private final AtomicLong requestStarted = new AtomicLong();
         private final AtomicLong requestFinished = new AtomicLong();
         private final AtomicLong responseStarted = new AtomicLong();
         private final AtomicLong responseFinished = new AtomicLong();
+        @GuardedBy("this")
+        private Runnable finishedAction;
 
         JettyRequestListener(URI uri)
         {
             this.uri = uri;
         }
 
+        synchronized void setDestinationStats(DestinationStats destinationStats)
+        {
+            this.destinationStats = destinationStats;
+        }
+
         public URI getUri()
         {
             return uri;
@@ -1432,6 +1857,11 @@ public class JettyHttpClient
             return responseFinished.get();
         }
 
+        public void onRequestQueued()
+        {
+            changeState(State.QUEUED);
+        }
+
         public void onRequestBegin()
         {
             changeState(State.SENDING_REQUEST);
@@ -1470,34 +1900,67 @@ public class JettyHttpClient
             responseFinished.compareAndSet(0, now);
         }
 
+        /**
+         * Run an action once the request finishes, or now if it already has.
+         */
+        public void onFinished(Runnable action)
+        {
+            synchronized (this) {
+                if (state.get() != State.FINISHED) {
+                    finishedAction = action;
+                    return;
+                }
+            }
+            action.run();
+        }
+
         private synchronized void changeState(State newState)
         {
-            if (state.get().ordinal() < newState.ordinal()) {
-                state.set(newState);
+            State previousState = state.get();
+            if (previousState.ordinal() >= newState.ordinal()) {
+                return;
+            }
+            state.set(newState);
+
+            if (newState == State.FINISHED && finishedAction != null) {
+                finishedAction.run();
+                finishedAction = null;
+            }
+
+            if (destinationStats == null || (previousState == State.CREATED && newState == State.FINISHED)) {
+                // rejected before reaching the destination queue
+                return;
+            }
+
+            // keep the destination counters in step with the transition
+            if (previousState == State.CREATED) {
+                destinationStats.requestQueued(created);
+            }
+            boolean wasStarted = previousState.ordinal() > State.QUEUED.ordinal();
+            if (newState == State.FINISHED) {
+                destinationStats.requestFinished(wasStarted, created);
+            }
+            else if (!wasStarted && newState != State.QUEUED) {
+                destinationStats.requestStarted();
             }
         }
     }
 
-    private static class ConnectionPoolDistribution
-            extends CachedDistribution
+    private static class UnexportedStats
+            implements JettyHttpClientStats
     {
-        interface Processor
+        private final ConcurrentMap<URI, DestinationStats> destinations = new ConcurrentHashMap<>();
+
+        @Override
+        public DestinationStats destination(URI destination)
         {
-            void process(Distribution distribution, DuplexConnectionPool pool);
+            return destinations.computeIfAbsent(destination, uri -> new DestinationStats());
         }
 
-        ConnectionPoolDistribution(HttpClient httpClient, Processor processor)
+        @Override
+        public void destinationRemoved(URI destination, DestinationStats stats)
         {
-            super(() -> {
-                Distribution distribution = new Distribution();
-                httpClient.getDestinations().stream()
-                        .filter(PoolingHttpDestination.class::isInstance)
-                        .map(destination -> (PoolingHttpDestination<?>) destination)
-                        .map(PoolingHttpDestination::getConnectionPool)
-                        .filter(pool -> pool != null)
-                        .forEach(pool -> processor.process(distribution, pool));
-                return distribution;
-            });
+            destinations.remove(destination, stats);
         }
     }
 
@@ -1506,7 +1969,7 @@ public class JettyHttpClient
     {
         interface Processor
         {
-            void process(Distribution distribution, PoolingHttpDestination<?> destination);
+            void process(Distribution distribution, DestinationStats stats);
         }
 
         DestinationDistribution(HttpClient httpClient, Processor processor)
@@ -1514,9 +1977,9 @@ public class JettyHttpClient
             super(() -> {
                 Distribution distribution = new Distribution();
                 httpClient.getDestinations().stream()
-                        .filter(PoolingHttpDestination.class::isInstance)
-                        .map(destination -> (PoolingHttpDestination<?>) destination)
-                        .forEach(destination -> processor.process(distribution, destination));
+                        .map(JettyHttpClient::getDestinationStats)
+                        .filter(stats -> stats != null)
+                        .forEach(stats -> processor.process(distribution, stats));
                 return distribution;
             });
         }
@@ -1536,8 +1999,7 @@ public class JettyHttpClient
                 long now = System.nanoTime();
                 Distribution distribution = new Distribution();
                 httpClient.getDestinations().stream()
-                        .filter(PoolingHttpDestination.class::isInstance)
-                        .map(destination -> (PoolingHttpDestination<?>) destination)
+                        .filter(HttpDestination.class::isInstance)
                         .map(JettyHttpClient::getRequestListenersForDestination)
                         .flatMap(List::stream)
                         .forEach(listener -> processor.process(distribution, listener, now));
@@ -1546,15 +2008,35 @@ public class JettyHttpClient
         }
     }
 
-    private static class LimitQueuedToAvailableConnectionsHttpDestination
+    private static class StatsHttpDestination
             extends HttpDestinationOverHTTP
+    {
+        private final DestinationStats stats;
+
+        StatsHttpDestination(HttpClient httpClient, Origin origin, DestinationStats stats)
+        {
+            super(httpClient, origin);
+            this.stats = stats;
+            stats.setDestination(this);
+        }
+
+        @Override
+        protected boolean enqueue(Queue<HttpExchange> queue, HttpExchange exchange)
+        {
+            attachDestinationStats(exchange, stats);
+            return super.enqueue(queue, exchange);
+        }
+    }
+
+    private static class LimitQueuedToAvailableConnectionsHttpDestination
+            extends StatsHttpDestination
     {
         private final Object lock = new Object();
         private final int limit;
 
-        LimitQueuedToAvailableConnectionsHttpDestination(int limit, HttpClient httpClient, Origin origin)
+        LimitQueuedToAvailableConnectionsHttpDestination(int limit, HttpClient httpClient, Origin origin, DestinationStats stats)
         {
-            super(httpClient, origin);
+            super(httpClient, origin, stats);
             this.limit = limit;
         }
 
@@ -1573,4 +2055,113 @@ public class JettyHttpClient
             }
         }
     }
+
+    private static class Http2ClientTransport
+            extends HttpClientTransportOverHTTP2
+    {
+        private final int maxConcurrentStreams;
+        private final Function<Origin, DestinationStats> statsFactory;
+        private HttpClient httpClient;
+
+        Http2ClientTransport(HTTP2Client client, int maxConcurrentStreams, Function<Origin, DestinationStats> statsFactory)
+        {
+            super(client);
+            this.maxConcurrentStreams = maxConcurrentStreams;
+            this.statsFactory = statsFactory;
+        }
+
+        @Override
+        public void setHttpClient(HttpClient httpClient)
+        {
+            super.setHttpClient(httpClient);
+            this.httpClient = httpClient;
+        }
+
+        @Override
+        public HttpDestination newHttpDestination(Origin origin)
+        {
+            return new Http2Destination(maxConcurrentStreams, httpClient, origin, statsFactory.apply(origin));
+        }
+    }
+
+    static class Http2Destination
+            extends HttpDestinationOverHTTP2
+    {
+        private final Set<HttpExchange> activeExchanges = ConcurrentHashMap.newKeySet();
+        private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+        private final int maxConcurrentStreams;
+        private final DestinationStats stats;
+
+        Http2Destination(int maxConcurrentStreams, HttpClient httpClient, Origin origin, DestinationStats stats)
+        {
+            super(httpClient, origin);
+            this.maxConcurrentStreams = maxConcurrentStreams;
+            this.stats = stats;
+            setMaxRequestsPerConnection(maxConcurrentStreams);
+            stats.setDestination(this);
+        }
+
+        @Override
+        public void setMaxRequestsPerConnection(int maxRequestsPerConnection)
+        {
+            // the server's SETTINGS_MAX_CONCURRENT_STREAMS may lower the limit but not raise it
+            super.setMaxRequestsPerConnection(Math.min(maxRequestsPerConnection, maxConcurrentStreams));
+        }
+
+        @Override
+        protected boolean enqueue(Queue<HttpExchange> queue, HttpExchange exchange)
+        {
+            attachDestinationStats(exchange, stats);
+            return super.enqueue(queue, exchange);
+        }
+
+        @Override
+        public void succeeded(Connection connection)
+        {
+            connections.add(connection);
+            super.succeeded(connection);
+        }
+
+        @Override
+        public void close(Connection connection)
+        {
+            connections.remove(connection);
+            super.close(connection);
+        }
+
+        @Override
+        protected SendFailure send(HttpConnectionOverHTTP2 connection, HttpExchange exchange)
+        {
+            SendFailure failure = super.send(connection, exchange);
+            if (failure == null) {
+                JettyRequestListener listener = (JettyRequestListener) exchange.getRequest().getAttributes().get(PLATFORM_STATS_KEY);
+                if (listener != null) {
+                    activeExchanges.add(exchange);
+                    listener.onFinished(() -> activeExchanges.remove(exchange));
+                }
+            }
+            return failure;
+        }
+
+        List<HttpExchange> getActiveExchanges()
+        {
+            return ImmutableList.copyOf(activeExchanges);
+        }
+
+        int getActiveStreamCount()
+        {
+            return activeExchanges.size();
+        }
+
+        int getActiveConnectionCount()
+        {
+            // a multiplexed connection is active while it carries a stream
+            return activeExchanges.isEmpty() ? 0 : connections.size();
+        }
+
+        int getIdleConnectionCount()
+        {
+            return activeExchanges.isEmpty() ? connections.size() : 0;
+        }
+    }
 }
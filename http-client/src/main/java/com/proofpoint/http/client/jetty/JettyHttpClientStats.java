@@ -0,0 +1,33 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.jetty;
+
+import java.net.URI;
+
+public interface JettyHttpClientStats
+{
+    DestinationStats destination(URI destination);
+
+    /**
+     * Called when the client drops an idle destination, so that its stats
+     * are no longer reported. It is called before the destination is
+     * removed, so a later call to {@link #destination(URI)} for the same URI
+     * is for a new destination.
+     */
+    default void destinationRemoved(URI destination, DestinationStats stats)
+    {
+    }
+}
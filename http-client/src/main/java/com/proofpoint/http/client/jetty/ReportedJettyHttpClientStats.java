@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.jetty;
+
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.reporting.ReportExporter;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reports the stats of each destination, tagged with its target URI, for
+ * as long as the client keeps the destination.
+ */
+public class ReportedJettyHttpClientStats
+        implements JettyHttpClientStats
+{
+    private final ReportExporter reportExporter;
+    private final String namePrefix;
+    private final ConcurrentMap<URI, DestinationStats> destinations = new ConcurrentHashMap<>();
+
+    public ReportedJettyHttpClientStats(ReportExporter reportExporter, String namePrefix)
+    {
+        this.reportExporter = requireNonNull(reportExporter, "reportExporter is null");
+        this.namePrefix = requireNonNull(namePrefix, "namePrefix is null");
+    }
+
+    @Override
+    public DestinationStats destination(URI destination)
+    {
+        return destinations.computeIfAbsent(destination, uri -> {
+            DestinationStats stats = new DestinationStats();
+            reportExporter.export(stats, false, namePrefix, ImmutableMap.of("targetUri", uri.toString()));
+            return stats;
+        });
+    }
+
+    @Override
+    public void destinationRemoved(URI destination, DestinationStats stats)
+    {
+        // a new destination for the same origin may already have replaced it
+        if (destinations.remove(destination, stats)) {
+            reportExporter.unexportObject(stats);
+        }
+    }
+}
@@ -44,7 +44,7 @@ public final class EchoServlet
     private int responseStatusCode = 200;
     private String responseStatusMessage;
     private final ListMultimap<String, String> responseHeaders = ArrayListMultimap.create();
-    private String responseBody;
+    private byte[] responseBody;
     private final CountDownLatch countDownLatch = new CountDownLatch(1);
 
     @Override
@@ -92,7 +92,7 @@ public final class EchoServlet
         }
 
         if (responseBody != null) {
-            response.getOutputStream().write(responseBody.getBytes(Charsets.UTF_8));
+            response.getOutputStream().write(responseBody);
         }
     }
 
@@ -137,6 +137,16 @@ public final class EchoServlet
     }
 
     public void setResponseBody(String responseBody)
+    {
+        if (responseBody == null) {
+            this.responseBody = null;
+        }
+        else {
+            this.responseBody = responseBody.getBytes(Charsets.UTF_8);
+        }
+    }
+
+    public void setResponseBody(byte[] responseBody)
     {
         this.responseBody = responseBody;
     }
@@ -0,0 +1,352 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.google.common.collect.ImmutableList;
+import com.proofpoint.http.client.jetty.JettyHttpClient;
+import com.proofpoint.http.client.testing.TestingHttpClient;
+import com.proofpoint.testing.TestingTicker;
+import com.proofpoint.units.DataSize;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.weakref.jmx.MBeanExporter;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.google.common.base.Preconditions.checkState;
+import static com.proofpoint.http.client.Request.Builder.prepareGet;
+import static com.proofpoint.http.client.Request.Builder.preparePost;
+import static com.proofpoint.http.client.StringResponseHandler.createStringResponseHandler;
+import static com.proofpoint.http.client.testing.TestingResponse.mockResponse;
+import static com.proofpoint.units.DataSize.Unit.BYTE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static javax.management.MBeanServerFactory.newMBeanServer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestCachingHttpClient
+{
+    private static final URI URI = java.net.URI.create("http://example.com/config");
+
+    private TestingTicker ticker;
+    private Queue<Response> responses;
+    private List<Request> requests;
+    private TestingHttpClient testingClient;
+    private CachingHttpClient client;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        ticker = new TestingTicker();
+        responses = new ConcurrentLinkedQueue<>();
+        requests = new ArrayList<>();
+        testingClient = new TestingHttpClient(request -> {
+            requests.add(request);
+            Response response = responses.poll();
+            checkState(response != null, "unexpected request");
+            return response;
+        });
+        client = new CachingHttpClient(testingClient, new CachingHttpClientConfig(), ticker);
+    }
+
+    @Test
+    public void testFreshResponseServedFromCache()
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body("first").build());
+
+        assertEquals(get(), "first");
+        ticker.elapseTime(9, SECONDS);
+        assertEquals(get(), "first");
+
+        assertEquals(requests.size(), 1);
+        assertEquals(client.getHits().getTotalCount(), 1);
+        assertEquals(client.getMisses().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testAsyncHit()
+            throws Exception
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body("first").build());
+
+        assertEquals(client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler()).get().getBody(), "first");
+        assertEquals(client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler()).get().getBody(), "first");
+
+        assertEquals(requests.size(), 1);
+        assertEquals(client.getHits().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testExpiredResponseFetchedAgain()
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body("first").build());
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body("second").build());
+
+        assertEquals(get(), "first");
+        ticker.elapseTime(10, SECONDS);
+        assertEquals(get(), "second");
+
+        assertEquals(requests.size(), 2);
+        assertNull(requests.get(1).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testRevalidateWithETag()
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").header("ETag", "\"v1\"").body("first").build());
+        responses.add(mockResponse(HttpStatus.NOT_MODIFIED));
+
+        assertEquals(get(), "first");
+        ticker.elapseTime(10, SECONDS);
+        assertEquals(get(), "first");
+
+        assertEquals(requests.size(), 2);
+        assertEquals(requests.get(1).getHeader("If-None-Match"), "\"v1\"");
+        assertEquals(client.getRevalidations().getTotalCount(), 1);
+
+        // the 304 restarts the max-age
+        ticker.elapseTime(9, SECONDS);
+        assertEquals(get(), "first");
+        assertEquals(requests.size(), 2);
+    }
+
+    @Test
+    public void testRevalidationReturnsNewBody()
+    {
+        responses.add(mockResponse().header("Cache-Control", "no-cache").header("ETag", "\"v1\"").body("first").build());
+        responses.add(mockResponse().header("Cache-Control", "no-cache").header("ETag", "\"v2\"").body("second").build());
+        responses.add(mockResponse(HttpStatus.NOT_MODIFIED));
+
+        assertEquals(get(), "first");
+        assertEquals(get(), "second");
+        assertEquals(get(), "second");
+
+        assertEquals(requests.get(1).getHeader("If-None-Match"), "\"v1\"");
+        assertEquals(requests.get(2).getHeader("If-None-Match"), "\"v2\"");
+        assertEquals(client.getHits().getTotalCount(), 0);
+        assertEquals(client.getMisses().getTotalCount(), 2);
+        assertEquals(client.getRevalidations().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testNoStoreNotCached()
+    {
+        responses.add(mockResponse().header("Cache-Control", "no-store, max-age=10").header("ETag", "\"v1\"").body("first").build());
+        responses.add(mockResponse().body("second").build());
+
+        assertEquals(get(), "first");
+        assertEquals(get(), "second");
+
+        assertNull(requests.get(1).getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void testWithoutFreshnessNotCached()
+    {
+        responses.add(mockResponse().body("first").build());
+        responses.add(mockResponse().body("second").build());
+
+        assertEquals(get(), "first");
+        assertEquals(get(), "second");
+        assertEquals(client.getCachedResponses(), 0);
+    }
+
+    @Test
+    public void testErrorNotCached()
+    {
+        responses.add(mockResponse().status(HttpStatus.SERVICE_UNAVAILABLE).header("Cache-Control", "max-age=10").body("error").build());
+        responses.add(mockResponse().body("second").build());
+
+        assertEquals(get(), "error");
+        assertEquals(get(), "second");
+    }
+
+    @Test
+    public void testRequestNoCacheRevalidates()
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").header("ETag", "\"v1\"").body("first").build());
+        responses.add(mockResponse(HttpStatus.NOT_MODIFIED));
+
+        assertEquals(get(), "first");
+        assertEquals(client.execute(prepareGet().setUri(URI).setHeader("Cache-Control", "no-cache").build(), createStringResponseHandler()).getBody(), "first");
+
+        assertEquals(requests.size(), 2);
+        assertEquals(requests.get(1).getHeader("If-None-Match"), "\"v1\"");
+    }
+
+    @Test
+    public void testConditionalAndPostRequestsPassedThrough()
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").header("ETag", "\"v1\"").body("first").build());
+        responses.add(mockResponse(HttpStatus.NOT_MODIFIED));
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body("posted").build());
+
+        assertEquals(get(), "first");
+        assertEquals(client.execute(prepareGet().setUri(URI).setHeader("If-None-Match", "\"v0\"").build(), createStringResponseHandler()).getStatusCode(), 304);
+        assertEquals(client.execute(preparePost().setUri(URI).build(), createStringResponseHandler()).getBody(), "posted");
+
+        assertEquals(requests.size(), 3);
+        assertEquals(requests.get(1).getHeader("If-None-Match"), "\"v0\"");
+        assertEquals(get(), "first");
+    }
+
+    @Test
+    public void testStreamingPostPassedThrough()
+    {
+        HttpClient delegate = mock(HttpClient.class);
+        client = new CachingHttpClient(delegate, new CachingHttpClientConfig(), ticker);
+        Request request = preparePost().setUri(URI).build();
+        StreamingResponseHandler<String, Exception> responseHandler = mock(StreamingResponseHandler.class);
+
+        client.executeAsyncStreaming(request, responseHandler);
+
+        verify(delegate).executeAsyncStreaming(request, responseHandler);
+    }
+
+    @Test
+    public void testVary()
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").header("Vary", "Accept").body("json").build());
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").header("Vary", "Accept").body("smile").build());
+
+        assertEquals(get("application/json"), "json");
+        assertEquals(get("application/json"), "json");
+        assertEquals(get("application/x-jackson-smile"), "smile");
+
+        // both variants stay cached
+        assertEquals(get("application/json"), "json");
+        assertEquals(get("application/x-jackson-smile"), "smile");
+
+        assertEquals(requests.size(), 2);
+        assertEquals(client.getCachedResponses(), 2);
+    }
+
+    @Test
+    public void testVaryChangeReplacesVariants()
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").header("Vary", "Accept").body("json").build());
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").header("Vary", "Accept-Language").body("english").build());
+
+        assertEquals(get("application/json"), "json");
+        ticker.elapseTime(10, SECONDS);
+        assertEquals(get("application/json"), "english");
+        assertEquals(get("application/json"), "english");
+
+        assertEquals(requests.size(), 2);
+        assertEquals(client.getCachedResponses(), 1);
+    }
+
+    @Test
+    public void testOversizeResponseNotCached()
+    {
+        client = new CachingHttpClient(testingClient, new CachingHttpClientConfig().setMaxEntrySize(new DataSize(4, BYTE)), ticker);
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body("too large").build());
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body("small").build());
+
+        assertEquals(get(), "too large");
+        assertEquals(get(), "small");
+        assertEquals(client.getCachedResponses(), 0);
+    }
+
+    @Test
+    public void testEviction()
+    {
+        client = new CachingHttpClient(testingClient, new CachingHttpClientConfig().setMaxSize(new DataSize(100, BYTE)), ticker);
+        for (String body : ImmutableList.of("first", "second")) {
+            responses.add(mockResponse().header("Cache-Control", "max-age=10").body(body).build());
+        }
+
+        assertEquals(get(), "first");
+        assertEquals(client.execute(prepareGet().setUri(URI.resolve("other")).build(), createStringResponseHandler()).getBody(), "second");
+
+        // both entries fit
+        assertEquals(client.getCachedResponses(), 2);
+
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body(new byte[60]).build());
+        client.execute(prepareGet().setUri(URI.resolve("large")).build(), createStringResponseHandler());
+        assertEquals(client.getCachedResponses(), 1);
+    }
+
+    @Test
+    public void testAuthorizedResponseNotCached()
+    {
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").header("ETag", "\"v1\"").body("first").build());
+        responses.add(mockResponse().header("Cache-Control", "max-age=10").body("second").build());
+
+        assertEquals(getAuthorized(), "first");
+        assertEquals(getAuthorized(), "second");
+
+        assertEquals(requests.size(), 2);
+        assertNull(requests.get(1).getHeader("If-None-Match"));
+        assertEquals(client.getCachedResponses(), 0);
+    }
+
+    @Test
+    public void testAuthorizedPublicResponseCached()
+    {
+        responses.add(mockResponse().header("Cache-Control", "public, max-age=10").body("first").build());
+
+        assertEquals(getAuthorized(), "first");
+        assertEquals(getAuthorized(), "first");
+
+        assertEquals(requests.size(), 1);
+    }
+
+    @Test
+    public void testExportsWrappedClientAttributes()
+            throws Exception
+    {
+        MBeanServer mBeanServer = newMBeanServer();
+        try (JettyHttpClient jettyHttpClient = new JettyHttpClient()) {
+            new MBeanExporter(mBeanServer).export("test:name=CachingHttpClient", new CachingHttpClient(jettyHttpClient, new CachingHttpClientConfig()));
+
+            Set<String> attributes = new HashSet<>();
+            for (MBeanAttributeInfo attribute : mBeanServer.getMBeanInfo(new ObjectName("test:name=CachingHttpClient")).getAttributes()) {
+                attributes.add(attribute.getName());
+            }
+            assertTrue(attributes.contains("Hits.TotalCount"), "cache attribute exported");
+            assertTrue(attributes.contains("CurrentRequestTime.Count"), "JettyHttpClient attribute exported");
+            assertTrue(attributes.contains("RequestTime.AllTime.Count"), "request stats attribute exported");
+        }
+    }
+
+    private String get()
+    {
+        return client.execute(prepareGet().setUri(URI).build(), createStringResponseHandler()).getBody();
+    }
+
+    private String getAuthorized()
+    {
+        return client.execute(prepareGet().setUri(URI).setHeader("Authorization", "Bearer token").build(), createStringResponseHandler()).getBody();
+    }
+
+    private String get(String accept)
+    {
+        return client.execute(prepareGet().setUri(URI).setHeader("Accept", accept).build(), createStringResponseHandler()).getBody();
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.units.DataSize;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static com.proofpoint.configuration.testing.ConfigAssertions.assertFullMapping;
+import static com.proofpoint.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static com.proofpoint.configuration.testing.ConfigAssertions.recordDefaults;
+import static com.proofpoint.units.DataSize.Unit.KILOBYTE;
+import static com.proofpoint.units.DataSize.Unit.MEGABYTE;
+
+public class TestCachingHttpClientConfig
+{
+    @Test
+    public void testDefaults()
+    {
+        assertRecordedDefaults(recordDefaults(CachingHttpClientConfig.class)
+                .setMaxSize(new DataSize(16, MEGABYTE))
+                .setMaxEntrySize(new DataSize(1, MEGABYTE)));
+    }
+
+    @Test
+    public void testExplicitPropertyMappings()
+    {
+        Map<String, String> properties = new ImmutableMap.Builder<String, String>()
+                .put("http-client.cache.max-size", "2MB")
+                .put("http-client.cache.max-entry-size", "10kB")
+                .build();
+
+        CachingHttpClientConfig expected = new CachingHttpClientConfig()
+                .setMaxSize(new DataSize(2, MEGABYTE))
+                .setMaxEntrySize(new DataSize(10, KILOBYTE));
+
+        assertFullMapping(properties, expected);
+    }
+}
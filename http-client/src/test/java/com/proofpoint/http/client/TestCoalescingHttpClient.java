@@ -0,0 +1,312 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.proofpoint.http.client.HttpClient.HttpResponseFuture;
+import com.proofpoint.http.client.StringResponseHandler.StringResponse;
+import com.proofpoint.http.client.testing.TestingHttpClient;
+import com.proofpoint.units.DataSize;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.proofpoint.http.client.Request.Builder.prepareGet;
+import static com.proofpoint.http.client.Request.Builder.preparePost;
+import static com.proofpoint.http.client.StringResponseHandler.createStringResponseHandler;
+import static com.proofpoint.http.client.testing.TestingResponse.mockResponse;
+import static com.proofpoint.units.DataSize.Unit.BYTE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestCoalescingHttpClient
+{
+    private static final URI URI = java.net.URI.create("http://example.com/lookup");
+
+    private ExecutorService executor;
+    private CountDownLatch release;
+    private CountDownLatch requestReceived;
+    private AtomicInteger upstreamRequests;
+    private volatile Exception failure;
+    private TestingHttpClient testingClient;
+    private CoalescingHttpClient client;
+
+    @BeforeMethod
+    public void setUp()
+    {
+        executor = Executors.newCachedThreadPool();
+        release = new CountDownLatch(1);
+        requestReceived = new CountDownLatch(1);
+        upstreamRequests = new AtomicInteger();
+        failure = null;
+        testingClient = new TestingHttpClient(request -> {
+            int count = upstreamRequests.incrementAndGet();
+            requestReceived.countDown();
+            release.await();
+            if (failure != null) {
+                throw failure;
+            }
+            return mockResponse().body("response " + count).build();
+        }, executor);
+        client = new CoalescingHttpClient(testingClient);
+    }
+
+    @AfterMethod
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsCoalesced()
+            throws Exception
+    {
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> second = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        assertEquals(client.getInFlightRequests(), 1);
+        release.countDown();
+
+        assertEquals(first.get(10, SECONDS).getBody(), "response 1");
+        assertEquals(second.get(10, SECONDS).getBody(), "response 1");
+        assertEquals(upstreamRequests.get(), 1);
+        assertEquals(client.getCoalescedRequests().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testSyncRequestJoinsAsync()
+            throws Exception
+    {
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        Future<StringResponse> second = executor.submit(() -> client.execute(prepareGet().setUri(URI).build(), createStringResponseHandler()));
+        waitForCoalesced(1);
+        release.countDown();
+
+        assertEquals(first.get(10, SECONDS).getBody(), "response 1");
+        assertEquals(second.get(10, SECONDS).getBody(), "response 1");
+        assertEquals(upstreamRequests.get(), 1);
+    }
+
+    @Test
+    public void testDifferentRequestsNotCoalesced()
+            throws Exception
+    {
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> otherHeader = client.executeAsync(prepareGet().setUri(URI).setHeader("Accept", "text/plain").build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> otherUri = client.executeAsync(prepareGet().setUri(URI.resolve("other")).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> post = client.executeAsync(preparePost().setUri(URI).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> post2 = client.executeAsync(preparePost().setUri(URI).build(), createStringResponseHandler());
+        release.countDown();
+
+        first.get(10, SECONDS);
+        otherHeader.get(10, SECONDS);
+        otherUri.get(10, SECONDS);
+        post.get(10, SECONDS);
+        post2.get(10, SECONDS);
+        assertEquals(upstreamRequests.get(), 5);
+        assertEquals(client.getCoalescedRequests().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testStreamingPostPassedThrough()
+    {
+        HttpClient delegate = mock(HttpClient.class);
+        client = new CoalescingHttpClient(delegate);
+        Request request = preparePost().setUri(URI).build();
+        StreamingResponseHandler<String, Exception> responseHandler = mock(StreamingResponseHandler.class);
+
+        client.executeAsyncStreaming(request, responseHandler);
+
+        verify(delegate).executeAsyncStreaming(request, responseHandler);
+    }
+
+    @Test
+    public void testIdempotentPostCoalesced()
+            throws Exception
+    {
+        HttpResponseFuture<StringResponse> first = client.executeAsync(preparePost().setUri(URI).setIdempotent(true).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> second = client.executeAsync(preparePost().setUri(URI).setIdempotent(true).build(), createStringResponseHandler());
+        release.countDown();
+
+        assertEquals(first.get(10, SECONDS).getBody(), "response 1");
+        assertEquals(second.get(10, SECONDS).getBody(), "response 1");
+        assertEquals(upstreamRequests.get(), 1);
+    }
+
+    @Test
+    public void testSequentialRequestsNotCoalesced()
+            throws Exception
+    {
+        release.countDown();
+        assertEquals(client.execute(prepareGet().setUri(URI).build(), createStringResponseHandler()).getBody(), "response 1");
+        assertEquals(client.execute(prepareGet().setUri(URI).build(), createStringResponseHandler()).getBody(), "response 2");
+        assertEquals(client.getInFlightRequests(), 0);
+    }
+
+    @Test
+    public void testExceptionPassedToEachHandler()
+            throws Exception
+    {
+        failure = new IOException("test failure");
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> second = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        release.countDown();
+
+        for (HttpResponseFuture<StringResponse> future : new HttpResponseFuture[] {first, second}) {
+            try {
+                future.get(10, SECONDS);
+                fail("expected exception");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RuntimeIOException, "cause is " + e.getCause());
+                assertEquals(e.getCause().getCause(), failure);
+            }
+        }
+        assertEquals(upstreamRequests.get(), 1);
+    }
+
+    @Test
+    public void testUpstreamCancellationPassedToEachHandler()
+            throws Exception
+    {
+        failure = new CancellationException("canceled upstream");
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> second = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        release.countDown();
+
+        for (HttpResponseFuture<StringResponse> future : new HttpResponseFuture[] {first, second}) {
+            try {
+                future.get(10, SECONDS);
+                fail("expected exception");
+            }
+            catch (ExecutionException e) {
+                assertEquals(e.getCause(), failure);
+            }
+        }
+        assertEquals(upstreamRequests.get(), 1);
+    }
+
+    @Test
+    public void testCancelOneWaiter()
+            throws Exception
+    {
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> second = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        assertTrue(first.cancel(true));
+        release.countDown();
+
+        assertEquals(second.get(10, SECONDS).getBody(), "response 1");
+        assertTrue(first.isCancelled());
+        assertEquals(upstreamRequests.get(), 1);
+    }
+
+    @Test
+    public void testCancelAllWaitersCancelsRequest()
+            throws Exception
+    {
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> second = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        // let the shared request reach the server, so the next one is the second
+        assertTrue(requestReceived.await(10, SECONDS));
+        assertTrue(first.cancel(true));
+        assertTrue(second.cancel(true));
+        assertEquals(client.getInFlightRequests(), 0);
+
+        release.countDown();
+        HttpResponseFuture<StringResponse> third = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        assertEquals(third.get(10, SECONDS).getBody(), "response 2");
+        assertFalse(third.isCancelled());
+    }
+
+    @Test
+    public void testResponseLargerThanMaxSizeFails()
+            throws Exception
+    {
+        client = new CoalescingHttpClient(testingClient, new DataSize(5, BYTE));
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        HttpResponseFuture<StringResponse> second = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        release.countDown();
+
+        for (HttpResponseFuture<StringResponse> future : new HttpResponseFuture[] {first, second}) {
+            try {
+                future.get(10, SECONDS);
+                fail("expected exception");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ResponseTooLargeException, "cause is " + e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testInterruptedSyncRequestHandlesException()
+            throws Exception
+    {
+        HttpResponseFuture<StringResponse> first = client.executeAsync(prepareGet().setUri(URI).build(), createStringResponseHandler());
+        AtomicReference<Exception> handledException = new AtomicReference<>();
+        ResponseHandler<String, RuntimeException> responseHandler = new ResponseHandler<String, RuntimeException>()
+        {
+            @Override
+            public String handleException(Request request, Exception exception)
+            {
+                handledException.set(exception);
+                return "exception";
+            }
+
+            @Override
+            public String handle(Request request, Response response)
+            {
+                return "response";
+            }
+        };
+        AtomicReference<String> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> result.set(client.execute(prepareGet().setUri(URI).build(), responseHandler)));
+        thread.start();
+        waitForCoalesced(1);
+        thread.interrupt();
+        thread.join(10_000);
+
+        assertEquals(result.get(), "exception");
+        assertTrue(handledException.get() instanceof InterruptedException, "exception is " + handledException.get());
+
+        // the other request is not canceled
+        release.countDown();
+        assertEquals(first.get(10, SECONDS).getBody(), "response 1");
+    }
+
+    private void waitForCoalesced(int count)
+            throws InterruptedException
+    {
+        for (int i = 0; i < 1000 && client.getCoalescedRequests().getTotalCount() < count; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(client.getCoalescedRequests().getTotalCount(), count);
+    }
+}
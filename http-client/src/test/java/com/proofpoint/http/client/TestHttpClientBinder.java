@@ -25,6 +25,7 @@ import com.proofpoint.bootstrap.LifeCycleManager;
 import com.proofpoint.http.client.HttpClientModule.JettyIoPoolManager;
 import com.proofpoint.http.client.jetty.JettyHttpClient;
 import com.proofpoint.reporting.ReportingModule;
+import com.proofpoint.units.DataSize;
 import org.testng.annotations.Test;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.testing.TestingMBeanModule;
@@ -44,6 +45,7 @@ import static com.proofpoint.bootstrap.Bootstrap.bootstrapTest;
 import static com.proofpoint.http.client.HttpClientBinder.HttpClientBindingBuilder;
 import static com.proofpoint.http.client.HttpClientBinder.httpClientBinder;
 import static com.proofpoint.testing.Assertions.assertInstanceOf;
+import static com.proofpoint.units.DataSize.Unit.MEGABYTE;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -129,6 +131,25 @@ public class TestHttpClientBinder
         assertPoolsDestroyProperly(injector);
     }
 
+    @Test
+    public void testWithCaching()
+            throws Exception
+    {
+        Injector injector = bootstrapTest()
+                .withModules(
+                        binder -> httpClientBinder(binder).bindHttpClient("foo", FooClient.class).withCaching(),
+                        new ReportingModule()
+                )
+                .setRequiredConfigurationProperty("foo.http-client.cache.max-size", "1MB")
+                .initialize();
+
+        HttpClient httpClient = injector.getInstance(Key.get(HttpClient.class, FooClient.class));
+        assertInstanceOf(httpClient, CachingHttpClient.class);
+        assertEquals(injector.getInstance(Key.get(CachingHttpClientConfig.class, FooClient.class)).getMaxSize(), new DataSize(1, MEGABYTE));
+
+        assertPoolsDestroyProperly(injector);
+    }
+
     @Test
     public void testAliases()
             throws Exception
@@ -48,7 +48,11 @@ public class TestHttpClientConfig
                 .setIdleTimeout(new Duration(1, TimeUnit.MINUTES))
                 .setMaxConnectionsPerServer(20)
                 .setMaxRequestsQueuedPerDestination(20)
+                .setHttp2Enabled(false)
+                .setHttp2MaxConcurrentStreams(100)
                 .setMaxContentLength(new DataSize(16, Unit.MEGABYTE))
+                .setCompressionEnabled(false)
+                .setRequestCompressionThreshold(null)
                 .setSocksProxy(null)
                 .setKeyStorePath(System.getProperty(JAVAX_NET_SSL_KEY_STORE))
                 .setKeyStorePassword(System.getProperty(JAVAX_NET_SSL_KEY_STORE_PASSWORD))
@@ -65,7 +69,11 @@ public class TestHttpClientConfig
                 .put("http-client.idle-timeout", "5s")
                 .put("http-client.max-connections-per-server", "3")
                 .put("http-client.max-requests-queued-per-destination", "10")
+                .put("http-client.http2.enabled", "true")
+                .put("http-client.http2.max-concurrent-streams", "500")
                 .put("http-client.max-content-length", "1MB")
+                .put("http-client.compression.enabled", "true")
+                .put("http-client.compression.request-threshold", "4kB")
                 .put("http-client.socks-proxy", "localhost:1080")
                 .put("http-client.key-store-path", "key-store")
                 .put("http-client.key-store-password", "key-store-password")
@@ -79,7 +87,11 @@ public class TestHttpClientConfig
                 .setIdleTimeout(new Duration(5, TimeUnit.SECONDS))
                 .setMaxConnectionsPerServer(3)
                 .setMaxRequestsQueuedPerDestination(10)
+                .setHttp2Enabled(true)
+                .setHttp2MaxConcurrentStreams(500)
                 .setMaxContentLength(new DataSize(1, Unit.MEGABYTE))
+                .setCompressionEnabled(true)
+                .setRequestCompressionThreshold(new DataSize(4, Unit.KILOBYTE))
                 .setSocksProxy(HostAndPort.fromParts("localhost", 1080))
                 .setKeyStorePath("key-store")
                 .setKeyStorePassword("key-store-password")
@@ -110,6 +122,7 @@ public class TestHttpClientConfig
         assertFailsValidation(new HttpClientConfig().setIdleTimeout(null), "idleTimeout", "may not be null", NotNull.class);
         assertFailsValidation(new HttpClientConfig().setMaxConnectionsPerServer(0), "maxConnectionsPerServer", "must be greater than or equal to 1", Min.class);
         assertFailsValidation(new HttpClientConfig().setMaxRequestsQueuedPerDestination(-1), "maxRequestsQueuedPerDestination", "must be greater than or equal to 0", Min.class);
+        assertFailsValidation(new HttpClientConfig().setHttp2MaxConcurrentStreams(0), "http2MaxConcurrentStreams", "must be greater than or equal to 1", Min.class);
         assertFailsValidation(new HttpClientConfig().setMaxContentLength(null), "maxContentLength", "may not be null", NotNull.class);
     }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.http.client.testing.TestingHttpClient;
+import com.proofpoint.stats.Distribution;
+import com.proofpoint.stats.MergedDistribution;
+import org.testng.annotations.Test;
+
+import java.net.ConnectException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.proofpoint.http.client.testing.TestingResponse.mockResponse;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestPoolDigestAggregator
+{
+    private static final URI FIRST_NODE = URI.create("http://first.example.com:8081");
+    private static final URI SECOND_NODE = URI.create("http://second.example.com:8081");
+    private static final URI MISSING_NODE = URI.create("http://missing.example.com:8081");
+    private static final URI DOWN_NODE = URI.create("http://down.example.com:8081");
+
+    @Test
+    public void testMergesDigestsFromEachNode()
+            throws Exception
+    {
+        Distribution first = new Distribution();
+        first.add(1);
+        first.add(2);
+        Distribution second = new Distribution();
+        second.add(100);
+
+        List<URI> requestUris = new ArrayList<>();
+        HttpClient httpClient = new TestingHttpClient(request -> {
+            synchronized (requestUris) {
+                requestUris.add(request.getUri());
+            }
+            switch (request.getUri().getHost()) {
+                case "first.example.com":
+                    return mockResponse().body(first.serializeDigest()).build();
+                case "second.example.com":
+                    return mockResponse().body(second.serializeDigest()).build();
+                case "missing.example.com":
+                    return mockResponse(HttpStatus.NOT_FOUND);
+                default:
+                    throw new ConnectException();
+            }
+        });
+
+        PoolDigestAggregator aggregator = new PoolDigestAggregator(httpClient, "Foo.Bar.OneMinute", ImmutableMap.of("tag", "value"));
+        MergedDistribution distribution = new MergedDistribution();
+
+        assertEquals(aggregator.update(distribution, ImmutableList.of(FIRST_NODE, SECOND_NODE, MISSING_NODE, DOWN_NODE)), 2);
+        assertEquals(distribution.getCount(), 3.0);
+        assertEquals(distribution.getMin(), 1);
+        assertEquals(distribution.getMax(), 100);
+        assertTrue(requestUris.contains(URI.create("http://first.example.com:8081/admin/stats/Foo.Bar.OneMinute/digest?tag=value")));
+
+        assertEquals(aggregator.update(distribution, ImmutableList.of(SECOND_NODE)), 1);
+        assertEquals(distribution.getCount(), 1.0);
+        assertEquals(distribution.getMin(), 100);
+    }
+
+    @Test
+    public void testNoNodes()
+            throws Exception
+    {
+        HttpClient httpClient = new TestingHttpClient(request -> {
+            throw new AssertionError("unexpected request");
+        });
+        PoolDigestAggregator aggregator = new PoolDigestAggregator(httpClient, "Foo.Bar.OneMinute", ImmutableMap.of());
+        MergedDistribution distribution = new MergedDistribution();
+
+        assertEquals(aggregator.update(distribution, ImmutableList.of()), 0);
+        assertEquals(distribution.getCount(), 0.0);
+    }
+}
@@ -56,7 +56,11 @@ public class TestRequest
                         new Request(createUri1(), "PUT", createHeaders1(), createBodySource()))
                 .addEquivalentGroup(
                         new Request(createUri1(), "GET", createHeaders1(), null, true),
-                        new Request(createUri1(), "GET", createHeaders1(), null, true)
+                        new Request(createUri1(), "GET", createHeaders1(), null, true, false)
+                )
+                .addEquivalentGroup(
+                        new Request(createUri1(), "GET", createHeaders1(), null, false, true),
+                        new Request(createUri1(), "GET", createHeaders1(), null, false, true)
                 )
                 .check();
     }
@@ -45,6 +45,7 @@ public class TestRequestBuilder
         assertEquals(request.getHeaders(), ImmutableListMultimap.of(
                 "newheader", "withvalue", "anotherheader", "anothervalue"));
         assertTrue(request.isFollowRedirects());
+        assertTrue(request.isIdempotent());
     }
 
     @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Cannot make requests to HTTP port 0")
@@ -72,6 +73,7 @@ public class TestRequestBuilder
         assertEquals(request.getUri(), URI.create("http://example.com"));
         assertEquals(request.getHeaders(), ImmutableListMultimap.<String, String>of());
         assertFalse(request.isFollowRedirects());
+        assertFalse(request.isIdempotent());
     }
 
     private static Request createRequest()
@@ -82,6 +84,7 @@ public class TestRequestBuilder
                     .addHeader("anotherheader", "anothervalue")
                     .setBodySource(NULL_BODY_SOURCE)
                     .setFollowRedirects(true)
+                    .setIdempotent(true)
                     .build();
     }
 }
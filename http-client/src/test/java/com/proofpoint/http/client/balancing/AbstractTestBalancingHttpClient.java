@@ -88,6 +88,15 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
     protected abstract void issueRequest()
             throws Exception;
 
+    /**
+     * Matches the response passed to the response handler for a response
+     * from the underlying client.
+     */
+    protected Response sameResponse(Response response)
+    {
+        return same(response);
+    }
+
     @BeforeMethod
     protected void setUp()
             throws Exception
@@ -124,7 +133,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1/service", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -133,7 +142,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
 
         verify(serviceAttempt1, atLeastOnce()).getUri();
         verify(serviceAttempt1).markGood();
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, responseHandler);
     }
@@ -146,7 +155,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1%2B/service?foo=bar&baz=qu%2Bux", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -155,7 +164,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
 
         verify(serviceAttempt1, atLeastOnce()).getUri();
         verify(serviceAttempt1).markGood();
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1%2B/service?foo=bar&baz=qu%2Bux");
         verifyNoMoreInteractions(serviceAttempt1, responseHandler);
     }
@@ -167,7 +176,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         request = preparePut().setUri(new URI(null, null, null, null)).setBodySource(bodySource).build();
         String returnValue = balancingHttpClient.execute(request, responseHandler);
@@ -177,7 +186,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
 
         verify(serviceAttempt1, atLeastOnce()).getUri();
         verify(serviceAttempt1).markGood();
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/");
         verifyNoMoreInteractions(serviceAttempt1, responseHandler);
     }
@@ -195,7 +204,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s3.example.com/prefix/v1/service", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -204,7 +213,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
 
         verify(serviceAttempt1, atLeastOnce()).getUri();
         verify(serviceAttempt1).markGood();
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s3.example.com/prefix/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, responseHandler);
     }
@@ -217,7 +226,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
         Exception testException = new Exception("test exception");
-        when(responseHandler.handle(any(Request.class), same(response))).thenThrow(testException);
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenThrow(testException);
 
         try {
             String returnValue = balancingHttpClient.execute(request, responseHandler);
@@ -231,7 +240,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
 
         verify(serviceAttempt1, atLeastOnce()).getUri();
         verify(serviceAttempt1).markBad("204 status code", "Exception");
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, responseHandler);
     }
@@ -244,7 +253,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s2.example.com/v1/service", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -256,7 +265,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         verify(serviceAttempt1).next();
         verify(serviceAttempt2, atLeastOnce()).getUri();
         verify(serviceAttempt2).markGood();
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s2.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, serviceAttempt2, responseHandler);
     }
@@ -272,7 +281,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s2.example.com/v1/service", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -284,7 +293,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         verify(serviceAttempt1).next();
         verify(serviceAttempt2, atLeastOnce()).getUri();
         verify(serviceAttempt2).markGood();
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s2.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, serviceAttempt2, responseHandler);
     }
@@ -315,7 +324,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1/service", response500);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response500))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response500))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -324,7 +333,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
 
         verify(serviceAttempt1, atLeastOnce()).getUri();
         verify(serviceAttempt1).markBad("500 status code");
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response500));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response500));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, serviceAttempt2, responseHandler);
     }
@@ -344,7 +353,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.firstCallNoBodyGenerator();
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response503))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response503))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -356,7 +365,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         verify(serviceAttempt1).next();
         verify(serviceAttempt2, atLeastOnce()).getUri();
         verify(serviceAttempt2).markBad("503 status code");
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response503));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response503));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s2.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, serviceAttempt2, serviceAttempt3, responseHandler);
     }
@@ -413,14 +422,14 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1/service", response500);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response500))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response500))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
 
         httpClient.assertDone();
 
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response500));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response500));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
     }
 
@@ -434,14 +443,14 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s2.example.com/v1/service", response500);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response500))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response500))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
 
         httpClient.assertDone();
 
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response500));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response500));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s2.example.com/v1/service");
     }
 
@@ -456,14 +465,14 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1/service", response500);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response500))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response500))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
 
         httpClient.assertDone();
 
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response500));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response500));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
     }
 
@@ -473,14 +482,14 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1/service", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
 
         httpClient.assertDone();
 
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
     }
 
@@ -613,7 +622,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1/service", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -628,7 +637,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         verify(serviceAttempt2).next();
         verify(serviceAttempt3, atLeastOnce()).getUri();
         verify(serviceAttempt3).markGood();
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, serviceAttempt2, serviceAttempt3, responseHandler);
     }
@@ -645,7 +654,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1/service", response);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -660,7 +669,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         verify(serviceAttempt2).next();
         verify(serviceAttempt3, atLeastOnce()).getUri();
         verify(serviceAttempt3).markGood();
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, serviceAttempt2, serviceAttempt3, responseHandler);
     }
@@ -751,7 +760,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         httpClient.expectCall("http://s1.example.com/v1/service", response408);
 
         ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
-        when(responseHandler.handle(any(Request.class), same(response408))).thenReturn("test response");
+        when(responseHandler.handle(any(Request.class), sameResponse(response408))).thenReturn("test response");
 
         String returnValue = balancingHttpClient.execute(request, responseHandler);
         assertEquals(returnValue, "test response", "return value from .execute()");
@@ -766,7 +775,7 @@ public abstract class AbstractTestBalancingHttpClient<T extends HttpClient>
         verify(serviceAttempt2).next();
         verify(serviceAttempt3, atLeastOnce()).getUri();
         verify(serviceAttempt3).markBad("408 status code");
-        verify(responseHandler).handle(requestArgumentCaptor.capture(), same(response408));
+        verify(responseHandler).handle(requestArgumentCaptor.capture(), sameResponse(response408));
         assertEquals(requestArgumentCaptor.getValue().getUri().toString(), "http://s1.example.com/v1/service");
         verifyNoMoreInteractions(serviceAttempt1, serviceAttempt2, serviceAttempt3, responseHandler);
     }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.balancing;
+
+import com.proofpoint.testing.TestingTicker;
+import com.proofpoint.units.Duration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.proofpoint.http.client.balancing.AimdConcurrencyLimit.aimdConcurrencyLimit;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestAimdConcurrencyLimit
+{
+    private static final long FAST = SECONDS.toNanos(1);
+    private static final long SLOW = SECONDS.toNanos(3);
+
+    private TestingTicker ticker;
+
+    @BeforeMethod
+    public void setup()
+    {
+        ticker = new TestingTicker();
+    }
+
+    @Test
+    public void testRejectsAtLimit()
+    {
+        AimdConcurrencyLimit limit = aimdConcurrencyLimit(2, 1, 10, 0.5, new Duration(2, SECONDS), ticker);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(limit.getConcurrentAttempts(), 2);
+        assertEquals(limit.getConcurrencyLimitExceeded().getTotalCount(), 1.0);
+
+        limit.onIgnore();
+        assertEquals(limit.getConcurrencyLimit(), 2);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    public void testIncreasesWhenLimitInUse()
+    {
+        AimdConcurrencyLimit limit = aimdConcurrencyLimit(4, 1, 5, 0.5, new Duration(2, SECONDS), ticker);
+        assertTrue(limit.tryAcquire());
+        limit.onSuccess(FAST);
+        assertEquals(limit.getConcurrencyLimit(), 4, "limit not in use");
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        for (int i = 0; i < 4; i++) {
+            limit.onSuccess(FAST);
+            assertTrue(limit.tryAcquire());
+        }
+        assertEquals(limit.getConcurrencyLimit(), 4, "raised by one over about a limit's worth of successes");
+
+        limit.onSuccess(FAST);
+        assertTrue(limit.tryAcquire());
+        assertEquals(limit.getConcurrencyLimit(), 5);
+
+        for (int i = 0; i < 10; i++) {
+            limit.onSuccess(FAST);
+            assertTrue(limit.tryAcquire());
+        }
+        assertEquals(limit.getConcurrencyLimit(), 5, "capped at max");
+    }
+
+    @Test
+    public void testDecreasesOnDrop()
+    {
+        AimdConcurrencyLimit limit = aimdConcurrencyLimit(8, 3, 10, 0.5, new Duration(2, SECONDS), ticker);
+        assertTrue(limit.tryAcquire());
+        limit.onDropped();
+        assertEquals(limit.getConcurrencyLimit(), 4);
+
+        ticker.increment(2, SECONDS);
+        assertTrue(limit.tryAcquire());
+        limit.onDropped();
+        assertEquals(limit.getConcurrencyLimit(), 3, "floored at min");
+        assertEquals(limit.getConcurrentAttempts(), 0);
+    }
+
+    @Test
+    public void testDecreasesOncePerWindow()
+    {
+        AimdConcurrencyLimit limit = aimdConcurrencyLimit(8, 1, 10, 0.5, new Duration(2, SECONDS), ticker);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limit.tryAcquire());
+        }
+        limit.onDropped();
+        limit.onSuccess(SLOW);
+        limit.onDropped();
+        assertEquals(limit.getConcurrencyLimit(), 4, "attempts in flight when the service was overloaded cut the limit once");
+
+        ticker.increment(1, SECONDS);
+        limit.onDropped();
+        assertEquals(limit.getConcurrencyLimit(), 4);
+
+        ticker.increment(1, SECONDS);
+        assertTrue(limit.tryAcquire());
+        limit.onDropped();
+        assertEquals(limit.getConcurrencyLimit(), 2);
+        assertEquals(limit.getConcurrentAttempts(), 0);
+    }
+
+    @Test
+    public void testDecreasesOnSlowSuccess()
+    {
+        AimdConcurrencyLimit limit = aimdConcurrencyLimit(8, 1, 10, 0.75, new Duration(2, SECONDS), ticker);
+        assertTrue(limit.tryAcquire());
+        limit.onSuccess(SLOW);
+        assertEquals(limit.getConcurrencyLimit(), 6);
+    }
+
+    @Test
+    public void testConcurrentAttemptsNeverExceedLimit()
+            throws Exception
+    {
+        AimdConcurrencyLimit limit = aimdConcurrencyLimit(4, 4, 4, 0.5, new Duration(2, SECONDS), ticker);
+        ExecutorService executor = newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int maxSeen = 0;
+                    for (int i = 0; i < 10_000; i++) {
+                        if (limit.tryAcquire()) {
+                            maxSeen = Math.max(maxSeen, limit.getConcurrentAttempts());
+                            limit.onSuccess(FAST);
+                        }
+                    }
+                    return maxSeen;
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures) {
+                assertTrue(future.get() <= 4);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(limit.getConcurrentAttempts(), 0);
+        assertEquals(limit.getConcurrencyLimit(), 4);
+    }
+}
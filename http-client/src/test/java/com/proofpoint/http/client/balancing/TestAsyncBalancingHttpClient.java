@@ -8,29 +8,44 @@ import com.proofpoint.http.client.Request;
 import com.proofpoint.http.client.RequestStats;
 import com.proofpoint.http.client.Response;
 import com.proofpoint.http.client.ResponseHandler;
+import com.proofpoint.http.client.StreamingResponseHandler;
+import com.proofpoint.http.client.StreamingResponseHandler.BodyConsumer;
 import com.proofpoint.http.client.SyncToAsyncWrapperClient;
+import com.proofpoint.http.client.balancing.BalancingHttpClientConfig.HedgePolicy;
+import com.proofpoint.units.Duration;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.Test;
 
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.proofpoint.concurrent.Threads.daemonThreadsNamed;
 import static com.proofpoint.http.client.testing.BodySourceTester.writeBodySourceTo;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
@@ -114,8 +129,424 @@ public class TestAsyncBalancingHttpClient
         verifyNoMoreInteractions(mockClient, serviceBalancer);
     }
 
+    @Test
+    public void testTotalTimeoutLimitsRetries()
+            throws Exception
+    {
+        balancingHttpClientConfig.setTotalTimeout(new Duration(1, SECONDS))
+                .setMinBackoff(new Duration(2, SECONDS))
+                .setMaxBackoff(new Duration(2, SECONDS));
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, httpClient, balancingHttpClientConfig, mock(ScheduledExecutorService.class), testingTicker);
+
+        Response response503 = mock(Response.class);
+        when(response503.getStatusCode()).thenReturn(503);
+        httpClient.expectCall("http://s1.example.com/v1/service", response503);
+
+        ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
+        when(responseHandler.handle(any(Request.class), same(response503))).thenReturn("test response");
+
+        assertEquals(client.executeAsync(request, responseHandler).get(), "test response");
+
+        httpClient.assertDone();
+        verify(serviceAttempt1).markBad("503 status code");
+        verify(serviceAttempt1, never()).next();
+    }
+
+    @Test
+    public void testTotalTimeoutExpires()
+            throws Exception
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> subFuture = new PendingHttpResponseFuture<>();
+        when(mockClient.executeAsync(any(Request.class), any(ResponseHandler.class))).thenReturn(subFuture);
+        balancingHttpClientConfig.setTotalTimeout(new Duration(1, SECONDS));
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
+        when(responseHandler.handleException(any(Request.class), any(TimeoutException.class))).thenReturn("timed out");
+
+        HttpResponseFuture<String> future = client.executeAsync(request, responseHandler);
+        ArgumentCaptor<Runnable> timeoutCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(timeoutCaptor.capture(), eq(SECONDS.toNanos(1)), eq(NANOSECONDS));
+        assertFalse(future.isDone());
+
+        timeoutCaptor.getValue().run();
+
+        assertEquals(future.get(), "timed out");
+        assertTrue(subFuture.isCancelled());
+        verify(serviceAttempt1).markBad("TimeoutException");
+        verify(serviceAttempt1, never()).next();
+    }
+
+    @Test
+    public void testTotalTimeoutCancelsAttemptBeforeHandler()
+            throws Exception
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> subFuture = new PendingHttpResponseFuture<>();
+        when(mockClient.executeAsync(any(Request.class), any(ResponseHandler.class))).thenReturn(subFuture);
+        balancingHttpClientConfig.setTotalTimeout(new Duration(1, SECONDS));
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
+        when(responseHandler.handleException(any(Request.class), any(TimeoutException.class))).thenAnswer(invocation -> {
+            assertTrue(subFuture.isCancelled(), "attempt canceled before the handler is invoked");
+            return "timed out";
+        });
+
+        HttpResponseFuture<String> future = client.executeAsync(request, responseHandler);
+        ArgumentCaptor<Runnable> timeoutCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(timeoutCaptor.capture(), eq(SECONDS.toNanos(1)), eq(NANOSECONDS));
+
+        timeoutCaptor.getValue().run();
+
+        assertEquals(future.get(), "timed out");
+    }
+
+    @Test
+    public void testTotalTimeoutWhileHandlingResponse()
+            throws Exception
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> subFuture = new PendingHttpResponseFuture<>();
+        ArgumentCaptor<ResponseHandler> handlerCaptor = ArgumentCaptor.forClass(ResponseHandler.class);
+        when(mockClient.executeAsync(any(Request.class), handlerCaptor.capture())).thenReturn(subFuture);
+        balancingHttpClientConfig.setTotalTimeout(new Duration(1, SECONDS));
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(200);
+        ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
+
+        HttpResponseFuture<String> future = client.executeAsync(request, responseHandler);
+        ArgumentCaptor<Runnable> timeoutCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(timeoutCaptor.capture(), eq(SECONDS.toNanos(1)), eq(NANOSECONDS));
+
+        // the timeout expires while the attempt is handling its response
+        when(responseHandler.handle(any(Request.class), same(response))).thenAnswer(invocation -> {
+            timeoutCaptor.getValue().run();
+            return "test response";
+        });
+        subFuture.set((String) handlerCaptor.getValue().handle(request, response));
+
+        assertEquals(future.get(), "test response");
+        verify(responseHandler, never()).handleException(any(Request.class), any(Exception.class));
+        verify(serviceAttempt1).markGood();
+    }
+
+    @Test
+    public void testHedgeFirstResponseWins()
+            throws Exception
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> primaryFuture = new PendingHttpResponseFuture<>();
+        PendingHttpResponseFuture<String> hedgeFuture = new PendingHttpResponseFuture<>();
+        when(mockClient.executeAsync(any(Request.class), any(ResponseHandler.class))).thenReturn(primaryFuture, hedgeFuture);
+        when(serviceAttempt1.hedge()).thenReturn(serviceAttempt2);
+        balancingHttpClientConfig.setHedgePolicy(HedgePolicy.FIXED_DELAY)
+                .setHedgeDelay(new Duration(10, MILLISECONDS));
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        HttpResponseFuture<String> future = client.executeAsync(idempotentRequest(), mock(ResponseHandler.class));
+        ArgumentCaptor<Runnable> hedgeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(hedgeCaptor.capture(), eq(MILLISECONDS.toNanos(10)), eq(NANOSECONDS));
+
+        hedgeCaptor.getValue().run();
+
+        ArgumentCaptor<Request> requestCaptor = ArgumentCaptor.forClass(Request.class);
+        verify(mockClient, times(2)).executeAsync(requestCaptor.capture(), any(ResponseHandler.class));
+        assertEquals(requestCaptor.getAllValues().get(1).getUri(), URI.create("http://s2.example.com/v1/service"));
+        assertFalse(future.isDone());
+
+        hedgeFuture.set("hedge response");
+
+        assertEquals(future.get(), "hedge response");
+        assertTrue(primaryFuture.isCancelled());
+        verify(serviceAttempt1).markCanceled();
+        verify(serviceAttempt2).markGood();
+    }
+
+    @Test
+    public void testHedgeWaitsForOtherAttempt()
+            throws Exception
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> primaryFuture = new PendingHttpResponseFuture<>();
+        PendingHttpResponseFuture<String> hedgeFuture = new PendingHttpResponseFuture<>();
+        ArgumentCaptor<ResponseHandler> handlerCaptor = ArgumentCaptor.forClass(ResponseHandler.class);
+        when(mockClient.executeAsync(any(Request.class), handlerCaptor.capture())).thenReturn(primaryFuture, hedgeFuture);
+        when(serviceAttempt1.hedge()).thenReturn(serviceAttempt2);
+        balancingHttpClientConfig.setHedgePolicy(HedgePolicy.FIXED_DELAY);
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        HttpResponseFuture<String> future = client.executeAsync(idempotentRequest(), mock(ResponseHandler.class));
+        ArgumentCaptor<Runnable> hedgeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(hedgeCaptor.capture(), anyLong(), eq(NANOSECONDS));
+        hedgeCaptor.getValue().run();
+
+        // the hedge takes the place of a retry
+        failAttempt(primaryFuture, handlerCaptor.getAllValues().get(0), 503);
+        verify(serviceAttempt1).markBad("503 status code");
+        assertFalse(future.isDone());
+
+        hedgeFuture.set("hedge response");
+
+        assertEquals(future.get(), "hedge response");
+        verify(serviceAttempt2).markGood();
+        verify(serviceAttempt1, never()).next();
+        verifyNoMoreInteractions(retryExecutor);
+    }
+
+    @Test
+    public void testHedgeWithoutRetriesWaitsForOtherAttempt()
+            throws Exception
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> primaryFuture = new PendingHttpResponseFuture<>();
+        PendingHttpResponseFuture<String> hedgeFuture = new PendingHttpResponseFuture<>();
+        ArgumentCaptor<ResponseHandler> handlerCaptor = ArgumentCaptor.forClass(ResponseHandler.class);
+        when(mockClient.executeAsync(any(Request.class), handlerCaptor.capture())).thenReturn(primaryFuture, hedgeFuture);
+        when(serviceAttempt1.hedge()).thenReturn(serviceAttempt2);
+        balancingHttpClientConfig.setHedgePolicy(HedgePolicy.FIXED_DELAY)
+                .setMaxAttempts(2);
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+        ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
+
+        HttpResponseFuture<String> future = client.executeAsync(idempotentRequest(), responseHandler);
+        ArgumentCaptor<Runnable> hedgeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(hedgeCaptor.capture(), anyLong(), eq(NANOSECONDS));
+        hedgeCaptor.getValue().run();
+
+        // the hedge is the last attempt, but the first attempt is still in flight
+        failAttempt(hedgeFuture, handlerCaptor.getAllValues().get(1), 503);
+        verify(serviceAttempt2).markBad("503 status code");
+        assertFalse(future.isDone());
+        assertFalse(primaryFuture.isDone());
+
+        primaryFuture.set("primary response");
+
+        assertEquals(future.get(), "primary response");
+        verify(serviceAttempt1).markGood();
+        verify(responseHandler, never()).handle(any(Request.class), any(Response.class));
+    }
+
+    @Test
+    public void testLastAttemptInFlightHandlesFailure()
+            throws Exception
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> primaryFuture = new PendingHttpResponseFuture<>();
+        PendingHttpResponseFuture<String> hedgeFuture = new PendingHttpResponseFuture<>();
+        ArgumentCaptor<ResponseHandler> handlerCaptor = ArgumentCaptor.forClass(ResponseHandler.class);
+        when(mockClient.executeAsync(any(Request.class), handlerCaptor.capture())).thenReturn(primaryFuture, hedgeFuture);
+        when(serviceAttempt1.hedge()).thenReturn(serviceAttempt2);
+        balancingHttpClientConfig.setHedgePolicy(HedgePolicy.FIXED_DELAY)
+                .setMaxAttempts(2);
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+        ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
+        when(responseHandler.handle(any(Request.class), any(Response.class))).thenReturn("failure response");
+
+        HttpResponseFuture<String> future = client.executeAsync(idempotentRequest(), responseHandler);
+        ArgumentCaptor<Runnable> hedgeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(hedgeCaptor.capture(), anyLong(), eq(NANOSECONDS));
+        hedgeCaptor.getValue().run();
+
+        failAttempt(primaryFuture, handlerCaptor.getAllValues().get(0), 503);
+        assertFalse(future.isDone());
+
+        // the last attempt in flight passes its failure to the response handler
+        failAttempt(hedgeFuture, handlerCaptor.getAllValues().get(1), 503);
+
+        assertEquals(future.get(), "failure response");
+        verify(responseHandler).handle(any(Request.class), any(Response.class));
+        verify(serviceAttempt1, never()).next();
+        verifyNoMoreInteractions(retryExecutor);
+    }
+
+    private void failAttempt(PendingHttpResponseFuture<String> attemptFuture, ResponseHandler attemptHandler, int statusCode)
+    {
+        Response response = mock(Response.class);
+        when(response.getStatusCode()).thenReturn(statusCode);
+        try {
+            attemptFuture.set((String) attemptHandler.handle(request, response));
+        }
+        catch (Exception e) {
+            attemptFuture.setException(e);
+        }
+    }
+
+    @Test
+    public void testHedgeP95Delay()
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        when(mockClient.executeAsync(any(Request.class), any(ResponseHandler.class))).thenReturn(new PendingHttpResponseFuture<>());
+        when(serviceAttempt1.getRequestTimeQuantile(0.95)).thenReturn(new Duration(30, MILLISECONDS));
+        balancingHttpClientConfig.setHedgePolicy(HedgePolicy.P95);
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        client.executeAsync(idempotentRequest(), mock(ResponseHandler.class));
+
+        verify(retryExecutor).schedule(any(Runnable.class), eq(MILLISECONDS.toNanos(30)), eq(NANOSECONDS));
+    }
+
+    @Test
+    public void testNoHedgeForNonIdempotentRequest()
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        when(mockClient.executeAsync(any(Request.class), any(ResponseHandler.class))).thenReturn(new PendingHttpResponseFuture<>());
+        balancingHttpClientConfig.setHedgePolicy(HedgePolicy.FIXED_DELAY);
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        client.executeAsync(request, mock(ResponseHandler.class));
+
+        verifyNoMoreInteractions(retryExecutor);
+    }
+
+    @Test
+    public void testNoHedgeToSameUri()
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        HttpClient mockClient = mock(HttpClient.class);
+        when(mockClient.executeAsync(any(Request.class), any(ResponseHandler.class))).thenReturn(new PendingHttpResponseFuture<>());
+        HttpServiceAttempt sameUriAttempt = mock(HttpServiceAttempt.class);
+        when(sameUriAttempt.getUri()).thenReturn(URI.create("http://s1.example.com"));
+        when(serviceAttempt1.hedge()).thenReturn(sameUriAttempt);
+        balancingHttpClientConfig.setHedgePolicy(HedgePolicy.FIXED_DELAY);
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        client.executeAsync(idempotentRequest(), mock(ResponseHandler.class));
+        ArgumentCaptor<Runnable> hedgeCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(hedgeCaptor.capture(), anyLong(), eq(NANOSECONDS));
+        hedgeCaptor.getValue().run();
+
+        verify(mockClient).executeAsync(any(Request.class), any(ResponseHandler.class));
+        verify(sameUriAttempt).markCanceled();
+    }
+
     // TODO tests for interruption and cancellation
 
+    private Request idempotentRequest()
+    {
+        return Request.Builder.fromRequest(request)
+                .setIdempotent(true)
+                .build();
+    }
+
+    @Test
+    public void testConcurrencyLimitRejectsFast()
+            throws Exception
+    {
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> firstFuture = new PendingHttpResponseFuture<>();
+        PendingHttpResponseFuture<String> thirdFuture = new PendingHttpResponseFuture<>();
+        when(mockClient.executeAsync(any(Request.class), any(ResponseHandler.class))).thenReturn(firstFuture, thirdFuture);
+        balancingHttpClientConfig.setConcurrencyLimitEnabled(true)
+                .setConcurrencyLimitInitial(1)
+                .setConcurrencyLimitMax(2);
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, mock(ScheduledExecutorService.class), testingTicker);
+
+        HttpResponseFuture<String> first = client.executeAsync(request, mock(ResponseHandler.class));
+
+        ResponseHandler<String, Exception> responseHandler = mock(ResponseHandler.class);
+        when(responseHandler.handleException(same(request), any(ConcurrencyLimitExceededException.class))).thenReturn("rejected");
+        assertEquals(client.executeAsync(request, responseHandler).get(), "rejected");
+        verify(serviceBalancer, times(1)).createAttempt();
+        verify(mockClient, times(1)).executeAsync(any(Request.class), any(ResponseHandler.class));
+
+        firstFuture.set("first response");
+        assertEquals(first.get(), "first response");
+        assertEquals(((AimdConcurrencyLimit) client.getConcurrencyLimit()).getConcurrencyLimit(), 2);
+
+        HttpResponseFuture<String> third = client.executeAsync(request, mock(ResponseHandler.class));
+        assertFalse(third.isDone());
+        verify(mockClient, times(2)).executeAsync(any(Request.class), any(ResponseHandler.class));
+    }
+
+    @Test
+    public void testStreamingRetriesUntilHeaders()
+            throws Exception
+    {
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        when(retryExecutor.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class))).thenReturn(mock(ScheduledFuture.class));
+        HttpClient mockClient = mock(HttpClient.class);
+        PendingHttpResponseFuture<String> firstFuture = new PendingHttpResponseFuture<>();
+        PendingHttpResponseFuture<String> secondFuture = new PendingHttpResponseFuture<>();
+        ArgumentCaptor<StreamingResponseHandler> handlerCaptor = ArgumentCaptor.forClass(StreamingResponseHandler.class);
+        when(mockClient.executeAsyncStreaming(any(Request.class), handlerCaptor.capture())).thenReturn(firstFuture, secondFuture);
+        BalancingHttpClient client = new BalancingHttpClient(serviceBalancer, mockClient, balancingHttpClientConfig, retryExecutor, testingTicker);
+
+        Response response503 = mock(Response.class);
+        when(response503.getStatusCode()).thenReturn(503);
+        Response response200 = mock(Response.class);
+        when(response200.getStatusCode()).thenReturn(200);
+        BodyConsumer<String, Exception> bodyConsumer = mock(BodyConsumer.class);
+        when(bodyConsumer.onComplete()).thenReturn("streamed");
+        StreamingResponseHandler<String, Exception> responseHandler = mock(StreamingResponseHandler.class);
+        when(responseHandler.handleHeaders(any(Request.class), same(response200))).thenReturn(bodyConsumer);
+
+        HttpResponseFuture<String> future = client.executeAsyncStreaming(request, responseHandler);
+
+        // a failure status before the body is streamed is retried
+        try {
+            handlerCaptor.getValue().handleHeaders(request, response503);
+            fail("expected RetryException");
+        }
+        catch (RetryException e) {
+            firstFuture.setException(e);
+        }
+        ArgumentCaptor<Runnable> retryCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(retryExecutor).schedule(retryCaptor.capture(), anyLong(), eq(MILLISECONDS));
+        retryCaptor.getValue().run();
+
+        BodyConsumer<String, RetryException> attemptConsumer = handlerCaptor.getValue().handleHeaders(request, response200);
+        ByteBuffer content = ByteBuffer.wrap(new byte[] {1, 2, 3});
+        Runnable release = mock(Runnable.class);
+        attemptConsumer.onContent(content, release);
+        verify(bodyConsumer).onContent(same(content), same(release));
+        assertFalse(future.isDone(), "body passed to the handler before the response completes");
+
+        secondFuture.set(attemptConsumer.onComplete());
+
+        assertEquals(future.get(), "streamed");
+        verify(responseHandler).handleHeaders(any(Request.class), same(response200));
+        verify(responseHandler, never()).handleException(any(Request.class), any(Exception.class));
+        verify(mockClient, never()).executeAsync(any(Request.class), any(ResponseHandler.class));
+        verify(serviceAttempt1).markBad("503 status code");
+        verify(serviceAttempt2).markGood();
+    }
+
+    private static class PendingHttpResponseFuture<T>
+            extends AbstractFuture<T>
+            implements HttpResponseFuture<T>
+    {
+        @Override
+        public boolean set(T value)
+        {
+            return super.set(value);
+        }
+
+        @Override
+        public boolean setException(Throwable throwable)
+        {
+            return super.setException(throwable);
+        }
+
+        @Override
+        public String getState()
+        {
+            return "pending";
+        }
+    }
+
     class TestingHttpClient
             implements HttpClient, TestingClient
     {
@@ -1,11 +1,13 @@
 package com.proofpoint.http.client.balancing;
 
+import com.google.common.util.concurrent.AbstractFuture;
 import com.proofpoint.http.client.HttpClient;
 import com.proofpoint.http.client.LimitedRetryable;
 import com.proofpoint.http.client.Request;
 import com.proofpoint.http.client.RequestStats;
 import com.proofpoint.http.client.Response;
 import com.proofpoint.http.client.ResponseHandler;
+import com.proofpoint.http.client.StreamingResponseHandler;
 import org.testng.annotations.Test;
 
 import java.io.OutputStream;
@@ -13,9 +15,16 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.proofpoint.concurrent.Threads.daemonThreadsNamed;
 import static com.proofpoint.http.client.testing.BodySourceTester.writeBodySourceTo;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -37,10 +46,14 @@ public class TestBalancingHttpClient
     @Override
     protected BalancingHttpClient createBalancingHttpClient()
     {
+        ScheduledExecutorService realExecutor = newSingleThreadScheduledExecutor(daemonThreadsNamed("test-sync-executor"));
+        ScheduledExecutorService retryExecutor = mock(ScheduledExecutorService.class);
+        when(retryExecutor.schedule(any(Runnable.class), anyLong(), any(TimeUnit.class)))
+                .thenAnswer((invocation -> realExecutor.schedule((Runnable) invocation.getArguments()[0], 0, SECONDS)));
         return new BalancingHttpClient(serviceBalancer,
                 httpClient,
                 balancingHttpClientConfig,
-                mock(ScheduledExecutorService.class),
+                retryExecutor,
                 testingTicker);
     }
 
@@ -57,6 +70,13 @@ public class TestBalancingHttpClient
         }
     }
 
+    @Override
+    protected Response sameResponse(Response response)
+    {
+        // the body is streamed to the response handler through a wrapper of the response
+        return argThat(actual -> actual.getStatusCode() == response.getStatusCode() && actual.getHeaders() == response.getHeaders());
+    }
+
     @Override
     protected void issueRequest()
             throws Exception
@@ -141,7 +161,36 @@ public class TestBalancingHttpClient
         @Override
         public <T, E extends Exception> HttpResponseFuture<T> executeAsync(Request request, ResponseHandler<T, E> responseHandler)
         {
-            throw new UnsupportedOperationException();
+            ImmediateHttpResponseFuture<T> future = new ImmediateHttpResponseFuture<>();
+            try {
+                future.set(execute(request, responseHandler));
+            }
+            catch (Exception e) {
+                future.setException(e);
+            }
+            return future;
+        }
+
+        @Override
+        public <T, E extends Exception> HttpResponseFuture<T> executeAsyncStreaming(Request request, StreamingResponseHandler<T, E> responseHandler)
+        {
+            // the mock responses have no body
+            return executeAsync(request, new ResponseHandler<T, E>()
+            {
+                @Override
+                public T handleException(Request request, Exception exception)
+                        throws E
+                {
+                    return responseHandler.handleException(request, exception);
+                }
+
+                @Override
+                public T handle(Request request, Response response)
+                        throws E
+                {
+                    return responseHandler.handleHeaders(request, response).onComplete();
+                }
+            });
         }
 
         @Override
@@ -189,5 +238,28 @@ public class TestBalancingHttpClient
         {
             throw new UnsupportedOperationException();
         }
+    
+        private class ImmediateHttpResponseFuture<T>
+                extends AbstractFuture<T>
+                implements HttpResponseFuture<T>
+        {
+            @Override
+            public boolean set(T value)
+            {
+                return super.set(value);
+            }
+
+            @Override
+            public boolean setException(Throwable throwable)
+            {
+                return super.setException(throwable);
+            }
+
+            @Override
+            public String getState()
+            {
+                throw new UnsupportedOperationException();
+            }
+        }
     }
 }
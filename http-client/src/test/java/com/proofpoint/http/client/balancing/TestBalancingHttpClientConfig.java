@@ -2,6 +2,7 @@ package com.proofpoint.http.client.balancing;
 
 import com.google.common.collect.ImmutableMap;
 import com.proofpoint.configuration.testing.ConfigAssertions;
+import com.proofpoint.http.client.balancing.BalancingHttpClientConfig.HedgePolicy;
 import com.proofpoint.testing.ValidationAssertions;
 import com.proofpoint.units.Duration;
 import com.proofpoint.units.MaxDuration;
@@ -9,8 +10,10 @@ import com.proofpoint.units.MinDuration;
 import org.testng.annotations.Test;
 
 import javax.validation.constraints.AssertFalse;
+import javax.validation.constraints.DecimalMax;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -32,7 +35,16 @@ public class TestBalancingHttpClientConfig
                 .setMaxBackoff(new Duration(10, SECONDS))
                 .setRetryBudgetRatio(new BigDecimal(2).movePointLeft(1))
                 .setRetryBudgetRatioPeriod(new Duration(10, SECONDS))
-                .setRetryBudgetMinPerSecond(10));
+                .setRetryBudgetMinPerSecond(10)
+                .setTotalTimeout(null)
+                .setHedgePolicy(HedgePolicy.NONE)
+                .setHedgeDelay(new Duration(50, MILLISECONDS))
+                .setConcurrencyLimitEnabled(false)
+                .setConcurrencyLimitInitial(20)
+                .setConcurrencyLimitMin(1)
+                .setConcurrencyLimitMax(1000)
+                .setConcurrencyLimitBackoffRatio(new BigDecimal(9).movePointLeft(1))
+                .setConcurrencyLimitLatencyThreshold(new Duration(5, SECONDS)));
     }
 
     @Test
@@ -45,6 +57,15 @@ public class TestBalancingHttpClientConfig
                 .put("http-client.retry-budget.ratio", "0.3")
                 .put("http-client.retry-budget.ratio-period", "15s")
                 .put("http-client.retry-budget.min-per-second", "19")
+                .put("http-client.total-timeout", "3s")
+                .put("http-client.hedge.policy", "P95")
+                .put("http-client.hedge.delay", "7ms")
+                .put("http-client.concurrency-limit.enabled", "true")
+                .put("http-client.concurrency-limit.initial", "30")
+                .put("http-client.concurrency-limit.min", "5")
+                .put("http-client.concurrency-limit.max", "300")
+                .put("http-client.concurrency-limit.backoff-ratio", "0.75")
+                .put("http-client.concurrency-limit.latency-threshold", "2s")
                 .build();
 
         BalancingHttpClientConfig expected = new BalancingHttpClientConfig()
@@ -53,7 +74,16 @@ public class TestBalancingHttpClientConfig
                 .setMaxBackoff(new Duration(50, MILLISECONDS))
                 .setRetryBudgetRatio(new BigDecimal(3).movePointLeft(1))
                 .setRetryBudgetRatioPeriod(new Duration(15, SECONDS))
-                .setRetryBudgetMinPerSecond(19);
+                .setRetryBudgetMinPerSecond(19)
+                .setTotalTimeout(new Duration(3, SECONDS))
+                .setHedgePolicy(HedgePolicy.P95)
+                .setHedgeDelay(new Duration(7, MILLISECONDS))
+                .setConcurrencyLimitEnabled(true)
+                .setConcurrencyLimitInitial(30)
+                .setConcurrencyLimitMin(5)
+                .setConcurrencyLimitMax(300)
+                .setConcurrencyLimitBackoffRatio(new BigDecimal(75).movePointLeft(2))
+                .setConcurrencyLimitLatencyThreshold(new Duration(2, SECONDS));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
@@ -110,4 +140,37 @@ public class TestBalancingHttpClientConfig
         assertFailsValidation(new BalancingHttpClientConfig().setRetryBudgetMinPerSecond(0),
                 "retryBudgetMinPerSecond", "must be greater than or equal to 1", Min.class);
     }
+
+    @Test
+    public void TestTotalTimeoutBeanValidation()
+    {
+        assertValidates(new BalancingHttpClientConfig().setTotalTimeout(new Duration(1, MILLISECONDS)));
+        assertFailsValidation(new BalancingHttpClientConfig().setTotalTimeout(new Duration(0, MILLISECONDS)),
+                "totalTimeout", "{com.proofpoint.units.MinDuration.message}", MinDuration.class);
+    }
+
+    @Test
+    public void TestHedgeBeanValidation()
+    {
+        assertFailsValidation(new BalancingHttpClientConfig().setHedgePolicy(null),
+                "hedgePolicy", "may not be null", NotNull.class);
+        assertFailsValidation(new BalancingHttpClientConfig().setHedgeDelay(null),
+                "hedgeDelay", "may not be null", NotNull.class);
+    }
+
+    @Test
+    public void TestConcurrencyLimitBeanValidation()
+    {
+        assertValidates(new BalancingHttpClientConfig().setConcurrencyLimitInitial(1).setConcurrencyLimitMin(1).setConcurrencyLimitMax(1));
+        assertFailsValidation(new BalancingHttpClientConfig().setConcurrencyLimitMin(0).setConcurrencyLimitInitial(0),
+                "concurrencyLimitMin", "must be greater than or equal to 1", Min.class);
+        assertFailsValidation(new BalancingHttpClientConfig().setConcurrencyLimitInitial(4).setConcurrencyLimitMin(5),
+                "concurrencyLimitInitialOutOfRange", "must be false", AssertFalse.class);
+        assertFailsValidation(new BalancingHttpClientConfig().setConcurrencyLimitInitial(301).setConcurrencyLimitMax(300),
+                "concurrencyLimitInitialOutOfRange", "must be false", AssertFalse.class);
+        assertFailsValidation(new BalancingHttpClientConfig().setConcurrencyLimitBackoffRatio(new BigDecimal(1)),
+                "concurrencyLimitBackoffRatio", "must be less than or equal to 0.99", DecimalMax.class);
+        assertFailsValidation(new BalancingHttpClientConfig().setConcurrencyLimitLatencyThreshold(null),
+                "concurrencyLimitLatencyThreshold", "may not be null", NotNull.class);
+    }
 }
@@ -2,11 +2,13 @@ package com.proofpoint.http.client.balancing;
 
 import com.google.common.collect.ImmutableMap;
 import com.proofpoint.configuration.testing.ConfigAssertions;
+import com.proofpoint.http.client.balancing.HttpServiceBalancerConfig.BalancingStrategy;
 import com.proofpoint.units.Duration;
 import org.testng.annotations.Test;
 
 import javax.validation.constraints.AssertFalse;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import java.util.Map;
 
 import static com.proofpoint.testing.ValidationAssertions.assertFailsValidation;
@@ -23,7 +25,9 @@ public class TestHttpServiceBalancerConfig
         ConfigAssertions.assertRecordedDefaults(ConfigAssertions.recordDefaults(HttpServiceBalancerConfig.class)
                 .setConsecutiveFailures(5)
                 .setMinBackoff(new Duration(5, SECONDS))
-                .setMaxBackoff(new Duration(2, MINUTES)));
+                .setMaxBackoff(new Duration(2, MINUTES))
+                .setBalancingStrategy(BalancingStrategy.LEAST_CONCURRENCY)
+                .setPeakEwmaDecayTime(new Duration(10, SECONDS)));
     }
 
     @Test
@@ -33,12 +37,16 @@ public class TestHttpServiceBalancerConfig
                 .put("consecutive-failures", "4")
                 .put("min-backoff", "20ms")
                 .put("max-backoff", "50ms")
+                .put("balancing-strategy", "PEAK_EWMA")
+                .put("peak-ewma.decay-time", "3s")
                 .build();
 
         HttpServiceBalancerConfig expected = new HttpServiceBalancerConfig()
                 .setConsecutiveFailures(4)
                 .setMinBackoff(new Duration(20, MILLISECONDS))
-                .setMaxBackoff(new Duration(50, MILLISECONDS));
+                .setMaxBackoff(new Duration(50, MILLISECONDS))
+                .setBalancingStrategy(BalancingStrategy.PEAK_EWMA)
+                .setPeakEwmaDecayTime(new Duration(3, SECONDS));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
@@ -59,5 +67,6 @@ public class TestHttpServiceBalancerConfig
         assertValidates(new HttpServiceBalancerConfig().setMinBackoff(new Duration(20, MILLISECONDS)).setMaxBackoff(new Duration(20, MILLISECONDS)));
         assertFailsValidation(new HttpServiceBalancerConfig().setMinBackoff(new Duration(20, MILLISECONDS)).setMaxBackoff(new Duration(19, MILLISECONDS)),
                 "maxBackoffLessThanMinBackoff", "must be false", AssertFalse.class);
+        assertFailsValidation(new HttpServiceBalancerConfig().setBalancingStrategy(null), "balancingStrategy", "may not be null", NotNull.class);
     }
 }
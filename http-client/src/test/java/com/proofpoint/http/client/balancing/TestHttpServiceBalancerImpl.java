@@ -17,6 +17,7 @@ package com.proofpoint.http.client.balancing;
 
 import com.google.common.collect.ImmutableSet;
 import com.proofpoint.http.client.balancing.HttpServiceBalancerStats.Status;
+import com.proofpoint.stats.MergedDistribution;
 import com.proofpoint.stats.SparseCounterStat;
 import com.proofpoint.stats.SparseTimeStat;
 import com.proofpoint.testing.TestingTicker;
@@ -27,7 +28,9 @@ import java.net.URI;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.proofpoint.reporting.BucketIdProvider.BucketId.bucketId;
 import static com.proofpoint.testing.Assertions.assertLessThan;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -38,12 +41,13 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertSame;
 
 public class TestHttpServiceBalancerImpl
 {
-    private HttpServiceBalancerImpl httpServiceBalancer;
-    private HttpServiceBalancerStats httpServiceBalancerStats;
-    private TestingTicker testingTicker;
+    protected HttpServiceBalancerImpl httpServiceBalancer;
+    protected HttpServiceBalancerStats httpServiceBalancerStats;
+    protected TestingTicker testingTicker;
 
     @BeforeMethod
     protected void setUp()
@@ -51,7 +55,12 @@ public class TestHttpServiceBalancerImpl
     {
         httpServiceBalancerStats = mock(HttpServiceBalancerStats.class);
         testingTicker = new TestingTicker();
-        httpServiceBalancer = new HttpServiceBalancerImpl("type=[apple], pool=[pool]", httpServiceBalancerStats, new HttpServiceBalancerConfig().setConsecutiveFailures(5), testingTicker);
+        httpServiceBalancer = new HttpServiceBalancerImpl("type=[apple], pool=[pool]", httpServiceBalancerStats, createConfig().setConsecutiveFailures(5), testingTicker);
+    }
+
+    protected HttpServiceBalancerConfig createConfig()
+    {
+        return new HttpServiceBalancerConfig();
     }
 
     @Test(expectedExceptions = ServiceUnavailableException.class)
@@ -500,4 +509,68 @@ public class TestHttpServiceBalancerImpl
         verifyNoMoreInteractions(good1RemovalStat);
         verifyNoMoreInteractions(good2RemovalStat);
     }
+
+    @Test
+    public void testHedgeUsesOtherUri()
+    {
+        when(httpServiceBalancerStats.requestTime(any(URI.class), eq(Status.SUCCESS))).thenReturn(mock(SparseTimeStat.class));
+        httpServiceBalancer.updateHttpUris(ImmutableSet.of(URI.create("http://a.example.com"), URI.create("http://b.example.com")));
+
+        for (int i = 0; i < 10; i++) {
+            HttpServiceAttempt attempt = httpServiceBalancer.createAttempt();
+            HttpServiceAttempt hedge = attempt.hedge();
+            assertNotEquals(hedge.getUri(), attempt.getUri());
+            hedge.markGood();
+            attempt.markCanceled();
+        }
+    }
+
+    @Test
+    public void testCanceledAttemptsNotFailures()
+    {
+        URI uri = URI.create("http://a.example.com");
+        httpServiceBalancer.updateHttpUris(ImmutableSet.of(uri));
+
+        for (int i = 0; i < 10; i++) {
+            HttpServiceAttempt attempt = httpServiceBalancer.createAttempt();
+            assertEquals(attempt.getUri(), uri);
+            attempt.markCanceled();
+        }
+
+        verifyNoMoreInteractions(httpServiceBalancerStats);
+    }
+
+    @Test
+    public void testPoolRequestTime()
+    {
+        URI uriA = URI.create("http://a.example.com");
+        URI uriB = URI.create("http://b.example.com");
+        AtomicInteger bucket = new AtomicInteger();
+        SparseTimeStat statA = new SparseTimeStat();
+        statA.setBucketIdProvider(() -> bucketId(bucket.get(), 0));
+        SparseTimeStat statB = new SparseTimeStat();
+        statB.setBucketIdProvider(() -> bucketId(bucket.get(), 0));
+        when(httpServiceBalancerStats.requestTime(uriA, Status.SUCCESS)).thenReturn(statA);
+        when(httpServiceBalancerStats.requestTime(uriB, Status.SUCCESS)).thenReturn(statB);
+        httpServiceBalancer.updateHttpUris(ImmutableSet.of(uriA, uriB));
+
+        for (int i = 0; i < 100; i++) {
+            statA.add(i, TimeUnit.MILLISECONDS);
+            statB.add(100 + i, TimeUnit.MILLISECONDS);
+        }
+        bucket.incrementAndGet();
+
+        MergedDistribution poolRequestTime = httpServiceBalancer.getPoolRequestTime();
+        assertEquals(poolRequestTime.getCount(), 200.0);
+        assertEquals(poolRequestTime.getMin(), TimeUnit.MILLISECONDS.toNanos(0));
+        assertEquals(poolRequestTime.getMax(), TimeUnit.MILLISECONDS.toNanos(199));
+
+        // reads within the refresh interval reuse the merge
+        bucket.incrementAndGet();
+        assertSame(httpServiceBalancer.getPoolRequestTime(), poolRequestTime);
+        assertEquals(poolRequestTime.getCount(), 200.0);
+
+        testingTicker.elapseTime(1, TimeUnit.SECONDS);
+        assertEquals(httpServiceBalancer.getPoolRequestTime().getCount(), 0.0);
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.balancing;
+
+import com.google.common.collect.ImmutableSet;
+import com.proofpoint.http.client.balancing.HttpServiceBalancerConfig.BalancingStrategy;
+import com.proofpoint.http.client.balancing.HttpServiceBalancerStats.Status;
+import com.proofpoint.stats.SparseCounterStat;
+import com.proofpoint.stats.SparseTimeStat;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+
+public class TestPeakEwmaHttpServiceBalancerImpl
+        extends TestHttpServiceBalancerImpl
+{
+    @Override
+    protected HttpServiceBalancerConfig createConfig()
+    {
+        return new HttpServiceBalancerConfig().setBalancingStrategy(BalancingStrategy.PEAK_EWMA);
+    }
+
+    @Test
+    public void testPrefersLowerLatency()
+    {
+        when(httpServiceBalancerStats.requestTime(any(URI.class), eq(Status.SUCCESS))).thenReturn(mock(SparseTimeStat.class));
+        httpServiceBalancer.updateHttpUris(ImmutableSet.of(URI.create("http://fast.example.com"), URI.create("http://slow.example.com")));
+
+        HttpServiceAttempt fastAttempt = httpServiceBalancer.createAttempt();
+        HttpServiceAttempt slowAttempt = httpServiceBalancer.createAttempt();
+        assertNotEquals(slowAttempt.getUri(), fastAttempt.getUri());
+        testingTicker.elapseTime(10, MILLISECONDS);
+        fastAttempt.markGood();
+        testingTicker.elapseTime(990, MILLISECONDS);
+        slowAttempt.markGood();
+
+        for (int i = 0; i < 20; i++) {
+            HttpServiceAttempt attempt = httpServiceBalancer.createAttempt();
+            assertEquals(attempt.getUri(), fastAttempt.getUri());
+            testingTicker.elapseTime(10, MILLISECONDS);
+            attempt.markGood();
+        }
+    }
+
+    @Test
+    public void testLatencySpikeAvoided()
+    {
+        when(httpServiceBalancerStats.requestTime(any(URI.class), eq(Status.SUCCESS))).thenReturn(mock(SparseTimeStat.class));
+        httpServiceBalancer.updateHttpUris(ImmutableSet.of(URI.create("http://a.example.com"), URI.create("http://b.example.com")));
+
+        HttpServiceAttempt fastAttempt = httpServiceBalancer.createAttempt();
+        HttpServiceAttempt slowAttempt = httpServiceBalancer.createAttempt();
+        testingTicker.elapseTime(10, MILLISECONDS);
+        fastAttempt.markGood();
+        testingTicker.elapseTime(990, MILLISECONDS);
+        slowAttempt.markGood();
+
+        // a single slow response takes effect immediately rather than being averaged in
+        HttpServiceAttempt attempt = httpServiceBalancer.createAttempt();
+        assertEquals(attempt.getUri(), fastAttempt.getUri());
+        testingTicker.elapseTime(2, SECONDS);
+        attempt.markGood();
+
+        attempt = httpServiceBalancer.createAttempt();
+        assertEquals(attempt.getUri(), slowAttempt.getUri());
+    }
+
+    @Override
+    @Test
+    public void testMinimizeConcurrentAvoidsRemovedInstances()
+            throws Exception
+    {
+        URI goodUri1 = URI.create("http://good1.example.com");
+        URI goodUri2 = URI.create("http://good2.example.com");
+        URI badUri = URI.create("https://bad.example.com");
+        ImmutableSet<URI> expected = ImmutableSet.of(goodUri1, goodUri2, badUri);
+        SparseTimeStat failureTimeStat = mock(SparseTimeStat.class);
+        when(httpServiceBalancerStats.requestTime(any(URI.class), eq(Status.FAILURE))).thenReturn(failureTimeStat);
+        SparseTimeStat successTimeStat = mock(SparseTimeStat.class);
+        when(httpServiceBalancerStats.requestTime(any(URI.class), eq(Status.SUCCESS))).thenReturn(successTimeStat);
+        SparseCounterStat counterStat = mock(SparseCounterStat.class);
+        when(httpServiceBalancerStats.failure(any(URI.class), eq("testing failure"))).thenReturn(counterStat);
+        SparseTimeStat badRemovalStat = mock(SparseTimeStat.class);
+        when(httpServiceBalancerStats.removal(URI.create("https://bad.example.com"))).thenReturn(badRemovalStat);
+        SparseTimeStat good1RemovalStat = mock(SparseTimeStat.class);
+        when(httpServiceBalancerStats.removal(URI.create("http://good1.example.com"))).thenReturn(good1RemovalStat);
+        SparseTimeStat good2RemovalStat = mock(SparseTimeStat.class);
+        when(httpServiceBalancerStats.removal(URI.create("http://good2.example.com"))).thenReturn(good2RemovalStat);
+
+        httpServiceBalancer.updateHttpUris(expected);
+        // Increase concurrency on goodUris to 1
+        HttpServiceAttempt attempt;
+        for (int i = 0; i < 2; i++) {
+            attempt = httpServiceBalancer.createAttempt();
+            while (attempt.getUri().equals(badUri)) {
+                attempt.markGood();
+                attempt = httpServiceBalancer.createAttempt();
+            }
+        }
+
+        // Mark badUri as down. Power of two choices can pass over the
+        // least loaded instance when it is not one of the two sampled.
+        int failures = 0;
+        while (failures < 5) {
+            attempt = httpServiceBalancer.createAttempt();
+            if (attempt.getUri().equals(badUri)) {
+                attempt.markBad("testing failure");
+                ++failures;
+            }
+            else {
+                attempt.markGood();
+            }
+        }
+        verify(badRemovalStat).add(any());
+
+        HttpServiceAttempt attempt1 = httpServiceBalancer.createAttempt();
+        HttpServiceAttempt attempt2 = httpServiceBalancer.createAttempt();
+        for (int i = 0; i < 5; i++) {
+            assertNotEquals(attempt1.getUri(), badUri);
+            assertNotEquals(attempt2.getUri(), badUri);
+            assertNotEquals(attempt2.getUri(), attempt1.getUri(), "concurrent attempt");
+            attempt1.markBad("testing failure");
+            attempt1 = attempt1.next();
+            attempt2.markBad("testing failure");
+            attempt2 = attempt2.next();
+        }
+        verify(good1RemovalStat).add(any());
+        verify(good2RemovalStat).add(any());
+
+        for (int i = 0; i < 5; i++) {
+            // All are marked dead, so badUri can be in the mix.
+            // The balancer can repeat URIs in this case. assertNotEquals(attempt2.getUri(), attempt1.getUri(), "concurrent attempt on " + attempt1.getUri());
+            // This test is asserting that we still give out attempts when all URIs are bad.
+            attempt1.markBad("testing failure");
+            attempt1 = attempt1.next();
+            attempt2.markBad("testing failure");
+            attempt2 = attempt2.next();
+        }
+        verifyNoMoreInteractions(badRemovalStat);
+        verifyNoMoreInteractions(good1RemovalStat);
+        verifyNoMoreInteractions(good2RemovalStat);
+    }
+}
@@ -1,5 +1,9 @@
 package com.proofpoint.http.client.jetty;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.proofpoint.http.client.AbstractHttpClientTest;
@@ -9,6 +13,7 @@ import com.proofpoint.http.client.HttpRequestFilter;
 import com.proofpoint.http.client.Request;
 import com.proofpoint.http.client.Response;
 import com.proofpoint.http.client.ResponseHandler;
+import com.proofpoint.http.client.StreamingResponseHandler;
 import com.proofpoint.http.client.TestingRequestFilter;
 import com.proofpoint.tracetoken.TraceToken;
 import com.proofpoint.units.Duration;
@@ -16,8 +21,14 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.proofpoint.http.client.Request.Builder.prepareGet;
@@ -25,8 +36,12 @@ import static com.proofpoint.testing.Closeables.closeQuietly;
 import static com.proofpoint.tracetoken.TraceTokenManager.createAndRegisterNewRequestToken;
 import static com.proofpoint.tracetoken.TraceTokenManager.getCurrentTraceToken;
 import static com.proofpoint.tracetoken.TraceTokenManager.registerTraceToken;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class TestAsyncJettyHttpClient
@@ -202,4 +217,215 @@ public class TestAsyncJettyHttpClient
         listenerLatch.await();
         assertEquals(callbackToken.get(), token);
     }
+
+    @Test
+    public void testStreamingResponseToNonBlockingParser()
+            throws Exception
+    {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 100_000; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(i);
+        }
+        body.append(']');
+        servlet.setResponseBody(body.toString());
+
+        Request request = prepareGet()
+                .setUri(baseURI)
+                .build();
+
+        long sum = httpClient.executeAsyncStreaming(request, new StreamingResponseHandler<Long, IOException>()
+        {
+            @Override
+            public Long handleException(Request request, Exception exception)
+            {
+                throw new AssertionError("unexpected exception", exception);
+            }
+
+            @Override
+            public BodyConsumer<Long, IOException> handleHeaders(Request request, Response response)
+                    throws IOException
+            {
+                assertEquals(response.getStatusCode(), 200);
+                JsonParser parser = new JsonFactory().createNonBlockingByteArrayParser();
+                ByteArrayFeeder feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+                return new BodyConsumer<Long, IOException>()
+                {
+                    private long sum;
+
+                    @Override
+                    public void onContent(ByteBuffer content, Runnable release)
+                            throws IOException
+                    {
+                        byte[] bytes = new byte[content.remaining()];
+                        content.get(bytes);
+                        release.run();
+                        feeder.feedInput(bytes, 0, bytes.length);
+                        readTokens();
+                    }
+
+                    @Override
+                    public Long onComplete()
+                            throws IOException
+                    {
+                        feeder.endOfInput();
+                        readTokens();
+                        return sum;
+                    }
+
+                    private void readTokens()
+                            throws IOException
+                    {
+                        JsonToken token;
+                        while ((token = parser.nextToken()) != JsonToken.NOT_AVAILABLE && token != null) {
+                            if (token == JsonToken.VALUE_NUMBER_INT) {
+                                sum += parser.getLongValue();
+                            }
+                        }
+                    }
+                };
+            }
+        }).get();
+
+        assertEquals(sum, 99_999L * 100_000L / 2);
+        assertEquals(stats.getReadBytes().getAllTime().getTotal(), (double) body.length());
+    }
+
+    @Test
+    public void testStreamingResponseReleasedLater()
+            throws Exception
+    {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            body.append("line ").append(i).append('\n');
+        }
+        servlet.setResponseBody(body.toString());
+
+        Request request = prepareGet()
+                .setUri(baseURI)
+                .build();
+
+        ExecutorService executor = newSingleThreadExecutor();
+        AtomicInteger outstanding = new AtomicInteger();
+        try {
+            String result = httpClient.executeAsyncStreaming(request, new StreamingResponseHandler<String, RuntimeException>()
+            {
+                @Override
+                public String handleException(Request request, Exception exception)
+                {
+                    throw new AssertionError("unexpected exception", exception);
+                }
+
+                @Override
+                public BodyConsumer<String, RuntimeException> handleHeaders(Request request, Response response)
+                {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    return new BodyConsumer<String, RuntimeException>()
+                    {
+                        @Override
+                        public void onContent(ByteBuffer content, Runnable release)
+                        {
+                            assertEquals(outstanding.incrementAndGet(), 1, "chunks outstanding");
+                            executor.execute(() -> {
+                                while (content.hasRemaining()) {
+                                    out.write(content.get());
+                                }
+                                outstanding.decrementAndGet();
+                                release.run();
+                            });
+                        }
+
+                        @Override
+                        public String onComplete()
+                        {
+                            assertEquals(outstanding.get(), 0);
+                            return new String(out.toByteArray(), UTF_8);
+                        }
+                    };
+                }
+            }).get();
+
+            assertEquals(result, body.toString());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStreamingResponseConsumerThrows()
+            throws Exception
+    {
+        servlet.setResponseBody("body text");
+
+        Request request = prepareGet()
+                .setUri(baseURI)
+                .build();
+
+        RuntimeException expected = new RuntimeException("test");
+        HttpResponseFuture<Void> future = httpClient.executeAsyncStreaming(request, new StreamingResponseHandler<Void, RuntimeException>()
+        {
+            @Override
+            public Void handleException(Request request, Exception exception)
+            {
+                throw new AssertionError("unexpected exception", exception);
+            }
+
+            @Override
+            public BodyConsumer<Void, RuntimeException> handleHeaders(Request request, Response response)
+            {
+                return new BodyConsumer<Void, RuntimeException>()
+                {
+                    @Override
+                    public void onContent(ByteBuffer content, Runnable release)
+                    {
+                        throw expected;
+                    }
+
+                    @Override
+                    public Void onComplete()
+                    {
+                        throw new AssertionError("unexpected completion");
+                    }
+                };
+            }
+        });
+
+        try {
+            future.get();
+            fail("expected exception");
+        }
+        catch (ExecutionException e) {
+            assertSame(e.getCause(), expected);
+        }
+    }
+
+    @Test
+    public void testStreamingResponseConnectionFailure()
+            throws Exception
+    {
+        Request request = prepareGet()
+                .setUri(new URI("http", null, "127.0.0.1", findUnusedPort(), "/", null, null))
+                .build();
+
+        String result = httpClient.executeAsyncStreaming(request, new StreamingResponseHandler<String, RuntimeException>()
+        {
+            @Override
+            public String handleException(Request request, Exception exception)
+            {
+                assertTrue(exception instanceof IOException, "exception is an IOException");
+                return "handled";
+            }
+
+            @Override
+            public BodyConsumer<String, RuntimeException> handleHeaders(Request request, Response response)
+            {
+                throw new AssertionError("unexpected response");
+            }
+        }).get();
+
+        assertEquals(result, "handled");
+    }
 }
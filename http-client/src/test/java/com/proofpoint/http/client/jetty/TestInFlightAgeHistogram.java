@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.jetty;
+
+import org.testng.annotations.Test;
+
+import static com.proofpoint.http.client.jetty.InFlightAgeHistogram.SLOTS;
+import static com.proofpoint.http.client.jetty.InFlightAgeHistogram.SLOT_NANOS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+
+public class TestInFlightAgeHistogram
+{
+    private static final long BASE = 1_000_000_000L;
+
+    @Test
+    public void testEmpty()
+    {
+        InFlightAgeHistogram histogram = new InFlightAgeHistogram(BASE);
+        assertEquals(histogram.countOlderThan(0, BASE), 0);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(1), BASE + SECONDS.toNanos(10)), 0);
+    }
+
+    @Test
+    public void testCountsByAge()
+    {
+        InFlightAgeHistogram histogram = new InFlightAgeHistogram(BASE);
+        histogram.add(BASE);
+        histogram.add(BASE + SECONDS.toNanos(5));
+        histogram.add(BASE + SECONDS.toNanos(5));
+        histogram.add(BASE + SECONDS.toNanos(9));
+
+        long now = BASE + SECONDS.toNanos(10);
+        assertEquals(histogram.countOlderThan(0, now), 4);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(1), now), 4);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(2), now), 3);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(6), now), 1);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(11), now), 0);
+    }
+
+    @Test
+    public void testRemove()
+    {
+        InFlightAgeHistogram histogram = new InFlightAgeHistogram(BASE);
+        histogram.add(BASE);
+        histogram.add(BASE + SECONDS.toNanos(5));
+        histogram.remove(BASE);
+
+        long now = BASE + SECONDS.toNanos(10);
+        assertEquals(histogram.countOlderThan(0, now), 1);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(6), now), 0);
+
+        histogram.remove(BASE + SECONDS.toNanos(5));
+        assertEquals(histogram.countOlderThan(0, now), 0);
+    }
+
+    @Test
+    public void testSlotReuseKeepsOldRequests()
+    {
+        InFlightAgeHistogram histogram = new InFlightAgeHistogram(BASE);
+        long window = SLOTS * SLOT_NANOS;
+        histogram.add(BASE);
+        histogram.add(BASE + window);
+
+        long now = BASE + window + SECONDS.toNanos(1);
+        assertEquals(histogram.countOlderThan(0, now), 2);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(60), now), 1);
+
+        histogram.remove(BASE);
+        assertEquals(histogram.countOlderThan(0, now), 1);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(60), now), 0);
+
+        histogram.remove(BASE + window);
+        assertEquals(histogram.countOlderThan(0, now), 0);
+    }
+
+    @Test
+    public void testAddAfterSlotReused()
+    {
+        InFlightAgeHistogram histogram = new InFlightAgeHistogram(BASE);
+        long window = SLOTS * SLOT_NANOS;
+        histogram.add(BASE + window);
+        histogram.add(BASE);
+
+        long now = BASE + window + SECONDS.toNanos(1);
+        assertEquals(histogram.countOlderThan(SECONDS.toNanos(60), now), 1);
+
+        histogram.remove(BASE);
+        histogram.remove(BASE + window);
+        assertEquals(histogram.countOlderThan(0, now), 0);
+    }
+}
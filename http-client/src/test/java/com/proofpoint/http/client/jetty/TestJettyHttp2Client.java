@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.jetty;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.proofpoint.http.client.EchoServlet;
+import com.proofpoint.http.client.HttpClientConfig;
+import com.proofpoint.http.client.Request;
+import com.proofpoint.http.client.StatusResponseHandler.StatusResponse;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.proofpoint.http.client.Request.Builder.prepareGet;
+import static com.proofpoint.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static com.proofpoint.testing.Closeables.closeQuietly;
+import static org.testng.Assert.assertEquals;
+
+public class TestJettyHttp2Client
+{
+    private static final int MAX_CONCURRENT_STREAMS = 2;
+
+    private Server server;
+    private URI baseURI;
+    private JettyIoPool jettyIoPool;
+    private JettyHttpClient httpClient;
+
+    @BeforeMethod
+    public void setUp()
+            throws Exception
+    {
+        try {
+            Class.forName("org.eclipse.jetty.http2.client.HTTP2ClientConnectionFactory");
+            Class.forName("org.eclipse.jetty.http2.server.HTTP2ServerConnection");
+        }
+        catch (ClassNotFoundException e) {
+            throw new SkipException("HTTP/2 transport is not on the test classpath", e);
+        }
+
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server, new HTTP2CServerConnectionFactory(new HttpConfiguration()));
+        server.addConnector(connector);
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.addServlet(new ServletHolder(new EchoServlet()), "/*");
+        server.setHandler(context);
+        server.start();
+
+        baseURI = new URI("http", null, "127.0.0.1", connector.getLocalPort(), null, null, null);
+
+        jettyIoPool = new JettyIoPool("test-http2", new JettyIoPoolConfig());
+        httpClient = new JettyHttpClient(new HttpClientConfig()
+                .setHttp2Enabled(true)
+                .setHttp2MaxConcurrentStreams(MAX_CONCURRENT_STREAMS), jettyIoPool, ImmutableList.of());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+            throws Exception
+    {
+        closeQuietly(httpClient);
+        closeQuietly(jettyIoPool);
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testPriorKnowledgeRequest()
+            throws Exception
+    {
+        Request request = prepareGet()
+                .setUri(baseURI.resolve("/road/to/nowhere"))
+                .build();
+
+        assertEquals(httpClient.execute(request, createStatusResponseHandler()).getStatusCode(), 200);
+    }
+
+    @Test
+    public void testCompletedStreamsLeaveDestination()
+            throws Exception
+    {
+        Request request = prepareGet()
+                .setUri(baseURI.resolve("/road/to/nowhere"))
+                .build();
+
+        List<ListenableFuture<StatusResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < MAX_CONCURRENT_STREAMS * 10; i++) {
+            futures.add(httpClient.executeAsync(request, createStatusResponseHandler()));
+        }
+        for (ListenableFuture<StatusResponse> future : futures) {
+            assertEquals(future.get().getStatusCode(), 200);
+        }
+
+        // the complete listener may run after the response has been handed back
+        for (int i = 0; i < 100 && !httpClient.dumpDestination(baseURI).isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(httpClient.dumpDestination(baseURI), "");
+    }
+}
@@ -1,20 +1,56 @@
 package com.proofpoint.http.client.jetty;
 
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
 import com.proofpoint.http.client.AbstractHttpClientTest;
 import com.proofpoint.http.client.HttpClientConfig;
 import com.proofpoint.http.client.HttpRequestFilter;
 import com.proofpoint.http.client.Request;
+import com.proofpoint.http.client.Response;
 import com.proofpoint.http.client.ResponseHandler;
+import com.proofpoint.http.client.ResponseTooLargeException;
+import com.proofpoint.http.client.StringResponseHandler.StringResponse;
 import com.proofpoint.http.client.TestingRequestFilter;
+import com.proofpoint.units.DataSize;
+import com.proofpoint.units.DataSize.Unit;
+import com.proofpoint.units.Duration;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.proofpoint.http.client.Request.Builder.prepareGet;
+import static com.proofpoint.http.client.Request.Builder.preparePut;
+import static com.proofpoint.http.client.StaticBodyGenerator.createStaticBodyGenerator;
+import static com.proofpoint.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static com.proofpoint.http.client.StringResponseHandler.createStringResponseHandler;
 import static com.proofpoint.testing.Closeables.closeQuietly;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class TestJettyHttpClient
         extends AbstractHttpClientTest
 {
+    private static final String BODY = Strings.repeat("compressible response body ", 50);
+
     private JettyHttpClient httpClient;
     private JettyIoPool jettyIoPool;
 
@@ -34,6 +70,237 @@ public class TestJettyHttpClient
         closeQuietly(jettyIoPool);
     }
 
+    @Test
+    public void testDestinationStats()
+            throws Exception
+    {
+        ConcurrentMap<URI, DestinationStats> destinations = new ConcurrentHashMap<>();
+        try (JettyHttpClient client = new JettyHttpClient(createClientConfig(), jettyIoPool, ImmutableList.of(),
+                destination -> destinations.computeIfAbsent(destination, uri -> new DestinationStats()))) {
+            Request request = prepareGet()
+                    .setUri(baseURI.resolve("/road/to/nowhere"))
+                    .build();
+            assertEquals(client.execute(request, createStatusResponseHandler()).getStatusCode(), 200);
+
+            URI destination = URI.create(baseURI.getScheme() + "://" + baseURI.getHost() + ":" + baseURI.getPort());
+            assertEquals(destinations.keySet(), ImmutableSet.of(destination));
+            DestinationStats stats = destinations.get(destination);
+
+            // the complete listener may run after the response has been handed back
+            for (int i = 0; i < 100 && stats.getActiveRequests() != 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(stats.getQueuedRequests(), 0);
+            assertEquals(stats.getActiveRequests(), 0);
+            assertEquals(stats.getInFlightOver1s(), 0);
+            assertEquals(stats.getActiveConnections() + stats.getIdleConnections(), 1);
+        }
+    }
+
+    @Test
+    public void testIdleDestinationStatsRemoved()
+            throws Exception
+    {
+        Set<URI> removed = ConcurrentHashMap.newKeySet();
+        JettyHttpClientStats destinationStats = new JettyHttpClientStats()
+        {
+            @Override
+            public DestinationStats destination(URI destination)
+            {
+                return new DestinationStats();
+            }
+
+            @Override
+            public void destinationRemoved(URI destination, DestinationStats stats)
+            {
+                removed.add(destination);
+            }
+        };
+        HttpClientConfig config = createClientConfig().setIdleTimeout(new Duration(100, MILLISECONDS));
+        try (JettyHttpClient client = new JettyHttpClient(config, jettyIoPool, ImmutableList.of(), destinationStats)) {
+            Request request = prepareGet()
+                    .setUri(baseURI.resolve("/road/to/nowhere"))
+                    .build();
+            assertEquals(client.execute(request, createStatusResponseHandler()).getStatusCode(), 200);
+
+            URI destination = URI.create(baseURI.getScheme() + "://" + baseURI.getHost() + ":" + baseURI.getPort());
+            for (int i = 0; i < 500 && removed.isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(removed, ImmutableSet.of(destination));
+        }
+    }
+
+    @Test
+    public void testGzipResponseDecoded()
+            throws Exception
+    {
+        byte[] compressed = gzip(BODY);
+        servlet.addResponseHeader("Content-Encoding", "gzip");
+        servlet.setResponseBody(compressed);
+
+        try (JettyHttpClient client = new JettyHttpClient(createClientConfig().setCompressionEnabled(true), jettyIoPool, ImmutableList.of())) {
+            StringResponse response = client.execute(prepareGet().setUri(baseURI).build(), createStringResponseHandler());
+
+            assertEquals(servlet.getRequestHeaders("Accept-Encoding"), ImmutableList.of("gzip, deflate"));
+            assertEquals(response.getBody(), BODY);
+            assertNull(response.getHeader("Content-Encoding"));
+            assertNull(response.getHeader("Content-Length"));
+            assertEquals(client.getStats().getCompressedReadBytes().getTotalCount(), compressed.length);
+            assertEquals(client.getStats().getUncompressedReadBytes().getTotalCount(), BODY.length());
+        }
+    }
+
+    @Test
+    public void testGzipResponseDecodedAsync()
+            throws Exception
+    {
+        servlet.addResponseHeader("Content-Encoding", "gzip");
+        servlet.setResponseBody(gzip(BODY));
+
+        try (JettyHttpClient client = new JettyHttpClient(createClientConfig().setCompressionEnabled(true), jettyIoPool, ImmutableList.of())) {
+            StringResponse response = client.executeAsync(prepareGet().setUri(baseURI).build(), createStringResponseHandler()).get();
+
+            assertEquals(response.getBody(), BODY);
+            assertNull(response.getHeader("Content-Encoding"));
+        }
+    }
+
+    @Test
+    public void testDeflateResponseDecoded()
+            throws Exception
+    {
+        for (boolean nowrap : new boolean[] {false, true}) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap))) {
+                deflate.write(BODY.getBytes(UTF_8));
+            }
+            servlet.addResponseHeader("Content-Encoding", "deflate");
+            servlet.setResponseBody(out.toByteArray());
+
+            try (JettyHttpClient client = new JettyHttpClient(createClientConfig().setCompressionEnabled(true), jettyIoPool, ImmutableList.of())) {
+                StringResponse response = client.execute(prepareGet().setUri(baseURI).build(), createStringResponseHandler());
+                assertEquals(response.getBody(), BODY);
+            }
+        }
+    }
+
+    @Test
+    public void testDecodedResponseLimitedToMaxContentLength()
+            throws Exception
+    {
+        servlet.addResponseHeader("Content-Encoding", "gzip");
+        servlet.setResponseBody(gzip(BODY));
+        HttpClientConfig config = createClientConfig()
+                .setCompressionEnabled(true)
+                .setMaxContentLength(new DataSize(1, Unit.KILOBYTE));
+
+        try (JettyHttpClient client = new JettyHttpClient(config, jettyIoPool, ImmutableList.of())) {
+            try {
+                client.execute(prepareGet().setUri(baseURI).build(), createStringResponseHandler());
+                fail("expected ResponseTooLargeException");
+            }
+            catch (ResponseTooLargeException ignored) {
+            }
+
+            try {
+                client.executeAsync(prepareGet().setUri(baseURI).build(), createStringResponseHandler()).get();
+                fail("expected ResponseTooLargeException");
+            }
+            catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ResponseTooLargeException, "cause is " + e.getCause());
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyEncodedResponse()
+            throws Exception
+    {
+        servlet.addResponseHeader("Content-Encoding", "gzip");
+
+        try (JettyHttpClient client = new JettyHttpClient(createClientConfig().setCompressionEnabled(true), jettyIoPool, ImmutableList.of())) {
+            StringResponse response = client.execute(prepareGet().setUri(baseURI).build(), createStringResponseHandler());
+            assertEquals(response.getStatusCode(), 200);
+            assertEquals(response.getBody(), "");
+        }
+    }
+
+    @Test
+    public void testCallerAcceptEncodingNotDecoded()
+            throws Exception
+    {
+        byte[] compressed = gzip(BODY);
+        servlet.addResponseHeader("Content-Encoding", "gzip");
+        servlet.setResponseBody(compressed);
+
+        try (JettyHttpClient client = new JettyHttpClient(createClientConfig().setCompressionEnabled(true), jettyIoPool, ImmutableList.of())) {
+            Request request = prepareGet()
+                    .setUri(baseURI)
+                    .setHeader("accept-encoding", "gzip")
+                    .build();
+            byte[] body = client.execute(request, new ResponseHandler<byte[], Exception>()
+            {
+                @Override
+                public byte[] handleException(Request request, Exception exception)
+                        throws Exception
+                {
+                    throw exception;
+                }
+
+                @Override
+                public byte[] handle(Request request, Response response)
+                        throws Exception
+                {
+                    assertEquals(response.getHeader("Content-Encoding"), "gzip");
+                    return ByteStreams.toByteArray(response.getInputStream());
+                }
+            });
+
+            assertEquals(servlet.getRequestHeaders("Accept-Encoding"), ImmutableList.of("gzip"));
+            assertEquals(body, compressed);
+        }
+    }
+
+    @Test
+    public void testCompressionDisabledByDefault()
+            throws Exception
+    {
+        executeRequest(prepareGet().setUri(baseURI).build(), createStatusResponseHandler());
+        assertEquals(servlet.getRequestHeaders("Accept-Encoding"), ImmutableList.of());
+    }
+
+    @Test
+    public void testRequestCompression()
+            throws Exception
+    {
+        HttpClientConfig config = createClientConfig().setRequestCompressionThreshold(new DataSize(100, Unit.BYTE));
+        try (JettyHttpClient client = new JettyHttpClient(config, jettyIoPool, ImmutableList.of())) {
+            client.execute(preparePut().setUri(baseURI).setBodySource(createStaticBodyGenerator(BODY, UTF_8)).build(), createStatusResponseHandler());
+
+            assertEquals(servlet.getRequestHeaders("Content-Encoding"), ImmutableList.of("gzip"));
+            byte[] requestBytes = servlet.getRequestBytes();
+            assertEquals(new String(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(requestBytes))), UTF_8), BODY);
+            assertEquals(client.getStats().getUncompressedWrittenBytes().getTotalCount(), BODY.length());
+            assertEquals(client.getStats().getCompressedWrittenBytes().getTotalCount(), requestBytes.length);
+
+            client.execute(preparePut().setUri(baseURI).setBodySource(createStaticBodyGenerator("small", UTF_8)).build(), createStatusResponseHandler());
+
+            assertEquals(servlet.getRequestHeaders("Content-Encoding"), ImmutableList.of());
+            assertEquals(servlet.getRequestBytes(), "small".getBytes(UTF_8));
+        }
+    }
+
+    private static byte[] gzip(String body)
+            throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body.getBytes(UTF_8));
+        }
+        return out.toByteArray();
+    }
+
     @Override
     protected HttpClientConfig createClientConfig()
     {
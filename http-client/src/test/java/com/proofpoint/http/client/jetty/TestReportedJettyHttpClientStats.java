@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.client.jetty;
+
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.reporting.ReportExporter;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class TestReportedJettyHttpClientStats
+{
+    private static final URI DESTINATION = URI.create("http://example.com:80");
+
+    private ReportExporter reportExporter;
+    private ReportedJettyHttpClientStats clientStats;
+
+    @BeforeMethod
+    public void setup()
+    {
+        reportExporter = mock(ReportExporter.class);
+        clientStats = new ReportedJettyHttpClientStats(reportExporter, "HttpClient.Foo.Destination");
+    }
+
+    @Test
+    public void testExportedOnce()
+    {
+        DestinationStats stats = clientStats.destination(DESTINATION);
+        assertSame(clientStats.destination(DESTINATION), stats);
+
+        verify(reportExporter).export(stats, false, "HttpClient.Foo.Destination", ImmutableMap.of("targetUri", "http://example.com:80"));
+        verifyNoMoreInteractions(reportExporter);
+    }
+
+    @Test
+    public void testUnexportedWhenRemoved()
+    {
+        DestinationStats stats = clientStats.destination(DESTINATION);
+        clientStats.destinationRemoved(DESTINATION, stats);
+
+        verify(reportExporter).export(stats, false, "HttpClient.Foo.Destination", ImmutableMap.of("targetUri", "http://example.com:80"));
+        verify(reportExporter).unexportObject(stats);
+        assertNotSame(clientStats.destination(DESTINATION), stats);
+    }
+
+    @Test
+    public void testRemoveReplacedDestination()
+    {
+        DestinationStats stats = clientStats.destination(DESTINATION);
+        clientStats.destinationRemoved(DESTINATION, new DestinationStats());
+
+        verify(reportExporter).export(stats, false, "HttpClient.Foo.Destination", ImmutableMap.of("targetUri", "http://example.com:80"));
+        verifyNoMoreInteractions(reportExporter);
+        assertSame(clientStats.destination(DESTINATION), stats);
+    }
+}
@@ -5,15 +5,19 @@ import com.proofpoint.http.client.HttpStatus;
 import com.proofpoint.http.client.Request;
 import com.proofpoint.http.client.Response;
 import com.proofpoint.http.client.ResponseHandler;
+import com.proofpoint.http.client.StreamingResponseHandler;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.concurrent.ExecutionException;
 
 import static com.proofpoint.http.client.Request.Builder.prepareGet;
 import static com.proofpoint.http.client.StatusResponseHandler.createStatusResponseHandler;
 import static com.proofpoint.http.client.testing.TestingResponse.mockResponse;
 import static com.proofpoint.testing.Assertions.assertInstanceOf;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
 import static org.testng.Assert.fail;
@@ -88,6 +92,52 @@ public class TestTestingHttpClient
         assertEquals(client.getRequestCount(), 1);
     }
 
+    @Test
+    public void testAsyncStreaming()
+            throws Exception
+    {
+        Request request = prepareGet()
+                .setUri(URI.create("http://example.org"))
+                .build();
+        String body = new String(new char[20_000]).replace('\0', 'x');
+
+        TestingHttpClient client = new TestingHttpClient(input -> mockResponse().body(body).build());
+        HttpResponseFuture<String> future = client
+                .executeAsyncStreaming(request, new StreamingResponseHandler<String, RuntimeException>()
+                {
+                    @Override
+                    public String handleException(Request request, Exception exception)
+                    {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public BodyConsumer<String, RuntimeException> handleHeaders(Request request, Response response)
+                    {
+                        assertEquals(response.getStatusCode(), 200);
+                        ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        return new BodyConsumer<String, RuntimeException>()
+                        {
+                            @Override
+                            public void onContent(ByteBuffer content, Runnable release)
+                            {
+                                out.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+                                release.run();
+                            }
+
+                            @Override
+                            public String onComplete()
+                            {
+                                return new String(out.toByteArray(), UTF_8);
+                            }
+                        };
+                    }
+                });
+
+        assertEquals(future.get(), body);
+        assertEquals(client.getRequestCount(), 1);
+    }
+
     @Test
     public void testExceptionFromProcessor()
             throws Exception
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.proofpoint.http.server.HttpServerConfig.LogQueueFullPolicy;
+import com.proofpoint.log.Logger;
+import com.proofpoint.reporting.Gauge;
+import com.proofpoint.stats.CounterStat;
+import org.weakref.jmx.Nested;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes request log events to an appender from a dedicated thread.
+ * <p>
+ * Request threads only place the event on a bounded ring buffer. The writer
+ * thread appends the events in batches and flushes once per batch, so
+ * request threads never wait on the file system, rollover, or compression
+ * of rolled files.
+ */
+class AsyncRequestLogWriter
+{
+    private static final Logger log = Logger.get(AsyncRequestLogWriter.class);
+    private static final int MAX_BATCH_SIZE = 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long STOP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final Appender<HttpRequestEvent> appender;
+    private final OutputStreamAppender<HttpRequestEvent> outputStreamAppender;
+    private final RequestLogRingBuffer<HttpRequestEvent> queue;
+    private final boolean blockWhenFull;
+    private final Thread writerThread;
+    private final CounterStat droppedEntries = new CounterStat();
+    private volatile boolean writerWaiting = false;
+    private volatile boolean stopped = false;
+
+    AsyncRequestLogWriter(Appender<HttpRequestEvent> appender, int queueSize, LogQueueFullPolicy queueFullPolicy)
+    {
+        this.appender = requireNonNull(appender, "appender is null");
+        if (appender instanceof OutputStreamAppender) {
+            // flushed once per batch instead
+            outputStreamAppender = (OutputStreamAppender<HttpRequestEvent>) appender;
+            outputStreamAppender.setImmediateFlush(false);
+        }
+        else {
+            outputStreamAppender = null;
+        }
+        queue = new RequestLogRingBuffer<>(queueSize);
+        blockWhenFull = requireNonNull(queueFullPolicy, "queueFullPolicy is null") == LogQueueFullPolicy.BLOCK;
+
+        writerThread = new Thread(this::run, "http-request-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    void write(HttpRequestEvent event)
+    {
+        while (!queue.offer(event)) {
+            if (!blockWhenFull || stopped) {
+                droppedEntries.add(1);
+                return;
+            }
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        if (writerWaiting) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    void stop()
+    {
+        stopped = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(STOP_TIMEOUT_MILLIS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appender.stop();
+    }
+
+    @Gauge
+    public int getQueuedEntries()
+    {
+        return queue.size();
+    }
+
+    @Nested
+    public CounterStat getDroppedEntries()
+    {
+        return droppedEntries;
+    }
+
+    private void run()
+    {
+        while (true) {
+            if (writeBatch() > 0) {
+                continue;
+            }
+            if (stopped) {
+                // anything queued before stop() was called has been written
+                return;
+            }
+            writerWaiting = true;
+            // a producer that enqueued before seeing writerWaiting did not unpark us
+            if (queue.size() == 0 && !stopped) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            writerWaiting = false;
+        }
+    }
+
+    private int writeBatch()
+    {
+        int count = 0;
+        HttpRequestEvent event;
+        while (count < MAX_BATCH_SIZE && (event = queue.poll()) != null) {
+            try {
+                appender.doAppend(event);
+            }
+            catch (RuntimeException e) {
+                log.error(e, "Error writing request log");
+            }
+            ++count;
+        }
+        if (count > 0 && outputStreamAppender != null) {
+            OutputStream outputStream = outputStreamAppender.getOutputStream();
+            if (outputStream != null) {
+                try {
+                    outputStream.flush();
+                }
+                catch (IOException e) {
+                    log.error(e, "Error flushing request log");
+                }
+            }
+        }
+        return count;
+    }
+}
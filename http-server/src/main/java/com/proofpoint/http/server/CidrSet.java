@@ -17,7 +17,7 @@ package com.proofpoint.http.server;
 
 import com.google.common.collect.ImmutableSet;
 
-import java.net.Inet4Address;
+import javax.annotation.Nullable;
 import java.net.InetAddress;
 import java.util.Arrays;
 import java.util.Collection;
@@ -25,23 +25,45 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import static com.proofpoint.http.server.InetNetwork.bitAt;
+import static com.proofpoint.http.server.InetNetwork.commonPrefixLength;
+import static java.lang.Math.min;
+
 public class CidrSet
 {
-    private final Set<Inet4Network> cidrs;
+    private final Set<InetNetwork> cidrs;
+
+    // Path-compressed binary tries of the blocks, one per address length,
+    // so a lookup costs at most one pass over the address bits.
+    private final Node inet4Root;
+    private final Node inet6Root;
 
-    private CidrSet(Collection<Inet4Network> cidrs) {
+    private CidrSet(Collection<InetNetwork> cidrs) {
         this.cidrs = ImmutableSet.copyOf(cidrs);
+
+        Node inet4Root = null;
+        Node inet6Root = null;
+        for (InetNetwork cidr : this.cidrs) {
+            if (cidr.getPrefix().length == 4) {
+                inet4Root = insert(inet4Root, cidr.getPrefix(), cidr.getBits());
+            }
+            else {
+                inet6Root = insert(inet6Root, cidr.getPrefix(), cidr.getBits());
+            }
+        }
+        this.inet4Root = inet4Root;
+        this.inet6Root = inet6Root;
     }
 
     /**
      * Returns a {@link CidrSet} from a string.
      *
-     * @param cidrList Comma-separated list of IPv4 CIDR blocks. For now only IPv4 CIDR blocks are supported.
+     * @param cidrList Comma-separated list of IPv4 or IPv6 CIDR blocks.
      * @return A {@link CidrSet} identifying all addresses in the blocks in {@code cidrList}.
      */
     public static CidrSet fromString(String cidrList) {
-        Set<Inet4Network> uris = Arrays.stream(cidrList.split("\\s*,\\s*"))
-                        .map(Inet4Network::fromCidr)
+        Set<InetNetwork> uris = Arrays.stream(cidrList.split("\\s*,\\s*"))
+                        .map(InetNetwork::fromCidr)
                         .collect(ImmutableSet.toImmutableSet());
         return new CidrSet(uris);
     }
@@ -62,22 +84,25 @@ public class CidrSet
      */
     public boolean containsAddress(InetAddress address)
     {
-        if (!(address instanceof Inet4Address)) {
-            return false;
-        }
-
-        Inet4Address inet4Address = (Inet4Address) address;
-        for (Inet4Network cidr : cidrs) {
-            if (cidr.containsAddress(inet4Address)) {
+        byte[] bytes = address.getAddress();
+        Node node = (bytes.length == 4) ? inet4Root : inet6Root;
+        int matchedBits = 0;
+        while (node != null) {
+            matchedBits = commonPrefixLength(bytes, node.prefix, matchedBits, node.bits);
+            if (matchedBits < node.bits) {
+                return false;
+            }
+            if (node.isBlock()) {
                 return true;
             }
+            node = node.child(bitAt(bytes, node.bits));
         }
 
         return false;
     }
 
     public CidrSet union(CidrSet other) {
-        return new CidrSet(ImmutableSet.<Inet4Network>builder()
+        return new CidrSet(ImmutableSet.<InetNetwork>builder()
                 .addAll(cidrs)
                 .addAll(other.cidrs)
                 .build());
@@ -107,7 +132,64 @@ public class CidrSet
     public String toString()
     {
         return cidrs.stream()
-                .map(Inet4Network::toString)
+                .map(InetNetwork::toString)
                 .collect(Collectors.joining(","));
     }
+
+    private static Node insert(@Nullable Node node, byte[] prefix, int bits)
+    {
+        if (node == null) {
+            return new Node(prefix, bits, null, null);
+        }
+
+        int common = commonPrefixLength(prefix, node.prefix, 0, min(bits, node.bits));
+        if (common == bits) {
+            // The new block covers everything under this node
+            return new Node(prefix, bits, null, null);
+        }
+        if (common == node.bits) {
+            if (node.isBlock()) {
+                return node;
+            }
+            if (bitAt(prefix, node.bits) == 0) {
+                return new Node(node.prefix, node.bits, insert(node.zero, prefix, bits), node.one);
+            }
+            return new Node(node.prefix, node.bits, node.zero, insert(node.one, prefix, bits));
+        }
+
+        Node block = new Node(prefix, bits, null, null);
+        if (bitAt(prefix, common) == 0) {
+            return new Node(prefix, common, block, node);
+        }
+        return new Node(prefix, common, node, block);
+    }
+
+    private static class Node
+    {
+        // only the first bits of the prefix are significant
+        private final byte[] prefix;
+        private final int bits;
+
+        // both null for a block in the set, otherwise both non-null
+        private final Node zero;
+        private final Node one;
+
+        Node(byte[] prefix, int bits, @Nullable Node zero, @Nullable Node one)
+        {
+            this.prefix = prefix;
+            this.bits = bits;
+            this.zero = zero;
+            this.one = one;
+        }
+
+        boolean isBlock()
+        {
+            return zero == null;
+        }
+
+        Node child(int bit)
+        {
+            return (bit == 0) ? zero : one;
+        }
+    }
 }
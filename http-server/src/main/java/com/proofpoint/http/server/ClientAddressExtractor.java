@@ -15,23 +15,26 @@
  */
 package com.proofpoint.http.server;
 
-import com.google.common.base.Splitter;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 import com.google.common.net.InetAddresses;
 import com.google.inject.Inject;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 
 public class ClientAddressExtractor
 {
+    private static final String CLIENT_ADDRESS_ATTRIBUTE = ClientAddressExtractor.class.getName() + ".clientAddress";
     private static final CidrSet PRIVATE_NETWORKS = CidrSet.fromString(
             "127.0.0.0/8," +
             "169.254.0.0/16," +
             "192.168.0.0/16," +
             "172.16.0.0/12," +
-            "10.0.0.0/8");
+            "10.0.0.0/8," +
+            "::1/128," +
+            "fe80::/10," +
+            "fc00::/7");
 
     private final CidrSet trustedNetworks;
 
@@ -46,33 +49,84 @@ public class ClientAddressExtractor
         trustedNetworks = PRIVATE_NETWORKS.union(config.getInternalNetworks());
     }
 
+    /**
+     * Returns the address of the client that made a request: the last
+     * address in the {@code X-Forwarded-For} chain, followed by the
+     * remote address, that is not in a trusted network. The result is
+     * cached in a request attribute, so later calls for the same request
+     * do not parse the chain again.
+     */
     public String clientAddressFor(HttpServletRequest request)
     {
-        ImmutableList.Builder<String> builder = ImmutableList.builder();
-        for (Enumeration<String> e = request.getHeaders("X-FORWARDED-FOR"); e != null && e.hasMoreElements(); ) {
-            String forwardedFor = e.nextElement();
-            builder.addAll(Splitter.on(',').trimResults().omitEmptyStrings().split(forwardedFor));
+        Object cached = request.getAttribute(CLIENT_ADDRESS_ATTRIBUTE);
+        if (cached instanceof CachedClientAddress && ((CachedClientAddress) cached).extractor == this) {
+            return ((CachedClientAddress) cached).clientAddress;
         }
-        if (request.getRemoteAddr() != null) {
-            builder.add(request.getRemoteAddr());
+
+        String clientAddress = extractClientAddress(request);
+        request.setAttribute(CLIENT_ADDRESS_ATTRIBUTE, new CachedClientAddress(this, clientAddress));
+        return clientAddress;
+    }
+
+    private String extractClientAddress(HttpServletRequest request)
+    {
+        String remoteAddress = request.getRemoteAddr();
+        if (remoteAddress != null && !isTrusted(remoteAddress)) {
+            return remoteAddress;
+        }
+
+        Enumeration<String> headers = request.getHeaders("X-FORWARDED-FOR");
+        if (headers == null || !headers.hasMoreElements()) {
+            return remoteAddress;
         }
-        String clientAddress = null;
-        ImmutableList<String> clientAddresses = builder.build();
-        for (String address : Lists.reverse(clientAddresses)) {
-            try {
-                if (!trustedNetworks.containsAddress(InetAddresses.forString(address))) {
-                    clientAddress = address;
-                    break;
+
+        // Walk the hops from the closest proxy back towards the client
+        List<String> lines = Collections.list(headers);
+        String clientAddress = remoteAddress;
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            String header = lines.get(i);
+            int end = header.length();
+            while (end > 0) {
+                int start = header.lastIndexOf(',', end - 1) + 1;
+                String address = header.substring(start, end).trim();
+                end = start - 1;
+                if (address.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    if (!trustedNetworks.containsAddress(InetAddresses.forString(address))) {
+                        return address;
+                    }
+                }
+                catch (IllegalArgumentException ignored) {
+                    return clientAddress;
                 }
                 clientAddress = address;
             }
-            catch (IllegalArgumentException ignored) {
-                break;
-            }
-        }
-        if (clientAddress == null) {
-            clientAddress = request.getRemoteAddr();
         }
         return clientAddress;
     }
+
+    private boolean isTrusted(String address)
+    {
+        try {
+            return trustedNetworks.containsAddress(InetAddresses.forString(address));
+        }
+        catch (IllegalArgumentException ignored) {
+            return false;
+        }
+    }
+
+    private static class CachedClientAddress
+    {
+        private final ClientAddressExtractor extractor;
+        private final String clientAddress;
+
+        CachedClientAddress(ClientAddressExtractor extractor, String clientAddress)
+        {
+            this.extractor = extractor;
+            this.clientAddress = clientAddress;
+        }
+    }
 }
@@ -18,20 +18,20 @@ package com.proofpoint.http.server;
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.ContextBase;
 import ch.qos.logback.core.encoder.EncoderBase;
+import com.google.common.annotations.VisibleForTesting;
 import com.proofpoint.log.Logging;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.component.LifeCycle;
-import org.joda.time.format.DateTimeFormatter;
-import org.joda.time.format.DateTimeFormatterBuilder;
-import org.joda.time.format.ISODateTimeFormat;
+import org.joda.time.DateTime;
+
+import javax.annotation.Nullable;
 
 import static com.proofpoint.http.server.HttpRequestEvent.createHttpRequestEvent;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 class DelimitedRequestLog
-        implements RequestLog, LifeCycle
+        implements RequestLog, LifeCycle, QueuedRequestLog
 {
     // Tab-separated
     // Time, ip, method, url, user, agent, response code, request length, response length, response time
@@ -39,6 +39,7 @@ class DelimitedRequestLog
     private final CurrentTimeMillisProvider currentTimeMillisProvider;
     private final Appender<HttpRequestEvent> appender;
     private final ClientAddressExtractor clientAddressExtractor;
+    private final AsyncRequestLogWriter asyncWriter;
 
     DelimitedRequestLog(HttpServerConfig config, CurrentTimeMillisProvider currentTimeMillisProvider, ClientAddressExtractor clientAddressExtractor)
     {
@@ -52,6 +53,13 @@ class DelimitedRequestLog
                 config.getLogMaxTotalSize(),
                 new EventEncoder(),
                 new ContextBase());
+
+        if (config.isLogAsyncEnabled()) {
+            asyncWriter = new AsyncRequestLogWriter(appender, config.getLogAsyncQueueSize(), config.getLogAsyncQueueFullPolicy());
+        }
+        else {
+            asyncWriter = null;
+        }
     }
 
     @Override
@@ -60,11 +68,23 @@ class DelimitedRequestLog
         long currentTime = currentTimeMillisProvider.getCurrentTimeMillis();
         HttpRequestEvent event = createHttpRequestEvent(request, response, currentTime, clientAddressExtractor);
 
+        if (asyncWriter != null) {
+            asyncWriter.write(event);
+            return;
+        }
+
         synchronized (appender) {
             appender.doAppend(event);
         }
     }
 
+    @Override
+    @Nullable
+    public AsyncRequestLogWriter getAsyncWriter()
+    {
+        return asyncWriter;
+    }
+
     @Override
     public void start()
     {
@@ -73,7 +93,12 @@ class DelimitedRequestLog
     @Override
     public void stop()
     {
-        appender.stop();
+        if (asyncWriter != null) {
+            asyncWriter.stop();
+        }
+        else {
+            appender.stop();
+        }
     }
 
     @Override
@@ -122,13 +147,14 @@ class DelimitedRequestLog
     {
     }
 
-    private static class EventEncoder extends EncoderBase<HttpRequestEvent>
+    @VisibleForTesting
+    static class EventEncoder extends EncoderBase<HttpRequestEvent>
     {
+        private static final int BUFFER_SIZE = 4096;
 
-        private final DateTimeFormatter isoFormatter = new DateTimeFormatterBuilder()
-                        .append(ISODateTimeFormat.dateHourMinuteSecondFraction())
-                        .appendTimeZoneOffset("Z", true, 2, 2)
-                        .toFormatter();
+        private final RequestLogLineBuffer buffer = new RequestLogLineBuffer(BUFFER_SIZE);
+        private final RequestLogTimestampFormatter timestampFormatter = new RequestLogTimestampFormatter();
+        private final char[] timestamp = new char[RequestLogTimestampFormatter.MAX_LENGTH];
 
         @Override
         public byte[] headerBytes()
@@ -137,32 +163,35 @@ class DelimitedRequestLog
         }
 
         @Override
-        public byte[] encode(HttpRequestEvent event)
+        public synchronized byte[] encode(HttpRequestEvent event)
         {
-            StringBuilder builder = new StringBuilder();
-            builder.append(isoFormatter.print(event.getTimeStamp()))
-                    .append('\t')
-                    .append(event.getClientAddress())
-                    .append('\t')
-                    .append(event.getMethod())
-                    .append('\t')
-                    .append(event.getRequestUri()) // TODO: escape
-                    .append('\t')
-                    .append(event.getUser())
-                    .append('\t')
-                    .append(event.getAgent()) // TODO: escape
-                    .append('\t')
-                    .append(event.getResponseCode())
-                    .append('\t')
-                    .append(event.getRequestSize())
-                    .append('\t')
-                    .append(event.getResponseSize())
-                    .append('\t')
-                    .append(event.getTimeToLastByte())
-                    .append('\t')
-                    .append(event.getTraceToken())
-                    .append('\n');
-            return builder.toString().getBytes(UTF_8);
+            DateTime timeStamp = event.getTimeStamp();
+            int timestampLength = timestampFormatter.format(timeStamp.getMillis(), timeStamp.getZone(), timestamp);
+
+            buffer.reset(BUFFER_SIZE);
+            buffer.appendAscii(timestamp, 0, timestampLength)
+                    .appendAscii('\t')
+                    .appendUtf8(event.getClientAddress())
+                    .appendAscii('\t')
+                    .appendUtf8(event.getMethod())
+                    .appendAscii('\t')
+                    .appendUtf8(event.getRequestUri()) // TODO: escape
+                    .appendAscii('\t')
+                    .appendUtf8(event.getUser())
+                    .appendAscii('\t')
+                    .appendUtf8(event.getAgent()) // TODO: escape
+                    .appendAscii('\t')
+                    .appendLong(event.getResponseCode())
+                    .appendAscii('\t')
+                    .appendLong(event.getRequestSize())
+                    .appendAscii('\t')
+                    .appendLong(event.getResponseSize())
+                    .appendAscii('\t')
+                    .appendLong(event.getTimeToLastByte())
+                    .appendAscii('\t')
+                    .appendUtf8(event.getTraceToken())
+                    .appendAscii('\n');
+            return buffer.toByteArray();
         }
 
         @Override
@@ -17,6 +17,7 @@ package com.proofpoint.http.server;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.google.common.annotations.VisibleForTesting;
 import com.proofpoint.units.Duration;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
@@ -81,7 +82,8 @@ class HttpRequestEvent
     private final int responseCode;
     private final long timeToLastByte;
 
-    private HttpRequestEvent(DateTime timeStamp,
+    @VisibleForTesting
+    HttpRequestEvent(DateTime timeStamp,
             String traceToken,
             String clientAddress,
             String method,
@@ -74,6 +74,7 @@ import java.util.Set;
 import java.util.concurrent.Executor;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.proofpoint.tracetoken.TraceTokenManager.setThreadNamesEnabled;
 import static java.time.temporal.ChronoUnit.DAYS;
 import static java.util.Collections.list;
 import static java.util.Comparator.naturalOrder;
@@ -101,6 +102,7 @@ public class HttpServer
     private final RequestStats stats;
     private final MaxGauge busyThreads = new MaxGauge();
     private final ClientAddressExtractor clientAddressExtractor;
+    private final AsyncRequestLogWriter requestLogWriter;
 
     private final Optional<ZonedDateTime> certificateExpiration;
 
@@ -186,6 +188,10 @@ public class HttpServer
             server.addBean(new ErrorHandler());
         }
 
+        if (config.isTraceTokenThreadNamesEnabled()) {
+            setThreadNamesEnabled(true);
+        }
+
         if (mbeanServer != null) {
             // export jmx mbeans if a server was provided
             MBeanContainer mbeanContainer = new MBeanContainer(mbeanServer);
@@ -308,18 +314,20 @@ public class HttpServer
          *
          * server
          *    |--- statistics handler
-         *           |--- context handler
-         *           |       |--- (no) admin filter
-         *           |       |--- timing filter
-         *           |       |--- query string filter
-         *           |       |--- trace token filter
-         *           |       |--- gzip response filter
-         *           |       |--- gzip request filter
-         *           |       |--- security handler
-         *           |       |--- user provided filters
-         *           |       |--- the servlet (normally GuiceContainer)
-         *           |       |--- resource handlers
-         *           |--- log handler
+         *           \--- request timing handler
+         *                  |--- context handler
+         *                  |       |--- (no) admin filter
+         *                  |       |--- timing filter
+         *                  |       |--- query string filter
+         *                  |       |--- trace token filter
+         *                  |       |--- gzip response filter
+         *                  |       |--- gzip request filter
+         *                  |       |--- security handler
+         *                  |       |--- user provided filters
+         *                  |       |--- the servlet (normally GuiceContainer)
+         *                  |       |--- resource handlers
+         *                  |--- log handler
+         *                  |--- stats recording handler
          *    |-- admin context handler
          *           |--- timing filter
          *           |--- query string filter
@@ -339,6 +347,12 @@ public class HttpServer
         }
 
         handlers.addHandler(createServletContext(theServlet, parameters, false, filters, queryStringFilter, loginService, nodeInfo, "http", "https"));
+        if (logHandler != null && logHandler.getRequestLog() instanceof QueuedRequestLog) {
+            requestLogWriter = ((QueuedRequestLog) logHandler.getRequestLog()).getAsyncWriter();
+        }
+        else {
+            requestLogWriter = null;
+        }
         if (logHandler != null) {
             handlers.addHandler(logHandler);
         }
@@ -348,8 +362,11 @@ public class HttpServer
         handlers.addHandler(statsRecorder);
 
         // add handlers to Jetty
+        RequestTimingHandler timingHandler = new RequestTimingHandler();
+        timingHandler.setHandler(handlers);
+
         StatisticsHandler statsHandler = new StatisticsHandler();
-        statsHandler.setHandler(handlers);
+        statsHandler.setHandler(timingHandler);
 
         HandlerList rootHandlers = new HandlerList();
         if (theAdminServlet != null && config.isAdminEnabled()) {
@@ -475,6 +492,12 @@ public class HttpServer
         return busyThreads;
     }
 
+    @Nested
+    AsyncRequestLogWriter getRequestLog()
+    {
+        return requestLogWriter;
+    }
+
 
     private static void checkSufficientThreads(Connector connector, String name)
     {
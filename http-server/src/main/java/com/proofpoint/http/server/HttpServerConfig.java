@@ -24,6 +24,7 @@ import com.proofpoint.units.DataSize.Unit;
 import com.proofpoint.units.Duration;
 
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -69,6 +70,9 @@ public class HttpServerConfig
     private DataSize logMaxSegmentSize = new DataSize(100, Unit.MEGABYTE);
     private int logMaxHistory = 30;
     private DataSize logMaxTotalSize = new DataSize(1, Unit.GIGABYTE);
+    private boolean logAsyncEnabled = false;
+    private int logAsyncQueueSize = 8192;
+    private LogQueueFullPolicy logAsyncQueueFullPolicy = LogQueueFullPolicy.DROP;
 
     private Integer httpAcceptorThreads;
     private Integer httpSelectorThreads;
@@ -91,6 +95,7 @@ public class HttpServerConfig
     private int adminMaxThreads = 200;
 
     private boolean showStackTrace = false;
+    private boolean traceTokenThreadNamesEnabled = false;
 
     public boolean isHttpEnabled()
     {
@@ -339,6 +344,47 @@ public class HttpServerConfig
         return this;
     }
 
+    public boolean isLogAsyncEnabled()
+    {
+        return logAsyncEnabled;
+    }
+
+    @Config("http-server.log.async.enabled")
+    @ConfigDescription("Write the request log from a dedicated thread instead of the request threads")
+    public HttpServerConfig setLogAsyncEnabled(boolean logAsyncEnabled)
+    {
+        this.logAsyncEnabled = logAsyncEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getLogAsyncQueueSize()
+    {
+        return logAsyncQueueSize;
+    }
+
+    @Config("http-server.log.async.queue-size")
+    @ConfigDescription("Maximum number of request log entries waiting to be written, rounded up to a power of two")
+    public HttpServerConfig setLogAsyncQueueSize(int logAsyncQueueSize)
+    {
+        this.logAsyncQueueSize = logAsyncQueueSize;
+        return this;
+    }
+
+    @NotNull
+    public LogQueueFullPolicy getLogAsyncQueueFullPolicy()
+    {
+        return logAsyncQueueFullPolicy;
+    }
+
+    @Config("http-server.log.async.queue-full-policy")
+    @ConfigDescription("What a request thread does when the request log queue is full: DROP the entry or BLOCK until there is room")
+    public HttpServerConfig setLogAsyncQueueFullPolicy(LogQueueFullPolicy logAsyncQueueFullPolicy)
+    {
+        this.logAsyncQueueFullPolicy = logAsyncQueueFullPolicy;
+        return this;
+    }
+
     public String getUserAuthFile()
     {
         return userAuthFile;
@@ -464,9 +510,28 @@ public class HttpServerConfig
         return this;
     }
 
+    public boolean isTraceTokenThreadNamesEnabled()
+    {
+        return traceTokenThreadNamesEnabled;
+    }
+
+    @Config("http-server.trace-token.thread-names.enabled")
+    @ConfigDescription("Append the trace token to the name of the thread handling a request")
+    public HttpServerConfig setTraceTokenThreadNamesEnabled(boolean traceTokenThreadNamesEnabled)
+    {
+        this.traceTokenThreadNamesEnabled = traceTokenThreadNamesEnabled;
+        return this;
+    }
+
     public enum LogFormat
     {
         TSV,
         JSON,
     }
+
+    public enum LogQueueFullPolicy
+    {
+        DROP,
+        BLOCK,
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import com.google.common.net.InetAddresses;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+final class InetNetwork
+{
+    private final InetAddress address;
+    private final byte[] prefix;
+    private final int bits;
+
+    private InetNetwork(InetAddress address, int bits)
+    {
+        this.address = address;
+        this.prefix = address.getAddress();
+        this.bits = bits;
+    }
+
+    public boolean containsAddress(InetAddress address)
+    {
+        byte[] bytes = address.getAddress();
+        return bytes.length == prefix.length && commonPrefixLength(prefix, bytes, 0, bits) == bits;
+    }
+
+    byte[] getPrefix()
+    {
+        return prefix;
+    }
+
+    int getBits()
+    {
+        return bits;
+    }
+
+    @Override
+    public String toString()
+    {
+        return InetAddresses.toAddrString(address) + "/" + bits;
+    }
+
+    @Override
+    @SuppressWarnings({"RedundantIfStatement"})
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        InetNetwork that = (InetNetwork) o;
+
+        if (bits != that.bits) {
+            return false;
+        }
+        if (!Arrays.equals(prefix, that.prefix)) {
+            return false;
+        }
+
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = Arrays.hashCode(prefix);
+        result = 31 * result + bits;
+        return result;
+    }
+
+    public static InetNetwork fromCidr(String cidr)
+    {
+        String[] parts = cidr.split("/");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("invalid CIDR format: " + cidr);
+        }
+
+        InetAddress address = InetAddresses.forString(parts[0]);
+        int bits = Integer.parseInt(parts[1]);
+        byte[] bytes = address.getAddress();
+
+        if ((bits < 0) || (bits > bytes.length * 8)) {
+            throw new IllegalArgumentException("invalid prefix size: " + bits);
+        }
+
+        for (int i = 0; i < bytes.length; i++) {
+            int hostBits = min(8, max(0, (i + 1) * 8 - bits));
+            if ((bytes[i] & ((1 << hostBits) - 1)) != 0) {
+                throw new IllegalArgumentException("invalid prefix for prefix size: " + bits);
+            }
+        }
+
+        return new InetNetwork(address, bits);
+    }
+
+    /**
+     * Returns the number of leading bits, up to {@code maxBits}, that two
+     * addresses of the same length have in common. Comparison starts at
+     * the byte containing {@code fromBit}; the bits before it are assumed
+     * to be equal.
+     */
+    static int commonPrefixLength(byte[] a, byte[] b, int fromBit, int maxBits)
+    {
+        for (int i = fromBit >>> 3; i * 8 < maxBits; i++) {
+            int difference = (a[i] ^ b[i]) & 0xff;
+            if (difference != 0) {
+                return min(maxBits, i * 8 + Integer.numberOfLeadingZeros(difference) - 24);
+            }
+        }
+        return maxBits;
+    }
+
+    static int bitAt(byte[] address, int index)
+    {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+}
@@ -18,21 +18,30 @@ package com.proofpoint.http.server;
 import ch.qos.logback.core.Appender;
 import ch.qos.logback.core.ContextBase;
 import ch.qos.logback.core.encoder.EncoderBase;
-import com.proofpoint.json.JsonCodec;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.annotations.VisibleForTesting;
 import com.proofpoint.log.Logging;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.component.LifeCycle;
+import org.joda.time.DateTimeZone;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.proofpoint.http.server.HttpRequestEvent.createHttpRequestEvent;
 
 class JsonRequestLog
-        implements RequestLog, LifeCycle
+        implements RequestLog, LifeCycle, QueuedRequestLog
 {
     private final CurrentTimeMillisProvider currentTimeMillisProvider;
     private final Appender<HttpRequestEvent> appender;
     private final ClientAddressExtractor clientAddressExtractor;
+    private final AsyncRequestLogWriter asyncWriter;
 
     JsonRequestLog(HttpServerConfig config, CurrentTimeMillisProvider currentTimeMillisProvider, ClientAddressExtractor clientAddressExtractor)
     {
@@ -46,6 +55,13 @@ class JsonRequestLog
                 config.getLogMaxTotalSize(),
                 new EventEncoder(),
                 new ContextBase());
+
+        if (config.isLogAsyncEnabled()) {
+            asyncWriter = new AsyncRequestLogWriter(appender, config.getLogAsyncQueueSize(), config.getLogAsyncQueueFullPolicy());
+        }
+        else {
+            asyncWriter = null;
+        }
     }
 
     @Override
@@ -54,11 +70,23 @@ class JsonRequestLog
         long currentTime = currentTimeMillisProvider.getCurrentTimeMillis();
         HttpRequestEvent event = createHttpRequestEvent(request, response, currentTime, clientAddressExtractor);
 
+        if (asyncWriter != null) {
+            asyncWriter.write(event);
+            return;
+        }
+
         synchronized (appender) {
             appender.doAppend(event);
         }
     }
 
+    @Override
+    @Nullable
+    public AsyncRequestLogWriter getAsyncWriter()
+    {
+        return asyncWriter;
+    }
+
     @Override
     public void start()
     {
@@ -67,7 +95,12 @@ class JsonRequestLog
     @Override
     public void stop()
     {
-        appender.stop();
+        if (asyncWriter != null) {
+            asyncWriter.stop();
+        }
+        else {
+            appender.stop();
+        }
     }
 
     @Override
@@ -116,9 +149,16 @@ class JsonRequestLog
     {
     }
 
-    private static class EventEncoder extends EncoderBase<HttpRequestEvent>
+    @VisibleForTesting
+    static class EventEncoder extends EncoderBase<HttpRequestEvent>
     {
-        private final JsonCodec<HttpRequestEvent> codec = JsonCodec.jsonCodec(HttpRequestEvent.class).withoutPretty();
+        private static final int BUFFER_SIZE = 4096;
+        private static final JsonFactory JSON_FACTORY = new JsonFactory().setRootValueSeparator(null);
+
+        private final RequestLogLineBuffer buffer = new RequestLogLineBuffer(BUFFER_SIZE);
+        private final RequestLogTimestampFormatter timestampFormatter = new RequestLogTimestampFormatter();
+        private final char[] chars = new char[RequestLogTimestampFormatter.MAX_LENGTH];
+        private JsonGenerator generator = createGenerator();
 
         @Override
         public byte[] headerBytes()
@@ -127,13 +167,35 @@ class JsonRequestLog
         }
 
         @Override
-        public byte[] encode(HttpRequestEvent event)
+        public synchronized byte[] encode(HttpRequestEvent event)
         {
-            byte[] jsonBytes = codec.toJsonBytes(event);
-            byte[] line = new byte[jsonBytes.length + 1];
-            System.arraycopy(jsonBytes, 0, line, 0, jsonBytes.length);
-            line[jsonBytes.length] = '\n';
-            return line;
+            buffer.reset(BUFFER_SIZE);
+            try {
+                generator.writeStartObject();
+                generator.writeFieldName("time");
+                generator.writeString(chars, 0, timestampFormatter.format(event.getTimeStamp().getMillis(), DateTimeZone.UTC, chars));
+                writeStringField("traceToken", event.getTraceToken());
+                writeStringField("sourceIp", event.getClientAddress());
+                writeStringField("method", event.getMethod());
+                writeStringField("requestUri", event.getRequestUri());
+                writeStringField("username", event.getUser());
+                writeStringField("userAgent", event.getAgent());
+                generator.writeNumberField("responseCode", event.getResponseCode());
+                generator.writeNumberField("requestSize", event.getRequestSize());
+                generator.writeNumberField("responseSize", event.getResponseSize());
+                generator.writeFieldName("timeToLastByte");
+                generator.writeString(chars, 0, formatMillis(event.getTimeToLastByte(), chars));
+                generator.writeEndObject();
+                generator.flush();
+            }
+            catch (IOException | RuntimeException e) {
+                // the generator may be left inside the object, so start over with a fresh one
+                generator = createGenerator();
+                throwIfUnchecked(e);
+                throw new UncheckedIOException((IOException) e);
+            }
+            buffer.write('\n');
+            return buffer.toByteArray();
         }
 
         @Override
@@ -141,5 +203,47 @@ class JsonRequestLog
         {
             return null;
         }
+
+        private void writeStringField(String name, String value)
+                throws IOException
+        {
+            if (value != null) {
+                generator.writeStringField(name, value);
+            }
+        }
+
+        private JsonGenerator createGenerator()
+        {
+            try {
+                return JSON_FACTORY.createGenerator(buffer);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Same text as Duration.toString() for a duration in milliseconds, such as "3453.00ms"
+        private static int formatMillis(long millis, char[] destination)
+        {
+            int length = 0;
+            for (long remaining = millis; remaining >= 10; remaining /= 10) {
+                length++;
+            }
+            length++;
+
+            int position = length;
+            do {
+                destination[--position] = (char) ('0' + (millis % 10));
+                millis /= 10;
+            }
+            while (millis != 0);
+
+            destination[length++] = '.';
+            destination[length++] = '0';
+            destination[length++] = '0';
+            destination[length++] = 'm';
+            destination[length++] = 's';
+            return length;
+        }
     }
 }
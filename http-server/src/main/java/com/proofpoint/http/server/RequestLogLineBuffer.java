@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Reusable buffer for building request log lines. Strings are encoded to
+ * UTF-8 and numbers formatted directly into the buffer, so encoding a line
+ * only allocates the final copy returned by {@link #toByteArray()}.
+ * <p>
+ * Not thread-safe beyond the guarantees of {@link ByteArrayOutputStream};
+ * callers are expected to own the buffer.
+ */
+class RequestLogLineBuffer
+        extends ByteArrayOutputStream
+{
+    private static final byte[] NULL_BYTES = {'n', 'u', 'l', 'l'};
+    private static final byte[] MIN_LONG_BYTES = Long.toString(Long.MIN_VALUE).getBytes(UTF_8);
+
+    RequestLogLineBuffer(int initialSize)
+    {
+        super(initialSize);
+    }
+
+    /**
+     * Appends a character that is known to be ASCII.
+     */
+    RequestLogLineBuffer appendAscii(char c)
+    {
+        ensureAvailable(1);
+        buf[count++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Appends characters that are known to be ASCII.
+     */
+    RequestLogLineBuffer appendAscii(char[] chars, int offset, int length)
+    {
+        ensureAvailable(length);
+        for (int i = 0; i < length; i++) {
+            buf[count++] = (byte) chars[offset + i];
+        }
+        return this;
+    }
+
+    /**
+     * Appends the UTF-8 encoding of a string, or {@code null} if the string is null.
+     * Unpaired surrogates are replaced with {@code '?'}, as {@link String#getBytes} does.
+     */
+    RequestLogLineBuffer appendUtf8(String value)
+    {
+        if (value == null) {
+            write(NULL_BYTES, 0, NULL_BYTES.length);
+            return this;
+        }
+
+        int length = value.length();
+        ensureAvailable(length);
+        int i = 0;
+
+        // fast path for the common all-ASCII case
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            buf[count++] = (byte) c;
+            i++;
+        }
+
+        while (i < length) {
+            char c = value.charAt(i++);
+            if (c < 0x80) {
+                ensureAvailable(1);
+                buf[count++] = (byte) c;
+            }
+            else if (c < 0x800) {
+                ensureAvailable(2);
+                buf[count++] = (byte) (0xc0 | (c >> 6));
+                buf[count++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i < length && Character.isLowSurrogate(value.charAt(i))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(i++));
+                    ensureAvailable(4);
+                    buf[count++] = (byte) (0xf0 | (codePoint >> 18));
+                    buf[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                    buf[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                    buf[count++] = (byte) (0x80 | (codePoint & 0x3f));
+                }
+                else {
+                    ensureAvailable(1);
+                    buf[count++] = '?';
+                }
+            }
+            else {
+                ensureAvailable(3);
+                buf[count++] = (byte) (0xe0 | (c >> 12));
+                buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                buf[count++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends the decimal representation of a number, as {@link Long#toString(long)} does.
+     */
+    RequestLogLineBuffer appendLong(long value)
+    {
+        if (value == Long.MIN_VALUE) {
+            write(MIN_LONG_BYTES, 0, MIN_LONG_BYTES.length);
+            return this;
+        }
+
+        int length = 0;
+        if (value < 0) {
+            appendAscii('-');
+            value = -value;
+        }
+        for (long remaining = value; remaining >= 10; remaining /= 10) {
+            length++;
+        }
+        length++;
+
+        ensureAvailable(length);
+        int position = count + length;
+        count = position;
+        do {
+            buf[--position] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        while (value != 0);
+        return this;
+    }
+
+    /**
+     * Discards the contents, releasing the backing array if an unusually
+     * long line grew it beyond {@code maxRetainedSize} bytes.
+     */
+    void reset(int maxRetainedSize)
+    {
+        reset();
+        if (buf.length > maxRetainedSize) {
+            buf = new byte[maxRetainedSize];
+        }
+    }
+
+    private void ensureAvailable(int length)
+    {
+        int required = count + length;
+        if (required > buf.length) {
+            buf = Arrays.copyOf(buf, max(buf.length * 2, required));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer.
+ * <p>
+ * Each slot carries a sequence number telling producers and the consumer
+ * whose turn it is, so producers only contend on a compare-and-set of the
+ * tail and never block one another.
+ */
+@ThreadSafe
+class RequestLogRingBuffer<E>
+{
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    // only written by the consumer
+    private volatile long head = 0;
+
+    RequestLogRingBuffer(int minCapacity)
+    {
+        checkArgument(minCapacity > 0 && minCapacity <= 1 << 30, "minCapacity must be between 1 and 2^30");
+        // with a single slot, "published" and "free for the next lap" would be the same sequence number
+        int capacity = max(2, Integer.highestOneBit(minCapacity - 1) << 1);
+        mask = capacity - 1;
+        elements = new AtomicReferenceArray<>(capacity);
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity()
+    {
+        return mask + 1;
+    }
+
+    /**
+     * Adds an element, returning false if the buffer is full.
+     */
+    boolean offer(E element)
+    {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, element);
+                    // publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            }
+            else if (difference < 0) {
+                // the consumer has not yet taken the element from a lap ago
+                return false;
+            }
+            else {
+                // another producer took this position
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element, returning null if the buffer is empty.
+     * Must only be called from the consumer thread.
+     */
+    E poll()
+    {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = elements.get(index);
+        elements.lazySet(index, null);
+        // frees the slot for the producer one lap ahead
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    int size()
+    {
+        return (int) max(0, tail.get() - head);
+    }
+}
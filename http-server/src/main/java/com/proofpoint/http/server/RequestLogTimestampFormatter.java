@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+import org.joda.time.format.ISODateTimeFormat;
+
+import static java.lang.Math.floorDiv;
+import static java.lang.Math.floorMod;
+
+/**
+ * Formats request log timestamps as ISO-8601 with milliseconds and a zone
+ * offset, for example {@code 2018-03-07T16:21:10.123-08:00}.
+ * <p>
+ * Everything but the milliseconds only changes once per second, so the
+ * formatted text for the current second is cached and only the
+ * milliseconds are rewritten for each event. This class is not thread-safe.
+ */
+class RequestLogTimestampFormatter
+{
+    static final int MAX_LENGTH = 64;
+
+    private static final DateTimeFormatter ISO_FORMATTER = new DateTimeFormatterBuilder()
+            .append(ISODateTimeFormat.dateHourMinuteSecondFraction())
+            .appendTimeZoneOffset("Z", true, 2, 2)
+            .toFormatter();
+
+    private final char[] cached = new char[MAX_LENGTH];
+    private int cachedLength;
+    private int fractionIndex;
+    private long cachedSecond = Long.MIN_VALUE;
+    private DateTimeZone cachedZone;
+
+    /**
+     * Formats the timestamp into {@code destination}, which must hold at
+     * least {@link #MAX_LENGTH} characters.
+     *
+     * @return the number of characters written
+     */
+    int format(long millis, DateTimeZone zone, char[] destination)
+    {
+        long second = floorDiv(millis, 1000);
+        if (second != cachedSecond || zone != cachedZone) {
+            String text = ISO_FORMATTER.withZone(zone).print(second * 1000);
+            text.getChars(0, text.length(), cached, 0);
+            cachedLength = text.length();
+            fractionIndex = text.indexOf('.') + 1;
+            cachedSecond = second;
+            cachedZone = zone;
+        }
+
+        int fraction = (int) floorMod(millis, 1000);
+        cached[fractionIndex] = (char) ('0' + fraction / 100);
+        cached[fractionIndex + 1] = (char) ('0' + (fraction / 10) % 10);
+        cached[fractionIndex + 2] = (char) ('0' + fraction % 10);
+
+        System.arraycopy(cached, 0, destination, 0, cachedLength);
+        return cachedLength;
+    }
+}
@@ -22,9 +22,14 @@ import org.weakref.jmx.Nested;
 
 import javax.inject.Inject;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
 public class RequestStats
 {
     private final TimeStat requestTime;
+    private final TimeStat queueTime;
+    private final TimeStat processingTime;
+    private final TimeStat writeTime;
     private final DistributionStat readBytes;
     private final DistributionStat writtenBytes;
 
@@ -32,10 +37,17 @@ public class RequestStats
     public RequestStats()
     {
         requestTime = new TimeStat();
+        queueTime = new TimeStat();
+        processingTime = new TimeStat();
+        writeTime = new TimeStat();
         readBytes = new DistributionStat();
         writtenBytes = new DistributionStat();
     }
 
+    /**
+     * @deprecated Use {@link #record(long, long, long, long, long)}.
+     */
+    @Deprecated
     public void record(String method, int responseCode, long requestSizeInBytes, long responseSizeInBytes, Duration schedulingDelay, Duration requestProcessingTime)
     {
         requestTime.add(requestProcessingTime);
@@ -43,12 +55,46 @@ public class RequestStats
         writtenBytes.add(responseSizeInBytes);
     }
 
+    /**
+     * Records a completed request. The request time is the sum of the queue
+     * time (parsed until dispatched), the processing time (dispatched until
+     * the first response byte was written, or until completion if there was
+     * no response body) and the write time (first byte until completion).
+     */
+    public void record(long requestSizeInBytes, long responseSizeInBytes, long queueTimeNanos, long processingTimeNanos, long writeTimeNanos)
+    {
+        requestTime.add(queueTimeNanos + processingTimeNanos + writeTimeNanos, NANOSECONDS);
+        queueTime.add(queueTimeNanos, NANOSECONDS);
+        processingTime.add(processingTimeNanos, NANOSECONDS);
+        writeTime.add(writeTimeNanos, NANOSECONDS);
+        readBytes.add(requestSizeInBytes);
+        writtenBytes.add(responseSizeInBytes);
+    }
+
     @Nested
     public TimeStat getRequestTime()
     {
         return requestTime;
     }
 
+    @Nested
+    public TimeStat getQueueTime()
+    {
+        return queueTime;
+    }
+
+    @Nested
+    public TimeStat getProcessingTime()
+    {
+        return processingTime;
+    }
+
+    @Nested
+    public TimeStat getWriteTime()
+    {
+        return writeTime;
+    }
+
     @Nested
     public DistributionStat getReadBytes()
     {
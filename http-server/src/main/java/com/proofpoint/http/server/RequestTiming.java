@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import javax.servlet.ServletRequest;
+
+/**
+ * Monotonic timestamps for one request, kept in a request attribute so the
+ * timing filter and the stats recorder can share them without boxing.
+ */
+final class RequestTiming
+{
+    static final String REQUEST_TIMING_ATTRIBUTE = RequestTiming.class.getName();
+
+    private final long queueTimeNanos;
+    private final long dispatchNanos;
+    private volatile boolean firstByteWritten;
+    private volatile long firstByteNanos;
+
+    RequestTiming(long queueTimeNanos, long dispatchNanos)
+    {
+        this.queueTimeNanos = queueTimeNanos;
+        this.dispatchNanos = dispatchNanos;
+    }
+
+    static RequestTiming getRequestTiming(ServletRequest request)
+    {
+        return (RequestTiming) request.getAttribute(REQUEST_TIMING_ATTRIBUTE);
+    }
+
+    /**
+     * Time between Jetty parsing the request and dispatching it to a handler.
+     */
+    long getQueueTimeNanos()
+    {
+        return queueTimeNanos;
+    }
+
+    long getDispatchNanos()
+    {
+        return dispatchNanos;
+    }
+
+    void recordFirstByte()
+    {
+        if (!firstByteWritten) {
+            firstByteNanos = System.nanoTime();
+            firstByteWritten = true;
+        }
+    }
+
+    boolean isFirstByteWritten()
+    {
+        return firstByteWritten;
+    }
+
+    long getFirstByteNanos()
+    {
+        return firstByteNanos;
+    }
+}
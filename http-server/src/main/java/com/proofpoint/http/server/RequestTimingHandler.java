@@ -0,0 +1,51 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static com.proofpoint.http.server.RequestTiming.REQUEST_TIMING_ATTRIBUTE;
+import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Starts the {@link RequestTiming} of a request when it is first dispatched.
+ * Jetty only records when the request was parsed as a wall-clock time in
+ * milliseconds, so the queue time has millisecond resolution; everything
+ * after dispatch is measured with {@link System#nanoTime()}.
+ */
+class RequestTimingHandler
+        extends HandlerWrapper
+{
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException
+    {
+        if (baseRequest.getDispatcherType() == DispatcherType.REQUEST) {
+            long dispatchNanos = System.nanoTime();
+            long queueTimeMillis = max(0, System.currentTimeMillis() - baseRequest.getTimeStamp());
+            baseRequest.setAttribute(REQUEST_TIMING_ATTRIBUTE, new RequestTiming(MILLISECONDS.toNanos(queueTimeMillis), dispatchNanos));
+        }
+        super.handle(target, baseRequest, request, response);
+    }
+}
@@ -15,15 +15,15 @@
  */
 package com.proofpoint.http.server;
 
-import com.proofpoint.units.Duration;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.RequestLog;
 import org.eclipse.jetty.server.Response;
 
-import java.util.concurrent.TimeUnit;
-
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.proofpoint.http.server.RequestTiming.getRequestTiming;
 import static java.lang.Math.max;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class StatsRecordingHandler
         implements RequestLog
@@ -40,13 +40,32 @@ public class StatsRecordingHandler
     @Override
     public void log(Request request, Response response)
     {
-        Duration requestTime = new Duration(max(0, System.currentTimeMillis() - request.getTimeStamp()), TimeUnit.MILLISECONDS);
-
-        long dispatchTime = request.getTimeStamp();
+        long completedNanos = System.nanoTime();
+        RequestTiming timing = getRequestTiming(request);
 
-        Duration schedulingDelay = new Duration(max(0, dispatchTime - request.getTimeStamp()), TimeUnit.MILLISECONDS);
+        long queueTimeNanos;
+        long processingTimeNanos;
+        long writeTimeNanos;
+        if (timing == null) {
+            // the request was not dispatched through RequestTimingHandler
+            queueTimeNanos = 0;
+            processingTimeNanos = MILLISECONDS.toNanos(max(0, System.currentTimeMillis() - request.getTimeStamp()));
+            writeTimeNanos = 0;
+        }
+        else {
+            queueTimeNanos = timing.getQueueTimeNanos();
+            if (timing.isFirstByteWritten()) {
+                processingTimeNanos = max(0, timing.getFirstByteNanos() - timing.getDispatchNanos());
+                writeTimeNanos = max(0, completedNanos - timing.getFirstByteNanos());
+            }
+            else {
+                processingTimeNanos = max(0, completedNanos - timing.getDispatchNanos());
+                writeTimeNanos = 0;
+            }
+        }
 
-        stats.record(request.getMethod(), response.getStatus(), request.getContentRead(), response.getContentCount(), schedulingDelay, requestTime);
-        detailedRequestStats.requestTimeByCode(response.getStatus(), response.getStatus() / 100).add(requestTime);
+        stats.record(request.getContentRead(), response.getContentCount(), queueTimeNanos, processingTimeNanos, writeTimeNanos);
+        detailedRequestStats.requestTimeByCode(response.getStatus(), response.getStatus() / 100)
+                .add(queueTimeNanos + processingTimeNanos + writeTimeNanos, NANOSECONDS);
     }
 }
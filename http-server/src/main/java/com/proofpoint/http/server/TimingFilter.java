@@ -31,11 +31,11 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.Locale;
 
+import static com.proofpoint.http.server.RequestTiming.getRequestTiming;
+
 class TimingFilter
         implements Filter
 {
-    public static final String FIRST_BYTE_TIME = TimingFilter.class.getName() + ".FIRST_BYTE_TIME";
-
     @Override
     public void init(FilterConfig filterConfig)
             throws ServletException
@@ -46,16 +46,12 @@ class TimingFilter
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
             throws IOException, ServletException
     {
-        TimedResponse response = new TimedResponse((HttpServletResponse) servletResponse);
-        try {
-            chain.doFilter(servletRequest, response);
-        }
-        finally {
-            Long firstByteTime = response.getFirstByteTime();
-            if (firstByteTime != null) {
-                servletRequest.setAttribute(FIRST_BYTE_TIME, firstByteTime);
-            }
+        RequestTiming timing = getRequestTiming(servletRequest);
+        if (timing == null) {
+            chain.doFilter(servletRequest, servletResponse);
+            return;
         }
+        chain.doFilter(servletRequest, new TimedResponse((HttpServletResponse) servletResponse, timing));
     }
 
     @Override
@@ -65,12 +61,14 @@ class TimingFilter
 
     private static class TimedResponse extends HttpServletResponseWrapper
     {
+        private final RequestTiming timing;
         private TimedServletOutputStream outputStream;
         private TimedPrintWriter printWriter;
 
-        private TimedResponse(HttpServletResponse response)
+        private TimedResponse(HttpServletResponse response, RequestTiming timing)
         {
             super(response);
+            this.timing = timing;
         }
 
         @Override
@@ -79,7 +77,7 @@ class TimingFilter
         {
             Preconditions.checkState(printWriter == null, "getWriter() has already been called");
             if (outputStream == null) {
-                outputStream = new TimedServletOutputStream(super.getOutputStream());
+                outputStream = new TimedServletOutputStream(super.getOutputStream(), timing);
             }
             return outputStream;
         }
@@ -90,43 +88,26 @@ class TimingFilter
         {
             Preconditions.checkState(outputStream == null, "getOutputStream() has already been called");
             if (printWriter == null) {
-                printWriter = new TimedPrintWriter(super.getWriter());
+                printWriter = new TimedPrintWriter(super.getWriter(), timing);
             }
             return printWriter;
         }
-
-        public Long getFirstByteTime()
-        {
-            if (outputStream != null) {
-                return outputStream.getFirstByteTime();
-            }
-            if (printWriter != null) {
-                return printWriter.getFirstByteTime();
-            }
-            return null;
-        }
     }
 
     private static class TimedServletOutputStream extends ServletOutputStream
     {
         private final ServletOutputStream delegate;
-        private Long firstByteTime;
+        private final RequestTiming timing;
 
-        private TimedServletOutputStream(ServletOutputStream delegate)
+        private TimedServletOutputStream(ServletOutputStream delegate, RequestTiming timing)
         {
             this.delegate = delegate;
-        }
-
-        public Long getFirstByteTime()
-        {
-            return firstByteTime;
+            this.timing = timing;
         }
 
         private void recordFirstByteTime()
         {
-            if (firstByteTime == null) {
-                firstByteTime = System.currentTimeMillis();
-            }
+            timing.recordFirstByte();
         }
 
         @Override
@@ -302,23 +283,17 @@ class TimingFilter
 
     private static class TimedPrintWriter extends PrintWriter
     {
-        private Long firstByteTime;
+        private final RequestTiming timing;
 
-        private TimedPrintWriter(PrintWriter delegate)
+        private TimedPrintWriter(PrintWriter delegate, RequestTiming timing)
         {
             super(delegate);
-        }
-
-        public Long getFirstByteTime()
-        {
-            return firstByteTime;
+            this.timing = timing;
         }
 
         private void recordFirstByteTime()
         {
-            if (firstByteTime == null) {
-                firstByteTime = System.currentTimeMillis();
-            }
+            timing.recordFirstByte();
         }
 
         @Override
@@ -15,6 +15,7 @@
  */
 package com.proofpoint.http.server;
 
+import com.google.common.net.InetAddresses;
 import com.proofpoint.json.JsonCodec;
 import com.proofpoint.tracetoken.TraceToken;
 
@@ -44,7 +45,8 @@ class TraceTokenFilter
 {
     private static final JsonCodec<TraceToken> TRACE_TOKEN_JSON_CODEC = jsonCodec(TraceToken.class);
     private static final Encoder BASE64_URL_ENCODER = Base64.getUrlEncoder();
-    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+    private static final char[] BASE64_URL_ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final ThreadLocal<TokenGenerator> TOKEN_GENERATOR = ThreadLocal.withInitial(TokenGenerator::new);
 
     private final ClientAddressExtractor clientAddressExtractor;
     private final String tokenPrefix;
@@ -117,11 +119,66 @@ class TraceTokenFilter
     private void registerNewRequestToken(HttpServletRequest request)
             throws UnknownHostException
     {
-        byte[] randomBytes = new byte[15];
-        SECURE_RANDOM.nextBytes(randomBytes);
-        registerRequestToken(tokenPrefix
-                + encodeAddress(InetAddress.getByName(clientAddressExtractor.clientAddressFor(request)))
-                + BASE64_URL_ENCODER.encodeToString(randomBytes)
-        );
+        registerRequestToken(TOKEN_GENERATOR.get().generate(tokenPrefix, clientAddressExtractor.clientAddressFor(request)));
+    }
+
+    /**
+     * Per-thread token generation state, so that generating a token neither
+     * contends on a shared {@link SecureRandom} nor allocates anything but
+     * the token itself. Each thread has its own {@link SecureRandom}.
+     */
+    private static class TokenGenerator
+    {
+        // 120 random bits, the same as Base64 encoding 15 random bytes
+        private static final int RANDOM_CHARS = 20;
+
+        private final SecureRandom random = new SecureRandom();
+        private final StringBuilder builder = new StringBuilder();
+
+        // keep-alive connections send many requests from the same client
+        private String lastClientAddress;
+        private String lastEncodedClientAddress;
+
+        String generate(String tokenPrefix, String clientAddress)
+                throws UnknownHostException
+        {
+            builder.setLength(0);
+            builder.append(tokenPrefix)
+                    .append(encodeClientAddress(clientAddress));
+            appendRandom(random.nextLong(), RANDOM_CHARS / 2);
+            appendRandom(random.nextLong(), RANDOM_CHARS / 2);
+            return builder.toString();
+        }
+
+        private void appendRandom(long bits, int count)
+        {
+            for (int i = 0; i < count; i++) {
+                builder.append(BASE64_URL_ALPHABET[(int) (bits & 0x3f)]);
+                bits >>>= 6;
+            }
+        }
+
+        private String encodeClientAddress(String clientAddress)
+                throws UnknownHostException
+        {
+            if (clientAddress == null || !clientAddress.equals(lastClientAddress)) {
+                lastEncodedClientAddress = encodeAddress(parseAddress(clientAddress));
+                lastClientAddress = clientAddress;
+            }
+            return lastEncodedClientAddress;
+        }
+
+        private static InetAddress parseAddress(String address)
+                throws UnknownHostException
+        {
+            if (address != null) {
+                try {
+                    return InetAddresses.forString(address);
+                }
+                catch (IllegalArgumentException ignored) {
+                }
+            }
+            return InetAddress.getByName(address);
+        }
     }
 }
@@ -50,7 +50,6 @@ public abstract class AbstractTestRequestLog
     @Mock
     ClientAddressExtractor clientAddressExtractor;
     private File file;
-    private long timeToFirstByte;
     private long timeToLastByte;
     private long now;
     private long timestamp;
@@ -83,7 +82,6 @@ public abstract class AbstractTestRequestLog
     {
         initMocks(this);
 
-        timeToFirstByte = 456;
         timeToLastByte = 3453;
         now = System.currentTimeMillis();
         timestamp = now - timeToLastByte;
@@ -118,7 +116,6 @@ public abstract class AbstractTestRequestLog
         when(request.getHeaders("X-FORWARDED-FOR")).thenReturn(Collections.enumeration(ImmutableList.of()));
         when(request.getProtocol()).thenReturn("unknown");
         when(request.getHeader("X-FORWARDED-PROTO")).thenReturn(protocol);
-        when(request.getAttribute(TimingFilter.FIRST_BYTE_TIME)).thenReturn(timestamp + timeToFirstByte);
         when(request.getHttpURI()).thenReturn(new HttpURI("http://www.example.com/aaa+bbb/ccc?param=hello%20there&other=true"));
         when(request.getUserPrincipal()).thenReturn(principal);
         when(request.getMethod()).thenReturn(method);
@@ -152,4 +149,20 @@ public abstract class AbstractTestRequestLog
         String expected = getExpectedLogLine(timestamp, "9.9.9.9", method, pathQuery, user, agent, responseCode, requestSize, responseSize, currentTime - request.getTimeStamp());
         assertEquals(actual, expected);
     }
+
+    @Test
+    public void testWriteLogNullUserAndNonAsciiAgent()
+            throws Exception
+    {
+        String agent = "\"Agent\" \u00e9\u4e2d\ud83d\ude00";
+        when(request.getUserPrincipal()).thenReturn(null);
+        when(request.getHeader("User-Agent")).thenReturn(agent);
+
+        logger.log(request, response);
+        stopLogger();
+
+        String actual = Files.asCharSource(file, Charsets.UTF_8).read();
+        String expected = getExpectedLogLine(timestamp, "9.9.9.9", method, pathQuery, null, agent, responseCode, requestSize, responseSize, currentTime - request.getTimeStamp());
+        assertEquals(actual, expected);
+    }
 }
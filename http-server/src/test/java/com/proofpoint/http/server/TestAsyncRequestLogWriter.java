@@ -0,0 +1,148 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import ch.qos.logback.core.Appender;
+import com.proofpoint.http.server.HttpServerConfig.LogQueueFullPolicy;
+import org.mockito.InOrder;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.fail;
+
+public class TestAsyncRequestLogWriter
+{
+    @Test
+    public void testWritesInOrder()
+    {
+        Appender<HttpRequestEvent> appender = mock(Appender.class);
+        AsyncRequestLogWriter writer = new AsyncRequestLogWriter(appender, 16, LogQueueFullPolicy.DROP);
+        HttpRequestEvent first = mock(HttpRequestEvent.class);
+        HttpRequestEvent second = mock(HttpRequestEvent.class);
+
+        writer.write(first);
+        writer.write(second);
+
+        verify(appender, timeout(10_000)).doAppend(second);
+        InOrder inOrder = inOrder(appender);
+        inOrder.verify(appender).doAppend(first);
+        inOrder.verify(appender).doAppend(second);
+
+        writer.stop();
+        verify(appender).stop();
+    }
+
+    @Test
+    public void testDropsWhenFull()
+            throws Exception
+    {
+        CountDownLatch appending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Appender<HttpRequestEvent> appender = blockingAppender(appending, release);
+        AsyncRequestLogWriter writer = new AsyncRequestLogWriter(appender, 2, LogQueueFullPolicy.DROP);
+
+        // the writer takes the first event off the queue and blocks appending it
+        writer.write(mock(HttpRequestEvent.class));
+        assertEquals(appending.await(10, TimeUnit.SECONDS), true);
+
+        writer.write(mock(HttpRequestEvent.class));
+        writer.write(mock(HttpRequestEvent.class));
+        assertEquals(writer.getQueuedEntries(), 2);
+        writer.write(mock(HttpRequestEvent.class));
+        assertEquals(writer.getDroppedEntries().getTotalCount(), 1);
+
+        release.countDown();
+        verify(appender, timeout(10_000).times(3)).doAppend(any(HttpRequestEvent.class));
+        writer.stop();
+        verify(appender, times(3)).doAppend(any(HttpRequestEvent.class));
+    }
+
+    @Test
+    public void testBlocksWhenFull()
+            throws Exception
+    {
+        CountDownLatch appending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Appender<HttpRequestEvent> appender = blockingAppender(appending, release);
+        AsyncRequestLogWriter writer = new AsyncRequestLogWriter(appender, 2, LogQueueFullPolicy.BLOCK);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            writer.write(mock(HttpRequestEvent.class));
+            assertEquals(appending.await(10, TimeUnit.SECONDS), true);
+            writer.write(mock(HttpRequestEvent.class));
+            writer.write(mock(HttpRequestEvent.class));
+
+            Future<?> blocked = executor.submit(() -> writer.write(mock(HttpRequestEvent.class)));
+            try {
+                blocked.get(100, TimeUnit.MILLISECONDS);
+                fail("expected write to block while the queue is full");
+            }
+            catch (TimeoutException ignored) {
+            }
+            assertFalse(blocked.isDone());
+
+            release.countDown();
+            blocked.get(10, TimeUnit.SECONDS);
+            verify(appender, timeout(10_000).times(4)).doAppend(any(HttpRequestEvent.class));
+            assertEquals(writer.getDroppedEntries().getTotalCount(), 0);
+        }
+        finally {
+            release.countDown();
+            executor.shutdownNow();
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testStopWritesQueuedEvents()
+    {
+        Appender<HttpRequestEvent> appender = mock(Appender.class);
+        AsyncRequestLogWriter writer = new AsyncRequestLogWriter(appender, 1024, LogQueueFullPolicy.DROP);
+        for (int i = 0; i < 500; i++) {
+            writer.write(mock(HttpRequestEvent.class));
+        }
+        writer.stop();
+        verify(appender, times(500)).doAppend(any(HttpRequestEvent.class));
+        verify(appender).stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Appender<HttpRequestEvent> blockingAppender(CountDownLatch appending, CountDownLatch release)
+    {
+        Appender<HttpRequestEvent> appender = mock(Appender.class);
+        doAnswer(invocation -> {
+            appending.countDown();
+            release.await();
+            return null;
+        }).when(appender).doAppend(any(HttpRequestEvent.class));
+        return appender;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.InetAddresses;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.proofpoint.testing.EquivalenceTester.equivalenceTester;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestCidrSet
+{
+    @Test
+    public void testEmpty()
+    {
+        assertFalse(containsAddress(CidrSet.empty(), "0.0.0.0"));
+        assertFalse(containsAddress(CidrSet.empty(), "::"));
+        assertEquals(CidrSet.empty().toString(), "");
+    }
+
+    @Test
+    public void testContainsAddress()
+    {
+        CidrSet cidrSet = CidrSet.fromString("10.0.0.0/8, 192.168.1.0/24,8.8.8.8/32,2001:db8::/32,::1/128");
+
+        assertTrue(containsAddress(cidrSet, "10.0.0.0"));
+        assertTrue(containsAddress(cidrSet, "10.255.255.255"));
+        assertTrue(containsAddress(cidrSet, "192.168.1.77"));
+        assertTrue(containsAddress(cidrSet, "8.8.8.8"));
+        assertTrue(containsAddress(cidrSet, "2001:db8:1::1"));
+        assertTrue(containsAddress(cidrSet, "::1"));
+
+        assertFalse(containsAddress(cidrSet, "11.0.0.0"));
+        assertFalse(containsAddress(cidrSet, "192.168.2.1"));
+        assertFalse(containsAddress(cidrSet, "8.8.8.9"));
+        assertFalse(containsAddress(cidrSet, "8.8.4.4"));
+        assertFalse(containsAddress(cidrSet, "2001:db9::"));
+        assertFalse(containsAddress(cidrSet, "::2"));
+        assertFalse(containsAddress(cidrSet, "::"));
+    }
+
+    @Test
+    public void testNestedBlocks()
+    {
+        for (String cidrList : ImmutableList.of("10.1.2.0/24,10.0.0.0/8", "10.0.0.0/8,10.1.2.0/24")) {
+            CidrSet cidrSet = CidrSet.fromString(cidrList);
+            assertTrue(containsAddress(cidrSet, "10.1.2.3"));
+            assertTrue(containsAddress(cidrSet, "10.200.0.1"));
+            assertFalse(containsAddress(cidrSet, "11.1.2.3"));
+        }
+    }
+
+    @Test
+    public void testWholeAddressSpace()
+    {
+        CidrSet cidrSet = CidrSet.fromString("8.8.8.8/32,0.0.0.0/0");
+        assertTrue(containsAddress(cidrSet, "0.0.0.0"));
+        assertTrue(containsAddress(cidrSet, "255.255.255.255"));
+        assertFalse(containsAddress(cidrSet, "::"));
+
+        cidrSet = CidrSet.fromString("::/0");
+        assertTrue(containsAddress(cidrSet, "::"));
+        assertTrue(containsAddress(cidrSet, "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertFalse(containsAddress(cidrSet, "1.2.3.4"));
+    }
+
+    @Test
+    public void testMatchesLinearScan()
+    {
+        Random random = new Random(42);
+        for (int addressLength : new int[] {4, 16}) {
+            for (int trial = 0; trial < 20; trial++) {
+                List<InetNetwork> networks = new ArrayList<>();
+                StringBuilder cidrList = new StringBuilder();
+                for (int i = 0; i < 50; i++) {
+                    InetNetwork network = randomNetwork(random, addressLength);
+                    networks.add(network);
+                    if (i > 0) {
+                        cidrList.append(',');
+                    }
+                    cidrList.append(network);
+                }
+                CidrSet cidrSet = CidrSet.fromString(cidrList.toString());
+
+                for (int i = 0; i < 1000; i++) {
+                    InetAddress address = randomAddress(random, addressLength, networks);
+                    boolean expected = networks.stream().anyMatch(network -> network.containsAddress(address));
+                    assertEquals(cidrSet.containsAddress(address), expected, cidrSet + " contains " + address);
+                }
+            }
+        }
+    }
+
+    private static InetNetwork randomNetwork(Random random, int addressLength)
+    {
+        byte[] bytes = new byte[addressLength];
+        random.nextBytes(bytes);
+        // Favor a few common leading bits so that blocks overlap and nest
+        bytes[0] = (byte) (bytes[0] & 0x83);
+        int bits = random.nextInt(addressLength * 8 + 1);
+        for (int i = 0; i < bytes.length; i++) {
+            int hostBits = Math.min(8, Math.max(0, (i + 1) * 8 - bits));
+            bytes[i] = (byte) (bytes[i] & ~((1 << hostBits) - 1));
+        }
+        return InetNetwork.fromCidr(InetAddresses.toAddrString(address(bytes)) + "/" + bits);
+    }
+
+    private static InetAddress randomAddress(Random random, int addressLength, List<InetNetwork> networks)
+    {
+        byte[] bytes = new byte[addressLength];
+        random.nextBytes(bytes);
+        if (random.nextBoolean()) {
+            // Start from a block so that most lookups walk deep into the trie
+            byte[] prefix = networks.get(random.nextInt(networks.size())).getPrefix();
+            int keep = random.nextInt(addressLength + 1);
+            System.arraycopy(prefix, 0, bytes, 0, keep);
+        }
+        return address(bytes);
+    }
+
+    private static InetAddress address(byte[] bytes)
+    {
+        try {
+            return InetAddress.getByAddress(bytes);
+        }
+        catch (UnknownHostException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void testUnion()
+    {
+        CidrSet cidrSet = CidrSet.fromString("9.0.0.0/8").union(CidrSet.fromString("2001:db8::/32"));
+        assertTrue(containsAddress(cidrSet, "9.1.2.3"));
+        assertTrue(containsAddress(cidrSet, "2001:db8::1"));
+        assertFalse(containsAddress(cidrSet, "8.1.2.3"));
+    }
+
+    @Test
+    public void testEquals()
+    {
+        equivalenceTester()
+                .addEquivalentGroup(CidrSet.empty())
+                .addEquivalentGroup(CidrSet.fromString("8.0.0.0/8"), CidrSet.fromString("8.0.0.0/8,8.0.0.0/8"))
+                .addEquivalentGroup(CidrSet.fromString("8.0.0.0/8,2001:db8::/32"), CidrSet.fromString("2001:db8::/32").union(CidrSet.fromString("8.0.0.0/8")))
+                .addEquivalentGroup(CidrSet.fromString("2001:db8::/32"))
+                .check();
+    }
+
+    @Test
+    public void testToString()
+    {
+        assertEquals(CidrSet.fromString("8.0.0.0/8, 2001:db8::/32").toString(), "8.0.0.0/8,2001:db8::/32");
+    }
+
+    private static boolean containsAddress(CidrSet cidrSet, String address)
+    {
+        return cidrSet.containsAddress(InetAddresses.forString(address));
+    }
+}
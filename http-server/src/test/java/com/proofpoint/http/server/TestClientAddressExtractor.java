@@ -22,8 +22,15 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 
@@ -100,6 +107,67 @@ public class TestClientAddressExtractor
         assertEquals(new ClientAddressExtractor().clientAddressFor(request), "10.14.15.16");
     }
 
+    @Test
+    public void testEmptyForwardedForEntries()
+    {
+        when(request.getRemoteAddr()).thenReturn("10.10.10.10");
+        when(request.getHeaders("X-FORWARDED-FOR")).thenReturn(Collections.enumeration(ImmutableList.of("1.1.1.1,, 2.2.2.2 ,", " , ")));
+
+        assertEquals(new ClientAddressExtractor().clientAddressFor(request), "2.2.2.2");
+    }
+
+    @Test
+    public void testNoRemoteAddress()
+    {
+        assertEquals(new ClientAddressExtractor().clientAddressFor(request), null);
+
+        when(request.getHeaders("X-FORWARDED-FOR")).thenReturn(Collections.enumeration(ImmutableList.of("1.1.1.1, 10.11.12.13")));
+        assertEquals(new ClientAddressExtractor().clientAddressFor(request), "1.1.1.1");
+    }
+
+    @Test
+    public void testIpv6ForwardedFor()
+    {
+        when(request.getRemoteAddr()).thenReturn("::1");
+        when(request.getHeaders("X-FORWARDED-FOR")).thenReturn(Collections.enumeration(ImmutableList.of("2001:db8::1, fd00::2, fe80::3")));
+
+        assertEquals(new ClientAddressExtractor().clientAddressFor(request), "2001:db8::1");
+    }
+
+    @Test
+    public void testIpv6InternalNetwork()
+    {
+        when(request.getRemoteAddr()).thenReturn("2001:db8::5");
+        when(request.getHeaders("X-FORWARDED-FOR")).thenAnswer(invocation -> Collections.enumeration(ImmutableList.of("2001:db9::1, 2001:db8::1")));
+
+        assertEquals(new ClientAddressExtractor().clientAddressFor(request), "2001:db8::5");
+
+        ClientAddressExtractor extractor = new ClientAddressExtractor(
+                new InternalNetworkConfig().setInternalNetworks(CidrSet.fromString("2001:db8::/32")));
+        assertEquals(extractor.clientAddressFor(request), "2001:db9::1");
+    }
+
+    @Test
+    public void testCachedPerRequest()
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        when(request.getAttribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(request).setAttribute(anyString(), any());
+        when(request.getRemoteAddr()).thenReturn("10.10.10.10");
+        when(request.getHeaders("X-FORWARDED-FOR")).thenAnswer(invocation -> Collections.enumeration(ImmutableList.of("1.1.1.1, 2.2.2.2")));
+
+        ClientAddressExtractor extractor = new ClientAddressExtractor();
+        assertEquals(extractor.clientAddressFor(request), "2.2.2.2");
+        assertEquals(extractor.clientAddressFor(request), "2.2.2.2");
+        verify(request, times(1)).getHeaders("X-FORWARDED-FOR");
+
+        ClientAddressExtractor otherExtractor = new ClientAddressExtractor(
+                new InternalNetworkConfig().setInternalNetworks(CidrSet.fromString("2.2.2.0/24")));
+        assertEquals(otherExtractor.clientAddressFor(request), "1.1.1.1");
+        verify(request, times(2)).getHeaders("X-FORWARDED-FOR");
+    }
+
     @DataProvider(name = "addresses")
     public Object[][] addresses()
     {
@@ -115,9 +183,15 @@ public class TestClientAddressExtractor
                 new Object[] {"172.16.1.2", true},
                 new Object[] {"10.0.0.1", true},
                 new Object[] {"10.1.2.3", true},
+                new Object[] {"::1", true},
+                new Object[] {"fc00::1", true},
+                new Object[] {"fdff:1:2::3", true},
+                new Object[] {"fe80::1", true},
 
                 new Object[] {"1.2.3.4", false},
                 new Object[] {"172.33.0.0", false},
+                new Object[] {"2001:db8::1", false},
+                new Object[] {"fec0::1", false},
         };
 
     }
@@ -134,7 +208,7 @@ public class TestClientAddressExtractor
         if (!isPrivate) {
             ClientAddressExtractor extractor = new ClientAddressExtractor(
                     new InternalNetworkConfig().setInternalNetworks(
-                            CidrSet.fromString(address + "/32")));
+                            CidrSet.fromString(address + (address.contains(":") ? "/128" : "/32"))));
             assertEquals(extractor.clientAddressFor(request), "4.4.4.4");
         }
     }
@@ -18,6 +18,7 @@ package com.proofpoint.http.server;
 import com.google.common.collect.ImmutableMap;
 import com.proofpoint.configuration.testing.ConfigAssertions;
 import com.proofpoint.http.server.HttpServerConfig.LogFormat;
+import com.proofpoint.http.server.HttpServerConfig.LogQueueFullPolicy;
 import com.proofpoint.units.DataSize;
 import com.proofpoint.units.DataSize.Unit;
 import com.proofpoint.units.Duration;
@@ -51,6 +52,9 @@ public class TestHttpServerConfig
                 .setLogMaxSegmentSize(new DataSize(100, Unit.MEGABYTE))
                 .setLogMaxHistory(30)
                 .setLogMaxTotalSize(new DataSize(1, Unit.GIGABYTE))
+                .setLogAsyncEnabled(false)
+                .setLogAsyncQueueSize(8192)
+                .setLogAsyncQueueFullPolicy(LogQueueFullPolicy.DROP)
                 .setHttpAcceptorThreads(null)
                 .setHttpSelectorThreads(null)
                 .setHttpsAcceptorThreads(null)
@@ -68,6 +72,7 @@ public class TestHttpServerConfig
                 .setMaxRequestHeaderSize(null)
                 .setHttp2MaxConcurrentStreams(16384)
                 .setShowStackTrace(false)
+                .setTraceTokenThreadNamesEnabled(false)
         );
     }
  
@@ -88,6 +93,9 @@ public class TestHttpServerConfig
                 .put("http-server.log.max-size", "1GB")
                 .put("http-server.log.max-history", "25")
                 .put("http-server.log.max-total-size", "5GB")
+                .put("http-server.log.async.enabled", "true")
+                .put("http-server.log.async.queue-size", "1024")
+                .put("http-server.log.async.queue-full-policy", "BLOCK")
                 .put("http-server.http.acceptor-threads", "10")
                 .put("http-server.http.selector-threads", "11")
                 .put("http-server.https.acceptor-threads", "12")
@@ -105,6 +113,7 @@ public class TestHttpServerConfig
                 .put("http-server.max-request-header-size", "32kB")
                 .put("http-server.http2.max-concurrent-streams", "1234")
                 .put("http-server.show-stack-trace", "true")
+                .put("http-server.trace-token.thread-names.enabled", "true")
                 .build();
 
         HttpServerConfig expected = new HttpServerConfig()
@@ -121,6 +130,9 @@ public class TestHttpServerConfig
                 .setLogMaxSegmentSize(new DataSize(1, Unit.GIGABYTE))
                 .setLogMaxHistory(25)
                 .setLogMaxTotalSize(new DataSize(5, Unit.GIGABYTE))
+                .setLogAsyncEnabled(true)
+                .setLogAsyncQueueSize(1024)
+                .setLogAsyncQueueFullPolicy(LogQueueFullPolicy.BLOCK)
                 .setHttpAcceptorThreads(10)
                 .setHttpSelectorThreads(11)
                 .setHttpsAcceptorThreads(12)
@@ -137,7 +149,8 @@ public class TestHttpServerConfig
                 .setAdminMaxThreads(4)
                 .setStopTimeout(new Duration(1500, MILLISECONDS))
                 .setHttp2MaxConcurrentStreams(1234)
-                .setShowStackTrace(true);
+                .setShowStackTrace(true)
+                .setTraceTokenThreadNamesEnabled(true);
 
         assertFullMapping(properties, expected);
     }
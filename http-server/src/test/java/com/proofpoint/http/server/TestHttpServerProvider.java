@@ -46,6 +46,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.File;
 import java.net.ConnectException;
 import java.util.Base64;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.io.Resources.getResource;
@@ -76,6 +78,7 @@ public class TestHttpServerProvider
     private HttpServerInfo httpServerInfo;
     private LifeCycleManager lifeCycleManager;
     private DelimitedRequestLog requestLog;
+    private RequestStats requestStats;
 
     @BeforeSuite
     public void setupSuite()
@@ -102,6 +105,7 @@ public class TestHttpServerProvider
         );
         httpServerInfo = new HttpServerInfo(config, nodeInfo);
         lifeCycleManager = new LifeCycleManager(ImmutableList.of(), null, new LifeCycleConfig());
+        requestStats = new RequestStats();
     }
 
     @AfterMethod(alwaysRun = true)
@@ -217,6 +221,41 @@ public class TestHttpServerProvider
         }
     }
 
+    @Test
+    public void testRequestTiming()
+            throws Exception
+    {
+        createAndStartServer();
+
+        try (JettyHttpClient httpClient = new JettyHttpClient()) {
+            StringResponse response = httpClient.execute(
+                    preparePut()
+                            .setUri(httpServerInfo.getHttpUri())
+                            .setBodySource(createStaticBodyGenerator("expected", Charsets.UTF_8))
+                            .build(),
+                    createStringResponseHandler());
+
+            assertEquals(response.getStatusCode(), HttpServletResponse.SC_OK);
+        }
+
+        // stats are recorded after the response completes, which can be after the client has the response
+        for (int i = 0; i < 1000 && requestStats.getRequestTime().getAllTime().getCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(requestStats.getRequestTime().getAllTime().getCount(), 1.0);
+        assertEquals(requestStats.getQueueTime().getAllTime().getCount(), 1.0);
+        assertEquals(requestStats.getProcessingTime().getAllTime().getCount(), 1.0);
+        assertEquals(requestStats.getWriteTime().getAllTime().getCount(), 1.0);
+        assertEquals(requestStats.getWrittenBytes().getAllTime().getTotal(), 8.0);
+        assertTrue(requestStats.getProcessingTime().getAllTime().getTotal() > 0, "processing time is measured with sub-millisecond precision");
+        assertEquals(requestStats.getRequestTime().getAllTime().getTotal(),
+                requestStats.getQueueTime().getAllTime().getTotal()
+                        + requestStats.getProcessingTime().getAllTime().getTotal()
+                        + requestStats.getWriteTime().getAllTime().getTotal(),
+                1.0e-3);
+    }
+
     @Test
     public void testHttpIsDisabled()
             throws Exception
@@ -336,6 +375,30 @@ public class TestHttpServerProvider
         }
     }
 
+    @Test
+    public void testCreatesDistinctTraceTokens()
+            throws Exception
+    {
+        createServer();
+        lifeCycleManager.start();
+
+        Set<String> tokens = new HashSet<>();
+        try (JettyHttpClient client = new JettyHttpClient()) {
+            for (String clientAddress : ImmutableList.of("10.2.3.4", "10.2.3.4", "192.168.1.2", "10.2.3.4")) {
+                StatusResponse response = client.execute(prepareGet()
+                        .setUri(httpServerInfo.getHttpUri())
+                        .setHeader("X-Forwarded-For", clientAddress)
+                        .build(), createStatusResponseHandler());
+                tokens.add(response.getHeader("X-Trace-Token-Was"));
+            }
+        }
+
+        assertEquals(tokens.size(), 4);
+        for (String token : tokens) {
+            assertTrue(token.matches("fwAAAQ=(AgME=|wKgBAg=)[A-Za-z0-9_-]{20}"), token);
+        }
+    }
+
     @Test
     public void testSimpleTraceToken()
             throws Exception
@@ -454,7 +517,7 @@ public class TestHttpServerProvider
                 ImmutableSet.of(),
                 new DummyServlet(),
                 ImmutableSet.of(),
-                new RequestStats(),
+                requestStats,
                 new TestingHttpServer.DetailedRequestStats(),
                 new QueryStringFilter(),
                 new ClientAddressExtractor(),
@@ -19,14 +19,12 @@ import com.google.common.net.InetAddresses;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
-import java.net.Inet4Address;
-
 import static com.proofpoint.testing.EquivalenceTester.equivalenceTester;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
-public class TestInet4Network
+public class TestInetNetwork
 {
     @Test
     public void testFromCidrValid()
@@ -37,11 +35,15 @@ public class TestInet4Network
         assertCidrValid("8.8.8.0/24");
         assertCidrValid("8.8.8.8/32");
         assertCidrValid("255.255.255.255/32");
+        assertCidrValid("::/0");
+        assertCidrValid("2001:db8::/32");
+        assertCidrValid("fe80::/10");
+        assertCidrValid("2001:db8::1/128");
     }
 
     private static void assertCidrValid(String cidr)
     {
-        assertEquals(Inet4Network.fromCidr(cidr).toString(), cidr);
+        assertEquals(InetNetwork.fromCidr(cidr).toString(), cidr);
     }
 
     @DataProvider(name = "invalidCidr")
@@ -64,13 +66,17 @@ public class TestInet4Network
                 {"8.0.0.0.0"},
                 {"-8.1.0.0"},
                 {"8.-1.0.0"},
+                {"::/129"},
+                {"2001:db8::1/64"},
+                {"2001:db8::/x"},
+                {"2001:db8:::/32"},
         };
     }
 
     @Test(expectedExceptions = IllegalArgumentException.class, dataProvider = "invalidCidr")
     public void testFromCidrInvalid(String cidr)
     {
-        Inet4Network.fromCidr(cidr);
+        InetNetwork.fromCidr(cidr);
     }
 
     @Test
@@ -106,19 +112,36 @@ public class TestInet4Network
     }
 
     @Test
-    public void testAddressToLong()
+    public void testCommonPrefixLength()
+    {
+        assertCommonPrefixLength("0.0.0.0", "0.0.0.0", 32);
+        assertCommonPrefixLength("0.0.0.0", "128.0.0.0", 0);
+        assertCommonPrefixLength("8.8.8.8", "8.8.8.9", 31);
+        assertCommonPrefixLength("202.12.128.0", "202.12.191.255", 18);
+        assertCommonPrefixLength("2001:db8::", "2001:db9::", 31);
+        assertCommonPrefixLength("2001:db8::", "2001:db8::1", 127);
+    }
+
+    private static void assertCommonPrefixLength(String first, String second, int expected)
     {
-        assertAddressToLong("0.0.0.0", 0L);
-        assertAddressToLong("255.255.255.255", 4294967295L);
-        assertAddressToLong("8.8.8.8", 134744072L);
-        assertAddressToLong("202.12.128.0", 3389816832L);
-        assertAddressToLong("202.12.128.254", 3389817086L);
+        byte[] a = InetAddresses.forString(first).getAddress();
+        byte[] b = InetAddresses.forString(second).getAddress();
+        assertEquals(InetNetwork.commonPrefixLength(a, b, 0, a.length * 8), expected);
+        assertEquals(InetNetwork.commonPrefixLength(b, a, 0, a.length * 8), expected);
+        assertEquals(InetNetwork.commonPrefixLength(a, b, 0, 7), Math.min(expected, 7));
     }
 
-    private static void assertAddressToLong(String address, long ip)
+    @Test
+    public void testBitAt()
     {
-        Inet4Address addr = (Inet4Address) InetAddresses.forString(address);
-        assertEquals(Inet4Network.addressToLong(addr), ip);
+        byte[] address = InetAddresses.forString("128.1.0.255").getAddress();
+        assertEquals(InetNetwork.bitAt(address, 0), 1);
+        assertEquals(InetNetwork.bitAt(address, 1), 0);
+        assertEquals(InetNetwork.bitAt(address, 14), 0);
+        assertEquals(InetNetwork.bitAt(address, 15), 1);
+        assertEquals(InetNetwork.bitAt(address, 23), 0);
+        assertEquals(InetNetwork.bitAt(address, 24), 1);
+        assertEquals(InetNetwork.bitAt(address, 31), 1);
     }
 
     @Test
@@ -139,23 +162,37 @@ public class TestInet4Network
         assertFalse(containsAddress("8.8.8.8/32", "8.8.8.9"));
         assertFalse(containsAddress("202.12.128.0/18", "202.12.127.255"));
         assertFalse(containsAddress("202.12.128.0/18", "202.12.192.0"));
+
+        assertTrue(containsAddress("::/0", "::"));
+        assertTrue(containsAddress("::/0", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertTrue(containsAddress("2001:db8::/32", "2001:db8::"));
+        assertTrue(containsAddress("2001:db8::/32", "2001:db8:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertTrue(containsAddress("fe80::/10", "febf::1"));
+
+        assertFalse(containsAddress("2001:db8::/32", "2001:db9::"));
+        assertFalse(containsAddress("2001:db8::/32", "2001:db7:ffff:ffff:ffff:ffff:ffff:ffff"));
+        assertFalse(containsAddress("fe80::/10", "fec0::"));
+        assertFalse(containsAddress("::/0", "1.2.3.4"));
+        assertFalse(containsAddress("0.0.0.0/0", "::1"));
     }
 
     private static boolean containsAddress(String cidr, String address)
     {
-        Inet4Address addr = (Inet4Address) InetAddresses.forString(address);
-        return Inet4Network.fromCidr(cidr).containsAddress(addr);
+        return InetNetwork.fromCidr(cidr).containsAddress(InetAddresses.forString(address));
     }
 
     @Test
     public void testEquals()
     {
         equivalenceTester()
-                .addEquivalentGroup(Inet4Network.fromCidr("8.0.0.0/8"))
-                .addEquivalentGroup(Inet4Network.fromCidr("9.0.0.0/8"))
-                .addEquivalentGroup(Inet4Network.fromCidr("8.0.0.0/9"))
-                .addEquivalentGroup(Inet4Network.fromCidr("8.8.8.0/24"))
-                .addEquivalentGroup(Inet4Network.fromCidr("8.8.8.8/32"))
+                .addEquivalentGroup(InetNetwork.fromCidr("8.0.0.0/8"))
+                .addEquivalentGroup(InetNetwork.fromCidr("9.0.0.0/8"))
+                .addEquivalentGroup(InetNetwork.fromCidr("8.0.0.0/9"))
+                .addEquivalentGroup(InetNetwork.fromCidr("8.8.8.0/24"))
+                .addEquivalentGroup(InetNetwork.fromCidr("8.8.8.8/32"))
+                .addEquivalentGroup(InetNetwork.fromCidr("::/0"), InetNetwork.fromCidr("0:0::/0"))
+                .addEquivalentGroup(InetNetwork.fromCidr("2001:db8::/32"), InetNetwork.fromCidr("2001:0db8:0:0::/32"))
+                .addEquivalentGroup(InetNetwork.fromCidr("2001:db8::/33"))
                 .check();
     }
 
@@ -168,10 +205,13 @@ public class TestInet4Network
         assertToString("8.8.8.0/24");
         assertToString("8.8.8.8/32");
         assertToString("255.254.0.0/16");
+        assertToString("::/0");
+        assertToString("2001:db8::/32");
+        assertToString("2001:db8:0:1::/64");
     }
 
     private static void assertToString(String cidr)
     {
-        assertEquals(Inet4Network.fromCidr(cidr).toString(), cidr);
+        assertEquals(InetNetwork.fromCidr(cidr).toString(), cidr);
     }
 }
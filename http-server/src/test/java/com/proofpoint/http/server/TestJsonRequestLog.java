@@ -15,14 +15,19 @@
  */
 package com.proofpoint.http.server;
 
+import com.proofpoint.json.JsonCodec;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.DateTimeFormatterBuilder;
 import org.joda.time.format.ISODateTimeFormat;
 
+import static com.proofpoint.json.JsonCodec.jsonCodec;
 import static com.proofpoint.tracetoken.TraceTokenManager.getCurrentRequestToken;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class TestJsonRequestLog extends AbstractTestRequestLog
 {
+    private static final JsonCodec<String> STRING_CODEC = jsonCodec(String.class).withoutPretty();
+
     private DateTimeFormatter isoFormatter;
 
     @Override
@@ -45,19 +50,29 @@ public class TestJsonRequestLog extends AbstractTestRequestLog
     @Override
     protected String getExpectedLogLine(long timestamp, String clientAddr, String method, String pathQuery, String user, String agent, int responseCode, long requestSize, long responseSize, long timeToLastByte)
     {
-        return String.format("{\"time\":\"%s\",\"traceToken\":\"%s\",\"sourceIp\":\"%s\"," +
-                        "\"method\":\"%s\",\"requestUri\":\"%s\",\"username\":\"%s\",\"userAgent\":\"%s\"," +
-                        "\"responseCode\":%d,\"requestSize\":%d,\"responseSize\":%d,\"timeToLastByte\":\"%d.00ms\"}\n",
-                isoFormatter.print(timestamp),
-                getCurrentRequestToken(),
-                clientAddr,
-                method,
-                pathQuery,
-                user,
-                agent,
-                responseCode,
-                requestSize,
-                responseSize,
-                timeToLastByte);
+        StringBuilder builder = new StringBuilder()
+                .append(String.format("{\"time\":\"%s\",\"traceToken\":%s,\"sourceIp\":%s,\"method\":%s,\"requestUri\":%s,",
+                        isoFormatter.print(timestamp),
+                        json(getCurrentRequestToken()),
+                        json(clientAddr),
+                        json(method),
+                        json(pathQuery)));
+        if (user != null) {
+            builder.append("\"username\":").append(json(user)).append(',');
+        }
+        return builder
+                .append(String.format("\"userAgent\":%s,\"responseCode\":%d,\"requestSize\":%d,\"responseSize\":%d,\"timeToLastByte\":\"%d.00ms\"}\n",
+                        json(agent),
+                        responseCode,
+                        requestSize,
+                        responseSize,
+                        timeToLastByte))
+                .toString();
+    }
+
+    private static String json(String value)
+    {
+        // the request log used to be written with toJsonBytes, which escapes surrogate pairs
+        return new String(STRING_CODEC.toJsonBytes(value), UTF_8);
     }
 }
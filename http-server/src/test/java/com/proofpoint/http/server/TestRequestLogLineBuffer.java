@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import org.testng.annotations.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+
+public class TestRequestLogLineBuffer
+{
+    @Test
+    public void testAppendUtf8()
+    {
+        for (String value : new String[] {
+                "",
+                "ascii only",
+                "\u00e9t\u00e9",
+                "\u4e2d\u6587",
+                "emoji \ud83d\ude00 pair",
+                "lone high \ud83d",
+                "lone low \ude00 surrogate",
+                "\ud83d",
+                "mixed \u0000\u007f\u0080\u07ff\u0800\uffff"}) {
+            RequestLogLineBuffer buffer = new RequestLogLineBuffer(1);
+            buffer.appendUtf8(value);
+            assertEquals(buffer.toByteArray(), value.getBytes(UTF_8), value);
+        }
+    }
+
+    @Test
+    public void testAppendNull()
+    {
+        RequestLogLineBuffer buffer = new RequestLogLineBuffer(1);
+        buffer.appendUtf8(null);
+        assertEquals(buffer.toString(), "null");
+    }
+
+    @Test
+    public void testAppendLong()
+    {
+        for (long value : new long[] {0, 1, 9, 10, 99, 100, -1, -10, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1}) {
+            RequestLogLineBuffer buffer = new RequestLogLineBuffer(1);
+            buffer.appendLong(value);
+            assertEquals(buffer.toString(), Long.toString(value));
+        }
+    }
+
+    @Test
+    public void testAppendAscii()
+    {
+        RequestLogLineBuffer buffer = new RequestLogLineBuffer(1);
+        buffer.appendAscii("xabcx".toCharArray(), 1, 3)
+                .appendAscii('\t')
+                .appendLong(42);
+        assertEquals(buffer.toString(), "abc\t42");
+    }
+
+    @Test
+    public void testReset()
+    {
+        RequestLogLineBuffer buffer = new RequestLogLineBuffer(4);
+        buffer.appendUtf8("a string longer than the retained size");
+        buffer.reset(4);
+        assertEquals(buffer.size(), 0);
+
+        buffer.appendUtf8("after");
+        assertEquals(buffer.toString(), "after");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestRequestLogRingBuffer
+{
+    @Test
+    public void testCapacityRoundedUp()
+    {
+        assertEquals(new RequestLogRingBuffer<>(1).capacity(), 2);
+        assertEquals(new RequestLogRingBuffer<>(2).capacity(), 2);
+        assertEquals(new RequestLogRingBuffer<>(3).capacity(), 4);
+        assertEquals(new RequestLogRingBuffer<>(1024).capacity(), 1024);
+        assertEquals(new RequestLogRingBuffer<>(1025).capacity(), 2048);
+    }
+
+    @Test
+    public void testFifoAndFull()
+    {
+        RequestLogRingBuffer<Integer> buffer = new RequestLogRingBuffer<>(4);
+        assertNull(buffer.poll());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(buffer.size(), 4);
+
+        assertEquals(buffer.poll(), (Integer) 0);
+        assertTrue(buffer.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(buffer.poll(), (Integer) i);
+        }
+        assertNull(buffer.poll());
+        assertEquals(buffer.size(), 0);
+    }
+
+    @Test
+    public void testWrapsAround()
+    {
+        RequestLogRingBuffer<Integer> buffer = new RequestLogRingBuffer<>(2);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(buffer.offer(i));
+            assertEquals(buffer.poll(), (Integer) i);
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers()
+            throws Exception
+    {
+        int producers = 4;
+        int perProducer = 50_000;
+        RequestLogRingBuffer<long[]> buffer = new RequestLogRingBuffer<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int producer = 0; producer < producers; producer++) {
+                long id = producer;
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                    }
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (long i = 0; i < perProducer; i++) {
+                        long[] element = {id, i};
+                        while (!buffer.offer(element)) {
+                            Thread.yield();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+
+            List<Long> next = new ArrayList<>();
+            for (int i = 0; i < producers; i++) {
+                next.add(0L);
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            int received = 0;
+            while (received < producers * perProducer) {
+                long[] element = buffer.poll();
+                if (element == null) {
+                    assertTrue(System.nanoTime() < deadline, "timed out after " + received + " elements");
+                    Thread.yield();
+                    continue;
+                }
+                int producer = (int) element[0];
+                assertEquals(element[1], (long) next.get(producer), "elements from one producer are in order");
+                next.set(producer, element[1] + 1);
+                ++received;
+            }
+            assertNull(buffer.poll());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
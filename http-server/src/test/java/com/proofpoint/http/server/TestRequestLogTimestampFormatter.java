@@ -0,0 +1,81 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.DateTimeFormatterBuilder;
+import org.joda.time.format.ISODateTimeFormat;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestRequestLogTimestampFormatter
+{
+    private static final DateTimeFormatter ISO_FORMATTER = new DateTimeFormatterBuilder()
+            .append(ISODateTimeFormat.dateHourMinuteSecondFraction())
+            .appendTimeZoneOffset("Z", true, 2, 2)
+            .toFormatter();
+
+    private final RequestLogTimestampFormatter formatter = new RequestLogTimestampFormatter();
+    private final char[] destination = new char[RequestLogTimestampFormatter.MAX_LENGTH];
+
+    @Test
+    public void testMatchesJoda()
+    {
+        long start = 1_520_468_470_000L;
+        for (DateTimeZone zone : new DateTimeZone[] {DateTimeZone.UTC, DateTimeZone.forID("America/Los_Angeles"), DateTimeZone.forID("Asia/Kolkata")}) {
+            for (long millis = start - 2_100; millis < start + 2_100; millis += 7) {
+                assertFormat(millis, zone);
+            }
+        }
+    }
+
+    @Test
+    public void testCachedSecondReused()
+    {
+        DateTimeZone zone = DateTimeZone.forID("America/Los_Angeles");
+        assertFormat(1_520_468_470_999L, zone);
+        assertFormat(1_520_468_470_001L, zone);
+        assertFormat(1_520_468_470_500L, DateTimeZone.UTC);
+        assertFormat(1_520_468_470_500L, zone);
+    }
+
+    @Test
+    public void testDaylightSavingTransition()
+    {
+        // 2018-03-11T02:00 America/Los_Angeles springs forward
+        DateTimeZone zone = DateTimeZone.forID("America/Los_Angeles");
+        long transition = 1_520_762_400_000L;
+        for (long millis = transition - 1_500; millis < transition + 1_500; millis += 250) {
+            assertFormat(millis, zone);
+        }
+    }
+
+    @Test
+    public void testBeforeEpoch()
+    {
+        for (long millis = -2_001; millis < 2_001; millis += 1) {
+            assertFormat(millis, DateTimeZone.UTC);
+        }
+    }
+
+    private void assertFormat(long millis, DateTimeZone zone)
+    {
+        int length = formatter.format(millis, zone, destination);
+        assertEquals(new String(destination, 0, length), ISO_FORMATTER.withZone(zone).print(millis));
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.http.server;
+
+import com.proofpoint.http.server.testing.TestingHttpServer;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static com.proofpoint.http.server.RequestTiming.REQUEST_TIMING_ATTRIBUTE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestStatsRecordingHandler
+{
+    private RequestStats stats;
+    private StatsRecordingHandler handler;
+    private Request request;
+    private Response response;
+
+    @BeforeMethod
+    public void setup()
+    {
+        stats = new RequestStats();
+        handler = new StatsRecordingHandler(stats, new TestingHttpServer.DetailedRequestStats());
+        request = mock(Request.class);
+        response = mock(Response.class);
+        when(request.getContentRead()).thenReturn(10L);
+        when(response.getContentCount()).thenReturn(20L);
+        when(response.getStatus()).thenReturn(200);
+    }
+
+    @Test
+    public void testWithFirstByte()
+    {
+        RequestTiming timing = new RequestTiming(MILLISECONDS.toNanos(3), System.nanoTime() - MILLISECONDS.toNanos(50));
+        timing.recordFirstByte();
+        when(request.getAttribute(REQUEST_TIMING_ATTRIBUTE)).thenReturn(timing);
+
+        handler.log(request, response);
+
+        assertEquals(stats.getQueueTime().getAllTime().getTotal(), 0.003, 1.0e-9);
+        assertTrue(stats.getProcessingTime().getAllTime().getTotal() >= 0.050);
+        assertEquals(stats.getWriteTime().getAllTime().getCount(), 1.0);
+        assertEquals(stats.getReadBytes().getAllTime().getTotal(), 10.0);
+        assertEquals(stats.getWrittenBytes().getAllTime().getTotal(), 20.0);
+        assertRequestTimeIsSum();
+    }
+
+    @Test
+    public void testWithoutFirstByte()
+    {
+        RequestTiming timing = new RequestTiming(0, System.nanoTime() - MILLISECONDS.toNanos(50));
+        when(request.getAttribute(REQUEST_TIMING_ATTRIBUTE)).thenReturn(timing);
+
+        handler.log(request, response);
+
+        assertTrue(stats.getProcessingTime().getAllTime().getTotal() >= 0.050);
+        assertEquals(stats.getWriteTime().getAllTime().getTotal(), 0.0);
+        assertRequestTimeIsSum();
+    }
+
+    @Test
+    public void testWithoutTiming()
+    {
+        when(request.getTimeStamp()).thenReturn(System.currentTimeMillis() - 50);
+
+        handler.log(request, response);
+
+        assertEquals(stats.getQueueTime().getAllTime().getTotal(), 0.0);
+        assertTrue(stats.getProcessingTime().getAllTime().getTotal() >= 0.050);
+        assertEquals(stats.getWriteTime().getAllTime().getTotal(), 0.0);
+        assertRequestTimeIsSum();
+    }
+
+    private void assertRequestTimeIsSum()
+    {
+        assertEquals(stats.getRequestTime().getAllTime().getCount(), 1.0);
+        assertEquals(stats.getRequestTime().getAllTime().getTotal(),
+                stats.getQueueTime().getAllTime().getTotal()
+                        + stats.getProcessingTime().getAllTime().getTotal()
+                        + stats.getWriteTime().getAllTime().getTotal(),
+                1.0e-9);
+    }
+}
@@ -29,6 +29,7 @@ import com.google.inject.Provides;
 import com.google.inject.TypeLiteral;
 import com.proofpoint.http.server.TheAdminServlet;
 import com.proofpoint.http.server.TheServlet;
+import com.proofpoint.reporting.DigestResource;
 import com.proofpoint.reporting.InRotationResource;
 import com.proofpoint.reporting.LivenessResource;
 import org.glassfish.hk2.api.Factory;
@@ -95,6 +96,7 @@ public class JaxrsModule
         jaxrsBinder(binder).bind(InRotationResource.class);
         jaxrsBinder(binder).bind(LivenessResource.class);
         jaxrsBinder(binder).bindAdmin(WadlResource.class);
+        jaxrsBinder(binder).bindAdmin(DigestResource.class);
 
         bindConfig(binder).to(JaxrsConfig.class);
 
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.ImmutableMap;
+import com.proofpoint.jaxrs.AccessDoesNotRequireAuthentication;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriInfo;
+import java.util.List;
+import java.util.Map.Entry;
+
+import static java.util.Objects.requireNonNull;
+import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+
+/**
+ * Serves the serialized quantile digest of a reported stat, such as
+ * {@code /admin/stats/ServiceClient.RequestTime.OneMinute/digest}, so that
+ * the digests of every node of a pool can be merged. The query parameters
+ * are the tags the stat is reported with.
+ */
+@Path("/admin/stats/{name}/digest")
+@AccessDoesNotRequireAuthentication
+public class DigestResource
+{
+    private final DigestSourceFinder digestSourceFinder;
+
+    @Inject
+    public DigestResource(DigestSourceFinder digestSourceFinder)
+    {
+        this.digestSourceFinder = requireNonNull(digestSourceFinder, "digestSourceFinder is null");
+    }
+
+    @GET
+    @Produces(APPLICATION_OCTET_STREAM)
+    public Response get(@PathParam("name") String name, @Context UriInfo uriInfo)
+    {
+        ImmutableMap.Builder<String, String> tags = ImmutableMap.builder();
+        for (Entry<String, List<String>> entry : uriInfo.getQueryParameters().entrySet()) {
+            tags.put(entry.getKey(), entry.getValue().get(0));
+        }
+
+        DigestSource digestSource = digestSourceFinder.find(name, tags.build());
+        if (digestSource == null) {
+            return Response.status(NOT_FOUND).build();
+        }
+        return Response.ok(digestSource.serializeDigest()).build();
+    }
+}
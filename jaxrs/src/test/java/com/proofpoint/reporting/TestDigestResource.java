@@ -0,0 +1,147 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.proofpoint.bootstrap.LifeCycleManager;
+import com.proofpoint.discovery.client.testing.TestingDiscoveryModule;
+import com.proofpoint.http.client.HttpClient;
+import com.proofpoint.http.client.PoolDigestAggregator;
+import com.proofpoint.http.client.StatusResponseHandler.StatusResponse;
+import com.proofpoint.http.client.jetty.JettyHttpClient;
+import com.proofpoint.http.server.TheServlet;
+import com.proofpoint.http.server.testing.TestingAdminHttpServer;
+import com.proofpoint.json.JsonModule;
+import com.proofpoint.node.testing.TestingNodeModule;
+import com.proofpoint.stats.MergedDistribution;
+import com.proofpoint.stats.TimeStat;
+import com.proofpoint.testing.Closeables;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.weakref.jmx.Nested;
+import org.weakref.jmx.testing.TestingMBeanModule;
+
+import javax.servlet.Servlet;
+import java.net.URI;
+
+import static com.proofpoint.bootstrap.Bootstrap.bootstrapTest;
+import static com.proofpoint.http.client.Request.Builder.prepareGet;
+import static com.proofpoint.http.client.StatusResponseHandler.createStatusResponseHandler;
+import static com.proofpoint.http.server.testing.TestingAdminHttpServerModule.initializesMainServletTestingAdminHttpServerModule;
+import static com.proofpoint.jaxrs.JaxrsModule.explicitJaxrsModule;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static org.testng.Assert.assertEquals;
+
+public class TestDigestResource
+{
+    private final HttpClient client = new JettyHttpClient();
+
+    private LifeCycleManager lifeCycleManager;
+    private TestingAdminHttpServer server;
+    private ReportExporter reportExporter;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        Injector injector = bootstrapTest()
+                .withModules(
+                        new TestingNodeModule(),
+                        initializesMainServletTestingAdminHttpServerModule(),
+                        new JsonModule(),
+                        explicitJaxrsModule(),
+                        new ReportingModule(),
+                        new TestingMBeanModule(),
+                        new TestingDiscoveryModule()
+                )
+                .initialize();
+
+        injector.getInstance(Key.get(Servlet.class, TheServlet.class));
+        lifeCycleManager = injector.getInstance(LifeCycleManager.class);
+        server = injector.getInstance(TestingAdminHttpServer.class);
+        reportExporter = injector.getInstance(ReportExporter.class);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void teardown()
+            throws Exception
+    {
+        if (lifeCycleManager != null) {
+            lifeCycleManager.stop();
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void teardownClass()
+    {
+        Closeables.closeQuietly(client);
+    }
+
+    @Test
+    public void testMergeDigests()
+            throws Exception
+    {
+        TestingStats stats = new TestingStats();
+        stats.requestTime.add(10, MILLISECONDS);
+        stats.requestTime.add(20, MILLISECONDS);
+        reportExporter.export(stats, false, "Testing", ImmutableMap.of("tag", "value"));
+
+        PoolDigestAggregator aggregator = new PoolDigestAggregator(client, "Testing.RequestTime.AllTime", ImmutableMap.of("tag", "value"));
+        MergedDistribution distribution = new MergedDistribution();
+        URI baseUrl = server.getBaseUrl();
+
+        assertEquals(aggregator.update(distribution, ImmutableList.of(baseUrl, baseUrl)), 2);
+        assertEquals(distribution.getCount(), 4.0);
+        assertEquals(distribution.getMin(), MILLISECONDS.toNanos(10));
+        assertEquals(distribution.getMax(), MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testNotFound()
+            throws Exception
+    {
+        reportExporter.export(new TestingStats(), false, "Testing", ImmutableMap.of("tag", "value"));
+
+        assertEquals(getStatus("/admin/stats/Testing.RequestTime.AllTime/digest"), NOT_FOUND.getStatusCode());
+        assertEquals(getStatus("/admin/stats/Testing.RequestTime/digest?tag=value"), NOT_FOUND.getStatusCode());
+        assertEquals(getStatus("/admin/stats/Other.RequestTime.AllTime/digest?tag=value"), NOT_FOUND.getStatusCode());
+    }
+
+    private int getStatus(String path)
+    {
+        StatusResponse response = client.execute(
+                prepareGet().setUri(server.getBaseUrl().resolve(path)).build(),
+                createStatusResponseHandler());
+        return response.getStatusCode();
+    }
+
+    public static class TestingStats
+    {
+        private final TimeStat requestTime = new TimeStat();
+
+        @Nested
+        public TimeStat getRequestTime()
+        {
+            return requestTime;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import com.google.common.collect.Table.Cell;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * The metrics collected by one run of {@link ReportCollector}, in the
+ * order they were collected.
+ * <p>
+ * Entries are held in flat arrays instead of a {@link Table}, so that
+ * collecting and uploading them allocates little beyond the values
+ * themselves. The entries of a registered bean use the same name and tags
+ * instances in every collection, so consumers can cache what they derive
+ * from them.
+ */
+public final class CollectedData
+{
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String[] names;
+    private Object[] tags;
+    private Object[] values;
+    private int size = 0;
+
+    CollectedData()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    CollectedData(int expectedSize)
+    {
+        int capacity = Math.max(expectedSize, 1);
+        names = new String[capacity];
+        tags = new Object[capacity];
+        values = new Object[capacity];
+    }
+
+    static CollectedData copyOf(Table<String, Map<String, String>, Object> table)
+    {
+        CollectedData collectedData = new CollectedData(table.size());
+        for (Cell<String, Map<String, String>, Object> cell : table.cellSet()) {
+            collectedData.add(cell.getRowKey(), cell.getColumnKey(), cell.getValue());
+        }
+        return collectedData;
+    }
+
+    void add(String name, Map<String, String> tags, Object value)
+    {
+        if (size == names.length) {
+            int capacity = size + (size >> 1) + 1;
+            names = Arrays.copyOf(names, capacity);
+            this.tags = Arrays.copyOf(this.tags, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        names[size] = name;
+        this.tags[size] = tags;
+        values[size] = value;
+        ++size;
+    }
+
+    /**
+     * @return the number of collected entries
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    String getName(int index)
+    {
+        checkElementIndex(index, size);
+        return names[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    Map<String, String> getTags(int index)
+    {
+        checkElementIndex(index, size);
+        return (Map<String, String>) tags[index];
+    }
+
+    Object getValue(int index)
+    {
+        checkElementIndex(index, size);
+        return values[index];
+    }
+
+    /**
+     * Call the visitor once for each entry, in collection order.
+     */
+    public void forEach(Visitor visitor)
+    {
+        for (int i = 0; i < size; i++) {
+            visitor.visit(names[i], getTags(i), values[i]);
+        }
+    }
+
+    /**
+     * Copy the entries into a table of metric names, tags, and values.
+     */
+    public Table<String, Map<String, String>, Object> toTable()
+    {
+        ImmutableTable.Builder<String, Map<String, String>, Object> builder = ImmutableTable.builder();
+        forEach(builder::put);
+        return builder.build();
+    }
+
+    public interface Visitor
+    {
+        void visit(String name, Map<String, String> tags, Object value);
+    }
+}
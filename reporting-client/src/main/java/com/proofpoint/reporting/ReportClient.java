@@ -15,46 +15,85 @@
  */
 package com.proofpoint.reporting;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
-import com.google.common.collect.Table;
-import com.google.common.collect.Table.Cell;
 import com.google.inject.Inject;
+import com.proofpoint.http.client.BodySource;
 import com.proofpoint.http.client.DynamicBodySource;
+import com.proofpoint.http.client.DynamicBodySource.Writer;
 import com.proofpoint.http.client.HttpClient;
 import com.proofpoint.http.client.Request;
 import com.proofpoint.http.client.StringResponseHandler.StringResponse;
 import com.proofpoint.log.Logger;
 import com.proofpoint.node.NodeInfo;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import static com.proofpoint.http.client.Request.Builder.preparePost;
 import static com.proofpoint.http.client.StringResponseHandler.createStringResponseHandler;
+import static com.proofpoint.reporting.ReportClient.UploadResult.FAILED;
+import static com.proofpoint.reporting.ReportClient.UploadResult.REJECTED;
+import static com.proofpoint.reporting.ReportClient.UploadResult.SUCCEEDED;
+import static com.proofpoint.reporting.ReportClient.UploadResult.UNSUPPORTED_FORMAT;
+import static com.proofpoint.reporting.ReportClientConfig.UploadFormat.SMILE;
 import static java.util.Objects.requireNonNull;
 
 class ReportClient
 {
     private static final Logger logger = Logger.get(ReportClient.class);
     private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES);
     private static final URI UPLOAD_URI = URI.create("api/v1/datapoints");
+    private static final Pattern NOT_ACCEPTED_CHARACTER_PATTERN = Pattern.compile("[^-A-Za-z0-9./_]");
     private final Map<String, String> instanceTags;
     private final HttpClient httpClient;
     private final ObjectMapper objectMapper;
+    private final ReportSpool reportSpool;
+
+    // Collections reuse the name and tags instances of a registered bean,
+    // so their encodings are cached by identity
+    private final LoadingCache<String, SerializedString> encodedNames = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(ReportClient::encodeName));
+    private final LoadingCache<Map<String, String>, EncodedTags> encodedTags = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(new CacheLoader<Map<String, String>, EncodedTags>()
+            {
+                @Override
+                public EncodedTags load(Map<String, String> tags)
+                        throws JsonProcessingException
+                {
+                    return encodeTags(tags);
+                }
+            });
+    private volatile boolean smile;
 
     @Inject
-    ReportClient(NodeInfo nodeInfo, @ForReportClient HttpClient httpClient, ReportClientConfig reportClientConfig, ReportTagConfig reportTagConfig, ObjectMapper objectMapper)
+    ReportClient(NodeInfo nodeInfo, @ForReportClient HttpClient httpClient, ReportClientConfig reportClientConfig, ReportTagConfig reportTagConfig, ObjectMapper objectMapper, ReportSpool reportSpool)
     {
         this.objectMapper = objectMapper;
         requireNonNull(nodeInfo, "nodeInfo is null");
@@ -70,69 +109,116 @@ class ReportClient
         this.instanceTags = builder.build();
 
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
+        this.reportSpool = requireNonNull(reportSpool, "reportSpool is null");
+        smile = reportClientConfig.getUploadFormat() == SMILE;
+    }
+
+    public void report(long systemTimeMillis, CollectedData collectedData)
+    {
+        boolean smile = this.smile;
+        CompressBodySource bodySource = new CompressBodySource(systemTimeMillis, collectedData, smile);
+        UploadResult result = upload(bodySource, smile);
+        if (result == UNSUPPORTED_FORMAT && smile) {
+            logger.warn("Reporting service does not accept Smile uploads, using JSON instead");
+            this.smile = false;
+            bodySource = new CompressBodySource(systemTimeMillis, collectedData, false);
+            result = upload(bodySource, false);
+        }
+
+        switch (result) {
+            case SUCCEEDED:
+                replaySpooledReports();
+                break;
+            case FAILED:
+                reportSpool.add(systemTimeMillis, bodySource::writeSpoolContent);
+                break;
+            case REJECTED:
+            case UNSUPPORTED_FORMAT:
+                break;
+        }
     }
 
-    public void report(long systemTimeMillis, Table<String, Map<String, String>, Object> collectedData)
+    private void replaySpooledReports()
     {
-        Request request = preparePost()
+        List<Path> batch = reportSpool.nextBatch();
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        switch (upload(new SpooledBodySource(batch), false)) {
+            case SUCCEEDED:
+                reportSpool.replaySucceeded(batch);
+                break;
+            case FAILED:
+                reportSpool.replayFailed();
+                break;
+            case REJECTED:
+            case UNSUPPORTED_FORMAT:
+                reportSpool.replayRejected(batch);
+                break;
+        }
+    }
+
+    private UploadResult upload(BodySource bodySource, boolean smile)
+    {
+        Request.Builder requestBuilder = preparePost()
                 .setUri(UPLOAD_URI)
-                .setHeader("Content-Type", "application/gzip")
-                .setBodySource(new CompressBodySource(systemTimeMillis, collectedData))
-                .build();
+                .setBodySource(bodySource);
+        if (smile) {
+            requestBuilder.setHeader("Content-Type", "application/x-jackson-smile")
+                    .setHeader("Content-Encoding", "gzip");
+        }
+        else {
+            requestBuilder.setHeader("Content-Type", "application/gzip");
+        }
         try {
-            StringResponse response = httpClient.execute(request, createStringResponseHandler());
-            if (response.getStatusCode() != 204) {
-                logger.warn("Failed to report stats: %s %s %s", response.getStatusCode(), response.getStatusMessage(), response.getBody());
+            StringResponse response = httpClient.execute(requestBuilder.build(), createStringResponseHandler());
+            if (response.getStatusCode() == 204) {
+                return SUCCEEDED;
+            }
+            if (smile && response.getStatusCode() == 415) {
+                return UNSUPPORTED_FORMAT;
+            }
+            logger.warn("Failed to report stats: %s %s %s", response.getStatusCode(), response.getStatusMessage(), response.getBody());
+            if (response.getStatusCode() >= 500 || response.getStatusCode() == 429) {
+                return FAILED;
             }
+            return REJECTED;
         }
         catch (RuntimeException e) {
             logger.warn(e, "Exception when trying to report stats");
+            return FAILED;
         }
     }
 
-    private static class DataPoint
+    private static SerializedString encodeName(String name)
     {
-        private static final Pattern NOT_ACCEPTED_CHARACTER_PATTERN = Pattern.compile("[^-A-Za-z0-9./_]");
-        @JsonProperty
-        private final String name;
-        @JsonProperty
-        private final long timestamp;
-        @JsonProperty
-        private final String type;
-        @JsonProperty
-        private final Object value;
-        @JsonProperty
-        private final Map<String, String> tags;
-
-        DataPoint(long systemTimeMillis, Cell<String, Map<String, String>, Object> cell, Map<String, String> instanceTags)
-        {
-            name = NOT_ACCEPTED_CHARACTER_PATTERN.matcher(cell.getRowKey()).replaceAll("_");
+        return new SerializedString(NOT_ACCEPTED_CHARACTER_PATTERN.matcher(name).replaceAll("_"));
+    }
 
-            timestamp = systemTimeMillis;
-            value = cell.getValue();
-            if (value instanceof Number) {
-                type = null;
-            } else {
-                type = "string";
-            }
-            Builder<String, String> builder = ImmutableMap.<String, String>builder()
-                    .putAll(instanceTags);
-            for (Entry<String, String> entry : cell.getColumnKey().entrySet()) {
-                builder.put(entry.getKey(), NOT_ACCEPTED_CHARACTER_PATTERN.matcher(entry.getValue()).replaceAll("_"));
-            }
-            tags = builder.build();
+    private EncodedTags encodeTags(Map<String, String> tags)
+            throws JsonProcessingException
+    {
+        Builder<String, String> builder = ImmutableMap.<String, String>builder()
+                .putAll(instanceTags);
+        for (Entry<String, String> entry : tags.entrySet()) {
+            builder.put(entry.getKey(), NOT_ACCEPTED_CHARACTER_PATTERN.matcher(entry.getValue()).replaceAll("_"));
         }
+        Map<String, String> mergedTags = builder.build();
+        return new EncodedTags(mergedTags, objectMapper.writeValueAsString(mergedTags));
     }
 
     private class CompressBodySource implements DynamicBodySource
     {
         private final long systemTimeMillis;
-        private final Table<String, Map<String, String>, Object> collectedData;
+        private final CollectedData collectedData;
+        private final boolean smile;
 
-        CompressBodySource(long systemTimeMillis, Table<String, Map<String, String>, Object> collectedData)
+        CompressBodySource(long systemTimeMillis, CollectedData collectedData, boolean smile)
         {
             this.systemTimeMillis = systemTimeMillis;
             this.collectedData = collectedData;
+            this.smile = smile;
         }
 
         @Override
@@ -140,23 +226,198 @@ class ReportClient
                 throws Exception
         {
             final GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out);
-            final JsonGenerator generator = JSON_FACTORY.createGenerator(gzipOutputStream, JsonEncoding.UTF8)
-                .setCodec(objectMapper);
-            final Iterator<Cell<String, Map<String, String>, Object>> iterator = collectedData.cellSet().iterator();
+            final JsonGenerator generator = createGenerator(gzipOutputStream, smile);
 
             generator.writeStartArray();
 
-            return () -> {
-                if (iterator.hasNext()) {
-                    generator.writeObject(new DataPoint(systemTimeMillis, iterator.next(), instanceTags));
+            return new Writer()
+            {
+                private int index = 0;
+
+                @Override
+                public void write()
+                        throws Exception
+                {
+                    if (index < collectedData.size()) {
+                        writeDataPoint(generator, index++, smile);
+                    }
+                    else {
+                        generator.writeEndArray();
+                        generator.flush();
+                        gzipOutputStream.finish();
+                        out.close();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Write the data points, compressed, as a comma-separated sequence
+         * of JSON objects without the enclosing array.
+         */
+        void writeSpoolContent(OutputStream out)
+                throws IOException
+        {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out);
+            JsonGenerator generator = createGenerator(gzipOutputStream, false);
+            generator.setRootValueSeparator(new SerializedString(","));
+            for (int index = 0; index < collectedData.size(); index++) {
+                writeDataPoint(generator, index, false);
+            }
+            generator.flush();
+            gzipOutputStream.finish();
+        }
+
+        private JsonGenerator createGenerator(OutputStream out, boolean smile)
+                throws IOException
+        {
+            if (smile) {
+                return SMILE_FACTORY.createGenerator(out)
+                        .setCodec(objectMapper);
+            }
+            return JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)
+                    .setCodec(objectMapper);
+        }
+
+        private void writeDataPoint(JsonGenerator generator, int index, boolean smile)
+                throws IOException
+        {
+            Object value = collectedData.getValue(index);
+
+            generator.writeStartObject();
+            generator.writeFieldName("name");
+            generator.writeString(encodedNames.getUnchecked(collectedData.getName(index)));
+            generator.writeNumberField("timestamp", systemTimeMillis);
+            if (!(value instanceof Number)) {
+                generator.writeStringField("type", "string");
+            }
+            generator.writeFieldName("value");
+            if (value instanceof Double) {
+                generator.writeNumber((Double) value);
+            }
+            else if (value instanceof Long) {
+                generator.writeNumber((Long) value);
+            }
+            else if (value instanceof Integer) {
+                generator.writeNumber((Integer) value);
+            }
+            else if (value instanceof String) {
+                generator.writeString((String) value);
+            }
+            else {
+                generator.writeObject(value);
+            }
+            generator.writeFieldName("tags");
+            EncodedTags tags = encodedTags.getUnchecked(collectedData.getTags(index));
+            if (smile) {
+                // Smile has no raw values; repeated tag strings are back-references instead
+                generator.writeStartObject();
+                for (Entry<String, String> entry : tags.tags.entrySet()) {
+                    generator.writeStringField(entry.getKey(), entry.getValue());
+                }
+                generator.writeEndObject();
+            }
+            else {
+                generator.writeRawValue(tags.json);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Joins spooled reports into one array of data points, recompressing
+     * them as a single gzip stream.
+     */
+    private static class SpooledBodySource implements DynamicBodySource
+    {
+        private final List<Path> batch;
+
+        SpooledBodySource(List<Path> batch)
+        {
+            this.batch = batch;
+        }
+
+        @Override
+        public Writer start(OutputStream out)
+                throws Exception
+        {
+            GZIPOutputStream gzipOutputStream = new GZIPOutputStream(out);
+            gzipOutputStream.write('[');
+            return new SpooledReportsWriter(batch.iterator(), out, gzipOutputStream);
+        }
+    }
+
+    private static class SpooledReportsWriter implements Writer, AutoCloseable
+    {
+        private final byte[] buffer = new byte[65536];
+        private final Iterator<Path> files;
+        private final OutputStream out;
+        private final GZIPOutputStream gzipOutputStream;
+        private InputStream current = null;
+
+        SpooledReportsWriter(Iterator<Path> files, OutputStream out, GZIPOutputStream gzipOutputStream)
+        {
+            this.files = files;
+            this.out = out;
+            this.gzipOutputStream = gzipOutputStream;
+        }
+
+        @Override
+        public void write()
+                throws Exception
+        {
+            if (current == null) {
+                if (files.hasNext()) {
+                    current = new GZIPInputStream(Files.newInputStream(files.next()));
                 }
                 else {
-                    generator.writeEndArray();
-                    generator.flush();
+                    gzipOutputStream.write(']');
                     gzipOutputStream.finish();
                     out.close();
                 }
-            };
+                return;
+            }
+
+            int bytesRead = current.read(buffer);
+            if (bytesRead >= 0) {
+                gzipOutputStream.write(buffer, 0, bytesRead);
+            }
+            else {
+                current.close();
+                current = null;
+                if (files.hasNext()) {
+                    gzipOutputStream.write(',');
+                }
+            }
         }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+
+    private static class EncodedTags
+    {
+        private final Map<String, String> tags;
+        private final String json;
+
+        EncodedTags(Map<String, String> tags, String json)
+        {
+            this.tags = tags;
+            this.json = json;
+        }
+    }
+
+    enum UploadResult
+    {
+        SUCCEEDED,
+        FAILED,
+        REJECTED,
+        UNSUPPORTED_FORMAT,
     }
 }
@@ -16,12 +16,24 @@
 package com.proofpoint.reporting;
 
 import com.proofpoint.configuration.Config;
+import com.proofpoint.configuration.ConfigDescription;
 import com.proofpoint.configuration.DefunctConfig;
+import com.proofpoint.units.DataSize;
+import com.proofpoint.units.MinDataSize;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import static com.proofpoint.units.DataSize.Unit.MEGABYTE;
 
 @DefunctConfig("report.uri")
 public class ReportClientConfig
 {
     private boolean enabled = true;
+    private String spoolPath = null;
+    private DataSize spoolMaxSize = new DataSize(100, MEGABYTE);
+    private int spoolMaxBatch = 10;
+    private UploadFormat uploadFormat = UploadFormat.JSON;
 
     public boolean isEnabled()
     {
@@ -34,4 +46,66 @@ public class ReportClientConfig
         this.enabled = enabled;
         return this;
     }
+
+    public String getSpoolPath()
+    {
+        return spoolPath;
+    }
+
+    @Config("reporting.spool.path")
+    @ConfigDescription("Directory in which to keep reports that failed to upload, for later retry. If not set, failed reports are discarded")
+    public ReportClientConfig setSpoolPath(String spoolPath)
+    {
+        this.spoolPath = spoolPath;
+        return this;
+    }
+
+    @NotNull
+    @MinDataSize("1MB")
+    public DataSize getSpoolMaxSize()
+    {
+        return spoolMaxSize;
+    }
+
+    @Config("reporting.spool.max-size")
+    @ConfigDescription("Maximum total size of spooled reports. The oldest reports are discarded to stay within it")
+    public ReportClientConfig setSpoolMaxSize(DataSize spoolMaxSize)
+    {
+        this.spoolMaxSize = spoolMaxSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getSpoolMaxBatch()
+    {
+        return spoolMaxBatch;
+    }
+
+    @Config("reporting.spool.max-batch")
+    @ConfigDescription("Maximum number of spooled reports to upload in one request")
+    public ReportClientConfig setSpoolMaxBatch(int spoolMaxBatch)
+    {
+        this.spoolMaxBatch = spoolMaxBatch;
+        return this;
+    }
+
+    @NotNull
+    public UploadFormat getUploadFormat()
+    {
+        return uploadFormat;
+    }
+
+    @Config("reporting.upload-format")
+    @ConfigDescription("Encoding of uploaded reports. SMILE falls back to JSON if the reporting service does not accept it")
+    public ReportClientConfig setUploadFormat(UploadFormat uploadFormat)
+    {
+        this.uploadFormat = uploadFormat;
+        return this;
+    }
+
+    public enum UploadFormat
+    {
+        JSON,
+        SMILE,
+    }
 }
@@ -15,8 +15,11 @@
  */
 package com.proofpoint.reporting;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableTable;
 import com.proofpoint.log.Logger;
 import com.proofpoint.node.NodeInfo;
 import com.proofpoint.reporting.ReportedBeanRegistry.RegistrationInfo;
@@ -25,6 +28,8 @@ import javax.inject.Inject;
 import javax.management.AttributeNotFoundException;
 import javax.management.MBeanException;
 import javax.management.ReflectionException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.CaseFormat.LOWER_HYPHEN;
@@ -40,6 +45,10 @@ public class ReportCollector
     private final ReportedBeanRegistry reportedBeanRegistry;
     private final ReportSink reportSink;
     private final Map<String, String> versionTags;
+    private final LoadingCache<RegistrationInfo, List<String>> metricNames = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(this::createMetricNames));
+    private int lastCollectionSize = 0;
 
     @Inject
     ReportCollector(
@@ -67,10 +76,12 @@ public class ReportCollector
     {
         try {
             long lastSystemTimeMillis = bucketIdProvider.getLastSystemTimeMillis();
-            ImmutableTable.Builder<String, Map<String, String>, Object> builder = ImmutableTable.builder();
+            CollectedData collectedData = new CollectedData(lastCollectionSize);
             int numAttributes = 0;
             for (RegistrationInfo registrationInfo : reportedBeanRegistry.getReportedBeans()) {
+                Iterator<String> names = metricNames.getUnchecked(registrationInfo).iterator();
                 for (ReportedBeanAttribute attribute : registrationInfo.getReportedBean().getAttributes()) {
+                    String name = names.next();
                     Object value = null;
 
                     try {
@@ -85,27 +96,36 @@ public class ReportCollector
                         }
 
                         ++numAttributes;
-                        StringBuilder stringBuilder = new StringBuilder();
-                        if (registrationInfo.isApplicationPrefix()) {
-                            stringBuilder.append(applicationPrefix);
-                        }
-                        String name = stringBuilder
-                                .append(registrationInfo.getNamePrefix())
-                                .append('.')
-                                .append(attribute.getName())
-                                .toString();
-                        builder.put(name, registrationInfo.getTags(), value);
+                        collectedData.add(name, registrationInfo.getTags(), value);
                     }
                 }
             }
-            builder.put("ReportCollector.NumMetrics", versionTags, numAttributes);
-            reportSink.report(lastSystemTimeMillis, builder.build());
+            collectedData.add("ReportCollector.NumMetrics", versionTags, numAttributes);
+            lastCollectionSize = collectedData.size();
+            reportSink.report(lastSystemTimeMillis, collectedData);
         }
         catch (Throwable e) {
             log.error(e, "Unexpected exception from report collection");
         }
     }
 
+    private List<String> createMetricNames(RegistrationInfo registrationInfo)
+    {
+        String prefix;
+        if (registrationInfo.isApplicationPrefix()) {
+            prefix = applicationPrefix + registrationInfo.getNamePrefix() + ".";
+        }
+        else {
+            prefix = registrationInfo.getNamePrefix() + ".";
+        }
+
+        ImmutableList.Builder<String> builder = ImmutableList.builder();
+        for (ReportedBeanAttribute attribute : registrationInfo.getReportedBean().getAttributes()) {
+            builder.add(prefix + attribute.getName());
+        }
+        return builder.build();
+    }
+
     Map<String, String> getVersionTags()
     {
         return versionTags;
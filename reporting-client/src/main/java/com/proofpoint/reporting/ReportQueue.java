@@ -44,6 +44,16 @@ class ReportQueue implements ReportSink
             return;
         }
 
+        report(systemTimeMillis, CollectedData.copyOf(collectedData));
+    }
+
+    @Override
+    public void report(long systemTimeMillis, CollectedData collectedData)
+    {
+        if (!enabled) {
+            return;
+        }
+
         clientExecutorService.submit(() -> reportClient.report(systemTimeMillis, collectedData));
     }
 }
@@ -22,4 +22,13 @@ import java.util.Map;
 public interface ReportSink
 {
     void report(long systemTimeMillis, Table<String, Map<String, String>, Object> collectedData);
+
+    /**
+     * Report the data from a collection. The default implementation copies
+     * the data into a table and calls {@link #report(long, Table)}.
+     */
+    default void report(long systemTimeMillis, CollectedData collectedData)
+    {
+        report(systemTimeMillis, collectedData.toTable());
+    }
 }
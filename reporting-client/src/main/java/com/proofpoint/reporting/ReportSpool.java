@@ -0,0 +1,303 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.proofpoint.log.Logger;
+import com.proofpoint.stats.CounterStat;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.Math.min;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Keeps reports that failed to upload in a directory until they can be
+ * retried. Each report is stored in its own file as a gzip-compressed,
+ * comma-separated sequence of data points, so that several of them can be
+ * joined into the JSON array of one request body.
+ * <p>
+ * When the total size exceeds the configured maximum, the oldest reports
+ * are discarded. Failed retries back off exponentially.
+ */
+class ReportSpool
+{
+    private static final Logger log = Logger.get(ReportSpool.class);
+    private static final String SUFFIX = ".json.gz";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MINUTES.toNanos(16);
+
+    private final Path directory;
+    private final long maxSize;
+    private final int maxBatch;
+    private final Ticker ticker;
+    private final CounterStat spooled = new CounterStat();
+    private final CounterStat replayed = new CounterStat();
+    private final CounterStat dropped = new CounterStat();
+
+    @GuardedBy("this")
+    private final Deque<SpooledReport> reports = new ArrayDeque<>();
+    @GuardedBy("this")
+    private long size = 0;
+    @GuardedBy("this")
+    private long sequence = 0;
+    @GuardedBy("this")
+    private long backoffNanos = 0;
+    @GuardedBy("this")
+    private long nextReplayNanos;
+
+    @Inject
+    ReportSpool(ReportClientConfig config)
+    {
+        this(config, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    ReportSpool(ReportClientConfig config, Ticker ticker)
+    {
+        requireNonNull(config, "config is null");
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        maxSize = config.getSpoolMaxSize().toBytes();
+        maxBatch = config.getSpoolMaxBatch();
+        nextReplayNanos = ticker.read();
+
+        if (config.getSpoolPath() == null) {
+            directory = null;
+            return;
+        }
+
+        directory = Paths.get(config.getSpoolPath());
+        try {
+            Files.createDirectories(directory);
+            List<Path> existing = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    String name = path.getFileName().toString();
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        Files.deleteIfExists(path);
+                    }
+                    else if (name.endsWith(SUFFIX)) {
+                        existing.add(path);
+                    }
+                }
+            }
+            existing.sort(null);
+            synchronized (this) {
+                for (Path path : existing) {
+                    long fileSize = Files.size(path);
+                    reports.add(new SpooledReport(path, fileSize));
+                    size += fileSize;
+                }
+                trimToSize();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Unable to open report spool " + directory, e);
+        }
+    }
+
+    boolean isEnabled()
+    {
+        return directory != null;
+    }
+
+    /**
+     * Store a report that failed to upload.
+     *
+     * @param systemTimeMillis the time the report was collected
+     * @param contentWriter writes the gzip-compressed data points of the report
+     */
+    void add(long systemTimeMillis, ContentWriter contentWriter)
+    {
+        if (directory == null) {
+            dropped.add(1);
+            return;
+        }
+
+        String name;
+        synchronized (this) {
+            name = String.format("%020d-%010d", systemTimeMillis, sequence++);
+        }
+        Path temp = directory.resolve(name + TEMP_SUFFIX);
+        Path path = directory.resolve(name + SUFFIX);
+        long fileSize;
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                contentWriter.write(out);
+            }
+            fileSize = Files.size(temp);
+            Files.move(temp, path, ATOMIC_MOVE);
+        }
+        catch (Exception e) {
+            log.warn(e, "Unable to spool report to %s", path);
+            deleteQuietly(temp);
+            dropped.add(1);
+            return;
+        }
+
+        spooled.add(1);
+        synchronized (this) {
+            reports.add(new SpooledReport(path, fileSize));
+            size += fileSize;
+            trimToSize();
+        }
+    }
+
+    /**
+     * Return the oldest spooled reports, up to the configured batch size,
+     * if a retry is due. The caller must pass the batch to exactly one of
+     * {@link #replaySucceeded}, {@link #replayRejected}, or
+     * {@link #replayFailed}.
+     */
+    synchronized List<Path> nextBatch()
+    {
+        if (reports.isEmpty() || ticker.read() - nextReplayNanos < 0) {
+            return ImmutableList.of();
+        }
+
+        ImmutableList.Builder<Path> builder = ImmutableList.builder();
+        int count = 0;
+        for (SpooledReport report : reports) {
+            if (count++ == maxBatch) {
+                break;
+            }
+            builder.add(report.path);
+        }
+        return builder.build();
+    }
+
+    synchronized void replaySucceeded(List<Path> batch)
+    {
+        replayed.add(remove(batch));
+        backoffNanos = 0;
+    }
+
+    synchronized void replayRejected(List<Path> batch)
+    {
+        dropped.add(remove(batch));
+    }
+
+    synchronized void replayFailed()
+    {
+        backoffNanos = min(MAX_BACKOFF_NANOS, Math.max(MIN_BACKOFF_NANOS, backoffNanos * 2));
+        nextReplayNanos = ticker.read() + backoffNanos;
+    }
+
+    @GuardedBy("this")
+    private int remove(List<Path> batch)
+    {
+        int removed = 0;
+        for (Path path : batch) {
+            SpooledReport report = reports.peekFirst();
+            if (report == null || !report.path.equals(path)) {
+                // Already discarded by trimToSize()
+                continue;
+            }
+            reports.removeFirst();
+            size -= report.size;
+            deleteQuietly(path);
+            ++removed;
+        }
+        return removed;
+    }
+
+    @GuardedBy("this")
+    private void trimToSize()
+    {
+        while (size > maxSize && !reports.isEmpty()) {
+            SpooledReport report = reports.removeFirst();
+            size -= report.size;
+            deleteQuietly(report.path);
+            dropped.add(1);
+        }
+    }
+
+    private static void deleteQuietly(Path path)
+    {
+        try {
+            Files.deleteIfExists(path);
+        }
+        catch (IOException e) {
+            log.warn(e, "Unable to delete spooled report %s", path);
+        }
+    }
+
+    @Reported
+    public synchronized int getQueuedReports()
+    {
+        return reports.size();
+    }
+
+    @Reported
+    public synchronized long getQueuedBytes()
+    {
+        return size;
+    }
+
+    @Nested
+    public CounterStat getSpooled()
+    {
+        return spooled;
+    }
+
+    @Nested
+    public CounterStat getReplayed()
+    {
+        return replayed;
+    }
+
+    @Nested
+    public CounterStat getDropped()
+    {
+        return dropped;
+    }
+
+    interface ContentWriter
+    {
+        void write(OutputStream out)
+                throws Exception;
+    }
+
+    private static class SpooledReport
+    {
+        private final Path path;
+        private final long size;
+
+        SpooledReport(Path path, long size)
+        {
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import static com.proofpoint.concurrent.Threads.daemonThreadsNamed;
 import static com.proofpoint.configuration.ConfigurationModule.bindConfig;
 import static com.proofpoint.discovery.client.DiscoveryBinder.discoveryBinder;
 import static com.proofpoint.reporting.HealthBinder.healthBinder;
+import static com.proofpoint.reporting.ReportBinder.reportBinder;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 
 public class ReportingClientModule
@@ -43,6 +44,8 @@ public class ReportingClientModule
         binder.bind(ReportCollector.class).in(SINGLETON);
         binder.bind(ReportSink.class).to(ReportQueue.class).in(SINGLETON);
         binder.bind(ReportClient.class).in(SINGLETON);
+        binder.bind(ReportSpool.class).in(SINGLETON);
+        reportBinder(binder).export(ReportSpool.class);
 
         discoveryBinder(binder).bindDiscoveredHttpClient("reporting", ForReportClient.class);
         bindConfig(binder).to(ReportClientConfig.class);
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableTable;
+import com.google.common.collect.Table;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestCollectedData
+{
+    @Test
+    public void testAdd()
+    {
+        CollectedData collectedData = new CollectedData(1);
+        for (int i = 0; i < 100; i++) {
+            collectedData.add("Metric" + i, ImmutableMap.of("tag", Integer.toString(i)), i);
+        }
+
+        assertEquals(collectedData.size(), 100);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(collectedData.getName(i), "Metric" + i);
+            assertEquals(collectedData.getTags(i), ImmutableMap.of("tag", Integer.toString(i)));
+            assertEquals(collectedData.getValue(i), i);
+        }
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testGetOutOfBounds()
+    {
+        CollectedData collectedData = new CollectedData();
+        collectedData.add("Metric", ImmutableMap.of(), 1);
+        collectedData.getValue(1);
+    }
+
+    @Test
+    public void testForEach()
+    {
+        CollectedData collectedData = new CollectedData();
+        collectedData.add("Foo", ImmutableMap.of(), 1);
+        collectedData.add("Bar", ImmutableMap.of("tag", "value"), "string");
+
+        List<Object> visited = new ArrayList<>();
+        collectedData.forEach((name, tags, value) -> visited.add(ImmutableList.of(name, tags, value)));
+        assertEquals(visited, ImmutableList.of(
+                ImmutableList.of("Foo", ImmutableMap.of(), 1),
+                ImmutableList.of("Bar", ImmutableMap.of("tag", "value"), "string")
+        ));
+    }
+
+    @Test
+    public void testTableRoundTrip()
+    {
+        Table<String, Map<String, String>, Object> table = ImmutableTable.<String, Map<String, String>, Object>builder()
+                .put("Foo", ImmutableMap.of(), 1)
+                .put("Foo", ImmutableMap.of("tag", "value"), 2.0)
+                .put("Bar", ImmutableMap.of(), "string")
+                .build();
+
+        assertEquals(CollectedData.copyOf(table).toTable(), table);
+    }
+}
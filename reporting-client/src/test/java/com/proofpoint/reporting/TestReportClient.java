@@ -17,12 +17,14 @@ package com.proofpoint.reporting;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Table;
+import com.google.common.io.Files;
 import com.proofpoint.http.client.HttpClient;
 import com.proofpoint.http.client.HttpStatus;
 import com.proofpoint.http.client.Request;
@@ -32,12 +34,17 @@ import com.proofpoint.http.client.testing.TestingHttpClient.Processor;
 import com.proofpoint.json.ObjectMapperProvider;
 import com.proofpoint.node.NodeConfig;
 import com.proofpoint.node.NodeInfo;
+import com.proofpoint.reporting.ReportClientConfig.UploadFormat;
+import com.proofpoint.testing.FileUtils;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import javax.management.MalformedObjectNameException;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -46,6 +53,10 @@ import java.util.zip.GZIPInputStream;
 
 import static com.google.common.base.Throwables.propagate;
 import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.proofpoint.http.client.HttpStatus.BAD_REQUEST;
+import static com.proofpoint.http.client.HttpStatus.NO_CONTENT;
+import static com.proofpoint.http.client.HttpStatus.SERVICE_UNAVAILABLE;
+import static com.proofpoint.http.client.HttpStatus.UNSUPPORTED_MEDIA_TYPE;
 import static com.proofpoint.http.client.testing.BodySourceTester.writeBodySourceTo;
 import static com.proofpoint.http.client.testing.TestingResponse.mockResponse;
 import static org.testng.Assert.assertEquals;
@@ -81,15 +92,15 @@ public class TestReportClient
     public void testReportingDisabled()
     {
         httpClient = new TestingHttpClient();
-        ReportClient client = new ReportClient(nodeInfo, httpClient, new ReportClientConfig().setEnabled(false), new ReportTagConfig(), objectMapper);
-        client.report(System.currentTimeMillis(), collectedData);
+        ReportClient client = new ReportClient(nodeInfo, httpClient, new ReportClientConfig().setEnabled(false), new ReportTagConfig(), objectMapper, new ReportSpool(new ReportClientConfig()));
+        client.report(System.currentTimeMillis(), CollectedData.copyOf(collectedData));
     }
 
     @Test
     public void testReportData()
     {
-        ReportClient client = new ReportClient(nodeInfo, httpClient, new ReportClientConfig(), new ReportTagConfig(), objectMapper);
-        client.report(TEST_TIME, collectedData);
+        ReportClient client = new ReportClient(nodeInfo, httpClient, new ReportClientConfig(), new ReportTagConfig(), objectMapper, new ReportSpool(new ReportClientConfig()));
+        client.report(TEST_TIME, CollectedData.copyOf(collectedData));
         assertEquals(sentJson.size(), 2);
 
         for (Map<String, Object> map : sentJson) {
@@ -116,10 +127,10 @@ public class TestReportClient
     public void testReportString()
     {
 
-        ReportClient client = new ReportClient(nodeInfo, httpClient, new ReportClientConfig(), new ReportTagConfig(), objectMapper);
+        ReportClient client = new ReportClient(nodeInfo, httpClient, new ReportClientConfig(), new ReportTagConfig(), objectMapper, new ReportSpool(new ReportClientConfig()));
         collectedData = HashBasedTable.create();
         collectedData.put("Foo.String", ImmutableMap.of(), "test value");
-        client.report(TEST_TIME, collectedData);
+        client.report(TEST_TIME, CollectedData.copyOf(collectedData));
         assertEquals(sentJson, ImmutableList.of(
                 ImmutableMap.of(
                         "name", "Foo.String",
@@ -136,13 +147,40 @@ public class TestReportClient
         ));
     }
 
+    @Test
+    public void testReportTwice()
+    {
+        ReportClient client = new ReportClient(nodeInfo, httpClient, new ReportClientConfig(), new ReportTagConfig(), objectMapper, new ReportSpool(new ReportClientConfig()));
+        CollectedData data = CollectedData.copyOf(collectedData);
+        client.report(TEST_TIME, data);
+        List<Map<String, Object>> firstJson = sentJson;
+
+        sentJson = null;
+        client.report(TEST_TIME, data);
+        assertEquals(sentJson, firstJson);
+    }
+
+    @Test
+    public void testReportIntegralValues()
+    {
+        ReportClient client = new ReportClient(nodeInfo, httpClient, new ReportClientConfig(), new ReportTagConfig(), objectMapper, new ReportSpool(new ReportClientConfig()));
+        collectedData = HashBasedTable.create();
+        collectedData.put("Foo.Int", ImmutableMap.of(), 3);
+        collectedData.put("Foo.Long", ImmutableMap.of(), 5_000_000_000L);
+        client.report(TEST_TIME, CollectedData.copyOf(collectedData));
+        assertEquals(sentJson.size(), 2);
+        assertEquals(sentJson.get(0).get("value"), 3);
+        assertEquals(sentJson.get(0).containsKey("type"), false);
+        assertEquals(sentJson.get(1).get("value"), 5_000_000_000L);
+    }
+
     @Test
     public void testConfiguredTags()
     {
         ReportClient client = new ReportClient(nodeInfo, httpClient,
                 new ReportClientConfig(), new ReportTagConfig()
-                        .setTags(ImmutableMap.of("foo", "ba:r", "baz", "quux")), objectMapper);
-        client.report(TEST_TIME, collectedData);
+                        .setTags(ImmutableMap.of("foo", "ba:r", "baz", "quux")), objectMapper, new ReportSpool(new ReportClientConfig()));
+        client.report(TEST_TIME, CollectedData.copyOf(collectedData));
         assertEquals(sentJson.size(), 2);
 
         for (Map<String, Object> map : sentJson) {
@@ -157,6 +195,135 @@ public class TestReportClient
         assertEquals(tags.keySet(), ImmutableSet.of("application", "host", "environment", "pool", "foo", "baz"));
     }
 
+    @Test
+    public void testReportSmile()
+    {
+        ReportClient jsonClient = new ReportClient(nodeInfo, httpClient, new ReportClientConfig(), new ReportTagConfig(), objectMapper, new ReportSpool(new ReportClientConfig()));
+        jsonClient.report(TEST_TIME, CollectedData.copyOf(collectedData));
+        List<Map<String, Object>> expectedJson = sentJson;
+
+        List<Request> requests = new ArrayList<>();
+        httpClient = new TestingHttpClient(request -> {
+            requests.add(request);
+            return mockResponse(NO_CONTENT);
+        });
+        ReportClientConfig config = new ReportClientConfig().setUploadFormat(UploadFormat.SMILE);
+        ReportClient client = new ReportClient(nodeInfo, httpClient, config, new ReportTagConfig(), objectMapper, new ReportSpool(config));
+        client.report(TEST_TIME, CollectedData.copyOf(collectedData));
+
+        assertEquals(requests.size(), 1);
+        assertEquals(requests.get(0).getHeader("Content-Type"), "application/x-jackson-smile");
+        assertEquals(requests.get(0).getHeader("Content-Encoding"), "gzip");
+        List<Map<String, Object>> smileJson = Lists.newArrayList(readBody(requests.get(0)));
+        smileJson.sort(Comparator.comparing(o -> ((String) o.get("name"))));
+        assertEquals(smileJson, expectedJson);
+    }
+
+    @Test
+    public void testSmileFallback()
+    {
+        List<Request> requests = new ArrayList<>();
+        httpClient = new TestingHttpClient(request -> {
+            requests.add(request);
+            if ("application/x-jackson-smile".equals(request.getHeader("Content-Type"))) {
+                return mockResponse(UNSUPPORTED_MEDIA_TYPE);
+            }
+            return mockResponse(NO_CONTENT);
+        });
+        ReportClientConfig config = new ReportClientConfig().setUploadFormat(UploadFormat.SMILE);
+        ReportClient client = new ReportClient(nodeInfo, httpClient, config, new ReportTagConfig(), objectMapper, new ReportSpool(config));
+
+        client.report(TEST_TIME, CollectedData.copyOf(collectedData));
+        assertEquals(requests.size(), 2);
+        assertEquals(requests.get(1).getHeader("Content-Type"), "application/gzip");
+        assertEquals(readBody(requests.get(1)).size(), 2);
+
+        client.report(TEST_TIME, CollectedData.copyOf(collectedData));
+        assertEquals(requests.size(), 3);
+        assertEquals(requests.get(2).getHeader("Content-Type"), "application/gzip");
+    }
+
+    @Test
+    public void testSpoolAndReplay()
+            throws IOException
+    {
+        File tempDir = Files.createTempDir().getCanonicalFile();
+        try {
+            List<HttpStatus> statuses = Lists.newArrayList(SERVICE_UNAVAILABLE, SERVICE_UNAVAILABLE, NO_CONTENT, NO_CONTENT);
+            List<List<Map<String, Object>>> bodies = new ArrayList<>();
+            httpClient = new TestingHttpClient(request -> {
+                bodies.add(readBody(request));
+                return mockResponse(statuses.remove(0));
+            });
+            ReportClientConfig config = new ReportClientConfig().setSpoolPath(tempDir.getPath());
+            ReportSpool spool = new ReportSpool(config);
+            ReportClient client = new ReportClient(nodeInfo, httpClient, config, new ReportTagConfig(), objectMapper, spool);
+
+            client.report(TEST_TIME, CollectedData.copyOf(collectedData));
+            client.report(TEST_TIME + 60_000, CollectedData.copyOf(collectedData));
+            assertEquals(spool.getQueuedReports(), 2);
+
+            client.report(TEST_TIME + 120_000, CollectedData.copyOf(collectedData));
+            assertEquals(bodies.size(), 4);
+            assertEquals(spool.getQueuedReports(), 0);
+            assertEquals(spool.getReplayed().getTotalCount(), 2);
+
+            List<Map<String, Object>> replayed = bodies.get(3);
+            assertEquals(replayed.size(), 4);
+            assertEquals(replayed.subList(0, 2), bodies.get(0));
+            assertEquals(replayed.subList(2, 4), bodies.get(1));
+            assertEquals(replayed.get(0).get("timestamp"), TEST_TIME);
+            assertEquals(replayed.get(2).get("timestamp"), TEST_TIME + 60_000);
+        }
+        finally {
+            FileUtils.deleteRecursively(tempDir);
+        }
+    }
+
+    @Test
+    public void testRejectedNotSpooled()
+            throws IOException
+    {
+        File tempDir = Files.createTempDir().getCanonicalFile();
+        try {
+            httpClient = new TestingHttpClient(request -> mockResponse(BAD_REQUEST));
+            ReportClientConfig config = new ReportClientConfig().setSpoolPath(tempDir.getPath());
+            ReportSpool spool = new ReportSpool(config);
+            ReportClient client = new ReportClient(nodeInfo, httpClient, config, new ReportTagConfig(), objectMapper, spool);
+
+            client.report(TEST_TIME, CollectedData.copyOf(collectedData));
+            assertEquals(spool.getQueuedReports(), 0);
+            assertEquals(spool.getDropped().getTotalCount(), 0);
+        }
+        finally {
+            FileUtils.deleteRecursively(tempDir);
+        }
+    }
+
+    private static List<Map<String, Object>> readBody(Request request)
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try {
+            writeBodySourceTo(request.getBodySource(), outputStream);
+            GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
+
+            ObjectMapper mapper;
+            if ("application/x-jackson-smile".equals(request.getHeader("Content-Type"))) {
+                mapper = new ObjectMapper(new SmileFactory());
+            }
+            else {
+                mapper = new ObjectMapper();
+            }
+            return mapper.readValue(inputStream, new TypeReference<List<Map<String, Object>>>()
+            {
+            });
+        }
+        catch (Exception e) {
+            throwIfUnchecked(e);
+            throw new RuntimeException(e);
+        }
+    }
+
     private class TestingResponseFunction
             implements Processor
     {
@@ -168,21 +335,8 @@ public class TestReportClient
             assertEquals(input.getUri().toString(), "api/v1/datapoints");
             assertEquals(input.getHeader("Content-Type"), "application/gzip");
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            try {
-                writeBodySourceTo(input.getBodySource(), outputStream);
-                GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray()));
-
-                sentJson = new ObjectMapper().readValue(inputStream, new TypeReference<List<Map<String, Object>>>()
-                {
-                });
-                sentJson = Lists.newArrayList(sentJson);
-                sentJson.sort(Comparator.comparing(o -> ((String) o.get("name"))));
-            }
-            catch (Exception e) {
-                throwIfUnchecked(e);
-                throw new RuntimeException(e);
-            }
+            sentJson = Lists.newArrayList(readBody(input));
+            sentJson.sort(Comparator.comparing(o -> ((String) o.get("name"))));
 
             return mockResponse(HttpStatus.NO_CONTENT);
         }
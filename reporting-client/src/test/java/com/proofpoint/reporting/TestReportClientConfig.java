@@ -16,14 +16,24 @@
 package com.proofpoint.reporting;
 
 import com.google.common.collect.ImmutableMap;
+import com.proofpoint.reporting.ReportClientConfig.UploadFormat;
+import com.proofpoint.units.DataSize;
+import com.proofpoint.units.MinDataSize;
 import org.testng.annotations.Test;
 
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import java.util.Map;
 
 import static com.proofpoint.configuration.testing.ConfigAssertions.assertFullMapping;
 import static com.proofpoint.configuration.testing.ConfigAssertions.assertLegacyEquivalence;
 import static com.proofpoint.configuration.testing.ConfigAssertions.assertRecordedDefaults;
 import static com.proofpoint.configuration.testing.ConfigAssertions.recordDefaults;
+import static com.proofpoint.testing.ValidationAssertions.assertFailsValidation;
+import static com.proofpoint.testing.ValidationAssertions.assertValidates;
+import static com.proofpoint.units.DataSize.Unit.GIGABYTE;
+import static com.proofpoint.units.DataSize.Unit.KILOBYTE;
+import static com.proofpoint.units.DataSize.Unit.MEGABYTE;
 
 public class TestReportClientConfig
 {
@@ -31,7 +41,11 @@ public class TestReportClientConfig
     public void testDefaults()
     {
         assertRecordedDefaults(recordDefaults(ReportClientConfig.class)
-                .setEnabled(true));
+                .setEnabled(true)
+                .setSpoolPath(null)
+                .setSpoolMaxSize(new DataSize(100, MEGABYTE))
+                .setSpoolMaxBatch(10)
+                .setUploadFormat(UploadFormat.JSON));
     }
 
     @Test
@@ -39,10 +53,18 @@ public class TestReportClientConfig
     {
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("reporting.enabled", "false")
+                .put("reporting.spool.path", "var/reporting")
+                .put("reporting.spool.max-size", "1GB")
+                .put("reporting.spool.max-batch", "5")
+                .put("reporting.upload-format", "SMILE")
                 .build();
 
         ReportClientConfig expected = new ReportClientConfig()
-                .setEnabled(false);
+                .setEnabled(false)
+                .setSpoolPath("var/reporting")
+                .setSpoolMaxSize(new DataSize(1, GIGABYTE))
+                .setSpoolMaxBatch(5)
+                .setUploadFormat(UploadFormat.SMILE);
 
         assertFullMapping(properties, expected);
     }
@@ -55,4 +77,14 @@ public class TestReportClientConfig
 
         assertLegacyEquivalence(ReportClientConfig.class, properties);
     }
+
+    @Test
+    public void testValidation()
+    {
+        assertValidates(new ReportClientConfig());
+        assertFailsValidation(new ReportClientConfig().setSpoolMaxSize(null), "spoolMaxSize", "may not be null", NotNull.class);
+        assertFailsValidation(new ReportClientConfig().setSpoolMaxSize(new DataSize(1, KILOBYTE)), "spoolMaxSize", "{com.proofpoint.units.MinDataSize.message}", MinDataSize.class);
+        assertFailsValidation(new ReportClientConfig().setSpoolMaxBatch(0), "spoolMaxBatch", "must be greater than or equal to 1", Min.class);
+        assertFailsValidation(new ReportClientConfig().setUploadFormat(null), "uploadFormat", "may not be null", NotNull.class);
+    }
 }
@@ -31,11 +31,13 @@ import java.util.Map;
 import static com.proofpoint.testing.Assertions.assertEqualsIgnoreOrder;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 
 public class TestReportCollector
 {
@@ -47,7 +49,7 @@ public class TestReportCollector
     private ReportCollector reportCollector;
 
     @Captor
-    ArgumentCaptor<Table<String, Map<String, String>, Object>> tableCaptor;
+    ArgumentCaptor<CollectedData> collectedDataCaptor;
 
     @BeforeMethod
     public void setup()
@@ -90,15 +92,36 @@ public class TestReportCollector
         assertMetricsCollected("TestObject.Metric", ImmutableMap.of("foo", "bar"));
     }
 
+    @Test
+    public void testCollectionReusesNamesAndTags()
+            throws Exception
+    {
+        Object reported = new ReportedObject();
+        reportedBeanRegistry.register(reported, ReportedBean.forTarget(reported), false, "TestObject", ImmutableMap.of("foo", "bar"));
+
+        reportCollector.collectData();
+        reportCollector.collectData();
+
+        verify(reportSink, times(2)).report(eq(0L), collectedDataCaptor.capture());
+        CollectedData first = collectedDataCaptor.getAllValues().get(0);
+        CollectedData second = collectedDataCaptor.getAllValues().get(1);
+        assertEquals(first.size(), 2);
+        assertEquals(second.size(), 2);
+        for (int i = 0; i < first.size(); i++) {
+            assertSame(second.getName(i), first.getName(i));
+            assertSame(second.getTags(i), first.getTags(i));
+        }
+    }
+
     private void assertMetricsCollected(String expectedMetricName, Map<String, String> expectedTags)
     {
         when(bucketIdProvider.getLastSystemTimeMillis()).thenReturn(12345L);
         reportCollector.collectData();
 
-        verify(reportSink).report(eq(12345L), tableCaptor.capture());
+        verify(reportSink).report(eq(12345L), collectedDataCaptor.capture());
         verifyNoMoreInteractions(reportSink);
 
-        Table<String, Map<String, String>, Object> table = tableCaptor.getValue();
+        Table<String, Map<String, String>, Object> table = collectedDataCaptor.getValue().toTable();
         assertEquals(table.cellSet(), ImmutableTable.<String, Map<String, String>, Object>builder()
                 .put(expectedMetricName, expectedTags, 1)
                 .put("ReportCollector.NumMetrics", EXPECTED_VERSION_TAGS, 1)
@@ -261,10 +284,10 @@ public class TestReportCollector
 
         reportCollector.collectData();
 
-        verify(reportSink).report(eq(12345L), tableCaptor.capture());
+        verify(reportSink).report(eq(12345L), collectedDataCaptor.capture());
         verifyNoMoreInteractions(reportSink);
 
-        Table<String, Map<String, String>, Object> table = tableCaptor.getValue();
+        Table<String, Map<String, String>, Object> table = collectedDataCaptor.getValue().toTable();
         assertEqualsIgnoreOrder(table.cellSet(), ImmutableTable.<String, Map<String, String>, Object>builder()
                 .put("TestObject.DoubleMetric", ImmutableMap.of(), 0.0)
                 .put("TestObject.FloatMetric", ImmutableMap.of(), 0F)
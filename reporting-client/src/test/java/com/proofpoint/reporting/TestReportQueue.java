@@ -18,6 +18,7 @@ package com.proofpoint.reporting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableTable;
 import com.proofpoint.testing.SerialScheduledExecutorService;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -25,10 +26,12 @@ import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.testng.Assert.assertEquals;
 
 public class TestReportQueue
 {
@@ -49,11 +52,26 @@ public class TestReportQueue
     {
         ReportQueue reportQueue = new ReportQueue(new ReportClientConfig().setEnabled(true), clientExecutorService, reportClient);
 
+        CollectedData collectedData = CollectedData.copyOf(TESTING_METRIC_DATA);
+        reportQueue.report(100, collectedData);
+
+        verify(clientExecutorService).submit(any(Runnable.class));
+        verify(reportClient).report(100, collectedData);
+        verifyNoMoreInteractions(reportClient);
+    }
+
+    @Test
+    public void testSubmitTable()
+    {
+        ReportQueue reportQueue = new ReportQueue(new ReportClientConfig().setEnabled(true), clientExecutorService, reportClient);
+        ArgumentCaptor<CollectedData> captor = ArgumentCaptor.forClass(CollectedData.class);
+
         reportQueue.report(100, TESTING_METRIC_DATA);
 
         verify(clientExecutorService).submit(any(Runnable.class));
-        verify(reportClient).report(100, TESTING_METRIC_DATA);
+        verify(reportClient).report(eq(100L), captor.capture());
         verifyNoMoreInteractions(reportClient);
+        assertEquals(captor.getValue().toTable(), TESTING_METRIC_DATA);
     }
 
     @Test
@@ -62,6 +80,7 @@ public class TestReportQueue
         ReportQueue reportQueue = new ReportQueue(new ReportClientConfig().setEnabled(false), clientExecutorService, reportClient);
 
         reportQueue.report(100, TESTING_METRIC_DATA);
+        reportQueue.report(100, CollectedData.copyOf(TESTING_METRIC_DATA));
 
         verifyNoMoreInteractions(clientExecutorService);
         verifyNoMoreInteractions(reportClient);
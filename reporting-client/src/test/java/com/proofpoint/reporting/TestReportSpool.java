@@ -0,0 +1,218 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.proofpoint.testing.FileUtils;
+import com.proofpoint.testing.TestingTicker;
+import com.proofpoint.units.DataSize;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.proofpoint.units.DataSize.Unit.MEGABYTE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class TestReportSpool
+{
+    private File tempDir;
+    private TestingTicker ticker;
+    private ReportClientConfig config;
+
+    @BeforeMethod
+    public void setup()
+            throws IOException
+    {
+        tempDir = Files.createTempDir().getCanonicalFile();
+        ticker = new TestingTicker();
+        config = new ReportClientConfig()
+                .setSpoolPath(tempDir.getPath())
+                .setSpoolMaxBatch(2);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+    {
+        FileUtils.deleteRecursively(tempDir);
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        ReportSpool spool = new ReportSpool(new ReportClientConfig(), ticker);
+        assertFalse(spool.isEnabled());
+
+        spool.add(1000, out -> fail("content should not be written"));
+
+        assertEquals(spool.getQueuedReports(), 0);
+        assertEquals(spool.getDropped().getTotalCount(), 1);
+        assertEquals(spool.nextBatch(), ImmutableList.of());
+    }
+
+    @Test
+    public void testReplayInOrder()
+    {
+        ReportSpool spool = new ReportSpool(config, ticker);
+        assertTrue(spool.isEnabled());
+        spool.add(1000, out -> out.write("first".getBytes(UTF_8)));
+        spool.add(2000, out -> out.write("second".getBytes(UTF_8)));
+        spool.add(3000, out -> out.write("third".getBytes(UTF_8)));
+
+        assertEquals(spool.getQueuedReports(), 3);
+        assertEquals(spool.getQueuedBytes(), "firstsecondthird".length());
+        assertEquals(spool.getSpooled().getTotalCount(), 3);
+
+        List<Path> batch = spool.nextBatch();
+        assertEquals(batch.size(), 2);
+        assertEquals(readAll(batch), "firstsecond");
+
+        spool.replaySucceeded(batch);
+        assertFalse(batch.get(0).toFile().exists());
+        assertFalse(batch.get(1).toFile().exists());
+        assertEquals(spool.getQueuedReports(), 1);
+        assertEquals(spool.getQueuedBytes(), "third".length());
+        assertEquals(spool.getReplayed().getTotalCount(), 2);
+
+        batch = spool.nextBatch();
+        assertEquals(readAll(batch), "third");
+        spool.replaySucceeded(batch);
+        assertEquals(spool.getQueuedReports(), 0);
+        assertEquals(spool.nextBatch(), ImmutableList.of());
+        assertEquals(tempDir.list(), new String[0]);
+    }
+
+    @Test
+    public void testReplayRejected()
+    {
+        ReportSpool spool = new ReportSpool(config, ticker);
+        spool.add(1000, out -> out.write(1));
+
+        spool.replayRejected(spool.nextBatch());
+
+        assertEquals(spool.getQueuedReports(), 0);
+        assertEquals(spool.getDropped().getTotalCount(), 1);
+        assertEquals(spool.getReplayed().getTotalCount(), 0);
+    }
+
+    @Test
+    public void testBackoff()
+    {
+        ReportSpool spool = new ReportSpool(config, ticker);
+        spool.add(1000, out -> out.write(1));
+
+        spool.nextBatch();
+        spool.replayFailed();
+        ticker.elapseTime(59, SECONDS);
+        assertEquals(spool.nextBatch(), ImmutableList.of());
+        ticker.elapseTime(1, SECONDS);
+        List<Path> batch = spool.nextBatch();
+        assertEquals(batch.size(), 1);
+
+        spool.replayFailed();
+        ticker.elapseTime(119, SECONDS);
+        assertEquals(spool.nextBatch(), ImmutableList.of());
+        ticker.elapseTime(1, SECONDS);
+        batch = spool.nextBatch();
+        assertEquals(batch.size(), 1);
+
+        spool.replaySucceeded(batch);
+        spool.add(2000, out -> out.write(1));
+        spool.replayFailed();
+        ticker.elapseTime(60, SECONDS);
+        assertEquals(spool.nextBatch().size(), 1);
+    }
+
+    @Test
+    public void testMaxSize()
+    {
+        ReportSpool spool = new ReportSpool(config.setSpoolMaxSize(new DataSize(1, MEGABYTE)), ticker);
+        byte[] content = new byte[400 * 1024];
+        spool.add(1000, out -> out.write(content));
+        spool.add(2000, out -> out.write(content));
+        List<Path> batch = spool.nextBatch();
+        spool.add(3000, out -> out.write(content));
+
+        assertEquals(spool.getQueuedReports(), 2);
+        assertEquals(spool.getQueuedBytes(), 2 * content.length);
+        assertEquals(spool.getDropped().getTotalCount(), 1);
+        assertFalse(batch.get(0).toFile().exists());
+
+        // The batch taken before the oldest report was discarded
+        spool.replaySucceeded(batch);
+        assertEquals(spool.getQueuedReports(), 1);
+        assertEquals(spool.getReplayed().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testFailedWrite()
+    {
+        ReportSpool spool = new ReportSpool(config, ticker);
+        spool.add(1000, out -> {
+            out.write(1);
+            throw new IOException("test");
+        });
+
+        assertEquals(spool.getQueuedReports(), 0);
+        assertEquals(spool.getDropped().getTotalCount(), 1);
+        assertEquals(tempDir.list(), new String[0]);
+    }
+
+    @Test
+    public void testRecovery()
+            throws IOException
+    {
+        ReportSpool spool = new ReportSpool(config, ticker);
+        spool.add(2000, out -> out.write("second".getBytes(UTF_8)));
+        spool.add(1000, out -> out.write("first".getBytes(UTF_8)));
+        Files.write(new byte[10], new File(tempDir, "partial.tmp"));
+        Files.write(new byte[10], new File(tempDir, "unrelated"));
+
+        spool = new ReportSpool(config, ticker);
+        assertEquals(spool.getQueuedReports(), 2);
+        assertEquals(spool.getQueuedBytes(), "firstsecond".length());
+        assertEquals(readAll(spool.nextBatch()), "firstsecond");
+        assertFalse(new File(tempDir, "partial.tmp").exists());
+        assertTrue(new File(tempDir, "unrelated").exists());
+
+        spool.add(500, out -> out.write("third".getBytes(UTF_8)));
+        assertEquals(spool.getQueuedReports(), 3);
+    }
+
+    private static String readAll(List<Path> paths)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (Path path : paths) {
+            try {
+                builder.append(Files.toString(path.toFile(), UTF_8));
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Table;
+import com.google.inject.Injector;
+import com.proofpoint.node.testing.TestingNodeModule;
+import com.proofpoint.reporting.testing.ReportingTester;
+import com.proofpoint.reporting.testing.TestingReportingModule;
+import com.proofpoint.stats.Distribution;
+import com.proofpoint.stats.MergedDistribution;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+
+import static com.google.inject.Scopes.SINGLETON;
+import static com.proofpoint.bootstrap.Bootstrap.bootstrapTest;
+import static com.proofpoint.reporting.ReportBinder.reportBinder;
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+
+public class TestReportedMergedDistribution
+{
+    @Test
+    public void testReportsMergedQuantiles()
+            throws Exception
+    {
+        Injector injector = bootstrapTest()
+                .withModules(
+                        new TestingNodeModule(),
+                        new TestingReportingModule(),
+                        binder -> {
+                            binder.bind(MergedDistribution.class).in(SINGLETON);
+                            reportBinder(binder).export(MergedDistribution.class).withNamePrefix("PoolLatency");
+                        }
+                )
+                .initialize();
+
+        // one digest from each node of the pool
+        Distribution first = new Distribution();
+        Distribution second = new Distribution();
+        for (int i = 0; i < 100; i++) {
+            first.add(i);
+            second.add(100 + i);
+        }
+        injector.getInstance(MergedDistribution.class).update(asList(first.serializeDigest(), second.serializeDigest()));
+
+        Table<String, Map<String, String>, Object> data = injector.getInstance(ReportingTester.class).collectData();
+        Map<String, Object> values = data.column(ImmutableMap.of());
+        assertEquals(values.get("PoolLatency.Count"), 200.0);
+        assertEquals(values.get("PoolLatency.Min"), 0L);
+        assertEquals(values.get("PoolLatency.Max"), 199L);
+        assertEquals((long) values.get("PoolLatency.P50"), 99L, 2);
+        assertEquals((long) values.get("PoolLatency.P99"), 197L, 2);
+    }
+}
@@ -15,76 +15,96 @@
  */
 package com.proofpoint.reporting;
 
-import com.google.common.collect.ImmutableMap.Builder;
-import com.google.common.collect.ImmutableSortedMap;
-import com.google.common.collect.Iterables;
+import com.google.common.base.Ticker;
 import com.proofpoint.jaxrs.AccessDoesNotRequireAuthentication;
-import com.proofpoint.node.NodeInfo;
 
+import javax.annotation.concurrent.GuardedBy;
 import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.StreamingOutput;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.Collection;
-import java.util.Map;
 import java.util.Map.Entry;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 @Path("/metrics")
 public class MetricsResource
 {
     private final PrometheusCollector prometheusCollector;
-    private final Map<String, String> instanceTags;
+    private final long cacheTtlNanos;
+    private final Ticker ticker = Ticker.systemTicker();
+
+    @GuardedBy("this")
+    private byte[] cachedMetrics;
+
+    @GuardedBy("this")
+    private long cachedMetricsExpiration;
 
     @Inject
-    public MetricsResource(PrometheusCollector prometheusCollector, NodeInfo nodeInfo, ReportTagConfig reportTagConfig)
+    public MetricsResource(PrometheusCollector prometheusCollector, ReportingPrometheusConfig config)
     {
         this.prometheusCollector = requireNonNull(prometheusCollector, "prometheusCollector is null");
-        requireNonNull(nodeInfo, "nodeInfo is null");
-        requireNonNull(reportTagConfig, "reportTagConfig is null");
-
-        Builder<String, String> builder = ImmutableSortedMap.naturalOrder();
-        builder.put("application", nodeInfo.getApplication());
-        builder.put("host", nodeInfo.getInternalHostname());
-        builder.put("environment", nodeInfo.getEnvironment());
-        builder.put("pool", nodeInfo.getPool());
-        builder.putAll(reportTagConfig.getTags());
-        this.instanceTags = builder.build();
+        cacheTtlNanos = config.getCacheTtl().roundTo(NANOSECONDS);
     }
 
     @GET
     @AccessDoesNotRequireAuthentication
     @Produces("text/plain; version=0.0.4; charset=utf-8")
     public StreamingOutput getMetrics() {
-        return output -> {
-            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output))) {
-                for (Entry<String, Collection<TaggedValue>> entry : prometheusCollector.collectData().asMap().entrySet()) {
-                    boolean first = true;
+        if (cacheTtlNanos == 0) {
+            return this::writeMetrics;
+        }
+        return output -> output.write(getCachedMetrics());
+    }
+
+    private synchronized byte[] getCachedMetrics()
+            throws IOException
+    {
+        // Scrapes that arrive while the metrics are being collected wait for and share the result
+        long now = ticker.read();
+        if (cachedMetrics == null || now - cachedMetricsExpiration >= 0) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            writeMetrics(output);
+            cachedMetrics = output.toByteArray();
+            cachedMetricsExpiration = now + cacheTtlNanos;
+        }
+        return cachedMetrics;
+    }
 
-                    for (TaggedValue taggedValue : entry.getValue()) {
-                        if (first) {
-                            first = false;
-                            writer.write("#TYPE ");
-                            writer.write(entry.getKey());
-                            writer.append(' ');
-                            writer.write(taggedValue.getType());
-                            writer.append('\n');
-                        }
+    private void writeMetrics(OutputStream output)
+            throws IOException
+    {
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(output, UTF_8))) {
+            for (Entry<String, Collection<TaggedValue>> entry : prometheusCollector.collectData().entrySet()) {
+                boolean first = true;
 
-                        taggedValue.getValueAndTimestamp().getValue().writeMetric(
-                                writer,
-                                entry.getKey(),
-                                Iterables.concat(taggedValue.getTags().entrySet(), instanceTags.entrySet()),
-                                taggedValue.getValueAndTimestamp().getTimestamp()
-                        );
+                for (TaggedValue taggedValue : entry.getValue()) {
+                    if (first) {
+                        first = false;
+                        writer.write("#TYPE ");
+                        writer.write(entry.getKey());
+                        writer.append(' ');
+                        writer.write(taggedValue.getType());
+                        writer.append('\n');
                     }
+
+                    taggedValue.getValueAndTimestamp().getValue().writeMetric(
+                            writer,
+                            entry.getKey(),
+                            taggedValue.getFormattedTags(),
+                            taggedValue.getValueAndTimestamp().getTimestamp()
+                    );
                 }
             }
-        };
+        }
     }
 }
-
@@ -15,9 +15,13 @@
  */
 package com.proofpoint.reporting;
 
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.MultimapBuilder;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap.Builder;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Iterables;
 import com.proofpoint.node.NodeInfo;
 import com.proofpoint.reporting.PrometheusBeanAttribute.ValueAndTimestamp;
 import com.proofpoint.reporting.ReportedBeanRegistry.RegistrationInfo;
@@ -26,14 +30,24 @@ import javax.inject.Inject;
 import javax.management.AttributeNotFoundException;
 import javax.management.MBeanException;
 import javax.management.ReflectionException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 
 import static com.google.common.base.CaseFormat.LOWER_HYPHEN;
 import static com.google.common.base.CaseFormat.UPPER_CAMEL;
 import static com.proofpoint.reporting.PrometheusBeanAttribute.ValueAndTimestamp.valueAndTimestamp;
+import static com.proofpoint.reporting.ReportUtils.formatTags;
 import static com.proofpoint.reporting.SimplePrometheusValue.simplePrometheusValue;
 import static com.proofpoint.reporting.TaggedValue.taggedValue;
+import static java.util.Comparator.naturalOrder;
 import static java.util.Objects.requireNonNull;
 
 class PrometheusCollector
@@ -42,17 +56,32 @@ class PrometheusCollector
     private static final Pattern INITIAL_DIGIT_PATTERN = Pattern.compile("[0-9]");
     private final String applicationPrefix;
     private final ReportedBeanRegistry reportedBeanRegistry;
-    private final Map<String, String> versionTags;
+    private final Map<String, String> instanceTags;
+    private final SortedMap<String, String> versionTags;
+    private final String formattedVersionTags;
+    private final LoadingCache<RegistrationInfo, PrometheusRegistration> registrations = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(this::createRegistration));
 
     @Inject
     PrometheusCollector(
             NodeInfo nodeInfo,
-            ReportedBeanRegistry reportedBeanRegistry)
+            ReportedBeanRegistry reportedBeanRegistry,
+            ReportTagConfig reportTagConfig)
     {
         applicationPrefix = sanitizeMetricName(LOWER_HYPHEN.to(UPPER_CAMEL, nodeInfo.getApplication())) + "_";
         this.reportedBeanRegistry = requireNonNull(reportedBeanRegistry, "reportedBeanRegistry is null");
+        requireNonNull(reportTagConfig, "reportTagConfig is null");
 
-        ImmutableMap.Builder<String, String> versionTagsBuilder = ImmutableMap.builder();
+        Builder<String, String> instanceTagsBuilder = ImmutableSortedMap.naturalOrder();
+        instanceTagsBuilder.put("application", nodeInfo.getApplication());
+        instanceTagsBuilder.put("host", nodeInfo.getInternalHostname());
+        instanceTagsBuilder.put("environment", nodeInfo.getEnvironment());
+        instanceTagsBuilder.put("pool", nodeInfo.getPool());
+        instanceTagsBuilder.putAll(reportTagConfig.getTags());
+        this.instanceTags = instanceTagsBuilder.build();
+
+        ImmutableSortedMap.Builder<String, String> versionTagsBuilder = ImmutableSortedMap.naturalOrder();
         if (!nodeInfo.getApplicationVersion().isEmpty()) {
             versionTagsBuilder.put("applicationVersion", nodeInfo.getApplicationVersion());
         }
@@ -60,6 +89,7 @@ class PrometheusCollector
             versionTagsBuilder.put("platformVersion", nodeInfo.getPlatformVersion());
         }
         this.versionTags = versionTagsBuilder.build();
+        formattedVersionTags = formatTags(Iterables.concat(versionTags.entrySet(), instanceTags.entrySet()));
     }
 
     private static String sanitizeMetricName(String name)
@@ -67,29 +97,21 @@ class PrometheusCollector
         return NAME_NOT_ACCEPTED_CHARACTER_PATTERN.matcher(name).replaceAll("_");
     }
 
-    Multimap<String, TaggedValue> collectData()
+    /**
+     * Collect the values of all reported beans, grouped by metric name.
+     * Metric names are returned in sorted order and the values for each
+     * name are sorted by their tags.
+     */
+    SortedMap<String, Collection<TaggedValue>> collectData()
     {
-        Multimap<String, TaggedValue> valuesByMetric = MultimapBuilder.treeKeys().treeSetValues().build();
+        Map<String, List<TaggedValue>> valuesByMetric = new HashMap<>();
 
         for (RegistrationInfo registrationInfo : reportedBeanRegistry.getReportedBeans()) {
-            StringBuilder nameBuilder = new StringBuilder();
-            if (registrationInfo.isApplicationPrefix()) {
-                nameBuilder.append(applicationPrefix);
-            }
-            nameBuilder.append(sanitizeMetricName(registrationInfo.getNamePrefix()));
+            PrometheusRegistration registration = registrations.getUnchecked(registrationInfo);
+            Iterator<String> metricNames = registration.metricNames.iterator();
 
             for (PrometheusBeanAttribute attribute : registrationInfo.getReportedBean().getPrometheusAttributes()) {
-                String metricName = sanitizeMetricName(attribute.getName());
-                String name;
-                if ("" == metricName) {
-                    name = nameBuilder.toString();
-                }
-                else {
-                    name = nameBuilder + "_" + metricName;
-                }
-                if (INITIAL_DIGIT_PATTERN.matcher(name).lookingAt()) {
-                    name = "_" + name;
-                }
+                String name = metricNames.next();
                 ValueAndTimestamp valueAndTimestamp = null;
 
                 try {
@@ -99,11 +121,87 @@ class PrometheusCollector
                 }
 
                 if (valueAndTimestamp != null) {
-                    valuesByMetric.put(name, taggedValue(attribute.getType(), registrationInfo.getTags(), valueAndTimestamp));
+                    valuesByMetric.computeIfAbsent(name, key -> new ArrayList<>())
+                            .add(taggedValue(attribute.getType(), registration.tags, registration.formattedTags, valueAndTimestamp));
                 }
             }
         }
-        valuesByMetric.put("ReportCollector_NumMetrics", taggedValue("gauge", versionTags, valueAndTimestamp(simplePrometheusValue(valuesByMetric.size()), null)));
-        return valuesByMetric;
+        // Only the distinct metric names and the values within each name need sorting
+        SortedMap<String, Collection<TaggedValue>> sortedValuesByMetric = new TreeMap<>();
+        int numMetrics = 0;
+        for (Entry<String, List<TaggedValue>> entry : valuesByMetric.entrySet()) {
+            List<TaggedValue> values = sortedDistinct(entry.getValue());
+            sortedValuesByMetric.put(entry.getKey(), values);
+            numMetrics += values.size();
+        }
+        sortedValuesByMetric.put("ReportCollector_NumMetrics",
+                ImmutableList.of(taggedValue("gauge", versionTags, formattedVersionTags, valueAndTimestamp(simplePrometheusValue(numMetrics), null))));
+        return sortedValuesByMetric;
+    }
+
+    private static List<TaggedValue> sortedDistinct(List<TaggedValue> values)
+    {
+        if (values.size() == 1) {
+            return values;
+        }
+
+        values.sort(naturalOrder());
+        List<TaggedValue> distinct = new ArrayList<>(values.size());
+        for (TaggedValue value : values) {
+            // Of values with the same tags, keep the first
+            if (distinct.isEmpty() || distinct.get(distinct.size() - 1).compareTo(value) != 0) {
+                distinct.add(value);
+            }
+        }
+        return distinct;
+    }
+
+    private PrometheusRegistration createRegistration(RegistrationInfo registrationInfo)
+    {
+        StringBuilder nameBuilder = new StringBuilder();
+        if (registrationInfo.isApplicationPrefix()) {
+            nameBuilder.append(applicationPrefix);
+        }
+        nameBuilder.append(sanitizeMetricName(registrationInfo.getNamePrefix()));
+
+        ImmutableList.Builder<String> metricNames = ImmutableList.builder();
+        for (PrometheusBeanAttribute attribute : registrationInfo.getReportedBean().getPrometheusAttributes()) {
+            String metricName = sanitizeMetricName(attribute.getName());
+            String name;
+            if ("" == metricName) {
+                name = nameBuilder.toString();
+            }
+            else {
+                name = nameBuilder + "_" + metricName;
+            }
+            if (INITIAL_DIGIT_PATTERN.matcher(name).lookingAt()) {
+                name = "_" + name;
+            }
+            metricNames.add(name);
+        }
+
+        SortedMap<String, String> tags = ImmutableSortedMap.copyOf(registrationInfo.getTags());
+        return new PrometheusRegistration(
+                metricNames.build(),
+                tags,
+                formatTags(Iterables.concat(tags.entrySet(), instanceTags.entrySet())));
+    }
+
+    /**
+     * The metric names, one per Prometheus attribute, and the tags of a
+     * registered bean, computed once when the bean is first collected.
+     */
+    private static class PrometheusRegistration
+    {
+        private final List<String> metricNames;
+        private final SortedMap<String, String> tags;
+        private final String formattedTags;
+
+        PrometheusRegistration(List<String> metricNames, SortedMap<String, String> tags, String formattedTags)
+        {
+            this.metricNames = metricNames;
+            this.tags = tags;
+            this.formattedTags = formattedTags;
+        }
     }
 }
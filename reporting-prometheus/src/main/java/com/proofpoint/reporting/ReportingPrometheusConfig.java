@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.proofpoint.configuration.Config;
+import com.proofpoint.configuration.ConfigDescription;
+import com.proofpoint.units.Duration;
+
+import javax.validation.constraints.NotNull;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class ReportingPrometheusConfig
+{
+    private Duration cacheTtl = new Duration(0, SECONDS);
+
+    @NotNull
+    public Duration getCacheTtl()
+    {
+        return cacheTtl;
+    }
+
+    @Config("reporting.prometheus.cache-ttl")
+    @ConfigDescription("Amount of time to reuse the metrics collected for a scrape, zero to collect them for every scrape")
+    public ReportingPrometheusConfig setCacheTtl(Duration cacheTtl)
+    {
+        this.cacheTtl = cacheTtl;
+        return this;
+    }
+}
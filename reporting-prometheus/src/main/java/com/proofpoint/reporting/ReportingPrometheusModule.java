@@ -19,6 +19,7 @@ import com.google.inject.Binder;
 import com.google.inject.Module;
 import com.google.inject.Scopes;
 
+import static com.proofpoint.configuration.ConfigurationModule.bindConfig;
 import static com.proofpoint.jaxrs.JaxrsBinder.jaxrsBinder;
 
 public class ReportingPrometheusModule
@@ -29,5 +30,6 @@ public class ReportingPrometheusModule
     {
         binder.bind(PrometheusCollector.class).in(Scopes.SINGLETON);
         jaxrsBinder(binder).bindAdmin(MetricsResource.class);
+        bindConfig(binder).to(ReportingPrometheusConfig.class);
     }
 }
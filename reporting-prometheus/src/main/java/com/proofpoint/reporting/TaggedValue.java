@@ -24,18 +24,31 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.SortedMap;
 
+import static com.proofpoint.reporting.ReportUtils.formatTags;
+
 @AutoValue
 abstract class TaggedValue
         implements Comparable<TaggedValue>
 {
     static TaggedValue taggedValue(String type, Map<String, String> tags, ValueAndTimestamp valueAndTimestamp) {
-        return new AutoValue_TaggedValue(type, ImmutableSortedMap.copyOf(tags), valueAndTimestamp);
+        SortedMap<String, String> sortedTags = ImmutableSortedMap.copyOf(tags);
+        return taggedValue(type, sortedTags, formatTags(sortedTags.entrySet()), valueAndTimestamp);
+    }
+
+    static TaggedValue taggedValue(String type, SortedMap<String, String> tags, String formattedTags, ValueAndTimestamp valueAndTimestamp) {
+        return new AutoValue_TaggedValue(type, tags, formattedTags, valueAndTimestamp);
     }
 
     abstract String getType();
 
     abstract SortedMap<String, String> getTags();
 
+    /**
+     * The tags to write, which may include tags beyond {@link #getTags()},
+     * as formatted by {@link ReportUtils#formatTags(Iterable)}.
+     */
+    abstract String getFormattedTags();
+
     abstract ValueAndTimestamp getValueAndTimestamp();
 
     @Override
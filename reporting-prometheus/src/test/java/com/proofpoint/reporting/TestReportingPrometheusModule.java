@@ -34,6 +34,7 @@ import org.weakref.jmx.Nested;
 
 import javax.management.InstanceAlreadyExistsException;
 import java.net.URI;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -96,6 +97,35 @@ public class TestReportingPrometheusModule
                         "TestObject_Metric{" + EXPECTED_INSTANCE_TAGS + "} 2\n");
     }
 
+    @Test
+    public void testCachedMetrics()
+    {
+        MutableObject mutableObject = new MutableObject();
+        createServer(ImmutableMap.of("reporting.prometheus.cache-ttl", "1h"), binder -> {
+            binder.bind(MutableObject.class).toInstance(mutableObject);
+            reportBinder(binder).export(MutableObject.class).withNamePrefix("TestObject");
+        });
+
+        mutableObject.metric = 1;
+        String expected = "#TYPE ReportCollector_NumMetrics gauge\n" +
+                "ReportCollector_NumMetrics{" + EXPECTED_INSTANCE_TAGS + "} 1\n" +
+                "#TYPE TestObject_Metric gauge\n" +
+                "TestObject_Metric{" + EXPECTED_INSTANCE_TAGS + "} 1\n";
+
+        StringResponse response = client.execute(
+                prepareGet().setUri(uriFor("/metrics")).build(),
+                createStringResponseHandler());
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(response.getBody(), expected);
+
+        mutableObject.metric = 2;
+        response = client.execute(
+                prepareGet().setUri(uriFor("/metrics")).build(),
+                createStringResponseHandler());
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(response.getBody(), expected);
+    }
+
     @Test
     public void testVersionNumbers()
             throws Exception
@@ -182,6 +212,30 @@ public class TestReportingPrometheusModule
                         "TestObject_Metric{foo=\"bar\"," + EXPECTED_INSTANCE_TAGS + "} 2\n");
     }
 
+    @Test
+    public void testDuplicateSeriesCountedOnce()
+    {
+        createServer(binder -> {
+            binder.bind(ReportedObject.class);
+            reportBinder(binder).export(ReportedObject.class).withNamePrefix("TestObject");
+            binder.bind(ReportedObject.class).annotatedWith(Names.named("second")).to(ReportedObject.class);
+            reportBinder(binder).export(ReportedObject.class)
+                    .annotatedWith(Names.named("second"))
+                    .withNamePrefix("TestObject");
+        });
+
+        StringResponse response = client.execute(
+                prepareGet().setUri(uriFor("/metrics")).build(),
+                createStringResponseHandler());
+
+        assertEquals(response.getStatusCode(), 200);
+        assertEquals(response.getBody(),
+                "#TYPE ReportCollector_NumMetrics gauge\n" +
+                        "ReportCollector_NumMetrics{" + EXPECTED_INSTANCE_TAGS + "} 1\n" +
+                        "#TYPE TestObject_Metric gauge\n" +
+                        "TestObject_Metric{" + EXPECTED_INSTANCE_TAGS + "} 2\n");
+    }
+
     @Test
     public void testLegacy()
     {
@@ -469,6 +523,17 @@ public class TestReportingPrometheusModule
         }
     }
 
+    private static class MutableObject
+    {
+        private volatile int metric;
+
+        @Reported
+        public int getMetric()
+        {
+            return metric;
+        }
+    }
+
     private static class UnreportedValueObject
     {
         @Reported
@@ -646,6 +711,11 @@ public class TestReportingPrometheusModule
     }
 
     private Injector createServer(Module module)
+    {
+        return createServer(ImmutableMap.of(), module);
+    }
+
+    private Injector createServer(Map<String, String> properties, Module module)
     {
         Injector injector;
         try {
@@ -665,6 +735,7 @@ public class TestReportingPrometheusModule
                             new ReportingPrometheusModule(),
                             module
                     )
+                    .setRequiredConfigurationProperties(properties)
                     .initialize();
         }
         catch (Exception e) {
@@ -22,20 +22,20 @@ import javax.management.ReflectionException;
 import java.lang.reflect.Method;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
+import static com.proofpoint.reporting.MethodAccessor.methodAccessor;
 import static java.util.Objects.requireNonNull;
 
 class BooleanReportedBeanAttribute implements ReportedBeanAttribute
 {
     private final Object target;
     private final String name;
-    private final Method getter;
+    private final MethodAccessor getter;
 
     BooleanReportedBeanAttribute(String name, Object target, Method getter)
     {
         this.name = requireNonNull(name, "name is null");
         this.target = requireNonNull(target, "target is null");
-        this.getter = requireNonNull(getter, "getter is null");
+        this.getter = methodAccessor(requireNonNull(getter, "getter is null"));
     }
 
     @Override
@@ -48,7 +48,7 @@ class BooleanReportedBeanAttribute implements ReportedBeanAttribute
     public Object getValue(@Nullable Object target)
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
-        Boolean value = (Boolean) invoke(firstNonNull(target, this.target), getter);
+        Boolean value = (Boolean) getter.invoke(firstNonNull(target, this.target));
         if (value == null) {
             return null;
         }
@@ -28,21 +28,63 @@ import static com.proofpoint.reporting.Bucketed.BucketInfo.bucketInfo;
 public abstract class Bucketed<T>
 {
     private static final BucketIdProvider INITIAL_BUCKET_ID_PROVIDER = () -> bucketId(-5, 0);
-    private BucketIdProvider bucketIdProvider = INITIAL_BUCKET_ID_PROVIDER;
+    private volatile BucketIdProvider bucketIdProvider = INITIAL_BUCKET_ID_PROVIDER;
     private BucketId currentBucketId = bucketId(-10, 0);
     private T previousBucket = null;
     private T currentBucket = null;
+    private volatile CurrentBucket<T> current = null;
 
     protected abstract T createBucket(@Nullable T previousBucket);
 
+    /**
+     * Returns the current bucket, rotating first if needed. Unlike
+     * {@link #applyToCurrentBucket(Function)}, this only takes the lock when
+     * the bucket has to be rotated, so the bucket must be safe for concurrent
+     * use. An update that races with a rotation may be applied to the bucket
+     * that was just rotated out.
+     */
+    protected final T getCurrentBucket()
+    {
+        CurrentBucket<T> current = this.current;
+        if (current != null && current.bucketId == bucketIdProvider.get().getId()) {
+            return current.bucket;
+        }
+        synchronized (this) {
+            rotateBucketIfNeeded();
+            return currentBucket;
+        }
+    }
+
+    /**
+     * Returns the previous bucket, rotating first if needed. Like
+     * {@link #getCurrentBucket()}, this only takes the lock when the bucket
+     * has to be rotated.
+     */
+    protected final T peekPreviousBucket()
+    {
+        CurrentBucket<T> current = this.current;
+        if (current != null && current.bucketId == bucketIdProvider.get().getId()) {
+            return current.previousBucket;
+        }
+        synchronized (this) {
+            rotateBucketIfNeeded();
+            return previousBucket;
+        }
+    }
+
     protected final synchronized <R> R applyToCurrentBucket(Function<T, R> function)
     {
         rotateBucketIfNeeded();
         return function.apply(currentBucket);
     }
 
-    @SuppressWarnings("UnusedDeclaration") // Called via reflection
-    private synchronized BucketInfo getPreviousBucket()
+    protected final synchronized <R> R applyToPreviousBucket(Function<T, R> function)
+    {
+        rotateBucketIfNeeded();
+        return function.apply(previousBucket);
+    }
+
+    synchronized BucketInfo getPreviousBucket()
     {
         rotateBucketIfNeeded();
         return bucketInfo(previousBucket, currentBucketId);
@@ -55,6 +97,12 @@ public abstract class Bucketed<T>
         currentBucketId = bucketIdProvider.get();
         previousBucket = createBucket(null);
         currentBucket = createBucket(previousBucket);
+        if (currentBucketId == null) {
+            current = null;
+        }
+        else {
+            current = new CurrentBucket<>(currentBucketId.getId(), currentBucket, previousBucket);
+        }
     }
 
     private void rotateBucketIfNeeded()
@@ -69,6 +117,21 @@ public abstract class Bucketed<T>
             }
             currentBucketId = bucketId;
             currentBucket = createBucket(previousBucket);
+            current = new CurrentBucket<>(bucketId.getId(), currentBucket, previousBucket);
+        }
+    }
+
+    private static class CurrentBucket<T>
+    {
+        private final int bucketId;
+        private final T bucket;
+        private final T previousBucket;
+
+        CurrentBucket(int bucketId, T bucket, T previousBucket)
+        {
+            this.bucketId = bucketId;
+            this.bucket = bucket;
+            this.previousBucket = previousBucket;
         }
     }
 
@@ -23,8 +23,6 @@ import javax.management.ReflectionException;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.proofpoint.reporting.PrometheusBeanAttribute.ValueAndTimestamp.valueAndTimestamp;
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
-import static com.proofpoint.reporting.ReportedBean.GET_PREVIOUS_BUCKET;
 import static java.util.Objects.requireNonNull;
 
 class BucketedPrometheusBeanAttribute implements PrometheusBeanAttribute
@@ -56,7 +54,7 @@ class BucketedPrometheusBeanAttribute implements PrometheusBeanAttribute
     public ValueAndTimestamp getValue(Object target)
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
-        BucketInfo bucketInfo = (BucketInfo) invoke(firstNonNull(target, holder), GET_PREVIOUS_BUCKET);
+        BucketInfo bucketInfo = ((Bucketed<?>) firstNonNull(target, holder)).getPreviousBucket();
         ValueAndTimestamp valueAndTimestamp = delegate.getValue(bucketInfo.getBucket());
         if (valueAndTimestamp == null) {
             return null;
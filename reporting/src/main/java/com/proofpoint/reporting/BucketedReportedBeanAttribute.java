@@ -23,8 +23,6 @@ import javax.management.ReflectionException;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
-import static com.proofpoint.reporting.ReportedBean.GET_PREVIOUS_BUCKET;
 
 class BucketedReportedBeanAttribute implements ReportedBeanAttribute
 {
@@ -49,7 +47,7 @@ class BucketedReportedBeanAttribute implements ReportedBeanAttribute
     public Object getValue(Object target)
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
-        BucketInfo bucketInfo = (BucketInfo) invoke(firstNonNull(target, holder), GET_PREVIOUS_BUCKET);
+        BucketInfo bucketInfo = ((Bucketed<?>) firstNonNull(target, holder)).getPreviousBucket();
         return delegate.getValue(bucketInfo.getBucket());
     }
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+/**
+ * A reported stat whose quantile digest can be exported, so that the
+ * digests of every node of a pool can be merged into quantiles of the pool.
+ */
+public interface DigestSource
+{
+    /**
+     * Serialize the digest of the values the stat reports.
+     */
+    byte[] serializeDigest();
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.proofpoint.reporting.ReportedBeanRegistry.RegistrationInfo;
+import org.weakref.jmx.Flatten;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.management.MBeanException;
+import javax.management.ReflectionException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.proofpoint.reporting.AnnotationUtils.findAnnotatedMethods;
+import static com.proofpoint.reporting.AnnotationUtils.isFlatten;
+import static com.proofpoint.reporting.AnnotationUtils.isNested;
+import static com.proofpoint.reporting.ReflectionUtils.getAttributeName;
+import static com.proofpoint.reporting.ReflectionUtils.invoke;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Finds the {@link DigestSource} reported under a name, such as
+ * {@code ServiceClient.RequestTime.OneMinute}, by following the
+ * {@link Nested} and {@link Flatten} getters of the registered beans.
+ */
+class DigestSourceFinder
+{
+    private final ReportedBeanRegistry reportedBeanRegistry;
+
+    @Inject
+    DigestSourceFinder(ReportedBeanRegistry reportedBeanRegistry)
+    {
+        this.reportedBeanRegistry = requireNonNull(reportedBeanRegistry, "reportedBeanRegistry is null");
+    }
+
+    @Nullable
+    DigestSource find(String name, Map<String, String> tags)
+    {
+        for (Entry<Object, RegistrationInfo> entry : reportedBeanRegistry.getReportedObjects()) {
+            RegistrationInfo registrationInfo = entry.getValue();
+            if (!registrationInfo.getTags().equals(tags)) {
+                continue;
+            }
+
+            String namePrefix = registrationInfo.getNamePrefix();
+            String path;
+            if (name.equals(namePrefix)) {
+                path = "";
+            }
+            else if (name.startsWith(namePrefix + ".")) {
+                path = name.substring(namePrefix.length() + 1);
+            }
+            else {
+                continue;
+            }
+
+            DigestSource digestSource = find(entry.getKey(), path);
+            if (digestSource != null) {
+                return digestSource;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static DigestSource find(Object target, String path)
+    {
+        if (path.isEmpty() && target instanceof DigestSource) {
+            return (DigestSource) target;
+        }
+
+        for (Entry<Method, Method> entry : findAnnotatedMethods(target.getClass(), Nested.class, Flatten.class).entrySet()) {
+            String remainingPath;
+            if (isFlatten(entry.getValue())) {
+                remainingPath = path;
+            }
+            else if (isNested(entry.getValue())) {
+                String attributeName = getAttributeName(entry.getKey());
+                if (path.equals(attributeName)) {
+                    remainingPath = "";
+                }
+                else if (path.startsWith(attributeName + ".")) {
+                    remainingPath = path.substring(attributeName.length() + 1);
+                }
+                else {
+                    continue;
+                }
+            }
+            else {
+                continue;
+            }
+
+            Object value;
+            try {
+                value = invoke(target, entry.getKey());
+            }
+            catch (MBeanException | ReflectionException ignored) {
+                continue;
+            }
+
+            if (value != null) {
+                DigestSource digestSource = find(value, remainingPath);
+                if (digestSource != null) {
+                    return digestSource;
+                }
+            }
+        }
+        return null;
+    }
+}
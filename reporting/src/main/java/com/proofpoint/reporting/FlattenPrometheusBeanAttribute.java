@@ -20,17 +20,17 @@ import javax.management.MBeanException;
 import javax.management.ReflectionException;
 import java.lang.reflect.Method;
 
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
+import static com.proofpoint.reporting.MethodAccessor.methodAccessor;
 
 class FlattenPrometheusBeanAttribute implements PrometheusBeanAttribute
 {
-    private final Method flattenGetter;
+    private final MethodAccessor flattenGetter;
     private final PrometheusBeanAttribute delegate;
     private final String name;
 
     FlattenPrometheusBeanAttribute(Method flattenGetter, PrometheusBeanAttribute delegate)
     {
-        this.flattenGetter = flattenGetter;
+        this.flattenGetter = methodAccessor(flattenGetter);
         this.delegate = delegate;
         name = delegate.getName();
     }
@@ -52,7 +52,7 @@ class FlattenPrometheusBeanAttribute implements PrometheusBeanAttribute
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
         if (target != null) {
-            target = invoke(target, flattenGetter);
+            target = flattenGetter.invoke(target);
         }
         return delegate.getValue(target);
     }
@@ -20,17 +20,17 @@ import javax.management.MBeanException;
 import javax.management.ReflectionException;
 import java.lang.reflect.Method;
 
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
+import static com.proofpoint.reporting.MethodAccessor.methodAccessor;
 
 class FlattenReportedBeanAttribute implements ReportedBeanAttribute
 {
-    private final Method flattenGetter;
+    private final MethodAccessor flattenGetter;
     private final ReportedBeanAttribute delegate;
     private final String name;
 
     FlattenReportedBeanAttribute(Method flattenGetter, ReportedBeanAttribute delegate)
     {
-        this.flattenGetter = flattenGetter;
+        this.flattenGetter = methodAccessor(flattenGetter);
         this.delegate = delegate;
         name = delegate.getName();
     }
@@ -46,7 +46,7 @@ class FlattenReportedBeanAttribute implements ReportedBeanAttribute
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
         if (target != null) {
-            target = invoke(target, flattenGetter);
+            target = flattenGetter.invoke(target);
         }
         return delegate.getValue(target);
     }
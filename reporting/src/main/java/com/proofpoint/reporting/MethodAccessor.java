@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import javax.management.MBeanException;
+import javax.management.ReflectionException;
+import javax.management.RuntimeErrorException;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Invokes a getter through an accessor class generated by
+ * {@link LambdaMetafactory}, which the JIT can inline like an ordinary call.
+ * Getters of classes the generated class cannot link against, such as
+ * non-public nested classes, fall back to {@link Method#invoke}.
+ *
+ * <p>Exceptions thrown by the getter are translated the same way as by
+ * {@link ReflectionUtils#invoke(Object, Method)}.</p>
+ */
+final class MethodAccessor
+{
+    private static final MethodType SAM_TYPE = methodType(Object.class, Object.class);
+    private static final LoadingCache<Method, MethodAccessor> ACCESSORS = CacheBuilder.newBuilder()
+            .weakValues()
+            .build(CacheLoader.from(MethodAccessor::new));
+
+    private final String name;
+    private final Getter getter;
+
+    private MethodAccessor(Method method)
+    {
+        name = method.getName();
+        getter = createGetter(method);
+    }
+
+    static MethodAccessor methodAccessor(Method method)
+    {
+        return ACCESSORS.getUnchecked(checkNotNull(method, "method is null"));
+    }
+
+    Object invoke(Object target)
+            throws MBeanException, ReflectionException
+    {
+        checkNotNull(target, "target is null");
+
+        try {
+            return getter.get(target);
+        }
+        catch (ReflectionException | MBeanException e) {
+            // allow ReflectionException and MBeanException to passthrough
+            throw e;
+        }
+        catch (RuntimeException e) {
+            throw new MBeanException(e, "RuntimeException occured while invoking " + toSimpleName());
+        }
+        catch (Exception e) {
+            throw new MBeanException(e, "Exception occured while invoking " + toSimpleName());
+        }
+        catch (Error e) {
+            throw new RuntimeErrorException(e, "Error occured while invoking " + toSimpleName());
+        }
+    }
+
+    private String toSimpleName()
+    {
+        return name + "()";
+    }
+
+    private static Getter createGetter(Method method)
+    {
+        if (isLinkable(method)) {
+            try {
+                Lookup lookup = MethodHandles.lookup();
+                MethodHandle methodHandle = lookup.unreflect(method);
+                CallSite callSite = LambdaMetafactory.metafactory(
+                        lookup,
+                        "get",
+                        methodType(Getter.class),
+                        SAM_TYPE,
+                        methodHandle,
+                        methodType(Object.class, method.getDeclaringClass()));
+                return (Getter) callSite.getTarget().invokeExact();
+            }
+            catch (Throwable ignored) {
+                // fall back to reflection
+            }
+        }
+        method.setAccessible(true);
+        return target -> ReflectionUtils.invoke(target, method);
+    }
+
+    private static boolean isLinkable(Method method)
+    {
+        if (!Modifier.isPublic(method.getModifiers())) {
+            return false;
+        }
+        for (Class<?> type = method.getDeclaringClass(); type != null; type = type.getEnclosingClass()) {
+            if (!Modifier.isPublic(type.getModifiers())) {
+                return false;
+            }
+        }
+        try {
+            return Class.forName(method.getDeclaringClass().getName(), false, MethodAccessor.class.getClassLoader()) == method.getDeclaringClass();
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private interface Getter
+    {
+        Object get(Object target)
+                throws Exception;
+    }
+}
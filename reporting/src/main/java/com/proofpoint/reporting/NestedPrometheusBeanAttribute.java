@@ -20,17 +20,17 @@ import javax.management.MBeanException;
 import javax.management.ReflectionException;
 import java.lang.reflect.Method;
 
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
+import static com.proofpoint.reporting.MethodAccessor.methodAccessor;
 
 class NestedPrometheusBeanAttribute implements PrometheusBeanAttribute
 {
-    private final Method nestedGetter;
+    private final MethodAccessor nestedGetter;
     private final PrometheusBeanAttribute delegate;
     private final String name;
 
     NestedPrometheusBeanAttribute(String prefix, Method nestedGetter, PrometheusBeanAttribute delegate)
     {
-        this.nestedGetter = nestedGetter;
+        this.nestedGetter = methodAccessor(nestedGetter);
         this.delegate = delegate;
         String delegateName = delegate.getName();
         if ("".equals(delegateName)) {
@@ -58,7 +58,7 @@ class NestedPrometheusBeanAttribute implements PrometheusBeanAttribute
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
         if (target != null) {
-            target = invoke(target, nestedGetter);
+            target = nestedGetter.invoke(target);
         }
         return delegate.getValue(target);
     }
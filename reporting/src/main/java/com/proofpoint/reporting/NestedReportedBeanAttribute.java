@@ -20,17 +20,17 @@ import javax.management.MBeanException;
 import javax.management.ReflectionException;
 import java.lang.reflect.Method;
 
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
+import static com.proofpoint.reporting.MethodAccessor.methodAccessor;
 
 class NestedReportedBeanAttribute implements ReportedBeanAttribute
 {
-    private final Method nestedGetter;
+    private final MethodAccessor nestedGetter;
     private final ReportedBeanAttribute delegate;
     private final String name;
 
     NestedReportedBeanAttribute(String prefix, Method nestedGetter, ReportedBeanAttribute delegate)
     {
-        this.nestedGetter = nestedGetter;
+        this.nestedGetter = methodAccessor(nestedGetter);
         this.delegate = delegate;
         name = prefix + "." + delegate.getName();
     }
@@ -46,7 +46,7 @@ class NestedReportedBeanAttribute implements ReportedBeanAttribute
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
         if (target != null) {
-            target = invoke(target, nestedGetter);
+            target = nestedGetter.invoke(target);
         }
         return delegate.getValue(target);
     }
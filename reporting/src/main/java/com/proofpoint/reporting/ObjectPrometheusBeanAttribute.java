@@ -22,8 +22,8 @@ import javax.management.ReflectionException;
 import java.lang.reflect.Method;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.proofpoint.reporting.MethodAccessor.methodAccessor;
 import static com.proofpoint.reporting.PrometheusBeanAttribute.ValueAndTimestamp.valueAndTimestamp;
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
 import static com.proofpoint.reporting.SimplePrometheusValue.simplePrometheusValue;
 import static java.util.Objects.requireNonNull;
 
@@ -32,7 +32,7 @@ class ObjectPrometheusBeanAttribute implements PrometheusBeanAttribute
     private final Object target;
     private final String name;
     private final PrometheusType type;
-    private final Method getter;
+    private final MethodAccessor getter;
 
     ObjectPrometheusBeanAttribute(String name, Prometheus prometheus, Object target, Method getter)
     {
@@ -44,7 +44,7 @@ class ObjectPrometheusBeanAttribute implements PrometheusBeanAttribute
             this.name = prometheus.name();
         }
         this.target = requireNonNull(target, "target is null");
-        this.getter = requireNonNull(getter, "getter is null");
+        this.getter = methodAccessor(requireNonNull(getter, "getter is null"));
     }
 
     @Override
@@ -63,6 +63,6 @@ class ObjectPrometheusBeanAttribute implements PrometheusBeanAttribute
     public ValueAndTimestamp getValue(@Nullable Object target)
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
-        return valueAndTimestamp(simplePrometheusValue(invoke(firstNonNull(target, this.target), getter)), null);
+        return valueAndTimestamp(simplePrometheusValue(getter.invoke(firstNonNull(target, this.target))), null);
     }
 }
@@ -18,10 +18,12 @@ package com.proofpoint.reporting;
 import javax.annotation.Nullable;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Map.Entry;
 
 interface PrometheusValue
 {
-    void writeMetric(BufferedWriter writer, String name, Iterable<Entry<String, String>> tags, @Nullable Long timestamp)
+    /**
+     * @param tags the tags, as formatted by {@link ReportUtils#formatTags(Iterable)}
+     */
+    void writeMetric(BufferedWriter writer, String name, String tags, @Nullable Long timestamp)
             throws IOException;
 }
@@ -159,6 +159,9 @@ public class ReportExporter
     @VisibleForTesting
     static void notifyBucketIdProvider(Object object, BucketIdProvider bucketIdProvider, Method annotatedGetter)
     {
+        if (object == null) {
+            return;
+        }
         if (object instanceof Bucketed) {
             ((Bucketed<?>) object).setBucketIdProvider(bucketIdProvider);
         }
@@ -48,39 +48,50 @@ public final class ReportUtils
         return true;
     }
 
-    static void writeTags(BufferedWriter writer, Iterable<Entry<String, String>> tags)
-            throws IOException
+    /**
+     * Format tags as a Prometheus label list, without the enclosing braces.
+     */
+    static String formatTags(Iterable<Entry<String, String>> tags)
     {
-        char prefix = '{';
+        StringBuilder builder = new StringBuilder();
         for (Entry<String, String> tag : tags) {
-            writer.append(prefix);
-            prefix = ',';
+            if (builder.length() != 0) {
+                builder.append(',');
+            }
             String label = LABEL_NOT_ACCEPTED_CHARACTER_PATTERN.matcher(tag.getKey()).replaceAll("_");
             String value = tag.getValue();
             if (INITIAL_DIGIT_PATTERN.matcher(label).lookingAt()) {
-                writer.append('_');
+                builder.append('_');
             }
-            writer.write(label);
-            writer.append("=\"");
+            builder.append(label);
+            builder.append("=\"");
             for (int i = 0; i < value.length(); i++) {
                 char c = value.charAt(i);
                 switch (c) {
                     case '\\':
-                        writer.append("\\\\");
+                        builder.append("\\\\");
                         break;
                     case '\"':
-                        writer.append("\\\"");
+                        builder.append("\\\"");
                         break;
                     case '\n':
-                        writer.append("\\n");
+                        builder.append("\\n");
                         break;
                     default:
-                        writer.append(c);
+                        builder.append(c);
                 }
             }
-            writer.append("\"");
+            builder.append('"');
         }
-        if (prefix == ',') {
+        return builder.toString();
+    }
+
+    static void writeTags(BufferedWriter writer, String formattedTags)
+            throws IOException
+    {
+        if (!formattedTags.isEmpty()) {
+            writer.append('{');
+            writer.write(formattedTags);
             writer.append('}');
         }
     }
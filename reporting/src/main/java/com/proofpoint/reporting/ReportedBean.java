@@ -31,22 +31,9 @@ import static java.util.Objects.requireNonNull;
 
 class ReportedBean
 {
-    static Method GET_PREVIOUS_BUCKET;
-
     private final Map<String, ReportedBeanAttribute> attributes;
     private final Map<String, PrometheusBeanAttribute> prometheusAttributes;
 
-    static {
-        try {
-            Method getPreviousBucket = Bucketed.class.getDeclaredMethod("getPreviousBucket");
-            getPreviousBucket.setAccessible(true);
-            GET_PREVIOUS_BUCKET = getPreviousBucket;
-        }
-        catch (NoSuchMethodException ignored) {
-            GET_PREVIOUS_BUCKET = null;
-        }
-    }
-
     private ReportedBean(Collection<ReportedBeanAttribute> attributes, Collection<PrometheusBeanAttribute> prometheusAttributes)
     {
         Map<String, ReportedBeanAttribute> attributesBuilder = new TreeMap<>();
@@ -80,13 +67,7 @@ class ReportedBean
         List<PrometheusBeanAttribute> prometheusAttributes = new ArrayList<>();
 
         if (target instanceof Bucketed) {
-            BucketInfo bucketInfo = null;
-            try {
-                bucketInfo = (BucketInfo) GET_PREVIOUS_BUCKET.invoke(target);
-            }
-            catch (Exception ignored) {
-                // todo log me
-            }
+            BucketInfo bucketInfo = ((Bucketed<?>) target).getPreviousBucket();
             if (bucketInfo != null) {
                 ReportedBean reportedBean = ReportedBean.forTarget(bucketInfo.getBucket());
                 for (ReportedBeanAttribute attribute : reportedBean.getAttributes()) {
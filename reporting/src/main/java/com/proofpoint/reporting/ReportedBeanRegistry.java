@@ -22,7 +22,9 @@ import com.google.common.collect.ImmutableMap.Builder;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
 import javax.management.ObjectName;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentMap;
@@ -31,6 +33,7 @@ import java.util.regex.Pattern;
 
 import static com.google.common.base.CaseFormat.LOWER_CAMEL;
 import static com.google.common.base.CaseFormat.UPPER_CAMEL;
+import static com.google.common.collect.Maps.immutableEntry;
 import static com.google.common.collect.Maps.newConcurrentMap;
 import static com.proofpoint.reporting.ReportedBeanRegistry.RegistrationInfo.registrationInfo;
 import static java.util.Objects.requireNonNull;
@@ -48,6 +51,15 @@ class ReportedBeanRegistry
         return reportedBeans.values();
     }
 
+    List<Entry<Object, RegistrationInfo>> getReportedObjects()
+    {
+        List<Entry<Object, RegistrationInfo>> reportedObjects = new ArrayList<>(reportedBeans.size());
+        for (Entry<Reference, RegistrationInfo> entry : reportedBeans.entrySet()) {
+            reportedObjects.add(immutableEntry(entry.getKey().referent, entry.getValue()));
+        }
+        return reportedObjects;
+    }
+
     void register(Object object, ReportedBean reportedBean, boolean applicationPrefix, String namePrefix, Map<String, String> tags)
             throws InstanceAlreadyExistsException
     {
@@ -32,6 +32,7 @@ public class ReportingModule
         binder.bind(ReportExporter.class).asEagerSingleton();
         binder.bind(GuiceReportExporter.class).asEagerSingleton();
         binder.bind(ReportedBeanRegistry.class).in(Scopes.SINGLETON);
+        binder.bind(DigestSourceFinder.class).in(Scopes.SINGLETON);
         binder.bind(MinuteBucketIdProvider.class).in(Scopes.SINGLETON);
         binder.bind(BucketIdProvider.class).to(MinuteBucketIdProvider.class).in(Scopes.SINGLETON);
         binder.bind(ReportCollectionFactory.class).in(Scopes.SINGLETON);
@@ -20,7 +20,6 @@ import com.google.auto.value.AutoValue;
 import javax.annotation.Nullable;
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.Map.Entry;
 
 import static com.proofpoint.reporting.ReportUtils.isReportable;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
@@ -39,7 +38,7 @@ abstract class SimplePrometheusValue implements PrometheusValue
     abstract Object getValue();
 
     @Override
-    public void writeMetric(BufferedWriter writer, String name, Iterable<Entry<String, String>> tags, @Nullable Long timestamp)
+    public void writeMetric(BufferedWriter writer, String name, String tags, @Nullable Long timestamp)
             throws IOException
     {
         writer.write(name);
@@ -28,8 +28,6 @@ import java.util.Collection;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.proofpoint.reporting.PrometheusBeanAttribute.ValueAndTimestamp.valueAndTimestamp;
-import static com.proofpoint.reporting.ReflectionUtils.invoke;
-import static com.proofpoint.reporting.ReportedBean.GET_PREVIOUS_BUCKET;
 import static com.proofpoint.reporting.SummaryPrometheusValue.summaryPrometheusValue;
 import static java.util.Objects.requireNonNull;
 
@@ -69,7 +67,7 @@ class SummaryPrometheusBeanAttribute implements PrometheusBeanAttribute
     public ValueAndTimestamp getValue(@Nullable Object target)
             throws AttributeNotFoundException, MBeanException, ReflectionException
     {
-        BucketInfo bucketInfo = (BucketInfo) invoke(firstNonNull(target, holder), GET_PREVIOUS_BUCKET);
+        BucketInfo bucketInfo = ((Bucketed<?>) firstNonNull(target, holder)).getPreviousBucket();
         Builder<String, PrometheusValue> builder = ImmutableMap.builder();
         for (PrometheusBeanAttribute delegate : delegates) {
             ValueAndTimestamp valueAndTimestamp = null;
@@ -17,7 +17,7 @@ package com.proofpoint.reporting;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
 
 import javax.annotation.Nullable;
 import java.io.BufferedWriter;
@@ -37,6 +37,7 @@ abstract class SummaryPrometheusValue implements PrometheusValue
             .put("0.99", "P99")
             .put("1", "Max")
             .build();
+    private static final Map<String, String> QUANTILE_TAGS = Maps.toMap(QUANTILES.keySet(), quantile -> "quantile=\"" + quantile + "\"");
     private static final Map<String, String> EXTRAS = ImmutableMap.<String, String>builder()
             .put("_sum", "Sum")
             .put("_count", "Count")
@@ -49,14 +50,15 @@ abstract class SummaryPrometheusValue implements PrometheusValue
     abstract Map<String, PrometheusValue> getValues();
 
     @Override
-    public void writeMetric(BufferedWriter writer, String name, Iterable<Entry<String, String>> tags, @Nullable Long timestamp)
+    public void writeMetric(BufferedWriter writer, String name, String tags, @Nullable Long timestamp)
             throws IOException
     {
         Map<String, PrometheusValue> values = getValues();
         for (Entry<String, String> quantile : QUANTILES.entrySet()) {
             PrometheusValue value = values.get(quantile.getValue());
             if (value != null) {
-                value.writeMetric(writer, name, Iterables.concat(ImmutableMap.of("quantile", quantile.getKey()).entrySet(), tags), timestamp);
+                String quantileTag = QUANTILE_TAGS.get(quantile.getKey());
+                value.writeMetric(writer, name, tags.isEmpty() ? quantileTag : quantileTag + "," + tags, timestamp);
             }
         }
         for (Entry<String, String> quantile : EXTRAS.entrySet()) {
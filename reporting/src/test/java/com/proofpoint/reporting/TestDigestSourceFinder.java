@@ -0,0 +1,174 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.reporting;
+
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.weakref.jmx.Flatten;
+import org.weakref.jmx.Nested;
+
+import static com.proofpoint.reporting.TestReportedBeanRegistry.TESTING_REPORTED_BEAN;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+public class TestDigestSourceFinder
+{
+    private static final ImmutableMap<String, String> TESTING_TAGS = ImmutableMap.of("tag", "value");
+
+    private ReportedBeanRegistry registry;
+    private DigestSourceFinder finder;
+    private TestingStat stat;
+    private TestingObject testingObject;
+
+    @BeforeMethod
+    public void setup()
+            throws Exception
+    {
+        registry = new ReportedBeanRegistry();
+        finder = new DigestSourceFinder(registry);
+        stat = new TestingStat();
+        testingObject = new TestingObject(stat);
+        registry.register(testingObject, TESTING_REPORTED_BEAN, false, "TestingObject", TESTING_TAGS);
+    }
+
+    @Test
+    public void testNested()
+    {
+        assertSame(finder.find("TestingObject.Stat.OneMinute", TESTING_TAGS), stat.oneMinute);
+        assertSame(finder.find("TestingObject.Stat.AllTime", TESTING_TAGS), stat.allTime);
+    }
+
+    @Test
+    public void testFlatten()
+    {
+        assertSame(finder.find("TestingObject.Flattened", TESTING_TAGS), stat.oneMinute);
+    }
+
+    @Test
+    public void testRegisteredSource()
+            throws Exception
+    {
+        TestingDigestSource source = new TestingDigestSource();
+        registry.register(source, TESTING_REPORTED_BEAN, true, "Source", ImmutableMap.of());
+
+        assertSame(finder.find("Source", ImmutableMap.of()), source);
+    }
+
+    @Test
+    public void testNotFound()
+    {
+        assertNull(finder.find("TestingObject.Stat", TESTING_TAGS));
+        assertNull(finder.find("TestingObject.Stat.OneMinute.Extra", TESTING_TAGS));
+        assertNull(finder.find("TestingObject.Other.OneMinute", TESTING_TAGS));
+        assertNull(finder.find("TestingObject.Null", TESTING_TAGS));
+        assertNull(finder.find("Testing.Stat.OneMinute", TESTING_TAGS));
+    }
+
+    @Test
+    public void testTagsMustMatch()
+    {
+        assertNull(finder.find("TestingObject.Stat.OneMinute", ImmutableMap.of()));
+        assertNull(finder.find("TestingObject.Stat.OneMinute", ImmutableMap.of("tag", "other")));
+    }
+
+    @Test
+    public void testUnregistered()
+            throws Exception
+    {
+        registry.unregister(testingObject);
+
+        assertNull(finder.find("TestingObject.Stat.OneMinute", TESTING_TAGS));
+    }
+
+    public static class TestingObject
+    {
+        private final TestingStat stat;
+
+        TestingObject(TestingStat stat)
+        {
+            this.stat = stat;
+        }
+
+        @Nested
+        public TestingStat getStat()
+        {
+            return stat;
+        }
+
+        @Nested
+        public TestingStat getNull()
+        {
+            return null;
+        }
+
+        @Nested
+        public Object getOther()
+        {
+            return new Object();
+        }
+
+        @Nested
+        public FlattenedStat getFlattened()
+        {
+            return new FlattenedStat(stat.oneMinute);
+        }
+    }
+
+    public static class TestingStat
+    {
+        private final TestingDigestSource oneMinute = new TestingDigestSource();
+        private final TestingDigestSource allTime = new TestingDigestSource();
+
+        @Nested
+        public TestingDigestSource getOneMinute()
+        {
+            return oneMinute;
+        }
+
+        @Nested
+        public TestingDigestSource getAllTime()
+        {
+            return allTime;
+        }
+    }
+
+    public static class FlattenedStat
+    {
+        private final TestingDigestSource source;
+
+        FlattenedStat(TestingDigestSource source)
+        {
+            this.source = source;
+        }
+
+        @Flatten
+        public TestingDigestSource getSource()
+        {
+            return source;
+        }
+    }
+
+    public static class TestingDigestSource
+            implements DigestSource
+    {
+        @Override
+        public byte[] serializeDigest()
+        {
+            return new byte[] {1, 2, 3};
+        }
+    }
+}
@@ -148,6 +148,13 @@ public class TestReportExporter
         verify(bucketed.getInnerBucketed()).setBucketIdProvider(bucketIdProvider);
     }
 
+    @Test
+    public void testNotifyBucketIdProviderNullNested()
+    {
+        reportExporter.export(new NullNestedObject(), false, "NullNestedObject", ImmutableMap.of());
+        assertEquals(registry.getReportedBeans(), ImmutableList.of());
+    }
+
     @Test
     public void testLegacyExportString()
             throws Exception
@@ -325,6 +332,14 @@ public class TestReportExporter
         }
     }
 
+    private static class NullNestedObject
+    {
+        @Nested
+        public InnerBucketed getInnerBucketed() {
+            return null;
+        }
+    }
+
     private static class InnerBucketed
         extends Bucketed<Object>
     {
@@ -159,6 +159,24 @@ public class TestReportedBean
         }
     }
 
+    @Test
+    public void testGetterThrows()
+            throws Exception
+    {
+        for (Object object : ImmutableList.of(new ThrowingObject(), new PrivateThrowingObject())) {
+            ReportedBeanAttribute attribute = ReportedBean.forTarget(object).getAttributes().stream()
+                    .collect(MoreCollectors.onlyElement());
+            try {
+                attribute.getValue(null);
+                fail("expected MBeanException");
+            }
+            catch (MBeanException e) {
+                assertEquals(e.getMessage(), "RuntimeException occured while invoking getValue()");
+                assertEquals(e.getTargetException().getClass(), IllegalStateException.class);
+            }
+        }
+    }
+
     @DataProvider(name = "fixtures")
     Object[][] getFixtures()
     {
@@ -262,4 +280,22 @@ public class TestReportedBean
             ++bucketId;
         }
     }
+
+    public static class ThrowingObject
+    {
+        @Reported
+        public int getValue()
+        {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    private static class PrivateThrowingObject
+    {
+        @Reported
+        public int getValue()
+        {
+            throw new IllegalStateException("broken");
+        }
+    }
 }
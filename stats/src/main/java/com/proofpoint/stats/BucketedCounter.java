@@ -16,16 +16,37 @@
 package com.proofpoint.stats;
 
 import com.google.common.base.Function;
+import com.proofpoint.reporting.BucketIdProvider;
 import com.proofpoint.reporting.Bucketed;
 import com.proofpoint.reporting.Prometheus;
 import com.proofpoint.reporting.Reported;
 import com.proofpoint.stats.BucketedCounter.Counter;
 
+import java.util.function.DoubleSupplier;
+
 import static com.proofpoint.reporting.PrometheusType.SUPPRESSED;
+import static java.util.Objects.requireNonNull;
 
 public final class BucketedCounter
     extends Bucketed<Counter>
 {
+    private final DoubleSupplier pendingCount;
+
+    public BucketedCounter()
+    {
+        this(() -> 0);
+    }
+
+    /**
+     * @param pendingCount Drains counts that have been buffered by the owner
+     * but not yet added. Called with this object's lock held, before a bucket
+     * is rotated out and by {@link #addPending()}.
+     */
+    BucketedCounter(DoubleSupplier pendingCount)
+    {
+        this.pendingCount = requireNonNull(pendingCount, "pendingCount is null");
+    }
+
     public void add(long count)
     {
         add((double) count);
@@ -39,9 +60,29 @@ public final class BucketedCounter
         });
     }
 
+    void addPending()
+    {
+        applyToCurrentBucket((Function<Counter, Void>) input -> {
+            input.count += pendingCount.getAsDouble();
+            return null;
+        });
+    }
+
+    @Override
+    public synchronized void setBucketIdProvider(BucketIdProvider bucketIdProvider)
+    {
+        // counts from before the provider was set don't belong in any reported bucket
+        pendingCount.getAsDouble();
+        super.setBucketIdProvider(bucketIdProvider);
+    }
+
     @Override
     protected Counter createBucket(Counter previousBucket)
     {
+        if (previousBucket != null) {
+            // previousBucket is the bucket being rotated out, so drain into it what was counted during its interval
+            previousBucket.count += pendingCount.getAsDouble();
+        }
         return new Counter();
     }
 
@@ -15,7 +15,7 @@
  */
 package com.proofpoint.stats;
 
-import com.google.common.base.Function;
+import com.google.common.base.Ticker;
 import com.proofpoint.reporting.Prometheus;
 import com.proofpoint.reporting.PrometheusSummary;
 import com.proofpoint.reporting.Reported;
@@ -29,17 +29,9 @@ import static com.proofpoint.reporting.PrometheusType.SUPPRESSED;
 public final class BucketedDistribution
     extends PrometheusSummary<BucketedDistribution.Distribution>
 {
-    public void add(final long value)
+    public void add(long value)
     {
-        applyToCurrentBucket((Function<Distribution, Void>) input -> {
-            synchronized (input) {
-                input.allTimeCount++;
-                input.allTimeTotal += value;
-                input.digest.add(value);
-                input.total += value;
-            }
-            return null;
-        });
+        getCurrentBucket().add(value);
     }
 
     @Override
@@ -63,24 +55,50 @@ public final class BucketedDistribution
 
         @GuardedBy("this")
         private long total = 0;
+
+        private final StripedValueBuffer buffer = new StripedValueBuffer(Ticker.systemTicker(), this::record);
     
         public Distribution(@Nullable Distribution previousDistribution)
         {
             if (previousDistribution != null) {
-                allTimeTotal = previousDistribution.allTimeTotal;
-                allTimeCount = previousDistribution.allTimeCount;
+                synchronized (previousDistribution) {
+                    previousDistribution.buffer.flush();
+                    allTimeTotal = previousDistribution.allTimeTotal;
+                    allTimeCount = previousDistribution.allTimeCount;
+                }
+            }
+        }
+
+        void add(long value)
+        {
+            if (!buffer.add(value)) {
+                synchronized (this) {
+                    buffer.renewStripe();
+                    record(value, buffer.nowInSeconds());
+                }
             }
         }
 
+        @GuardedBy("this")
+        private void record(long value, long timestampInSeconds)
+        {
+            allTimeCount++;
+            allTimeTotal += value;
+            digest.add(value, 1, timestampInSeconds);
+            total += value;
+        }
+
         @Prometheus(name = "Sum", type = COUNTER)
         public synchronized long getAllTimeTotal()
         {
+            buffer.flush();
             return allTimeTotal;
         }
 
         @Prometheus(name = "Count", type = COUNTER)
         public synchronized long getAllTimeCount()
         {
+            buffer.flush();
             return allTimeCount;
         }
 
@@ -88,6 +106,7 @@ public final class BucketedDistribution
         @Prometheus(type = SUPPRESSED)
         public synchronized double getCount()
         {
+            buffer.flush();
             return digest.getCount();
         }
 
@@ -95,48 +114,56 @@ public final class BucketedDistribution
         @Prometheus(type = SUPPRESSED)
         public synchronized long getTotal()
         {
+            buffer.flush();
             return total;
         }
     
         @Reported
         public synchronized long getP50()
         {
+            buffer.flush();
             return digest.getQuantile(0.5);
         }
     
         @Reported
         public synchronized long getP75()
         {
+            buffer.flush();
             return digest.getQuantile(0.75);
         }
     
         @Reported
         public synchronized long getP90()
         {
+            buffer.flush();
             return digest.getQuantile(0.90);
         }
     
         @Reported
         public synchronized long getP95()
         {
+            buffer.flush();
             return digest.getQuantile(0.95);
         }
     
         @Reported
         public synchronized long getP99()
         {
+            buffer.flush();
             return digest.getQuantile(0.99);
         }
     
         @Reported
         public synchronized long getMin()
         {
+            buffer.flush();
             return digest.getMin();
         }
     
         @Reported
         public synchronized long getMax()
         {
+            buffer.flush();
             return digest.getMax();
         }
     }
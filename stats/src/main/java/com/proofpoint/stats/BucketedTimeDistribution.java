@@ -15,7 +15,7 @@
  */
 package com.proofpoint.stats;
 
-import com.google.common.base.Function;
+import com.google.common.base.Ticker;
 import com.proofpoint.reporting.Prometheus;
 import com.proofpoint.reporting.PrometheusSummary;
 import com.proofpoint.reporting.Reported;
@@ -28,17 +28,9 @@ import static com.proofpoint.reporting.PrometheusType.SUPPRESSED;
 public final class BucketedTimeDistribution
     extends PrometheusSummary<BucketedTimeDistribution.Distribution>
 {
-    public void add(final long value)
+    public void add(long value)
     {
-        applyToCurrentBucket((Function<Distribution, Void>) input -> {
-            synchronized (input) {
-                input.allTimeCount++;
-                input.allTimeTotal += value;
-                input.digest.add(value);
-                input.total += value;
-            }
-            return null;
-        });
+        getCurrentBucket().add(value);
     }
 
     @Override
@@ -62,24 +54,50 @@ public final class BucketedTimeDistribution
 
         @GuardedBy("this")
         private long total = 0;
+
+        private final StripedValueBuffer buffer = new StripedValueBuffer(Ticker.systemTicker(), this::record);
     
         public Distribution(Distribution previousDistribution)
         {
             if (previousDistribution != null) {
-                allTimeTotal = previousDistribution.allTimeTotal;
-                allTimeCount = previousDistribution.allTimeCount;
+                synchronized (previousDistribution) {
+                    previousDistribution.buffer.flush();
+                    allTimeTotal = previousDistribution.allTimeTotal;
+                    allTimeCount = previousDistribution.allTimeCount;
+                }
+            }
+        }
+
+        void add(long value)
+        {
+            if (!buffer.add(value)) {
+                synchronized (this) {
+                    buffer.renewStripe();
+                    record(value, buffer.nowInSeconds());
+                }
             }
         }
 
+        @GuardedBy("this")
+        private void record(long value, long timestampInSeconds)
+        {
+            allTimeCount++;
+            allTimeTotal += value;
+            digest.add(value, 1, timestampInSeconds);
+            total += value;
+        }
+
         @Prometheus(name = "Sum", type = COUNTER)
         public synchronized double getAllTimeTotal()
         {
+            buffer.flush();
             return convertToSeconds(allTimeTotal);
         }
 
         @Prometheus(name = "Count", type = COUNTER)
         public synchronized long getAllTimeCount()
         {
+            buffer.flush();
             return allTimeCount;
         }
 
@@ -87,54 +105,63 @@ public final class BucketedTimeDistribution
         @Prometheus(type = SUPPRESSED)
         public synchronized double getCount()
         {
+            buffer.flush();
             return digest.getCount();
         }
 
         @Reported
         @Prometheus(type = SUPPRESSED)
         public synchronized double getTotal() {
+            buffer.flush();
             return convertToSeconds(total);
         }
     
         @Reported
         public synchronized double getP50()
         {
+            buffer.flush();
             return convertToSeconds(digest.getQuantile(0.5));
         }
     
         @Reported
         public synchronized double getP75()
         {
+            buffer.flush();
             return convertToSeconds(digest.getQuantile(0.75));
         }
     
         @Reported
         public synchronized double getP90()
         {
+            buffer.flush();
             return convertToSeconds(digest.getQuantile(0.90));
         }
     
         @Reported
         public synchronized double getP95()
         {
+            buffer.flush();
             return convertToSeconds(digest.getQuantile(0.95));
         }
     
         @Reported
         public synchronized double getP99()
         {
+            buffer.flush();
             return convertToSeconds(digest.getQuantile(0.99));
         }
     
         @Reported
         public synchronized double getMin()
         {
+            buffer.flush();
             return convertToSeconds(digest.getMin());
         }
     
         @Reported
         public synchronized double getMax()
         {
+            buffer.flush();
             return convertToSeconds(digest.getMax());
         }
 
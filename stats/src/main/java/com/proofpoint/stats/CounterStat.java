@@ -18,13 +18,16 @@ package com.proofpoint.stats;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.annotations.Beta;
+import com.google.common.base.Ticker;
 import com.proofpoint.reporting.Prometheus;
 import com.proofpoint.stats.DecayCounter.DecayCounterSnapshot;
 import org.weakref.jmx.Flatten;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
-import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.GuardedBy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.proofpoint.reporting.PrometheusType.COUNTER;
@@ -32,19 +35,46 @@ import static com.proofpoint.reporting.PrometheusType.COUNTER;
 @Beta
 public class CounterStat
 {
-    private final AtomicLong count = new AtomicLong(0);
-    private final DecayCounter oneMinute = new DecayCounter(ExponentialDecay.oneMinute());
-    private final DecayCounter fiveMinute = new DecayCounter(ExponentialDecay.fiveMinutes());
-    private final DecayCounter fifteenMinute = new DecayCounter(ExponentialDecay.fifteenMinutes());
-    private final BucketedCounter bucket = new BucketedCounter();
+    private final Ticker ticker;
+    private final BucketedCounter bucket = new BucketedCounter(this::drainPending);
+    private final DecayCounter oneMinute;
+    private final DecayCounter fiveMinute;
+    private final DecayCounter fifteenMinute;
+    private volatile PendingSecond pending;
+
+    @GuardedBy("bucket")
+    private long count = 0;
+
+    public CounterStat()
+    {
+        this(Ticker.systemTicker());
+    }
+
+    CounterStat(Ticker ticker)
+    {
+        this.ticker = checkNotNull(ticker, "ticker is null");
+        oneMinute = new DecayCounter(ExponentialDecay.oneMinute(), ticker, this::flush);
+        fiveMinute = new DecayCounter(ExponentialDecay.fiveMinutes(), ticker, this::flush);
+        fifteenMinute = new DecayCounter(ExponentialDecay.fifteenMinutes(), ticker, this::flush);
+        pending = new PendingSecond(nowInSeconds());
+    }
 
     public void add(long count)
     {
-        oneMinute.add(count);
-        fiveMinute.add(count);
-        fifteenMinute.add(count);
-        bucket.add(count);
-        this.count.addAndGet(count);
+        long nowInSeconds = nowInSeconds();
+        PendingSecond pending = this.pending;
+        if (pending.timestampInSeconds != nowInSeconds) {
+            pending = renewPending(nowInSeconds);
+        }
+
+        pending.adder.add(count);
+        if (pending.retired) {
+            // The second was retired while we were adding to it, so the
+            // retiring thread might not have seen our count.
+            synchronized (bucket) {
+                bucket.add(drain(pending));
+            }
+        }
     }
 
     /**
@@ -53,11 +83,7 @@ public class CounterStat
     @Deprecated
     public void update(long count)
     {
-        oneMinute.add(count);
-        fiveMinute.add(count);
-        fifteenMinute.add(count);
-        bucket.add(count);
-        this.count.addAndGet(count);
+        add(count);
     }
 
     public void merge(CounterStat counterStat)
@@ -66,16 +92,22 @@ public class CounterStat
         oneMinute.merge(counterStat.getOneMinute());
         fiveMinute.merge(counterStat.getFiveMinute());
         fifteenMinute.merge(counterStat.getFifteenMinute());
-        count.addAndGet(counterStat.getTotalCount());
+        long otherCount = counterStat.getTotalCount();
+        synchronized (bucket) {
+            count += otherCount;
+        }
     }
 
     @Managed
     public void reset()
     {
-        oneMinute.reset();
-        fiveMinute.reset();
-        fifteenMinute.reset();
-        count.set(0);
+        synchronized (bucket) {
+            bucket.addPending();
+            oneMinute.reset();
+            fiveMinute.reset();
+            fifteenMinute.reset();
+            count = 0;
+        }
     }
 
     /**
@@ -84,17 +116,24 @@ public class CounterStat
     @Deprecated
     public void resetTo(CounterStat counterStat)
     {
+        flush();
         oneMinute.resetTo(counterStat.getOneMinute());
         fiveMinute.resetTo(counterStat.getFiveMinute());
         fifteenMinute.resetTo(counterStat.getFifteenMinute());
-        count.set(counterStat.getTotalCount());
+        long otherCount = counterStat.getTotalCount();
+        synchronized (bucket) {
+            count = otherCount;
+        }
     }
 
     @Managed
     @Prometheus(name = "Count", type = COUNTER)
     public long getTotalCount()
     {
-        return count.get();
+        synchronized (bucket) {
+            bucket.addPending();
+            return count;
+        }
     }
 
     @Nested
@@ -121,11 +160,86 @@ public class CounterStat
         return bucket;
     }
 
+    private long nowInSeconds()
+    {
+        return TimeUnit.NANOSECONDS.toSeconds(ticker.read());
+    }
+
+    private PendingSecond renewPending(long nowInSeconds)
+    {
+        synchronized (bucket) {
+            PendingSecond pending = this.pending;
+            if (pending.timestampInSeconds != nowInSeconds) {
+                // Writers check the retired flag after adding, so any count
+                // that the drain below misses is drained by its writer.
+                pending.retired = true;
+                bucket.addPending();
+                pending = new PendingSecond(nowInSeconds);
+                this.pending = pending;
+            }
+            return pending;
+        }
+    }
+
+    private void flush()
+    {
+        synchronized (bucket) {
+            bucket.addPending();
+        }
+    }
+
+    @GuardedBy("bucket")
+    private double drainPending()
+    {
+        return drain(pending);
+    }
+
+    /**
+     * Add the counts buffered in a second that haven't been drained yet to the
+     * total and decay counters, weighted by that second.
+     *
+     * @return the drained count, for the caller to add to a bucket
+     */
+    @GuardedBy("bucket")
+    private long drain(PendingSecond pending)
+    {
+        long sum = pending.adder.sum();
+        long drained = sum - pending.drained;
+        if (drained != 0) {
+            pending.drained = sum;
+            count += drained;
+            oneMinute.add(drained, pending.timestampInSeconds);
+            fiveMinute.add(drained, pending.timestampInSeconds);
+            fifteenMinute.add(drained, pending.timestampInSeconds);
+        }
+        return drained;
+    }
+
     public CounterStatSnapshot snapshot()
     {
         return new CounterStatSnapshot(getTotalCount(), getOneMinute().snapshot(), getFiveMinute().snapshot(), getFifteenMinute().snapshot());
     }
 
+    /**
+     * Counts added during one second. Adds are lock-free; the counts are
+     * drained into the decay counters, total, and bucket under the bucket's
+     * lock, when the second is over or when the stat is read.
+     */
+    private static class PendingSecond
+    {
+        private final long timestampInSeconds;
+        private final LongAdder adder = new LongAdder();
+        private volatile boolean retired = false;
+
+        // guarded by the owning CounterStat's bucket
+        private long drained = 0;
+
+        PendingSecond(long timestampInSeconds)
+        {
+            this.timestampInSeconds = timestampInSeconds;
+        }
+    }
+
     public static class CounterStatSnapshot
     {
         private final long totalCount;
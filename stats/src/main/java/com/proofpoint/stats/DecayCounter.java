@@ -24,8 +24,11 @@ public final class DecayCounter
     // needs to be such that Math.exp(alpha * seconds) does not grow too big
     static final long RESCALE_THRESHOLD_SECONDS = 50;
 
+    private static final Runnable NO_PENDING_VALUES = () -> {};
+
     private final double alpha;
     private final Ticker ticker;
+    private final Runnable flushPendingValues;
 
     private long landmarkInSeconds;
     private double count = 0.0;
@@ -36,10 +39,21 @@ public final class DecayCounter
     }
 
     public DecayCounter(double alpha, Ticker ticker)
+    {
+        this(alpha, ticker, NO_PENDING_VALUES);
+    }
+
+    /**
+     * @param flushPendingValues Called, without this counter's lock held, before
+     * the count is read. Lets an owner that buffers values add them to this
+     * counter lazily.
+     */
+    DecayCounter(double alpha, Ticker ticker, Runnable flushPendingValues)
     {
         checkArgument(alpha >= 0.0, "alpha is negative");
         this.alpha = alpha;
         this.ticker = ticker;
+        this.flushPendingValues = checkNotNull(flushPendingValues, "flushPendingValues is null");
         landmarkInSeconds = getTickInSeconds();
     }
 
@@ -48,21 +62,33 @@ public final class DecayCounter
         add((double) value);
     }
 
-    public synchronized void add(double value)
+    public void add(double value)
     {
-        long nowInSeconds = getTickInSeconds();
+        add(value, getTickInSeconds());
+    }
 
+    /**
+     * Adds a value to this counter, weighted as if it had been added at the given time
+     */
+    synchronized void add(double value, long nowInSeconds)
+    {
         if (nowInSeconds - landmarkInSeconds >= RESCALE_THRESHOLD_SECONDS) {
             rescaleToNewLandmark(nowInSeconds);
         }
         count += value * weight(nowInSeconds, landmarkInSeconds);
     }
 
-    public synchronized void merge(DecayCounter decayCounter)
+    public void merge(DecayCounter decayCounter)
     {
         checkNotNull(decayCounter, "decayCounter is null");
         checkArgument(decayCounter.alpha == alpha, "Expected decayCounter to have alpha %s, but was %s", alpha, decayCounter.alpha);
 
+        decayCounter.flushPendingValues.run();
+        mergeFlushed(decayCounter);
+    }
+
+    private synchronized void mergeFlushed(DecayCounter decayCounter)
+    {
         synchronized (decayCounter) {
             // if the landmark this counter is behind the other counter
             if (landmarkInSeconds < decayCounter.landmarkInSeconds) {
@@ -95,7 +121,13 @@ public final class DecayCounter
      * This is a hack to work around limitations in Jmxutils.
      */
     @Deprecated
-    public synchronized void resetTo(DecayCounter counter)
+    public void resetTo(DecayCounter counter)
+    {
+        counter.flushPendingValues.run();
+        resetToFlushed(counter);
+    }
+
+    private synchronized void resetToFlushed(DecayCounter counter)
     {
         synchronized (counter) {
             landmarkInSeconds = counter.landmarkInSeconds;
@@ -104,20 +136,26 @@ public final class DecayCounter
     }
 
     @Managed
-    public synchronized double getCount()
+    public double getCount()
     {
-        long nowInSeconds = getTickInSeconds();
-        return count / weight(nowInSeconds, landmarkInSeconds);
+        flushPendingValues.run();
+        return getFlushedCount();
     }
 
     @Managed
-    public synchronized double getRate()
+    public double getRate()
     {
         // The total time covered by this counter is equivalent to the integral of the weight function from 0 to Infinity,
         // which equals 1/alpha. The count per unit time is, therefore, count / (1/alpha)
         return getCount() * alpha;
     }
 
+    private synchronized double getFlushedCount()
+    {
+        long nowInSeconds = getTickInSeconds();
+        return count / weight(nowInSeconds, landmarkInSeconds);
+    }
+
 
     private double weight(long timestampInSeconds, long landmarkInSeconds)
     {
@@ -131,15 +169,17 @@ public final class DecayCounter
 
     public DecayCounterSnapshot snapshot()
     {
-        return new DecayCounterSnapshot(getCount(), getRate());
+        double count = getCount();
+        return new DecayCounterSnapshot(count, count * alpha);
     }
 
     @Override
     public String toString()
     {
+        double count = getCount();
         return toStringHelper(this)
-                .add("count", getCount())
-                .add("rate", getRate())
+                .add("count", count)
+                .add("rate", count * alpha)
                 .toString();
     }
 
@@ -2,7 +2,11 @@ package com.proofpoint.stats;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.proofpoint.reporting.DigestSource;
 import org.weakref.jmx.Managed;
 
 import javax.annotation.concurrent.GuardedBy;
@@ -16,6 +20,7 @@ import static com.google.common.base.MoreObjects.toStringHelper;
 
 @ThreadSafe
 public class Distribution
+    implements DigestSource
 {
     private static final double MAX_ERROR = 0.01;
 
@@ -25,6 +30,8 @@ public class Distribution
     @GuardedBy("this")
     private final DecayCounter total;
 
+    private final StripedValueBuffer buffer = new StripedValueBuffer(Ticker.systemTicker(), this::record);
+
     public Distribution()
     {
         digest = new QuantileDigest(MAX_ERROR);
@@ -39,15 +46,22 @@ public class Distribution
 
     public Distribution(Distribution distribution)
     {
-        digest = new QuantileDigest(distribution.digest);
-        total = new DecayCounter(distribution.digest.getAlpha());
-        total.merge(distribution.total);
+        synchronized (distribution) {
+            distribution.buffer.flush();
+            digest = new QuantileDigest(distribution.digest);
+            total = new DecayCounter(distribution.digest.getAlpha());
+            total.merge(distribution.total);
+        }
     }
 
-    public synchronized void add(long value)
+    public void add(long value)
     {
-        digest.add(value);
-        total.add(value);
+        if (!buffer.add(value)) {
+            synchronized (this) {
+                buffer.renewStripe();
+                record(value, buffer.nowInSeconds());
+            }
+        }
     }
 
     public synchronized void add(long value, long count)
@@ -56,87 +70,108 @@ public class Distribution
         total.add(value * count);
     }
 
+    @GuardedBy("this")
+    private void record(long value, long timestampInSeconds)
+    {
+        digest.add(value, 1, timestampInSeconds);
+        total.add(value, timestampInSeconds);
+    }
+
     @Managed
     public synchronized double getMaxError()
     {
+        buffer.flush();
         return digest.getConfidenceFactor();
     }
 
     @Managed
     public synchronized double getCount()
     {
+        buffer.flush();
         return digest.getCount();
     }
 
     @Managed
     public synchronized double getTotal()
     {
+        buffer.flush();
         return total.getCount();
     }
 
     @Managed
     public synchronized long getP01()
     {
+        buffer.flush();
         return digest.getQuantile(0.01);
     }
 
     @Managed
     public synchronized long getP05()
     {
+        buffer.flush();
         return digest.getQuantile(0.05);
     }
 
     @Managed
     public synchronized long getP10()
     {
+        buffer.flush();
         return digest.getQuantile(0.10);
     }
 
     @Managed
     public synchronized long getP25()
     {
+        buffer.flush();
         return digest.getQuantile(0.25);
     }
 
     @Managed
     public synchronized long getP50()
     {
+        buffer.flush();
         return digest.getQuantile(0.5);
     }
 
     @Managed
     public synchronized long getP75()
     {
+        buffer.flush();
         return digest.getQuantile(0.75);
     }
 
     @Managed
     public synchronized long getP90()
     {
+        buffer.flush();
         return digest.getQuantile(0.90);
     }
 
     @Managed
     public synchronized long getP95()
     {
+        buffer.flush();
         return digest.getQuantile(0.95);
     }
 
     @Managed
     public synchronized long getP99()
     {
+        buffer.flush();
         return digest.getQuantile(0.99);
     }
 
     @Managed
     public synchronized long getMin()
     {
+        buffer.flush();
         return digest.getMin();
     }
 
     @Managed
     public synchronized long getMax()
     {
+        buffer.flush();
         return digest.getMax();
     }
 
@@ -150,6 +185,7 @@ public class Distribution
 
         List<Long> values;
         synchronized (this) {
+            buffer.flush();
             values = digest.getQuantiles(percentiles);
         }
 
@@ -163,11 +199,26 @@ public class Distribution
 
     public synchronized List<Long> getPercentiles(List<Double> percentiles)
     {
+        buffer.flush();
         return digest.getQuantiles(percentiles);
     }
 
+    /**
+     * Serialize the digest, decayed to the current time, so that it can be
+     * merged with the digests of other processes by {@link MergedDistribution}.
+     */
+    @Override
+    public synchronized byte[] serializeDigest()
+    {
+        buffer.flush();
+        ByteArrayDataOutput output = ByteStreams.newDataOutput(digest.estimatedSerializedSizeInBytes());
+        digest.serializeWithoutDecay(output);
+        return output.toByteArray();
+    }
+
     public synchronized DistributionSnapshot snapshot()
     {
+        buffer.flush();
         List<Long> quantiles = digest.getQuantiles(ImmutableList.of(0.01, 0.05, 0.10, 0.25, 0.5, 0.75, 0.9, 0.95, 0.99));
         return new DistributionSnapshot(
                 getMaxError(),
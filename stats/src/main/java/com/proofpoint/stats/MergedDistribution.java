@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.stats;
+
+import com.google.common.io.ByteStreams;
+import com.proofpoint.reporting.Reported;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Merges digests serialized by other processes, for example one from each
+ * node of a pool, to compute quantiles over all of their values.
+ *
+ * <p>Averaging the percentiles reported by each node does not give the
+ * percentiles of the pool. Merging the digests does, within the digests'
+ * error bound, without transferring the individual values.</p>
+ *
+ * <p>The merged quantiles are {@link Reported}, so a pool-level aggregator
+ * can export one instance per pool, for example with
+ * {@code reportBinder(binder).export(MergedDistribution.class).annotatedWith(...)},
+ * and call {@link #update(Iterable)} with the digests collected from the
+ * pool's nodes each reporting interval.</p>
+ *
+ * @see Distribution#serializeDigest()
+ * @see TimeDistribution#serializeDigest()
+ * @see SparseDistributionStat#serializePreviousDigest()
+ * @see SparseTimeStat#serializePreviousDigest()
+ */
+@ThreadSafe
+public class MergedDistribution
+{
+    private static final double MAX_ERROR = 0.01;
+
+    @GuardedBy("this")
+    private QuantileDigest digest = new QuantileDigest(MAX_ERROR);
+
+    /**
+     * Merge one more serialized digest into this distribution.
+     */
+    public void merge(byte[] serializedDigest)
+    {
+        QuantileDigest other = deserialize(serializedDigest);
+        synchronized (this) {
+            digest.merge(other);
+        }
+    }
+
+    /**
+     * Replace the contents of this distribution with the merge of the given
+     * serialized digests, typically one from each node of a pool for the
+     * latest reporting interval.
+     */
+    public void update(Iterable<byte[]> serializedDigests)
+    {
+        QuantileDigest merged = new QuantileDigest(MAX_ERROR);
+        for (byte[] serializedDigest : serializedDigests) {
+            merged.merge(deserialize(serializedDigest));
+        }
+        synchronized (this) {
+            digest = merged;
+        }
+    }
+
+    private static QuantileDigest deserialize(byte[] serializedDigest)
+    {
+        requireNonNull(serializedDigest, "serializedDigest is null");
+        QuantileDigest digest = QuantileDigest.deserialize(ByteStreams.newDataInput(serializedDigest));
+        checkArgument(digest.getAlpha() == 0, "digest was serialized with decay");
+        return digest;
+    }
+
+    public synchronized double getMaxError()
+    {
+        return digest.getConfidenceFactor();
+    }
+
+    @Reported
+    public synchronized double getCount()
+    {
+        return digest.getCount();
+    }
+
+    public synchronized long getQuantile(double quantile)
+    {
+        return digest.getQuantile(quantile);
+    }
+
+    public synchronized List<Long> getQuantiles(List<Double> quantiles)
+    {
+        return digest.getQuantiles(quantiles);
+    }
+
+    @Reported
+    public synchronized long getP50()
+    {
+        return digest.getQuantile(0.5);
+    }
+
+    @Reported
+    public synchronized long getP75()
+    {
+        return digest.getQuantile(0.75);
+    }
+
+    @Reported
+    public synchronized long getP90()
+    {
+        return digest.getQuantile(0.90);
+    }
+
+    @Reported
+    public synchronized long getP95()
+    {
+        return digest.getQuantile(0.95);
+    }
+
+    @Reported
+    public synchronized long getP99()
+    {
+        return digest.getQuantile(0.99);
+    }
+
+    @Reported
+    public synchronized long getMin()
+    {
+        return digest.getMin();
+    }
+
+    @Reported
+    public synchronized long getMax()
+    {
+        return digest.getMax();
+    }
+}
@@ -146,9 +146,15 @@ public class QuantileDigest
      */
     public void add(long value, long count)
     {
-        checkArgument(count > 0, "count must be > 0");
+        add(value, count, TimeUnit.NANOSECONDS.toSeconds(ticker.read()));
+    }
 
-        long nowInSeconds = TimeUnit.NANOSECONDS.toSeconds(ticker.read());
+    /**
+     * Adds a value to this digest, weighted as if it had been added at the given time
+     */
+    void add(long value, long count, long nowInSeconds)
+    {
+        checkArgument(count > 0, "count must be > 0");
 
         int maxExpectedNodeCount = 3 * calculateCompressionFactor();
         if (nowInSeconds - landmarkInSeconds >= RESCALE_THRESHOLD_SECONDS) {
@@ -163,7 +169,7 @@ public class QuantileDigest
             compress();
         }
 
-        double weight = weight(TimeUnit.NANOSECONDS.toSeconds(ticker.read())) * count;
+        double weight = weight(nowInSeconds) * count;
 
         max = Math.max(max, value);
         min = Math.min(min, value);
@@ -434,11 +440,29 @@ public class QuantileDigest
     }
 
     public void serialize(final DataOutput output)
+    {
+        serialize(output, alpha, landmarkInSeconds, 1);
+    }
+
+    /**
+     * Serialize a non-decaying copy of this digest, with each weight decayed
+     * to the current time. Unlike the landmark written by
+     * {@link #serialize(DataOutput)}, which is relative to this process's
+     * ticker, the result is meaningful in other processes and can be merged
+     * with digests serialized elsewhere.
+     */
+    public void serializeWithoutDecay(final DataOutput output)
+    {
+        long nowInSeconds = TimeUnit.NANOSECONDS.toSeconds(ticker.read());
+        serialize(output, 0, nowInSeconds, 1 / weight(nowInSeconds));
+    }
+
+    private void serialize(final DataOutput output, double serializedAlpha, long serializedLandmarkInSeconds, final double weightFactor)
     {
         try {
             output.writeDouble(maxError);
-            output.writeDouble(alpha);
-            output.writeLong(landmarkInSeconds);
+            output.writeDouble(serializedAlpha);
+            output.writeLong(serializedLandmarkInSeconds);
             output.writeLong(min);
             output.writeLong(max);
             output.writeInt(totalNodeCount);
@@ -449,7 +473,7 @@ public class QuantileDigest
                 public boolean process(Node node)
                 {
                     try {
-                        serializeNode(output, node);
+                        serializeNode(output, node, weightFactor);
                     }
                     catch (IOException e) {
                         Throwables.propagate(e);
@@ -463,7 +487,7 @@ public class QuantileDigest
         }
     }
 
-    private void serializeNode(DataOutput output, Node node)
+    private void serializeNode(DataOutput output, Node node, double weightFactor)
             throws IOException
     {
         int flags = 0;
@@ -477,7 +501,7 @@ public class QuantileDigest
         output.writeByte(flags);
         output.writeByte(node.level);
         output.writeLong(node.bits);
-        output.writeDouble(node.weightedCount);
+        output.writeDouble(node.weightedCount * weightFactor);
     }
 
     public static QuantileDigest deserialize(DataInput input)
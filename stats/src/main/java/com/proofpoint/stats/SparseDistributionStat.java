@@ -16,6 +16,9 @@
 package com.proofpoint.stats;
 
 import com.google.common.base.Function;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.proofpoint.reporting.DigestSource;
 import com.proofpoint.reporting.Prometheus;
 import com.proofpoint.reporting.PrometheusSummary;
 import com.proofpoint.reporting.Reported;
@@ -27,6 +30,7 @@ import static com.proofpoint.reporting.PrometheusType.SUPPRESSED;
 
 public class SparseDistributionStat
     extends PrometheusSummary<SparseDistributionStat.Distribution>
+    implements DigestSource
 {
     public void add(final long value)
     {
@@ -41,6 +45,26 @@ public class SparseDistributionStat
         });
     }
 
+    /**
+     * Serialize the digest from the previous reporting bucket, so that it
+     * can be merged with the digests of other processes by
+     * {@link MergedDistribution}.
+     */
+    public byte[] serializePreviousDigest()
+    {
+        return applyToPreviousBucket(Distribution::serializeDigest);
+    }
+
+    /**
+     * Same as {@link #serializePreviousDigest()}, since the previous bucket
+     * holds the values that are reported.
+     */
+    @Override
+    public byte[] serializeDigest()
+    {
+        return serializePreviousDigest();
+    }
+
     @Override
     protected final Distribution createBucket(Distribution previousBucket)
     {
@@ -145,5 +169,12 @@ public class SparseDistributionStat
         {
             return digest.getMax();
         }
+
+        synchronized byte[] serializeDigest()
+        {
+            ByteArrayDataOutput output = ByteStreams.newDataOutput(digest.estimatedSerializedSizeInBytes());
+            digest.serializeWithoutDecay(output);
+            return output.toByteArray();
+        }
     }
 }
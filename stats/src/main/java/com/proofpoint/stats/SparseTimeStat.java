@@ -17,11 +17,15 @@ package com.proofpoint.stats;
 
 import com.google.common.base.Function;
 import com.google.common.base.Ticker;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.proofpoint.reporting.DigestSource;
 import com.proofpoint.reporting.Prometheus;
 import com.proofpoint.reporting.PrometheusSummary;
 import com.proofpoint.reporting.Reported;
 import com.proofpoint.units.Duration;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -33,8 +37,10 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class SparseTimeStat
     extends PrometheusSummary<SparseTimeStat.Distribution>
+    implements DigestSource
 {
     private final Ticker ticker;
+    private volatile PreviousQuantile previousQuantile = null;
 
     public SparseTimeStat()
     {
@@ -110,12 +116,65 @@ public class SparseTimeStat
         }
     }
 
+    /**
+     * Serialize the digest of nanosecond values from the previous reporting
+     * bucket, so that it can be merged with the digests of other processes by
+     * {@link MergedDistribution}.
+     */
+    public byte[] serializePreviousDigest()
+    {
+        return applyToPreviousBucket(Distribution::serializeDigest);
+    }
+
+    /**
+     * Same as {@link #serializePreviousDigest()}, since the previous bucket
+     * holds the values that are reported.
+     */
+    @Override
+    public byte[] serializeDigest()
+    {
+        return serializePreviousDigest();
+    }
+
+    /**
+     * Returns the given quantile of the values in the previous reporting
+     * bucket, or null if that bucket has no values. The previous bucket
+     * does not change until the buckets rotate, so the most recently
+     * requested quantile is computed once per bucket.
+     */
+    @Nullable
+    public Duration getPreviousQuantile(double quantile)
+    {
+        Distribution bucket = peekPreviousBucket();
+        PreviousQuantile cached = previousQuantile;
+        if (cached != null && cached.bucket == bucket && cached.quantile == quantile) {
+            return cached.value;
+        }
+        Duration value = bucket.getQuantile(quantile);
+        previousQuantile = new PreviousQuantile(bucket, quantile, value);
+        return value;
+    }
+
     @Override
     protected final Distribution createBucket(Distribution previousBucket)
     {
         return new Distribution(previousBucket);
     }
 
+    private static class PreviousQuantile
+    {
+        private final Distribution bucket;
+        private final double quantile;
+        private final Duration value;
+
+        PreviousQuantile(Distribution bucket, double quantile, @Nullable Duration value)
+        {
+            this.bucket = bucket;
+            this.quantile = quantile;
+            this.value = value;
+        }
+    }
+
     protected static class Distribution
     {
         private static final double MAX_ERROR = 0.01;
@@ -214,6 +273,21 @@ public class SparseTimeStat
             return convertToSeconds(digest.getMax());
         }
 
+        synchronized Duration getQuantile(double quantile)
+        {
+            if (digest.getCount() == 0.0) {
+                return null;
+            }
+            return new Duration(digest.getQuantile(quantile), NANOSECONDS);
+        }
+
+        synchronized byte[] serializeDigest()
+        {
+            ByteArrayDataOutput output = ByteStreams.newDataOutput(digest.estimatedSerializedSizeInBytes());
+            digest.serializeWithoutDecay(output);
+            return output.toByteArray();
+        }
+
         private static double convertToSeconds(long nanos)
         {
             if (nanos == Long.MAX_VALUE || nanos == Long.MIN_VALUE) {
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.stats;
+
+import com.google.common.base.Ticker;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Lock-free staging area for values added to a digest-backed stat.
+ *
+ * <p>Writers append to one of several stripes, selected by thread, without
+ * taking a lock. Each stripe is stamped with the second it was created in,
+ * so buffered values are later replayed into the owner's digest with the
+ * same decay weight they would have had if they had been inserted directly.
+ * The owner drains the buffer, while holding its own lock, before every read.
+ * A value whose writer has claimed a slot but not yet stored it is left for
+ * a later drain, so draining never waits on a writer.</p>
+ *
+ * <p>{@link #add(long)} returns {@code false} when the calling thread's stripe
+ * is full, missing, or from an earlier second. The owner must then, under its
+ * lock, call {@link #renewStripe()} and record the value directly.</p>
+ */
+@ThreadSafe
+final class StripedValueBuffer
+{
+    private static final int STRIPE_CAPACITY = 64;
+    private static final int MAX_STRIPES = 16;
+    private static final int CLOSED = Integer.MAX_VALUE / 2;
+    private static final int STRIPE_MASK = stripeCount() - 1;
+    private static final int UNPUBLISHED = 0;
+    private static final int PUBLISHED = 1;
+    private static final int DRAINED = 2;
+
+    private final Ticker ticker;
+    private final Sink sink;
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPE_MASK + 1);
+
+    // Closed stripes with slots still being written; guarded by the owner's lock
+    private final List<Stripe> pending = new ArrayList<>();
+
+    interface Sink
+    {
+        void record(long value, long timestampInSeconds);
+    }
+
+    StripedValueBuffer(Ticker ticker, Sink sink)
+    {
+        this.ticker = requireNonNull(ticker, "ticker is null");
+        this.sink = requireNonNull(sink, "sink is null");
+    }
+
+    boolean add(long value)
+    {
+        Stripe stripe = stripes.get(stripeIndex());
+        if (stripe == null || stripe.timestampInSeconds != nowInSeconds()) {
+            return false;
+        }
+
+        int slot = stripe.claimed.getAndIncrement();
+        if (slot >= STRIPE_CAPACITY) {
+            return false;
+        }
+        stripe.values[slot] = value;
+        stripe.slotStates.set(slot, PUBLISHED);
+        return true;
+    }
+
+    /**
+     * Replace the calling thread's stripe with an empty one stamped with the
+     * current time, draining the old stripe into the sink. Must be called with
+     * the owner's lock held.
+     */
+    void renewStripe()
+    {
+        drainPending();
+        drain(stripes.getAndSet(stripeIndex(), new Stripe(nowInSeconds())));
+    }
+
+    /**
+     * Drain all buffered values into the sink. Must be called with the owner's
+     * lock held.
+     */
+    void flush()
+    {
+        drainPending();
+        for (int i = 0; i < stripes.length(); i++) {
+            if (stripes.get(i) != null) {
+                drain(stripes.getAndSet(i, null));
+            }
+        }
+    }
+
+    long nowInSeconds()
+    {
+        return TimeUnit.NANOSECONDS.toSeconds(ticker.read());
+    }
+
+    private void drain(Stripe stripe)
+    {
+        if (stripe == null) {
+            return;
+        }
+
+        // Writers that claim a slot after this point see the stripe as full
+        stripe.size = Math.min(stripe.claimed.getAndSet(CLOSED), STRIPE_CAPACITY);
+        if (!drainPublished(stripe)) {
+            pending.add(stripe);
+        }
+    }
+
+    private void drainPending()
+    {
+        if (!pending.isEmpty()) {
+            pending.removeIf(this::drainPublished);
+        }
+    }
+
+    /**
+     * Record the stripe's published values that have not yet been drained.
+     * Returns {@code false} if a writer has claimed a slot but not yet stored
+     * its value.
+     */
+    private boolean drainPublished(Stripe stripe)
+    {
+        boolean complete = true;
+        for (int i = 0; i < stripe.size; i++) {
+            int state = stripe.slotStates.get(i);
+            if (state == PUBLISHED) {
+                sink.record(stripe.values[i], stripe.timestampInSeconds);
+                stripe.slotStates.lazySet(i, DRAINED);
+            }
+            else if (state == UNPUBLISHED) {
+                complete = false;
+            }
+        }
+        return complete;
+    }
+
+    private static int stripeIndex()
+    {
+        return (int) (Thread.currentThread().getId() & STRIPE_MASK);
+    }
+
+    private static int stripeCount()
+    {
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), MAX_STRIPES);
+        return Integer.highestOneBit(Math.max(processors * 2 - 1, 1));
+    }
+
+    private static class Stripe
+    {
+        private final long timestampInSeconds;
+        private final long[] values = new long[STRIPE_CAPACITY];
+        private final AtomicInteger claimed = new AtomicInteger();
+        private final AtomicIntegerArray slotStates = new AtomicIntegerArray(STRIPE_CAPACITY);
+        private int size;
+
+        Stripe(long timestampInSeconds)
+        {
+            this.timestampInSeconds = timestampInSeconds;
+        }
+    }
+}
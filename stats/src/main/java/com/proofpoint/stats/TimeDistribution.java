@@ -2,6 +2,10 @@ package com.proofpoint.stats;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Ticker;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.proofpoint.reporting.DigestSource;
 import org.weakref.jmx.Managed;
 
 import javax.annotation.concurrent.GuardedBy;
@@ -13,6 +17,7 @@ import java.util.Map;
 import static com.google.common.base.MoreObjects.toStringHelper;
 
 public class TimeDistribution
+    implements DigestSource
 {
     private static final double MAX_ERROR = 0.01;
 
@@ -22,6 +27,8 @@ public class TimeDistribution
     @GuardedBy("this")
     private final DecayCounter total;
 
+    private final StripedValueBuffer buffer = new StripedValueBuffer(Ticker.systemTicker(), this::record);
+
     public TimeDistribution()
     {
         digest = new QuantileDigest(MAX_ERROR);
@@ -34,68 +41,89 @@ public class TimeDistribution
         total = new DecayCounter(alpha);
     }
 
-    public synchronized void add(long value)
+    public void add(long value)
     {
-        digest.add(value);
-        total.add(value);
+        if (!buffer.add(value)) {
+            synchronized (this) {
+                buffer.renewStripe();
+                record(value, buffer.nowInSeconds());
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private void record(long value, long timestampInSeconds)
+    {
+        digest.add(value, 1, timestampInSeconds);
+        total.add(value, timestampInSeconds);
     }
 
     @Managed
     public synchronized double getMaxError()
     {
+        buffer.flush();
         return digest.getConfidenceFactor();
     }
 
     @Managed
     public synchronized double getCount()
     {
+        buffer.flush();
         return digest.getCount();
     }
 
     @Managed
     public synchronized double getTotal() {
+        buffer.flush();
         return convertToSeconds((long) total.getCount());
     }
 
     @Managed
     public synchronized double getP50()
     {
+        buffer.flush();
         return convertToSeconds(digest.getQuantile(0.5));
     }
 
     @Managed
     public synchronized double getP75()
     {
+        buffer.flush();
         return convertToSeconds(digest.getQuantile(0.75));
     }
 
     @Managed
     public synchronized double getP90()
     {
+        buffer.flush();
         return convertToSeconds(digest.getQuantile(0.90));
     }
 
     @Managed
     public synchronized double getP95()
     {
+        buffer.flush();
         return convertToSeconds(digest.getQuantile(0.95));
     }
 
     @Managed
     public synchronized double getP99()
     {
+        buffer.flush();
         return convertToSeconds(digest.getQuantile(0.99));
     }
 
     @Managed
     public synchronized double getMin()
     {
+        buffer.flush();
         return convertToSeconds(digest.getMin());
     }
 
     @Managed
     public synchronized double getMax()
     {
+        buffer.flush();
         return convertToSeconds(digest.getMax());
     }
 
@@ -109,6 +137,7 @@ public class TimeDistribution
 
         List<Long> values;
         synchronized (this) {
+            buffer.flush();
             values = digest.getQuantiles(percentiles);
         }
 
@@ -128,6 +157,20 @@ public class TimeDistribution
         return nanos * 0.000_000_001;
     }
 
+    /**
+     * Serialize the digest of nanosecond values, decayed to the current time,
+     * so that it can be merged with the digests of other processes by
+     * {@link MergedDistribution}.
+     */
+    @Override
+    public synchronized byte[] serializeDigest()
+    {
+        buffer.flush();
+        ByteArrayDataOutput output = ByteStreams.newDataOutput(digest.estimatedSerializedSizeInBytes());
+        digest.serializeWithoutDecay(output);
+        return output.toByteArray();
+    }
+
     public TimeDistributionSnapshot snapshot()
     {
         return new TimeDistributionSnapshot(
@@ -6,7 +6,9 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
 
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.testng.Assert.assertEquals;
 
 public class TestBucketedDistribution
@@ -69,6 +71,28 @@ public class TestBucketedDistribution
         assertPreviousDistributionEmpty(distribution);
     }
 
+    @Test(timeOut = 10_000)
+    public void testAddDoesNotTakeBucketedLock()
+            throws Exception
+    {
+        BucketedDistribution distribution = new BucketedDistribution();
+        distribution.setBucketIdProvider(bucketIdProvider);
+        ExecutorService executor = newSingleThreadExecutor();
+        try {
+            synchronized (distribution) {
+                executor.submit(() -> {
+                    distribution.add(1);
+                    distribution.add(2);
+                }).get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        ++bucketIdProvider.id;
+        assertPreviousDistribution(distribution, 2, 1, 2, 3);
+    }
+
     private void assertPreviousDistributionEmpty(BucketedDistribution distribution)
             throws Exception
     {
@@ -6,7 +6,9 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
 
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static org.testng.Assert.assertEquals;
 
 public class TestBucketedTimeDistribution
@@ -69,6 +71,28 @@ public class TestBucketedTimeDistribution
         assertPreviousDistributionEmpty(distribution);
     }
 
+    @Test(timeOut = 10_000)
+    public void testAddDoesNotTakeBucketedLock()
+            throws Exception
+    {
+        BucketedTimeDistribution distribution = new BucketedTimeDistribution();
+        distribution.setBucketIdProvider(bucketIdProvider);
+        ExecutorService executor = newSingleThreadExecutor();
+        try {
+            synchronized (distribution) {
+                executor.submit(() -> {
+                    distribution.add(1_000_000);
+                    distribution.add(2_000_000);
+                }).get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        ++bucketIdProvider.id;
+        assertPreviousDistribution(distribution, 2, .001, .002, .003);
+    }
+
     private void assertPreviousDistributionEmpty(BucketedTimeDistribution distribution)
             throws Exception
     {
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.stats;
+
+import com.proofpoint.reporting.Bucketed;
+import com.proofpoint.reporting.Bucketed.BucketInfo;
+import com.proofpoint.stats.BucketedCounter.Counter;
+import com.proofpoint.testing.TestingTicker;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestCounterStat
+{
+    private static final double EPSILON = 1e-9;
+
+    private TestingTicker ticker;
+    private TestingBucketIdProvider bucketIdProvider;
+
+    @BeforeMethod
+    public void setup()
+    {
+        ticker = new TestingTicker();
+        bucketIdProvider = new TestingBucketIdProvider();
+    }
+
+    @Test
+    public void testTotalCount()
+    {
+        CounterStat counterStat = new CounterStat(ticker);
+        counterStat.add(1);
+        counterStat.add(2);
+        ticker.elapseTime(1, TimeUnit.SECONDS);
+        counterStat.add(3);
+
+        assertEquals(counterStat.getTotalCount(), 6);
+    }
+
+    @Test
+    public void testDecayUsesTimeOfAdd()
+    {
+        CounterStat counterStat = new CounterStat(ticker);
+        counterStat.add(1);
+        ticker.elapseTime(30, TimeUnit.SECONDS);
+        counterStat.add(2);
+        ticker.elapseTime(30, TimeUnit.SECONDS);
+
+        assertEquals(counterStat.getOneMinute().getCount(), Math.exp(-1) + 2 * Math.exp(-0.5), EPSILON);
+        assertEquals(counterStat.getOneMinute().getRate(), (Math.exp(-1) + 2 * Math.exp(-0.5)) / 60, EPSILON);
+        assertEquals(counterStat.getFiveMinute().getCount(), Math.exp(-0.2) + 2 * Math.exp(-0.1), EPSILON);
+        assertEquals(counterStat.getFifteenMinute().getCount(), Math.exp(-1.0 / 15) + 2 * Math.exp(-0.5 / 15), EPSILON);
+    }
+
+    @Test
+    public void testPreviousBucket()
+            throws Exception
+    {
+        CounterStat counterStat = new CounterStat(ticker);
+        counterStat.add(100);
+        counterStat.getBucket().setBucketIdProvider(bucketIdProvider);
+        counterStat.add(1);
+        assertPreviousCount(counterStat, 0);
+
+        // counts are assigned to buckets at the granularity of a second
+        ticker.elapseTime(1, TimeUnit.SECONDS);
+        ++bucketIdProvider.id;
+        counterStat.add(2);
+        counterStat.add(3);
+        assertPreviousCount(counterStat, 1);
+
+        // the counts are still buffered when the bucket is rotated out
+        ++bucketIdProvider.id;
+        assertPreviousCount(counterStat, 5);
+
+        assertEquals(counterStat.getTotalCount(), 106);
+    }
+
+    @Test
+    public void testMerge()
+    {
+        CounterStat counterStat = new CounterStat(ticker);
+        counterStat.add(1);
+        CounterStat other = new CounterStat(ticker);
+        other.add(2);
+
+        counterStat.merge(other);
+
+        assertEquals(counterStat.getTotalCount(), 3);
+        assertEquals(counterStat.getOneMinute().getCount(), 3, EPSILON);
+        assertEquals(other.getTotalCount(), 2);
+    }
+
+    @Test
+    public void testReset()
+    {
+        CounterStat counterStat = new CounterStat(ticker);
+        counterStat.add(1);
+        counterStat.reset();
+        counterStat.add(2);
+
+        assertEquals(counterStat.getTotalCount(), 2);
+        assertEquals(counterStat.getOneMinute().getCount(), 2, EPSILON);
+    }
+
+    @Test
+    public void testConcurrentAdds()
+            throws Exception
+    {
+        int threadCount = 8;
+        int addsPerThread = 100_000;
+        CounterStat counterStat = new CounterStat(ticker);
+        counterStat.getBucket().setBucketIdProvider(bucketIdProvider);
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < addsPerThread; j++) {
+                    counterStat.add(1);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        AtomicBoolean done = new AtomicBoolean();
+        Thread clock = new Thread(() -> {
+            while (!done.get()) {
+                ticker.elapseTime(1, TimeUnit.SECONDS);
+                Thread.yield();
+            }
+        });
+        clock.start();
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.set(true);
+        clock.join();
+
+        assertEquals(counterStat.getTotalCount(), (long) threadCount * addsPerThread);
+
+        ++bucketIdProvider.id;
+        assertPreviousCount(counterStat, (double) threadCount * addsPerThread);
+    }
+
+    private static void assertPreviousCount(CounterStat counterStat, double expected)
+            throws Exception
+    {
+        Method method = Bucketed.class.getDeclaredMethod("getPreviousBucket");
+        method.setAccessible(true);
+        BucketInfo bucketInfo = (BucketInfo) method.invoke(counterStat.getBucket());
+        Counter previousBucket = (Counter) bucketInfo.getBucket();
+        assertEquals(previousBucket.getCount(), expected);
+    }
+}
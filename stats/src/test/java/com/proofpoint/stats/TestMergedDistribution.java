@@ -0,0 +1,159 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.stats;
+
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestMergedDistribution
+{
+    private TestingBucketIdProvider bucketIdProvider;
+
+    @BeforeMethod
+    public void setup()
+    {
+        bucketIdProvider = new TestingBucketIdProvider();
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        MergedDistribution merged = new MergedDistribution();
+        assertEquals(merged.getCount(), 0.0);
+        assertEquals(merged.getMin(), Long.MAX_VALUE);
+        assertEquals(merged.getMax(), Long.MIN_VALUE);
+
+        merged.merge(new Distribution().serializeDigest());
+        assertEquals(merged.getCount(), 0.0);
+    }
+
+    @Test
+    public void testUpdateReplacesContents()
+    {
+        Distribution first = new Distribution();
+        Distribution second = new Distribution();
+        for (int i = 0; i < 100; i++) {
+            first.add(i);
+            second.add(1000 + i);
+        }
+
+        MergedDistribution merged = new MergedDistribution();
+        merged.update(asList(first.serializeDigest(), second.serializeDigest()));
+        assertEquals(merged.getCount(), 200.0);
+        assertEquals(merged.getMin(), 0);
+        assertEquals(merged.getMax(), 1099);
+        assertEquals(merged.getP50(), merged.getQuantile(0.5));
+
+        merged.update(asList(second.serializeDigest()));
+        assertEquals(merged.getCount(), 100.0);
+        assertEquals(merged.getMin(), 1000);
+
+        merged.update(asList());
+        assertEquals(merged.getCount(), 0.0);
+    }
+
+    @Test
+    public void testMergeDistributions()
+    {
+        Distribution first = new Distribution();
+        Distribution second = new Distribution(ExponentialDecay.oneMinute());
+        for (int i = 0; i < 1000; i++) {
+            first.add(i);
+        }
+        for (int i = 1000; i < 3000; i++) {
+            second.add(i);
+        }
+
+        MergedDistribution merged = new MergedDistribution();
+        merged.merge(first.serializeDigest());
+        merged.merge(second.serializeDigest());
+
+        assertEquals(merged.getCount(), 3000.0, 0.1);
+        assertEquals(merged.getMin(), 0);
+        assertEquals(merged.getMax(), 2999);
+        assertQuantile(merged, 0.25, 750);
+        assertQuantile(merged, 0.5, 1500);
+        assertQuantile(merged, 0.99, 2970);
+        assertEquals(merged.getQuantiles(asList(0.0, 1.0)), asList(0L, 2999L));
+    }
+
+    @Test
+    public void testMergeTimeDistributions()
+    {
+        TimeStat first = new TimeStat();
+        TimeStat second = new TimeStat();
+        for (int i = 1; i <= 100; i++) {
+            first.add(i, TimeUnit.MILLISECONDS);
+            second.add(i + 100, TimeUnit.MILLISECONDS);
+        }
+
+        MergedDistribution merged = new MergedDistribution();
+        merged.merge(first.getAllTime().serializeDigest());
+        merged.merge(second.getOneMinute().serializeDigest());
+
+        assertEquals(merged.getCount(), 200.0, 0.1);
+        assertEquals(merged.getMin(), TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(merged.getMax(), TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void testMergeSparseStats()
+    {
+        SparseDistributionStat first = new SparseDistributionStat();
+        first.setBucketIdProvider(bucketIdProvider);
+        SparseTimeStat second = new SparseTimeStat();
+        second.setBucketIdProvider(bucketIdProvider);
+
+        first.add(1);
+        first.add(2);
+        second.add(3, TimeUnit.NANOSECONDS);
+        ++bucketIdProvider.id;
+        first.add(100);
+
+        MergedDistribution merged = new MergedDistribution();
+        merged.merge(first.serializePreviousDigest());
+        merged.merge(second.serializeDigest());
+
+        assertEquals(merged.getCount(), 3.0);
+        assertEquals(merged.getMin(), 1);
+        assertEquals(merged.getMax(), 3);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "digest was serialized with decay")
+    public void testRejectsDecayingDigest()
+    {
+        QuantileDigest digest = new QuantileDigest(0.01, ExponentialDecay.oneMinute());
+        digest.add(1);
+        ByteArrayDataOutput output = ByteStreams.newDataOutput();
+        digest.serialize(output);
+
+        new MergedDistribution().merge(output.toByteArray());
+    }
+
+    private static void assertQuantile(MergedDistribution merged, double quantile, long expected)
+    {
+        long actual = merged.getQuantile(quantile);
+        assertTrue(Math.abs(actual - expected) <= 3000 * 0.01, "p" + quantile + " was " + actual);
+    }
+}
@@ -801,6 +801,32 @@ public class TestQuantileDigest
         assertTrue(digest.equivalent(deserialize(serialize(digest))), format("Serialization roundtrip failed for input: %s", values));
     }
 
+    @Test
+    public void testSerializationWithoutDecay()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        QuantileDigest digest = new QuantileDigest(1, ExponentialDecay.computeAlpha(0.5, 60), ticker, true);
+
+        addAll(digest, asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+        ticker.elapseTime(60, TimeUnit.SECONDS);
+        addAll(digest, asList(10, 11, 12, 13, 14, 15, 16, 17, 18, 19));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(digest.estimatedSerializedSizeInBytes());
+        digest.serializeWithoutDecay(new DataOutputStream(out));
+        QuantileDigest deserialized = deserialize(out.toByteArray());
+
+        assertEquals(deserialized.getAlpha(), 0.0);
+        assertEquals(deserialized.getCount(), 15.0, 0.001);
+        assertEquals(deserialized.getMin(), 0);
+        assertEquals(deserialized.getMax(), 19);
+        assertEquals(deserialized.getQuantiles(asList(0.0, 0.5, 1.0)), digest.getQuantiles(asList(0.0, 0.5, 1.0)));
+
+        // Further time passing does not decay the serialized weights
+        ticker.elapseTime(60, TimeUnit.SECONDS);
+        assertEquals(deserialized.getCount(), 15.0, 0.001);
+    }
+
     private QuantileDigest deserialize(byte[] result)
             throws IOException
     {
@@ -10,12 +10,16 @@ import org.testng.annotations.Test;
 
 import java.lang.reflect.Method;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 public class TestSparseTimeStat
 {
@@ -54,6 +58,45 @@ public class TestSparseTimeStat
         assertPreviousDistribution(stat, 2, .002, .003, .005);
     }
 
+    @Test
+    public void testPreviousQuantile()
+    {
+        SparseTimeStat stat = new SparseTimeStat();
+        stat.setBucketIdProvider(bucketIdProvider);
+        for (int i = 1; i <= 100; i++) {
+            stat.add(i, MILLISECONDS);
+        }
+        assertNull(stat.getPreviousQuantile(0.95));
+        ++bucketIdProvider.id;
+        assertEquals(stat.getPreviousQuantile(0.95).getValue(MILLISECONDS), 95, 1);
+        assertEquals(stat.getPreviousQuantile(0.5).getValue(MILLISECONDS), 50, 1);
+        ++bucketIdProvider.id;
+        assertNull(stat.getPreviousQuantile(0.95));
+    }
+
+    @Test
+    public void testPreviousQuantileDoesNotTakeBucketedLock()
+            throws Exception
+    {
+        SparseTimeStat stat = new SparseTimeStat();
+        stat.setBucketIdProvider(bucketIdProvider);
+        for (int i = 1; i <= 100; i++) {
+            stat.add(i, MILLISECONDS);
+        }
+        ++bucketIdProvider.id;
+        Duration p95 = stat.getPreviousQuantile(0.95);
+
+        ExecutorService executor = newSingleThreadExecutor();
+        try {
+            synchronized (stat) {
+                assertSame(executor.submit(() -> stat.getPreviousQuantile(0.95)).get(), p95);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testDiscardsBuckets()
             throws Exception
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2018 Proofpoint, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proofpoint.stats;
+
+import com.google.common.collect.ImmutableList;
+import com.proofpoint.testing.TestingTicker;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestStripedValueBuffer
+{
+    private TestingTicker ticker;
+    private List<Long> values;
+    private List<Long> timestamps;
+    private StripedValueBuffer buffer;
+
+    @BeforeMethod
+    public void setup()
+    {
+        ticker = new TestingTicker();
+        values = new ArrayList<>();
+        timestamps = new ArrayList<>();
+        buffer = new StripedValueBuffer(ticker, (value, timestampInSeconds) -> {
+            values.add(value);
+            timestamps.add(timestampInSeconds);
+        });
+    }
+
+    @Test
+    public void testRequiresStripe()
+    {
+        assertFalse(buffer.add(1));
+        buffer.renewStripe();
+        assertTrue(buffer.add(1));
+        assertTrue(buffer.add(2));
+        assertEquals(values, ImmutableList.of());
+
+        buffer.flush();
+        assertEquals(values, ImmutableList.of(1L, 2L));
+        assertFalse(buffer.add(3));
+    }
+
+    @Test
+    public void testKeepsTimestamp()
+    {
+        ticker.elapseTime(10, TimeUnit.SECONDS);
+        buffer.renewStripe();
+        assertTrue(buffer.add(1));
+        ticker.elapseTime(1, TimeUnit.SECONDS);
+        assertFalse(buffer.add(2));
+
+        buffer.renewStripe();
+        assertEquals(values, ImmutableList.of(1L));
+        assertEquals(timestamps, ImmutableList.of(10L));
+
+        assertTrue(buffer.add(3));
+        buffer.flush();
+        assertEquals(values, ImmutableList.of(1L, 3L));
+        assertEquals(timestamps, ImmutableList.of(10L, 11L));
+    }
+
+    @Test
+    public void testStripeFull()
+    {
+        buffer.renewStripe();
+        long added = 0;
+        while (buffer.add(added)) {
+            ++added;
+        }
+        assertTrue(added > 0);
+
+        buffer.renewStripe();
+        assertEquals(values.size(), added);
+        assertTrue(buffer.add(added));
+    }
+
+    @Test
+    public void testConcurrentAdds()
+            throws Exception
+    {
+        int threadCount = 8;
+        int valuesPerThread = 100_000;
+        Distribution distribution = new Distribution();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int j = 0; j < valuesPerThread; j++) {
+                    distribution.add(j);
+                    if (j % 10_000 == 0) {
+                        distribution.getCount();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(distribution.getCount(), (double) threadCount * valuesPerThread);
+        assertEquals(distribution.getTotal(), (double) threadCount * valuesPerThread * (valuesPerThread - 1) / 2);
+        assertEquals(distribution.getMax(), valuesPerThread - 1);
+    }
+}
@@ -15,10 +15,10 @@
  */
 package com.proofpoint.tracetoken;
 
-import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableMap;
 
 import javax.annotation.Nullable;
+import java.security.SecureRandom;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -34,11 +34,27 @@ import static java.util.Objects.requireNonNull;
  */
 public final class TraceTokenManager
 {
-    private static final ThreadLocal<TokenState> token = new ThreadLocal<>();
+    private static final ThreadLocal<TokenState> token = ThreadLocal.withInitial(TokenState::new);
+    private static final TraceTokenScope NO_TOKEN_SCOPE = new TraceTokenScope(null);
+    private static volatile boolean threadNamesEnabled = false;
 
     private TraceTokenManager()
     {}
 
+    /**
+     * Whether registering a trace token appends it to the current thread's
+     * name. Renaming threads is relatively expensive, so is disabled by default.
+     */
+    public static void setThreadNamesEnabled(boolean enabled)
+    {
+        threadNamesEnabled = enabled;
+    }
+
+    public static boolean isThreadNamesEnabled()
+    {
+        return threadNamesEnabled;
+    }
+
     /**
      * Associate a given trace token id, with no other properties, with the
      * current thread.
@@ -76,31 +92,20 @@ public final class TraceTokenManager
      */
     public static TraceTokenScope registerTraceToken(@Nullable TraceToken token)
     {
-        TokenState oldTokenState = TraceTokenManager.token.get();
-
-        String oldThreadName;
-        if (oldTokenState == null) {
-            oldThreadName = currentThread().getName();
-        }
-        else {
-            oldThreadName = oldTokenState.getOldThreadName();
-        }
-
-        if (token == null) {
-            TraceTokenManager.token.set(null);
-            currentThread().setName(oldThreadName);
-        }
-        else {
-            TraceTokenManager.token.set(new AutoValue_TraceTokenManager_TokenState(token, oldThreadName));
-            currentThread().setName(oldThreadName + " " + token);
+        TraceToken oldToken = setTraceToken(token);
+        if (oldToken == null) {
+            return NO_TOKEN_SCOPE;
         }
+        return new TraceTokenScope(oldToken);
+    }
 
-        if (oldTokenState == null) {
-            return new TraceTokenScope(null);
-        }
-        else {
-            return new TraceTokenScope(oldTokenState.getToken());
-        }
+    static TraceToken setTraceToken(@Nullable TraceToken token)
+    {
+        TokenState tokenState = TraceTokenManager.token.get();
+        TraceToken oldToken = tokenState.token;
+        tokenState.token = token;
+        updateThreadName(tokenState);
+        return oldToken;
     }
 
     /**
@@ -111,11 +116,11 @@ public final class TraceTokenManager
     @Nullable
     public static String getCurrentRequestToken()
     {
-        TokenState tokenState = token.get();
-        if (tokenState == null) {
+        TraceToken traceToken = token.get().token;
+        if (traceToken == null) {
             return null;
         }
-        return tokenState.getToken().toString();
+        return traceToken.toString();
     }
 
     /**
@@ -124,11 +129,7 @@ public final class TraceTokenManager
     @Nullable
     public static TraceToken getCurrentTraceToken()
     {
-        TokenState tokenState = token.get();
-        if (tokenState == null) {
-            return null;
-        }
-        return tokenState.getToken();
+        return token.get().token;
     }
 
     /**
@@ -139,7 +140,7 @@ public final class TraceTokenManager
     public static String createAndRegisterNewRequestToken(String... properties)
     {
         checkArgument((properties.length % 2) == 0, "odd number of elements in properties");
-        String newToken = UUID.randomUUID().toString();
+        String newToken = token.get().randomUuid().toString();
         registerRequestToken(newToken);
         if (properties.length != 0) {
             addTraceTokenProperties(properties);
@@ -153,11 +154,7 @@ public final class TraceTokenManager
      */
     public static void clearRequestToken()
     {
-        TokenState oldToken = TraceTokenManager.token.get();
-        token.remove();
-        if (oldToken != null) {
-            currentThread().setName(oldToken.getOldThreadName());
-        }
+        setTraceToken(null);
     }
 
     /**
@@ -170,13 +167,13 @@ public final class TraceTokenManager
      */
     public static TraceTokenScope addTraceTokenProperties(String... properties)
     {
-        TokenState tokenState = token.get();
+        TraceToken traceToken = token.get().token;
 
-        if (tokenState == null) {
-            return new TraceTokenScope(null);
+        if (traceToken == null) {
+            return NO_TOKEN_SCOPE;
         }
 
-        Map<String, String> map = new LinkedHashMap<>(tokenState.getToken());
+        Map<String, String> map = new LinkedHashMap<>(traceToken);
 
         checkArgument((properties.length % 2) == 0, "odd number of elements in properties");
         for (int i = 0; i < properties.length; i += 2) {
@@ -188,11 +185,44 @@ public final class TraceTokenManager
         return registerTraceToken(new TraceToken(map));
     }
 
-    @AutoValue
-    abstract static class TokenState
+    private static void updateThreadName(TokenState tokenState)
     {
-        abstract TraceToken getToken();
+        if (tokenState.token != null && threadNamesEnabled) {
+            if (tokenState.originalThreadName == null) {
+                tokenState.originalThreadName = currentThread().getName();
+            }
+            currentThread().setName(tokenState.originalThreadName + " " + tokenState.token);
+        }
+        else if (tokenState.originalThreadName != null) {
+            currentThread().setName(tokenState.originalThreadName);
+            tokenState.originalThreadName = null;
+        }
+    }
 
-        abstract String getOldThreadName();
+    /**
+     * Per-thread state, reused so that registering and clearing tokens does not allocate.
+     */
+    private static class TokenState
+    {
+        private TraceToken token;
+
+        // the thread's name before a token was appended, or null if the name is unchanged
+        private String originalThreadName;
+
+        private SecureRandom random;
+
+        /**
+         * Same as {@link UUID#randomUUID()}, but without contending on a
+         * shared {@link SecureRandom}: each thread has its own.
+         */
+        UUID randomUuid()
+        {
+            if (random == null) {
+                random = new SecureRandom();
+            }
+            long mostSignificantBits = (random.nextLong() & 0xffff_ffff_ffff_0fffL) | 0x0000_0000_0000_4000L;
+            long leastSignificantBits = (random.nextLong() & 0x3fff_ffff_ffff_ffffL) | 0x8000_0000_0000_0000L;
+            return new UUID(mostSignificantBits, leastSignificantBits);
+        }
     }
 }
@@ -17,7 +17,7 @@ package com.proofpoint.tracetoken;
 
 import javax.annotation.Nullable;
 
-import static com.proofpoint.tracetoken.TraceTokenManager.registerTraceToken;
+import static com.proofpoint.tracetoken.TraceTokenManager.setTraceToken;
 
 /**
  * An object which, when closed, causes the thread's trace token state to be restored.
@@ -35,6 +35,6 @@ public class TraceTokenScope
     @Override
     public void close()
     {
-        registerTraceToken(oldToken);
+        setTraceToken(oldToken);
     }
 }
@@ -28,9 +28,11 @@ import static com.proofpoint.tracetoken.TraceTokenManager.getCurrentRequestToken
 import static com.proofpoint.tracetoken.TraceTokenManager.getCurrentTraceToken;
 import static com.proofpoint.tracetoken.TraceTokenManager.registerRequestToken;
 import static com.proofpoint.tracetoken.TraceTokenManager.registerTraceToken;
+import static com.proofpoint.tracetoken.TraceTokenManager.setThreadNamesEnabled;
 import static java.lang.Thread.currentThread;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 public class TestTraceTokenManager
 {
@@ -42,11 +44,14 @@ public class TestTraceTokenManager
     {
         originalThreadName.set(currentThread().getName());
         currentThread().setName("testing thread name");
+        setThreadNamesEnabled(true);
     }
 
     @AfterMethod(alwaysRun = true)
     public void cleanup()
     {
+        clearRequestToken();
+        setThreadNamesEnabled(false);
         currentThread().setName(originalThreadName.get());
     }
 
@@ -244,4 +249,40 @@ public class TestTraceTokenManager
         assertNull(getCurrentTraceToken());
         assertEquals(currentThread().getName(), "testing thread name");
     }
+
+    @Test
+    public void testThreadNamesDisabled()
+    {
+        setThreadNamesEnabled(false);
+
+        try (TraceTokenScope ignored = registerTraceToken(TESTING_TRACE_TOKEN)) {
+            assertEquals(getCurrentTraceToken(), TESTING_TRACE_TOKEN);
+            assertEquals(currentThread().getName(), "testing thread name");
+        }
+        assertNull(getCurrentTraceToken());
+        assertEquals(currentThread().getName(), "testing thread name");
+    }
+
+    @Test
+    public void testThreadNamesDisabledWhileRegistered()
+    {
+        registerTraceToken(TESTING_TRACE_TOKEN);
+        assertEquals(currentThread().getName(), "testing thread name {id=testing-id, key-d=value-d}");
+
+        setThreadNamesEnabled(false);
+        registerRequestToken("abc");
+        assertEquals(getCurrentRequestToken(), "abc");
+        assertEquals(currentThread().getName(), "testing thread name");
+    }
+
+    @Test
+    public void testScopeWithoutPreviousTokenIsShared()
+    {
+        clearRequestToken();
+        TraceTokenScope first = registerTraceToken(TESTING_TRACE_TOKEN);
+        clearRequestToken();
+        TraceTokenScope second = registerRequestToken("abc");
+
+        assertSame(first, second);
+    }
 }